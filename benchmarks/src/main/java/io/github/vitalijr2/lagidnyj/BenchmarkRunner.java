@@ -0,0 +1,41 @@
+package io.github.vitalijr2.lagidnyj;
+
+import java.io.IOException;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run benchmarks with the allocation profiler, the same as {@code -prof gc}.
+ * <p>
+ * Install the bot first with {@code mvn install} in the root directory, then build the benchmarks with
+ * {@code mvn -f benchmarks/pom.xml package}. Other JMH options are taken from the command line, e.g.
+ * {@code java -jar benchmarks/target/benchmarks.jar Cyrillic -f 1}.
+ */
+public class BenchmarkRunner {
+
+  private BenchmarkRunner() {
+  }
+
+  /**
+   * Run benchmarks.
+   *
+   * @param args JMH command line options
+   * @throws CommandLineOptionException if the options could not be parsed
+   * @throws IOException                if the list of benchmarks could not be read
+   * @throws RunnerException            if benchmarks failed
+   */
+  public static void main(String... args) throws CommandLineOptionException, IOException, RunnerException {
+    var commandLineOptions = new CommandLineOptions(args);
+
+    if (commandLineOptions.shouldHelp() || commandLineOptions.shouldList()) {
+      org.openjdk.jmh.Main.main(args);
+      return;
+    }
+    new Runner(new OptionsBuilder().parent(commandLineOptions).addProfiler(GCProfiler.class).build()).run();
+  }
+
+}
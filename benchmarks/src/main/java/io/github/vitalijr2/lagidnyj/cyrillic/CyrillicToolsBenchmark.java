@@ -0,0 +1,67 @@
+package io.github.vitalijr2.lagidnyj.cyrillic;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scan for the Russian letters across text lengths and positions of the first hit.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+public class CyrillicToolsBenchmark {
+
+  private static final String UKRAINIAN = "Привіт, як справи? "
+      + "Ґудзик, їжак, європейський. ";
+
+  @Param({"16", "256", "4096"})
+  private int length;
+
+  @Param({"none", "start", "middle", "end"})
+  private String hit;
+
+  private String text;
+
+  @Setup
+  public void setUp() {
+    var builder = new StringBuilder(length);
+
+    while (builder.length() < length) {
+      builder.append(UKRAINIAN);
+    }
+    builder.setLength(length);
+    switch (hit) {
+      case "start":
+        builder.setCharAt(0, 'ы');
+        break;
+      case "middle":
+        builder.setCharAt(length / 2, 'ы');
+        break;
+      case "end":
+        builder.setCharAt(length - 1, 'ы');
+        break;
+      default:
+        // no hits
+    }
+    text = builder.toString();
+  }
+
+  @Benchmark
+  public boolean hasRussianLetters() {
+    return CyrillicTools.hasRussianLetters(text);
+  }
+
+}
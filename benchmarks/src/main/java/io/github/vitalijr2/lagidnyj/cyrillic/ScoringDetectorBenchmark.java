@@ -0,0 +1,58 @@
+package io.github.vitalijr2.lagidnyj.cyrillic;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scoring of chat messages: Russian text stops early, Ukrainian text is scanned to the end.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+public class ScoringDetectorBenchmark {
+
+  private static final String RUSSIAN = "Привет, как у тебя дела сегодня? ";
+  private static final String UKRAINIAN = "Привіт, як справи? "
+      + "Ґудзик, їжак, європейський. ";
+
+  @Param({"64", "256", "1024"})
+  private int length;
+
+  @Param({"russian", "ukrainian"})
+  private String language;
+
+  private ScoringDetector detector;
+  private String text;
+
+  @Setup
+  public void setUp() {
+    var sample = "russian".equals(language) ? RUSSIAN : UKRAINIAN;
+    var builder = new StringBuilder(length);
+
+    while (builder.length() < length) {
+      builder.append(sample);
+    }
+    builder.setLength(length);
+    detector = ScoringDetector.getInstance();
+    text = builder.toString();
+  }
+
+  @Benchmark
+  public boolean isRussian() {
+    return detector.isRussian(text);
+  }
+
+}
@@ -0,0 +1,65 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import io.github.vitalijr2.lagidnyj.beans.User;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building blocks of a webhook answer: Markdown escaping, a message and the sender of an update.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+public class BotToolsBenchmark {
+
+  private static final String MARKDOWN = "[Джон Сміт](tg://user?id=123), будь ласка, "
+      + "пишіть українською! (1.5 + 2 = 3.5) #мова_*жарт*_";
+  private static final String PLAIN = "Більше інформації для чого цей бот "
+      + "та як ним користуватись в дописі";
+
+  @Param({"plain", "markup"})
+  private String style;
+
+  private UpdateParser parser;
+  private String text;
+
+  @Setup
+  public void setUp() throws IOException {
+    text = "plain".equals(style) ? PLAIN : MARKDOWN;
+    parser = new UpdateParser();
+    parser.read(new ByteArrayInputStream(LagidnyjBotBenchmark.update("russianText").getBytes(UTF_8)));
+  }
+
+  @Benchmark
+  public String markdownEscaping() {
+    return BotTools.markdownEscaping(text);
+  }
+
+  @Benchmark
+  public String sendMessage() {
+    return BotTools.sendMessage(-1001234567890L, text).toString();
+  }
+
+  @Benchmark
+  public User getFrom() {
+    return parser.parseUpdate().getFrom();
+  }
+
+}
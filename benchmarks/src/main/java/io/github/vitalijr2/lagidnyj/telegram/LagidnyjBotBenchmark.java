@@ -0,0 +1,99 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Whole webhook processing of realistic updates, from the request body to the webhook answer.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+public class LagidnyjBotBenchmark {
+
+  private static final String CHAT = "\"chat\":{\"id\":-1001234567890,"
+      + "\"title\":\"Лагідна українізація\",\"username\":\"lagidna\",\"type\":\"supergroup\"}";
+  private static final String FROM = "\"from\":{\"id\":123456789,\"is_bot\":false,\"first_name\":\"Джон\","
+      + "\"last_name\":\"Сміт\",\"username\":\"john_smith\",\"language_code\":\"uk\"}";
+
+  @Param({"text", "russianText", "caption", "edited", "viaBot", "private", "channel"})
+  private String kind;
+
+  private byte[] body;
+  private LagidnyjBot bot;
+
+  static String update(String kind) {
+    switch (kind) {
+      case "text":
+        return message("message", FROM + "," + CHAT
+            + ",\"text\":\"Доброго ранку! Як справи у вас сьогодні?\"");
+      case "russianText":
+        return message("message", FROM + "," + CHAT
+            + ",\"text\":\"Доброе утро! Как у вас дела? Всё хорошо.\"");
+      case "caption":
+        return message("message", FROM + "," + CHAT + ",\"photo\":[{\"file_id\":\"AgACAgIAAxkBAAIB\",\"width\":90,"
+            + "\"height\":67},{\"file_id\":\"AgACAgIAAxkBAAIC\",\"width\":320,\"height\":240}],"
+            + "\"caption\":\"Подывитесь, какой закат сегодня\"");
+      case "edited":
+        return message("edited_message", FROM + "," + CHAT + ",\"edit_date\":1700000100,"
+            + "\"text\":\"Съешь ещё этих мягких французских булок\"");
+      case "viaBot":
+        return message("message", FROM + "," + CHAT + ",\"via_bot\":{\"id\":987654321,\"is_bot\":true,"
+            + "\"first_name\":\"Бот\",\"username\":\"some_bot\"},"
+            + "\"text\":\"Это сообщение от бота\"");
+      case "private":
+        return message("message", FROM + ",\"chat\":{\"id\":123456789,\"first_name\":\"Джон\","
+            + "\"type\":\"private\"},\"text\":\"/start\"");
+      case "channel":
+        return message("channel_post", "\"sender_chat\":{\"id\":-1009876543210,\"type\":\"channel\"},"
+            + "\"chat\":{\"id\":-1009876543210,\"title\":\"Канал\",\"type\":\"channel\"},"
+            + "\"text\":\"Объявление\"");
+      default:
+        throw new IllegalArgumentException("Unknown kind: " + kind);
+    }
+  }
+
+  private static String message(String field, String members) {
+    return "{\"update_id\":864213579,\"" + field + "\":{\"message_id\":4321,\"date\":1700000000," + members + "}}";
+  }
+
+  @Setup
+  public void setUp() {
+    body = update(kind).getBytes(UTF_8);
+    bot = new LagidnyjBot(notification -> {
+    });
+  }
+
+  @Benchmark
+  public Optional<Reply> processRequestBody() throws IOException {
+    return bot.processRequestBody(new ByteArrayInputStream(body));
+  }
+
+  @Benchmark
+  public void processMessage(Blackhole blackhole) throws IOException {
+    var parser = new UpdateParser();
+
+    parser.read(new ByteArrayInputStream(body));
+    blackhole.consume(bot.processMessage(parser.parseUpdate()));
+  }
+
+}
@@ -0,0 +1,126 @@
+package io.github.vitalijr2.lagidnyj.beans;
+
+import static io.github.vitalijr2.lagidnyj.beans.DelayedChatNotification.DEFAULT_DELAY;
+
+import java.util.Arrays;
+import java.util.Locale;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Settings of a chat.
+ *
+ * @param enabled           false if the bot does not watch the chat
+ * @param secondsOfDelay    seconds of delay of a notification
+ * @param strikesToRestrict strike that restricts a user, earlier strikes give warnings; zero means warnings only
+ * @param exemptUsers       identifiers of users that are not watched
+ * @param detectionMode     how Russian text is detected
+ */
+public record ChatSettings(boolean enabled, int secondsOfDelay, int strikesToRestrict, long @NotNull [] exemptUsers,
+                           @NotNull DetectionMode detectionMode) {
+
+  /**
+   * Default strike that restricts a user: the first strike gives a warning, the second one restricts.
+   */
+  public static final int DEFAULT_STRIKES_TO_RESTRICT = 2;
+
+  /**
+   * Settings of chats without own settings.
+   */
+  public static final ChatSettings DEFAULT = new ChatSettings(true, DEFAULT_DELAY, DEFAULT_STRIKES_TO_RESTRICT,
+      new long[0], DetectionMode.Letters);
+
+  /**
+   * Settings, exempt users are copied and sorted.
+   *
+   * @param enabled           false if the bot does not watch the chat
+   * @param secondsOfDelay    seconds of delay of a notification, positive
+   * @param strikesToRestrict strike that restricts a user, not negative
+   * @param exemptUsers       identifiers of users that are not watched
+   * @param detectionMode     how Russian text is detected
+   */
+  public ChatSettings {
+    if (0 >= secondsOfDelay) {
+      throw new IllegalArgumentException("Wrong delay: " + secondsOfDelay);
+    }
+    if (0 > strikesToRestrict) {
+      throw new IllegalArgumentException("Wrong strikes to restrict: " + strikesToRestrict);
+    }
+    exemptUsers = exemptUsers.clone();
+    Arrays.sort(exemptUsers);
+  }
+
+  /**
+   * Check if a user is not watched.
+   *
+   * @param userId user identifier
+   * @return true if the user is exempt
+   */
+  public boolean isExempt(long userId) {
+    return 0 < exemptUsers.length && 0 <= Arrays.binarySearch(exemptUsers, userId);
+  }
+
+  @Override
+  public long @NotNull [] exemptUsers() {
+    return exemptUsers.clone();
+  }
+
+  @Override
+  public boolean equals(Object object) {
+    return this == object || object instanceof ChatSettings settings && enabled == settings.enabled
+        && secondsOfDelay == settings.secondsOfDelay && strikesToRestrict == settings.strikesToRestrict
+        && Arrays.equals(exemptUsers, settings.exemptUsers) && detectionMode == settings.detectionMode;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Arrays.hashCode(exemptUsers) + Boolean.hashCode(enabled) + secondsOfDelay + strikesToRestrict
+        + detectionMode.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return "ChatSettings{enabled=" + enabled + ", secondsOfDelay=" + secondsOfDelay + ", strikesToRestrict="
+        + strikesToRestrict + ", exemptUsers=" + Arrays.toString(exemptUsers) + ", detectionMode=" + detectionMode
+        + '}';
+  }
+
+  /**
+   * Detection of Russian text.
+   */
+  public enum DetectionMode {
+
+    /**
+     * Text has any of the letters <strong>ё</strong>, <strong>ъ</strong>, <strong>ы</strong> and
+     * <strong>э</strong>.
+     */
+    Letters,
+    /**
+     * Text has the letters, or it scores enough by Russian words and trigrams, see
+     * {@code io.github.vitalijr2.lagidnyj.cyrillic.ScoringDetector}.
+     */
+    Scoring;
+
+    /**
+     * Mode by name, case-insensitive.
+     *
+     * @param mode name of mode
+     * @return mode, {@link #Letters} if the name is null
+     */
+    @NotNull
+    public static DetectionMode fromString(@Nullable String mode) {
+      if (null == mode) {
+        return Letters;
+      }
+      for (var value : values()) {
+        if (value.name().equalsIgnoreCase(mode.strip())) {
+          return value;
+        }
+      }
+
+      throw new IllegalArgumentException("Wrong detection mode: " + mode.toLowerCase(Locale.ROOT));
+    }
+
+  }
+
+}
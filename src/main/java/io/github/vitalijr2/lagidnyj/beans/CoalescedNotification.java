@@ -0,0 +1,16 @@
+package io.github.vitalijr2.lagidnyj.beans;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Matured notification with all violations of the same user in the same chat since the first one.
+ *
+ * @param notification notification of the first violation
+ * @param count        number of violations
+ * @param firstSeen    time of the first violation in milliseconds since the epoch
+ * @param lastSeen     time of the last violation in milliseconds since the epoch
+ */
+public record CoalescedNotification(@NotNull DelayedChatNotification notification, int count, long firstSeen,
+                                    long lastSeen) {
+
+}
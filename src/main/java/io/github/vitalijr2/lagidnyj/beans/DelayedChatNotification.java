@@ -16,10 +16,11 @@ import org.jetbrains.annotations.Nullable;
  * @param languageCode   language code, optional, see <a href="https://en.wikipedia.org/wiki/IETF_language_tag">IETF
  *                       language tag</a>
  * @param secondsOfDelay seconds of delay
+ * @param deadline       absolute deadline in milliseconds since the epoch
  */
 public record DelayedChatNotification(long chatId, long userId, @NotNull String firstName, @Nullable String lastName,
-                                      @Nullable String username, @Nullable String languageCode,
-                                      int secondsOfDelay) implements Delayed {
+                                      @Nullable String username, @Nullable String languageCode, int secondsOfDelay,
+                                      long deadline) implements Delayed {
 
   /**
    * Default seconds of delay.
@@ -42,14 +43,42 @@ public record DelayedChatNotification(long chatId, long userId, @NotNull String
     this(chatId, userId, firstName, lastName, username, languageCode, DEFAULT_DELAY);
   }
 
+  /**
+   * Delayed notification, its deadline is counted from now.
+   *
+   * @param chatId         chat identifier
+   * @param userId         user identifier
+   * @param firstName      first name
+   * @param lastName       last name, optional
+   * @param username       username, optional
+   * @param languageCode   language code, optional, see <a href="https://en.wikipedia.org/wiki/IETF_language_tag">IETF
+   *                       language tag</a>
+   * @param secondsOfDelay seconds of delay
+   */
+  public DelayedChatNotification(long chatId, long userId, @NotNull String firstName, @Nullable String lastName,
+      @Nullable String username, @Nullable String languageCode, int secondsOfDelay) {
+    this(chatId, userId, firstName, lastName, username, languageCode, secondsOfDelay,
+        System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(secondsOfDelay));
+  }
+
   @Override
   public int compareTo(@NotNull Delayed delayed) {
-    return (int) (getDelay(TimeUnit.SECONDS) - delayed.getDelay(TimeUnit.SECONDS));
+    if (delayed instanceof DelayedChatNotification notification) {
+      return Long.compare(deadline, notification.deadline);
+    }
+
+    return Long.compare(getDelay(TimeUnit.NANOSECONDS), delayed.getDelay(TimeUnit.NANOSECONDS));
   }
 
+  /**
+   * Time left until the deadline, it is negative when the deadline has passed.
+   *
+   * @param timeUnit time unit
+   * @return remaining delay
+   */
   @Override
   public long getDelay(@NotNull TimeUnit timeUnit) {
-    return timeUnit.convert(secondsOfDelay, TimeUnit.SECONDS);
+    return timeUnit.convert(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
   }
 
 }
@@ -0,0 +1,202 @@
+package io.github.vitalijr2.lagidnyj.cyrillic;
+
+/**
+ * Folding of tricks that hide the Russian letters: look-alikes, combining diacritics, invisible and full-width
+ * characters.
+ * <p>
+ * Every character has a kind in one table: whether it is a Cyrillic letter and what role it plays. Scanners feed the
+ * kinds to {@link #next(int, byte)}, a small state machine that finds a letter like <strong>ы</strong> written as
+ * <strong>b</strong> followed by <strong>I</strong> or <strong>l</strong> after a Cyrillic letter, or as
+ * <strong>ь</strong> followed by them and by one more Cyrillic letter, since many Ukrainian words end with the soft
+ * sign. It finds <strong>е</strong> followed by the combining diaeresis, and Cyrillic letters like
+ * <strong>ӭ</strong> or <strong>ӹ</strong>. Latin look-alikes like <strong>ë</strong>, or <strong>e</strong>
+ * followed by the combining diaeresis, count only after a Cyrillic letter too, so Latin words like
+ * <strong>Noël</strong> do not. Invisible characters and other combining marks are skipped, full-width forms take the
+ * kinds of their ASCII counterparts. The text is never copied.
+ */
+public final class Confusables {
+
+  /**
+   * Scan state: nothing is pending.
+   */
+  public static final int NONE = 0;
+
+  /**
+   * Scan state bit: the last visible character is a Cyrillic letter.
+   */
+  public static final int CYRILLIC = 0x01;
+
+  /**
+   * Scan state: a Russian letter is found, it is the current character.
+   */
+  public static final int FOUND = 0x10;
+
+  /**
+   * Scan state: a Russian letter is found, it starts at the last character that {@link #startsPair(byte) starts a
+   * pair}.
+   */
+  public static final int FOUND_PAIR = 0x20;
+
+  private static final int E = 0x02;
+  private static final int SOFT_SIGN = 0x04;
+  private static final int STICK = 0x08;
+
+  private static final byte ROLE = 0x0E;
+  private static final byte ROLE_DIAERESIS = 0x02;
+  private static final byte ROLE_E = 0x04;
+  private static final byte ROLE_INVISIBLE = 0x06;
+  private static final byte ROLE_LETTER = 0x08;
+  private static final byte ROLE_SOFT_SIGN = 0x0A;
+  private static final byte ROLE_STICK = 0x0C;
+  private static final byte ROLE_LOOK_ALIKE = 0x0E;
+
+  private static final char FULL_WIDTH_FIRST = '！';
+  private static final char FULL_WIDTH_LAST = '～';
+  private static final int FULL_WIDTH_OFFSET = FULL_WIDTH_FIRST - '!';
+  private static final byte[] KINDS = new byte[Character.MAX_VALUE + 1];
+  private static final char[] LOOK_ALIKES = new char[128];
+
+  static {
+    for (var character = 'Ѐ'; 'ӿ' >= character; character++) {
+      if (Character.isLetter(character)) {
+        KINDS[character] = CYRILLIC;
+      }
+    }
+    for (var character = '\u0300'; '\u036F' >= character; character++) {
+      KINDS[character] = ROLE_INVISIBLE;
+    }
+    for (var character = '\uFE00'; '\uFE0F' >= character; character++) {
+      KINDS[character] = ROLE_INVISIBLE;
+    }
+    // soft hyphen, grapheme joiner, Mongolian vowel separator, zero-width and bidirectional marks, word joiner,
+    // invisible operators and the byte order mark
+    role(ROLE_INVISIBLE, "\u00AD\u034F\u180E\u200B\u200C\u200D\u200E\u200F\u202A\u202B\u202C\u202D\u202E"
+        + "\u2060\u2061\u2062\u2063\u2064\uFEFF");
+    role(ROLE_DIAERESIS, "\u0308");
+    role(ROLE_E, "eEеЕ");
+    role(ROLE_LETTER, "ЁёЪъЫыЭэӬӭӸӹ");
+    role(ROLE_LOOK_ALIKE, "ëË");
+    role(ROLE_SOFT_SIGN, "bьЬ");
+    role(ROLE_STICK, "IlіІӀӏ");
+    for (var character = '!'; '~' >= character; character++) {
+      KINDS[character + FULL_WIDTH_OFFSET] = KINDS[character];
+    }
+
+    var latin = "aceopxykABCEHKMOPTXY";
+    var cyrillic = "асеорхукАВСЕНКМОРТХУ";
+
+    for (var i = 0; latin.length() > i; i++) {
+      LOOK_ALIKES[latin.charAt(i)] = cyrillic.charAt(i);
+    }
+  }
+
+  private Confusables() {
+  }
+
+  private static void role(byte role, String characters) {
+    for (var i = 0; characters.length() > i; i++) {
+      var character = characters.charAt(i);
+
+      KINDS[character] = (byte) ((KINDS[character] & CYRILLIC) | role);
+    }
+  }
+
+  /**
+   * Kind of a character.
+   *
+   * @param character character
+   * @return kind for {@link #next(int, byte)}
+   */
+  public static byte kind(char character) {
+    return KINDS[character];
+  }
+
+  /**
+   * Check if a character may be the first one of a pair that makes a Russian letter.
+   *
+   * @param kind kind of the character
+   * @return true for <strong>е</strong>, <strong>ь</strong> and their look-alikes
+   */
+  public static boolean startsPair(byte kind) {
+    var role = kind & ROLE;
+
+    return ROLE_E == role || ROLE_SOFT_SIGN == role;
+  }
+
+  /**
+   * Check if a character is invisible or a combining mark, it does not break a word.
+   *
+   * @param character character
+   * @return true if the character should be skipped
+   */
+  public static boolean isIgnorable(char character) {
+    var role = KINDS[character] & ROLE;
+
+    return ROLE_INVISIBLE == role || ROLE_DIAERESIS == role;
+  }
+
+  /**
+   * Check if a character is a Cyrillic letter.
+   *
+   * @param character character
+   * @return true if the character is in the Cyrillic block
+   */
+  public static boolean isCyrillic(char character) {
+    return 0 != (KINDS[character] & CYRILLIC);
+  }
+
+  /**
+   * Cyrillic letter that looks like a Latin one, full-width forms included.
+   *
+   * @param character character
+   * @return Cyrillic look-alike or the character itself
+   */
+  public static char toCyrillic(char character) {
+    var ascii = (FULL_WIDTH_FIRST <= character && FULL_WIDTH_LAST >= character)
+        ? (char) (character - FULL_WIDTH_OFFSET) : character;
+
+    return (LOOK_ALIKES.length > ascii && 0 != LOOK_ALIKES[ascii]) ? LOOK_ALIKES[ascii] : character;
+  }
+
+  /**
+   * Next scan state.
+   *
+   * @param state current state, {@link #NONE} at the start or after a found letter
+   * @param kind  kind of the next character
+   * @return next state, {@link #FOUND} or {@link #FOUND_PAIR} if a Russian letter is found
+   */
+  public static int next(int state, byte kind) {
+    var role = kind & ROLE;
+
+    if (ROLE_INVISIBLE == role) {
+      return state;
+    }
+    if (0 != (state & STICK)) {
+      // ь and a stick make a letter only inside a word
+      if (0 != (kind & CYRILLIC)) {
+        return FOUND_PAIR;
+      }
+      state &= ~STICK;
+    }
+    switch (role) {
+      case ROLE_LETTER:
+        return FOUND;
+      case ROLE_LOOK_ALIKE:
+        return (0 != (state & CYRILLIC)) ? FOUND : NONE;
+      case ROLE_DIAERESIS:
+        return (0 != (state & E)) ? FOUND_PAIR : NONE;
+      case ROLE_E:
+        return (0 != ((kind | state) & CYRILLIC)) ? E | (kind & CYRILLIC) : NONE;
+      case ROLE_SOFT_SIGN:
+        return ((0 != (state & CYRILLIC)) ? SOFT_SIGN : NONE) | (kind & CYRILLIC);
+      case ROLE_STICK:
+        if (0 == (state & SOFT_SIGN)) {
+          return kind & CYRILLIC;
+        }
+        return (0 != (state & CYRILLIC)) ? STICK | (kind & CYRILLIC) : FOUND_PAIR;
+      default:
+        return kind & CYRILLIC;
+    }
+  }
+
+}
@@ -1,16 +1,252 @@
 package io.github.vitalijr2.lagidnyj.cyrillic;
 
+import java.util.Locale;
 import java.util.regex.Pattern;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Search for the Russian letters <strong>ё</strong>, <strong>ъ</strong>, <strong>ы</strong> and <strong>э</strong>
+ * in both cases.
+ * <p>
+ * A scan returns both the offset of the first hit and the number of hits packed into one {@code long}, use
+ * {@link #firstHit(long)} and {@link #hitCount(long)} to unpack it. The scan engine is chosen by the system property
+ * {@value #ENGINE_PROPERTY}: {@code table} (default) or {@code regex}, an unknown value falls back to the default.
+ * <p>
+ * The table engine also sees through look-alikes, combining diacritics, invisible and full-width characters, e.g.
+ * <strong>мbI</strong> or <strong>е&#x0308;</strong>: they are folded on the fly while scanning.
+ */
 public class CyrillicTools {
 
-  private static final Pattern RUSSIAN_LETTERS = Pattern.compile("[ЁёЫыЪъЭэ]");
+  /**
+   * System property to choose the scan engine.
+   */
+  public static final String ENGINE_PROPERTY = "lagidnyj.cyrillic.engine";
+
+  /**
+   * Scan result without hits.
+   */
+  public static final long NO_HITS = 0xFFFF_FFFFL;
+
+  private static final char FIRST_LETTER = 'Ё';
+  private static final String LETTERS = "ЁёЫыЪъЭэ";
+  private static final boolean[] LETTER_TABLE = new boolean['ё' - FIRST_LETTER + 1];
+  private static final Pattern RUSSIAN_LETTERS = Pattern.compile("[" + LETTERS + "]");
+  private static final Engine ENGINE;
+
+  static {
+    for (var i = 0; LETTERS.length() > i; i++) {
+      LETTER_TABLE[LETTERS.charAt(i) - FIRST_LETTER] = true;
+    }
+    ENGINE = Engine.fromString(System.getProperty(ENGINE_PROPERTY));
+  }
 
   private CyrillicTools() {
   }
 
-  public static boolean hasRussianLetters(String text) {
-    return RUSSIAN_LETTERS.matcher(text).find();
+  /**
+   * Check if a character is one of the Russian letters.
+   *
+   * @param character character
+   * @return true if it is <strong>ё</strong>, <strong>ъ</strong>, <strong>ы</strong> or <strong>э</strong>
+   */
+  public static boolean isRussianLetter(char character) {
+    var index = character - FIRST_LETTER;
+
+    return 0 <= index && LETTER_TABLE.length > index && LETTER_TABLE[index];
+  }
+
+  /**
+   * Check if a text contains the Russian letters.
+   *
+   * @param text text
+   * @return true if any letter is found
+   */
+  public static boolean hasRussianLetters(@NotNull CharSequence text) {
+    return 0 <= indexOfRussianLetter(text, 0, text.length());
+  }
+
+  /**
+   * Find the first Russian letter in a range of a text.
+   *
+   * @param text text
+   * @param from start offset, inclusive
+   * @param to   end offset, exclusive
+   * @return offset of the first letter or -1
+   */
+  public static int indexOfRussianLetter(@NotNull CharSequence text, int from, int to) {
+    return ENGINE.indexOf(text, from, to);
+  }
+
+  /**
+   * Scan a range of a text, see {@link #firstHit(long)} and {@link #hitCount(long)}.
+   *
+   * @param text text
+   * @param from start offset, inclusive
+   * @param to   end offset, exclusive
+   * @return packed result
+   */
+  public static long scan(@NotNull CharSequence text, int from, int to) {
+    return ENGINE.scan(text, from, to);
+  }
+
+  /**
+   * Scan a range of a character array, see {@link #firstHit(long)} and {@link #hitCount(long)}.
+   *
+   * @param text   characters
+   * @param offset start offset
+   * @param length number of characters
+   * @return packed result
+   */
+  public static long scan(char @NotNull [] text, int offset, int length) {
+    var first = -1;
+    var count = 0;
+
+    for (var i = offset; offset + length > i; i++) {
+      if (isRussianLetter(text[i])) {
+        if (0 == count++) {
+          first = i;
+        }
+      }
+    }
+
+    return pack(first, count);
+  }
+
+  /**
+   * Offset of the first hit.
+   *
+   * @param scanResult packed result of a scan
+   * @return offset or -1 if there are no hits
+   */
+  public static int firstHit(long scanResult) {
+    return (int) scanResult;
+  }
+
+  /**
+   * Number of hits.
+   *
+   * @param scanResult packed result of a scan
+   * @return number of hits
+   */
+  public static int hitCount(long scanResult) {
+    return (int) (scanResult >>> 32);
+  }
+
+  /**
+   * Scan engine in use.
+   *
+   * @return engine
+   */
+  public static Engine getEngine() {
+    return ENGINE;
+  }
+
+  static long pack(int first, int count) {
+    return ((long) count << 32) | (first & 0xFFFF_FFFFL);
+  }
+
+  /**
+   * Scan engines.
+   */
+  public enum Engine {
+
+    /**
+     * Loop over characters with a lookup table that folds confusables, no allocations.
+     */
+    TABLE {
+      @Override
+      int indexOf(@NotNull CharSequence text, int from, int to) {
+        var pairStart = -1;
+        var state = Confusables.NONE;
+
+        for (var i = from; to > i; i++) {
+          var kind = Confusables.kind(text.charAt(i));
+
+          state = Confusables.next(state, kind);
+          if (Confusables.FOUND == state) {
+            return i;
+          }
+          if (Confusables.FOUND_PAIR == state) {
+            return pairStart;
+          }
+          // a pair may end with a letter that starts another one
+          if (Confusables.startsPair(kind)) {
+            pairStart = i;
+          }
+        }
+
+        return -1;
+      }
+
+      @Override
+      long scan(@NotNull CharSequence text, int from, int to) {
+        var count = 0;
+        var first = -1;
+        var pairStart = -1;
+        var state = Confusables.NONE;
+
+        for (var i = from; to > i; i++) {
+          var kind = Confusables.kind(text.charAt(i));
+
+          state = Confusables.next(state, kind);
+          if (Confusables.FOUND <= state) {
+            if (0 == count++) {
+              first = (Confusables.FOUND == state) ? i : pairStart;
+            }
+            state = Confusables.CYRILLIC;
+          } else if (Confusables.startsPair(kind)) {
+            pairStart = i;
+          }
+        }
+
+        return pack(first, count);
+      }
+    },
+
+    /**
+     * Regular expression, the original implementation: it finds the letters only, without folding.
+     */
+    REGEX {
+      @Override
+      int indexOf(@NotNull CharSequence text, int from, int to) {
+        var matcher = RUSSIAN_LETTERS.matcher(text).region(from, to);
+
+        return matcher.find() ? matcher.start() : -1;
+      }
+
+      @Override
+      long scan(@NotNull CharSequence text, int from, int to) {
+        var matcher = RUSSIAN_LETTERS.matcher(text).region(from, to);
+        var first = -1;
+        var count = 0;
+
+        while (matcher.find()) {
+          if (0 == count++) {
+            first = matcher.start();
+          }
+        }
+
+        return pack(first, count);
+      }
+    };
+
+    static Engine fromString(String engine) {
+      if (null != engine) {
+        try {
+          return valueOf(engine.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException exception) {
+          LoggerFactory.getLogger(CyrillicTools.class).warn("Unknown scan engine {}, use {}", engine, TABLE);
+        }
+      }
+
+      return TABLE;
+    }
+
+    abstract int indexOf(@NotNull CharSequence text, int from, int to);
+
+    abstract long scan(@NotNull CharSequence text, int from, int to);
+
   }
 
 }
@@ -0,0 +1,322 @@
+package io.github.vitalijr2.lagidnyj.cyrillic;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Detection of Russian text that has none of the letters <strong>ё</strong>, <strong>ъ</strong>, <strong>ы</strong>
+ * and <strong>э</strong>.
+ * <p>
+ * Text is scored by a table of words and letter trigrams that are Russian but not Ukrainian, a word with
+ * <strong>і</strong>, <strong>ї</strong>, <strong>є</strong> or <strong>ґ</strong> takes a point off. The table is
+ * loaded from the resource {@code russian-scoring.txt} into two open-addressing hash tables of primitive arrays:
+ * trigrams are keyed by their three characters, words by a 64-bit FNV-1a fingerprint, so a lookup costs a multiply
+ * and one or two probes. A scan lowercases characters on the fly and stops as soon as the score reaches the
+ * threshold, it does not allocate. Invisible characters and combining marks are skipped, Latin look-alikes count as
+ * Cyrillic letters in a word that has a real Cyrillic letter, e.g. <strong>кaк</strong> with the Latin
+ * <strong>a</strong>.
+ * <p>
+ * The threshold is read from the system property {@value #THRESHOLD_PROPERTY}, {@value #DEFAULT_THRESHOLD} by
+ * default.
+ */
+public class ScoringDetector {
+
+  /**
+   * Default threshold.
+   */
+  public static final int DEFAULT_THRESHOLD = 3;
+
+  /**
+   * System property to set the threshold.
+   */
+  public static final String THRESHOLD_PROPERTY = "lagidnyj.cyrillic.threshold";
+
+  private static final char BOUNDARY = ' ';
+  private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+  private static final long FNV_PRIME = 0x100000001B3L;
+  private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+  private static final int UKRAINIAN_PENALTY = 1;
+
+  private final int threshold;
+  private final FeatureTable trigrams;
+  private final FeatureTable words;
+
+  /**
+   * Detector.
+   *
+   * @param table     table of features, see {@code russian-scoring.txt}
+   * @param threshold score of Russian text
+   * @throws IOException if the table could not be read
+   */
+  ScoringDetector(@NotNull Reader table, int threshold) throws IOException {
+    if (1 > threshold) {
+      throw new IllegalArgumentException("Wrong threshold: " + threshold);
+    }
+
+    var trigramWeights = new LinkedHashMap<Long, Byte>();
+    var wordWeights = new LinkedHashMap<Long, Byte>();
+    Map<Long, Byte> section = null;
+    var lineNumber = 0;
+    String line;
+
+    try (var reader = new BufferedReader(table)) {
+      while (null != (line = reader.readLine())) {
+        lineNumber++;
+        line = line.strip();
+        if (line.isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+        if ("[trigrams]".equals(line)) {
+          section = trigramWeights;
+        } else if ("[words]".equals(line)) {
+          section = wordWeights;
+        } else if (null == section) {
+          throw new IllegalArgumentException("Feature out of section at line " + lineNumber);
+        } else {
+          var feature = line.split("\\s+");
+
+          if (2 != feature.length) {
+            throw new IllegalArgumentException("Wrong feature at line " + lineNumber + ": " + line);
+          }
+
+          var weight = Byte.parseByte(feature[1]);
+
+          if (0 != weight) {
+            section.put((section == trigramWeights) ? trigram(feature[0], lineNumber) : word(feature[0], lineNumber),
+                weight);
+          }
+        }
+      }
+    }
+    this.threshold = threshold;
+    this.trigrams = new FeatureTable(trigramWeights);
+    this.words = new FeatureTable(wordWeights);
+  }
+
+  /**
+   * Shared detector with the bundled table.
+   *
+   * @return detector
+   */
+  @NotNull
+  public static ScoringDetector getInstance() {
+    return Holder.INSTANCE;
+  }
+
+  static char lowerCase(char character) {
+    if ('А' <= character && 'Я' >= character) {
+      return (char) (character + ('а' - 'А'));
+    }
+    if ('Ѐ' <= character && 'Џ' >= character) {
+      return (char) (character + ('ѐ' - 'Ѐ'));
+    }
+
+    return ('Ґ' == character) ? 'ґ' : character;
+  }
+
+  private static boolean isLetter(char lowerCase) {
+    return ('а' <= lowerCase && 'џ' >= lowerCase) || 'ґ' == lowerCase;
+  }
+
+  private static boolean isUkrainian(char lowerCase) {
+    return 'і' == lowerCase || 'ї' == lowerCase || 'є' == lowerCase || 'ґ' == lowerCase;
+  }
+
+  private static long trigram(char first, char second, char third) {
+    return ((long) first << 32) | ((long) second << 16) | third;
+  }
+
+  private static long trigram(String feature, int lineNumber) {
+    if (3 != feature.length()) {
+      throw new IllegalArgumentException("Wrong trigram at line " + lineNumber + ": " + feature);
+    }
+
+    var characters = new char[3];
+
+    for (var i = 0; 3 > i; i++) {
+      var character = feature.charAt(i);
+
+      characters[i] = ('_' == character) ? BOUNDARY : lowerCase(character);
+      if (BOUNDARY != characters[i] && !isLetter(characters[i])) {
+        throw new IllegalArgumentException("Wrong trigram at line " + lineNumber + ": " + feature);
+      }
+    }
+
+    return trigram(characters[0], characters[1], characters[2]);
+  }
+
+  private static int threshold(String value) {
+    if (null != value) {
+      try {
+        return Integer.parseInt(value.strip());
+      } catch (NumberFormatException exception) {
+        LoggerFactory.getLogger(ScoringDetector.class).warn("Wrong threshold {}, use {}", value, DEFAULT_THRESHOLD);
+      }
+    }
+
+    return DEFAULT_THRESHOLD;
+  }
+
+  private static long word(String feature, int lineNumber) {
+    var fingerprint = FNV_OFFSET;
+
+    for (var i = 0; feature.length() > i; i++) {
+      var character = lowerCase(feature.charAt(i));
+
+      if (!isLetter(character)) {
+        throw new IllegalArgumentException("Wrong word at line " + lineNumber + ": " + feature);
+      }
+      fingerprint = (fingerprint ^ character) * FNV_PRIME;
+    }
+
+    return fingerprint;
+  }
+
+  /**
+   * Threshold of Russian text.
+   *
+   * @return score
+   */
+  public int getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * Check if a text is Russian.
+   *
+   * @param text text
+   * @return true if the score of the text reaches the threshold
+   */
+  public boolean isRussian(@NotNull CharSequence text) {
+    return threshold <= score(text, 0, text.length(), threshold);
+  }
+
+  /**
+   * Score a range of a text, the scan stops after the word that brings the score to the limit.
+   *
+   * @param text  text
+   * @param from  start offset, inclusive
+   * @param to    end offset, exclusive
+   * @param limit score to stop at
+   * @return score, it may be negative for Ukrainian text
+   */
+  public int score(@NotNull CharSequence text, int from, int to, int limit) {
+    var score = 0;
+    var wordScore = 0;
+    var fingerprint = FNV_OFFSET;
+    var wordLength = 0;
+    var cyrillic = false;
+    var ukrainian = false;
+    var beforePrevious = BOUNDARY;
+    var previous = BOUNDARY;
+
+    for (var i = from; to >= i; i++) {
+      var original = (to > i) ? text.charAt(i) : BOUNDARY;
+
+      if (Confusables.isIgnorable(original)) {
+        continue;
+      }
+
+      var character = lowerCase(Confusables.toCyrillic(original));
+
+      if (isLetter(character)) {
+        wordScore += trigrams.get(trigram(beforePrevious, previous, character));
+        fingerprint = (fingerprint ^ character) * FNV_PRIME;
+        cyrillic |= Confusables.isCyrillic(original);
+        ukrainian |= isUkrainian(character);
+        wordLength++;
+        beforePrevious = previous;
+        previous = character;
+      } else if (0 < wordLength) {
+        if (ukrainian) {
+          score -= UKRAINIAN_PENALTY;
+        } else if (cyrillic) {
+          score += wordScore + trigrams.get(trigram(beforePrevious, previous, BOUNDARY)) + words.get(fingerprint);
+          if (limit <= score) {
+            return score;
+          }
+        }
+        wordScore = 0;
+        fingerprint = FNV_OFFSET;
+        wordLength = 0;
+        cyrillic = false;
+        ukrainian = false;
+        beforePrevious = BOUNDARY;
+        previous = BOUNDARY;
+      }
+    }
+
+    return score;
+  }
+
+  /**
+   * Open-addressing hash table of feature weights, an empty slot has zero weight.
+   */
+  private static class FeatureTable {
+
+    private final long[] keys;
+    private final int shift;
+    private final byte[] weights;
+
+    FeatureTable(Map<Long, Byte> features) {
+      // load factor is at most a half
+      var capacity = Math.max(2, Integer.highestOneBit(Math.max(1, features.size()) * 2 - 1) << 1);
+
+      keys = new long[capacity];
+      shift = Long.SIZE - Integer.numberOfTrailingZeros(capacity);
+      weights = new byte[capacity];
+      features.forEach((key, weight) -> {
+        var slot = slot(key);
+
+        while (0 != weights[slot]) {
+          slot = (slot + 1) & (capacity - 1);
+        }
+        keys[slot] = key;
+        weights[slot] = weight;
+      });
+    }
+
+    int get(long key) {
+      for (var slot = slot(key); 0 != weights[slot]; slot = (slot + 1) & (keys.length - 1)) {
+        if (key == keys[slot]) {
+          return weights[slot];
+        }
+      }
+
+      return 0;
+    }
+
+    private int slot(long key) {
+      return (int) ((key * GOLDEN_RATIO) >>> shift);
+    }
+
+  }
+
+  private static class Holder {
+
+    private static final ScoringDetector INSTANCE = read();
+
+    private static ScoringDetector read() {
+      try (InputStream tableStream = ScoringDetector.class.getResourceAsStream("/russian-scoring.txt")) {
+        return new ScoringDetector(new InputStreamReader(requireNonNull(tableStream, "russian-scoring.txt not found"),
+            StandardCharsets.UTF_8), threshold(System.getProperty(THRESHOLD_PROPERTY)));
+      } catch (IOException exception) {
+        LoggerFactory.getLogger(ScoringDetector.class).error("Could not read scoring table: {}",
+            exception.getMessage());
+        throw new IllegalStateException(exception);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,115 @@
+package io.github.vitalijr2.lagidnyj.keeper;
+
+import io.github.vitalijr2.lagidnyj.beans.CoalescedNotification;
+import io.github.vitalijr2.lagidnyj.beans.DelayedChatNotification;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Chat keeper that collapses repeated violations of the same user in the same chat.
+ * <p>
+ * The first violation is passed to the delegate keeper, the next ones only increase the counter of the pending entry.
+ * When the first notification matures, the listener gets it with the number of violations and the times of the first
+ * and last ones. A burst of messages costs one pending entry.
+ */
+public class CoalescingChatKeeper implements ChatKeeper, AutoCloseable {
+
+  /**
+   * Default expected number of pending users.
+   */
+  public static final int DEFAULT_EXPECTED_SIZE = 1024;
+
+  private final ChatKeeper delegate;
+  private final Consumer<CoalescedNotification> listener;
+  private final ViolationTable table;
+
+  /**
+   * Coalescing keeper on top of a {@link TimingWheelChatKeeper}.
+   *
+   * @param listener listener of matured notifications
+   */
+  public CoalescingChatKeeper(@NotNull Consumer<CoalescedNotification> listener) {
+    this(listener, DEFAULT_EXPECTED_SIZE, TimingWheelChatKeeper::new);
+  }
+
+  /**
+   * Coalescing keeper.
+   *
+   * @param listener        listener of matured notifications
+   * @param expectedSize    expected number of pending users
+   * @param delegateFactory factory of a keeper that schedules notifications, it gets the coalescing keeper's own
+   *                        listener
+   */
+  public CoalescingChatKeeper(@NotNull Consumer<CoalescedNotification> listener, int expectedSize,
+      @NotNull Function<Consumer<DelayedChatNotification>, ChatKeeper> delegateFactory) {
+    this.listener = listener;
+    this.table = new ViolationTable(expectedSize);
+    this.delegate = delegateFactory.apply(this::matured);
+  }
+
+  @Override
+  public void addUserToWatchList(@NotNull DelayedChatNotification notification) {
+    boolean first;
+
+    synchronized (table) {
+      first = table.add(notification, System.currentTimeMillis());
+    }
+    if (first) {
+      delegate.addUserToWatchList(notification);
+    }
+  }
+
+  /**
+   * Number of violations of the user in the chat that are not matured yet.
+   *
+   * @param chatId chat identifier
+   * @param userId user identifier
+   * @return number of violations
+   */
+  public int count(long chatId, long userId) {
+    synchronized (table) {
+      return table.count(chatId, userId);
+    }
+  }
+
+  /**
+   * Number of pending users.
+   *
+   * @return number of users
+   */
+  public int size() {
+    synchronized (table) {
+      return table.size();
+    }
+  }
+
+  /**
+   * Close the delegate keeper if it is closeable.
+   *
+   * @throws Exception if the delegate could not be closed
+   */
+  @Override
+  public void close() throws Exception {
+    if (delegate instanceof AutoCloseable closeable) {
+      closeable.close();
+    }
+  }
+
+  private void matured(DelayedChatNotification notification) {
+    CoalescedNotification violations;
+
+    synchronized (table) {
+      violations = table.remove(notification.chatId(), notification.userId());
+    }
+    if (null == violations) {
+      // e.g. it is restored from a journal after restart
+      var seen = notification.deadline() - TimeUnit.SECONDS.toMillis(notification.secondsOfDelay());
+
+      violations = new CoalescedNotification(notification, 1, seen, seen);
+    }
+    listener.accept(violations);
+  }
+
+}
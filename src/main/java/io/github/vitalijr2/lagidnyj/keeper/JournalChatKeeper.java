@@ -0,0 +1,432 @@
+package io.github.vitalijr2.lagidnyj.keeper;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.isNull;
+
+import io.github.vitalijr2.lagidnyj.beans.DelayedChatNotification;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Crash-safe chat keeper.
+ * <p>
+ * Every notification is appended to a memory-mapped journal before it is passed to the delegate keeper, and a
+ * tombstone is appended when the notification matures. The journal consists of fixed-size segments, a full segment is
+ * forced to the disk and the next one is started. Writers of the same moment share one {@code fsync}: the flusher
+ * thread forces the current segment and wakes up everybody who has waited for it.
+ * <p>
+ * On start the keeper replays all segments, drops matured notifications, rewrites pending ones to a fresh segment and
+ * removes the old segments. A torn record at the end of a segment, e.g. after a crash, finishes reading of that
+ * segment. Notifications matured before a crash but not marked yet are delivered once more.
+ * <p>
+ * While it runs, the keeper compacts the journal the same way when a segment is full and the journal has doubled since
+ * the last compaction: pending notifications are rewritten to fresh segments, they are forced to the disk and the older
+ * segments are removed. The journal stays within about twice the size of pending notifications plus one segment.
+ */
+public class JournalChatKeeper implements ChatKeeper, AutoCloseable {
+
+  /**
+   * Default segment size, 4 MiB.
+   */
+  public static final int DEFAULT_SEGMENT_SIZE = 4 << 20;
+
+  private static final byte ADD = 1;
+  private static final int CRC_SIZE = Integer.BYTES;
+  private static final byte DONE = 2;
+  private static final int FLUSH_INTERVAL_MILLIS = 5;
+  private static final int HEADER_SIZE = Integer.BYTES;
+  private static final int MAX_STRING_LENGTH = 1024;
+  private static final int MAX_RECORD_SIZE =
+      HEADER_SIZE + 1 + 3 * Long.BYTES + Integer.BYTES + 4 * (Short.BYTES + MAX_STRING_LENGTH) + CRC_SIZE;
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".journal";
+
+  private final CRC32 crc = new CRC32();
+  private final ChatKeeper delegate;
+  private final Path directory;
+  private final Object flushLock = new Object();
+  private final Thread flusher;
+  private final Consumer<DelayedChatNotification> listener;
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+  private final Map<Key, DelayedChatNotification> pending = new LinkedHashMap<>();
+  private final ByteBuffer scratch;
+  private final int segmentSize;
+  private final boolean syncCommit;
+
+  private volatile long appended;
+  private volatile boolean closed;
+  private long compactedSegments = 1;
+  private boolean compacting;
+  private long compactions;
+  private MappedByteBuffer current;
+  private long firstSegment;
+  private volatile long flushed;
+  private int recovered;
+  private long segmentIndex;
+
+  /**
+   * Journal with default segment size and synchronous commits on top of a {@link TimingWheelChatKeeper}.
+   *
+   * @param directory journal directory, it is created if it does not exist
+   * @param listener  listener of matured notifications
+   * @throws IOException if the journal could not be read or created
+   */
+  public JournalChatKeeper(@NotNull Path directory, @NotNull Consumer<DelayedChatNotification> listener)
+      throws IOException {
+    this(directory, DEFAULT_SEGMENT_SIZE, true, listener, TimingWheelChatKeeper::new);
+  }
+
+  /**
+   * Journal.
+   *
+   * @param directory       journal directory, it is created if it does not exist
+   * @param segmentSize     size of a segment file
+   * @param syncCommit      wait until a notification is forced to the disk
+   * @param listener        listener of matured notifications
+   * @param delegateFactory factory of a keeper that schedules notifications, it gets the journal's own listener
+   * @throws IOException if the journal could not be read or created
+   */
+  public JournalChatKeeper(@NotNull Path directory, int segmentSize, boolean syncCommit,
+      @NotNull Consumer<DelayedChatNotification> listener,
+      @NotNull Function<Consumer<DelayedChatNotification>, ChatKeeper> delegateFactory) throws IOException {
+    if (MAX_RECORD_SIZE > segmentSize) {
+      throw new IllegalArgumentException("Segment is too small: " + segmentSize);
+    }
+    this.directory = Files.createDirectories(directory);
+    this.listener = listener;
+    this.scratch = ByteBuffer.allocate(MAX_RECORD_SIZE);
+    this.segmentSize = segmentSize;
+    this.syncCommit = syncCommit;
+
+    var restored = replay();
+
+    this.delegate = delegateFactory.apply(this::expired);
+    this.flusher = new Thread(this::flushLoop, "chat-keeper-journal");
+    this.flusher.setDaemon(true);
+    this.flusher.start();
+    restored.forEach(delegate::addUserToWatchList);
+  }
+
+  private static Key key(DelayedChatNotification notification) {
+    return new Key(notification.chatId(), notification.userId(), notification.deadline());
+  }
+
+  private static void putString(ByteBuffer buffer, @Nullable String value) {
+    if (isNull(value)) {
+      buffer.putShort((short) -1);
+      return;
+    }
+
+    var bytes = value.getBytes(UTF_8);
+
+    if (MAX_STRING_LENGTH < bytes.length) {
+      throw new IllegalArgumentException("String is too long: " + bytes.length);
+    }
+    buffer.putShort((short) bytes.length).put(bytes);
+  }
+
+  private static String getString(ByteBuffer buffer) {
+    var length = buffer.getShort();
+
+    if (0 > length) {
+      return null;
+    }
+
+    var bytes = new byte[length];
+
+    buffer.get(bytes);
+
+    return new String(bytes, UTF_8);
+  }
+
+  @Override
+  public void addUserToWatchList(@NotNull DelayedChatNotification notification) {
+    var sequence = append(ADD, notification);
+
+    if (syncCommit) {
+      awaitFlush(sequence);
+    }
+    delegate.addUserToWatchList(notification);
+  }
+
+  /**
+   * Number of compactions since start, the one on start included.
+   *
+   * @return number of compactions
+   */
+  public synchronized long getCompactions() {
+    return compactions;
+  }
+
+  /**
+   * Number of pending notifications restored on start.
+   *
+   * @return number of notifications
+   */
+  public int getRecovered() {
+    return recovered;
+  }
+
+  /**
+   * Stop the flusher, force the journal and close the delegate keeper if it is closeable.
+   *
+   * @throws Exception if the delegate could not be closed
+   */
+  @Override
+  public void close() throws Exception {
+    closed = true;
+    flusher.interrupt();
+    flusher.join();
+    synchronized (this) {
+      current.force();
+    }
+    if (delegate instanceof AutoCloseable closeable) {
+      closeable.close();
+    }
+  }
+
+  private void expired(DelayedChatNotification notification) {
+    if (!closed) {
+      append(DONE, notification);
+    }
+    listener.accept(notification);
+  }
+
+  private synchronized long append(byte type, DelayedChatNotification notification) {
+    if (closed) {
+      throw new IllegalStateException("Chat keeper is closed");
+    }
+    write(type, notification);
+    if (ADD == type) {
+      pending.put(key(notification), notification);
+    } else {
+      pending.remove(key(notification));
+    }
+    synchronized (flushLock) {
+      flushLock.notifyAll();
+    }
+
+    return ++appended;
+  }
+
+  private void write(byte type, DelayedChatNotification notification) {
+    encode(type, notification);
+    while (current.remaining() < scratch.remaining()) {
+      roll();
+      // a compaction reuses the scratch buffer and may fill the fresh segment
+      encode(type, notification);
+    }
+    current.put(scratch);
+  }
+
+  private void encode(byte type, DelayedChatNotification notification) {
+    scratch.clear().position(HEADER_SIZE);
+    scratch.put(type).putLong(notification.chatId()).putLong(notification.userId()).putLong(notification.deadline());
+    if (ADD == type) {
+      scratch.putInt(notification.secondsOfDelay());
+      putString(scratch, notification.firstName());
+      putString(scratch, notification.lastName());
+      putString(scratch, notification.username());
+      putString(scratch, notification.languageCode());
+    }
+
+    var length = scratch.position() - HEADER_SIZE;
+
+    crc.reset();
+    crc.update(scratch.array(), HEADER_SIZE, length);
+    scratch.putInt((int) crc.getValue()).putInt(0, length).flip();
+  }
+
+  private void roll() {
+    try {
+      if (!compacting && segmentIndex - firstSegment + 1 >= 2 * compactedSegments) {
+        compact();
+      } else {
+        current.force();
+        current = openSegment(++segmentIndex);
+      }
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+  }
+
+  // pending notifications are forced to fresh segments before the older segments are removed
+  private void compact() throws IOException {
+    var obsolete = segmentIndex;
+
+    if (null != current) {
+      current.force();
+    }
+    compacting = true;
+    try {
+      current = openSegment(++segmentIndex);
+      for (var notification : pending.values()) {
+        write(ADD, notification);
+      }
+      current.force();
+    } finally {
+      compacting = false;
+    }
+    for (var index = firstSegment; obsolete >= index; index++) {
+      Files.deleteIfExists(segment(index));
+    }
+    compactedSegments = segmentIndex - obsolete;
+    compactions++;
+    firstSegment = obsolete + 1;
+  }
+
+  private void awaitFlush(long sequence) {
+    synchronized (flushLock) {
+      while (flushed < sequence && !closed) {
+        try {
+          flushLock.wait(FLUSH_INTERVAL_MILLIS);
+        } catch (InterruptedException exception) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
+  private void flushLoop() {
+    while (!closed) {
+      try {
+        synchronized (flushLock) {
+          if (flushed >= appended) {
+            flushLock.wait(FLUSH_INTERVAL_MILLIS);
+          }
+        }
+        flush();
+      } catch (InterruptedException exception) {
+        logger.debug("Journal flusher is interrupted");
+        return;
+      } catch (RuntimeException exception) {
+        logger.warn("Could not flush the journal: {}", exception.getMessage());
+      }
+    }
+  }
+
+  private void flush() {
+    long target;
+    MappedByteBuffer buffer;
+
+    synchronized (this) {
+      target = appended;
+      buffer = current;
+    }
+    if (flushed < target) {
+      buffer.force();
+      synchronized (flushLock) {
+        flushed = target;
+        flushLock.notifyAll();
+      }
+    }
+  }
+
+  private synchronized List<DelayedChatNotification> replay() throws IOException {
+    var startTime = System.nanoTime();
+    var segments = listSegments();
+
+    for (Path segment : segments) {
+      readSegment(segment, pending);
+    }
+    firstSegment = segments.isEmpty() ? 0 : index(segments.get(0));
+    segmentIndex = segments.isEmpty() ? -1 : index(segments.get(segments.size() - 1));
+    compact();
+    recovered = pending.size();
+    logger.info("Journal is replayed in {} ms: {} segments, {} pending notifications",
+        (System.nanoTime() - startTime) / 1_000_000, segments.size(), recovered);
+
+    return new ArrayList<>(pending.values());
+  }
+
+  private List<Path> listSegments() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX))
+          .filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  private long index(Path segment) {
+    var name = segment.getFileName().toString();
+
+    return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+  }
+
+  private void readSegment(Path segment, Map<Key, DelayedChatNotification> pending) throws IOException {
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+      var buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+
+      while (HEADER_SIZE <= buffer.remaining()) {
+        var start = buffer.position();
+        var length = buffer.getInt();
+
+        if (0 >= length || length + CRC_SIZE > buffer.remaining()) {
+          break;
+        }
+        crc.reset();
+        crc.update(buffer.duplicate().limit(start + HEADER_SIZE + length));
+        if ((int) crc.getValue() != buffer.getInt(start + HEADER_SIZE + length)) {
+          logger.warn("Broken record in {} at {}", segment.getFileName(), start);
+          break;
+        }
+        readRecord(buffer, pending);
+        buffer.position(start + HEADER_SIZE + length + CRC_SIZE);
+      }
+    }
+  }
+
+  private void readRecord(ByteBuffer buffer, Map<Key, DelayedChatNotification> pending) {
+    var type = buffer.get();
+    var chatId = buffer.getLong();
+    var userId = buffer.getLong();
+    var deadline = buffer.getLong();
+
+    if (ADD == type) {
+      var secondsOfDelay = buffer.getInt();
+      var notification = new DelayedChatNotification(chatId, userId, getString(buffer), getString(buffer),
+          getString(buffer), getString(buffer), secondsOfDelay, deadline);
+
+      pending.put(key(notification), notification);
+    } else if (DONE == type) {
+      pending.remove(new Key(chatId, userId, deadline));
+    }
+  }
+
+  private MappedByteBuffer openSegment(long index) throws IOException {
+    try (FileChannel channel = FileChannel.open(segment(index), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+        StandardOpenOption.WRITE)) {
+      return channel.map(MapMode.READ_WRITE, 0, segmentSize);
+    }
+  }
+
+  private Path segment(long index) {
+    return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+  }
+
+  private record Key(long chatId, long userId, long deadline) {
+
+  }
+
+}
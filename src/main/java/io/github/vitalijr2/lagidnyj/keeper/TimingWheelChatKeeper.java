@@ -0,0 +1,206 @@
+package io.github.vitalijr2.lagidnyj.keeper;
+
+import io.github.vitalijr2.lagidnyj.beans.DelayedChatNotification;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory chat keeper on a hashed timing wheel.
+ * <p>
+ * Notifications are put to a lock-free queue, the wheel thread moves them to the slots of their deadlines once per
+ * tick and passes matured notifications to the listener. Both insert and expiry take constant time, there is no heap
+ * to rebalance. The listener is called on the wheel thread, so it should not block for long.
+ * <p>
+ * The wheel thread is started with the first notification.
+ */
+public class TimingWheelChatKeeper implements ChatKeeper, AutoCloseable {
+
+  /**
+   * Default tick duration.
+   */
+  public static final Duration DEFAULT_TICK = Duration.ofMillis(100);
+
+  /**
+   * Default number of wheel slots, with the default tick one round is about 102 seconds.
+   */
+  public static final int DEFAULT_WHEEL_SIZE = 1024;
+
+  private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+  private static final int STATE_CLOSED = 2;
+  private static final int STATE_INITIAL = 0;
+  private static final int STATE_STARTED = 1;
+
+  private final Queue<DelayedChatNotification> additions = new ConcurrentLinkedQueue<>();
+  private final Consumer<DelayedChatNotification> listener;
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+  private final int mask;
+  private final AtomicInteger pending = new AtomicInteger();
+  private final AtomicInteger state = new AtomicInteger(STATE_INITIAL);
+  private final long tickMillis;
+  private final Entry[] wheel;
+  private final Thread worker;
+
+  private long startTime;
+  private long tick;
+
+  /**
+   * Chat keeper with default tick and wheel size.
+   *
+   * @param listener listener of matured notifications
+   */
+  public TimingWheelChatKeeper(@NotNull Consumer<DelayedChatNotification> listener) {
+    this(listener, DEFAULT_TICK, DEFAULT_WHEEL_SIZE, runnable -> new Thread(runnable, "chat-keeper-wheel"));
+  }
+
+  /**
+   * Chat keeper.
+   *
+   * @param listener      listener of matured notifications
+   * @param tick          tick duration, at least one millisecond
+   * @param wheelSize     number of slots, it is rounded up to a power of two
+   * @param threadFactory factory of the wheel thread
+   */
+  public TimingWheelChatKeeper(@NotNull Consumer<DelayedChatNotification> listener, @NotNull Duration tick,
+      int wheelSize, @NotNull ThreadFactory threadFactory) {
+    if (1 > tick.toMillis()) {
+      throw new IllegalArgumentException("Tick is shorter than one millisecond: " + tick);
+    }
+    if (1 > wheelSize || 1 << 30 < wheelSize) {
+      throw new IllegalArgumentException("Wrong wheel size: " + wheelSize);
+    }
+    this.listener = listener;
+    this.tickMillis = tick.toMillis();
+    this.wheel = new Entry[powerOfTwo(wheelSize)];
+    this.mask = wheel.length - 1;
+    this.worker = threadFactory.newThread(this::run);
+    this.worker.setDaemon(true);
+  }
+
+  private static int powerOfTwo(int value) {
+    var result = Integer.highestOneBit(value);
+
+    return (result == value) ? result : result << 1;
+  }
+
+  @Override
+  public void addUserToWatchList(@NotNull DelayedChatNotification notification) {
+    if (STATE_CLOSED == state.get()) {
+      throw new IllegalStateException("Chat keeper is closed");
+    }
+    pending.incrementAndGet();
+    additions.offer(notification);
+    if (STATE_INITIAL == state.get() && state.compareAndSet(STATE_INITIAL, STATE_STARTED)) {
+      worker.start();
+    }
+  }
+
+  /**
+   * Number of pending notifications.
+   *
+   * @return number of notifications
+   */
+  public int size() {
+    return pending.get();
+  }
+
+  /**
+   * Stop the wheel thread, pending notifications are dropped.
+   */
+  @Override
+  public void close() {
+    if (STATE_STARTED == state.getAndSet(STATE_CLOSED)) {
+      worker.interrupt();
+      try {
+        worker.join();
+      } catch (InterruptedException exception) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void run() {
+    startTime = System.currentTimeMillis();
+    try {
+      while (STATE_STARTED == state.get()) {
+        waitForNextTick();
+        transferAdditions();
+        expire(wheel[(int) (tick & mask)], (int) (tick & mask));
+        tick++;
+      }
+    } catch (InterruptedException exception) {
+      logger.debug("Wheel thread is interrupted");
+    }
+  }
+
+  private void waitForNextTick() throws InterruptedException {
+    var sleepMillis = startTime + (tick + 1) * tickMillis - System.currentTimeMillis();
+
+    if (0 < sleepMillis) {
+      Thread.sleep(sleepMillis);
+    }
+  }
+
+  private void transferAdditions() {
+    for (var i = 0; MAX_TRANSFERS_PER_TICK > i; i++) {
+      var notification = additions.poll();
+
+      if (null == notification) {
+        break;
+      }
+
+      var ticks = Math.max(tick, Math.floorDiv(notification.deadline() - startTime, tickMillis));
+      var slot = (int) (ticks & mask);
+
+      wheel[slot] = new Entry(notification, (ticks - tick) / wheel.length, wheel[slot]);
+    }
+  }
+
+  private void expire(Entry head, int slot) {
+    Entry previous = null;
+
+    for (var entry = head; null != entry; entry = entry.next) {
+      if (0 < entry.remainingRounds) {
+        entry.remainingRounds--;
+        previous = entry;
+        continue;
+      }
+      if (null == previous) {
+        wheel[slot] = entry.next;
+      } else {
+        previous.next = entry.next;
+      }
+      pending.decrementAndGet();
+      fire(entry.notification);
+    }
+  }
+
+  private void fire(DelayedChatNotification notification) {
+    try {
+      listener.accept(notification);
+    } catch (RuntimeException exception) {
+      logger.warn("Could not process notification {}: {}", notification, exception.getMessage());
+    }
+  }
+
+  private static final class Entry {
+
+    private final DelayedChatNotification notification;
+    private Entry next;
+    private long remainingRounds;
+
+    private Entry(DelayedChatNotification notification, long remainingRounds, Entry next) {
+      this.notification = notification;
+      this.remainingRounds = remainingRounds;
+      this.next = next;
+    }
+
+  }
+
+}
@@ -0,0 +1,198 @@
+package io.github.vitalijr2.lagidnyj.keeper;
+
+import io.github.vitalijr2.lagidnyj.beans.CoalescedNotification;
+import io.github.vitalijr2.lagidnyj.beans.DelayedChatNotification;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Open-addressing table of pending violations keyed on a pair of chat and user identifiers.
+ * <p>
+ * Keys and counters are kept in parallel primitive arrays, linear probing is used for collisions and backward shift
+ * for removals, so there are neither boxed keys nor tombstones. The table is not thread-safe.
+ */
+class ViolationTable {
+
+  private static final int MAX_CAPACITY = 1 << 30;
+
+  private long[] chatIds;
+  private int[] counts;
+  private long[] firstSeen;
+  private long[] lastSeen;
+  private int mask;
+  private DelayedChatNotification[] notifications;
+  private int size;
+  private long[] userIds;
+
+  ViolationTable(int expectedSize) {
+    if (0 > expectedSize || MAX_CAPACITY / 2 < expectedSize) {
+      throw new IllegalArgumentException("Wrong expected size: " + expectedSize);
+    }
+    allocate(Math.max(16, Integer.highestOneBit(Math.max(1, expectedSize * 2 - 1)) << 1));
+  }
+
+  static int hash(long chatId, long userId) {
+    var hash = chatId * 0x9E3779B97F4A7C15L ^ userId;
+
+    hash ^= hash >>> 33;
+    hash *= 0xFF51AFD7ED558CCDL;
+    hash ^= hash >>> 33;
+
+    return (int) hash;
+  }
+
+  /**
+   * Count a violation.
+   *
+   * @param notification notification of the violation
+   * @param now          time of the violation
+   * @return true if it is the first violation of the user in the chat
+   */
+  boolean add(@NotNull DelayedChatNotification notification, long now) {
+    var slot = find(notification.chatId(), notification.userId());
+
+    if (0 <= slot) {
+      counts[slot]++;
+      lastSeen[slot] = now;
+      return false;
+    }
+    if (size + 1 > (mask + 1) * 3 / 4) {
+      grow();
+      slot = find(notification.chatId(), notification.userId());
+    }
+    slot = -slot - 1;
+    chatIds[slot] = notification.chatId();
+    userIds[slot] = notification.userId();
+    notifications[slot] = notification;
+    counts[slot] = 1;
+    firstSeen[slot] = now;
+    lastSeen[slot] = now;
+    size++;
+
+    return true;
+  }
+
+  /**
+   * Number of violations of the user in the chat.
+   *
+   * @param chatId chat identifier
+   * @param userId user identifier
+   * @return number of violations, zero if there is none
+   */
+  int count(long chatId, long userId) {
+    var slot = find(chatId, userId);
+
+    return (0 <= slot) ? counts[slot] : 0;
+  }
+
+  /**
+   * Take all violations of the user in the chat.
+   *
+   * @param chatId chat identifier
+   * @param userId user identifier
+   * @return violations or null if there is none
+   */
+  @Nullable
+  CoalescedNotification remove(long chatId, long userId) {
+    var slot = find(chatId, userId);
+
+    if (0 > slot) {
+      return null;
+    }
+
+    var result = new CoalescedNotification(notifications[slot], counts[slot], firstSeen[slot], lastSeen[slot]);
+
+    size--;
+    shiftBack(slot);
+
+    return result;
+  }
+
+  int size() {
+    return size;
+  }
+
+  int capacity() {
+    return mask + 1;
+  }
+
+  /**
+   * Look for the key.
+   *
+   * @return the slot of the key, or {@code -(insertion slot) - 1} if the key is absent
+   */
+  private int find(long chatId, long userId) {
+    var slot = hash(chatId, userId) & mask;
+
+    while (null != notifications[slot]) {
+      if (chatIds[slot] == chatId && userIds[slot] == userId) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    return -slot - 1;
+  }
+
+  private void shiftBack(int slot) {
+    var gap = slot;
+
+    for (var next = (gap + 1) & mask; null != notifications[next]; next = (next + 1) & mask) {
+      var home = hash(chatIds[next], userIds[next]) & mask;
+
+      // move the entry to the gap if its home slot is not between the gap and the entry
+      if (((next - home) & mask) >= ((next - gap) & mask)) {
+        move(next, gap);
+        gap = next;
+      }
+    }
+    notifications[gap] = null;
+  }
+
+  private void move(int from, int to) {
+    chatIds[to] = chatIds[from];
+    userIds[to] = userIds[from];
+    notifications[to] = notifications[from];
+    counts[to] = counts[from];
+    firstSeen[to] = firstSeen[from];
+    lastSeen[to] = lastSeen[from];
+  }
+
+  private void grow() {
+    if (MAX_CAPACITY == mask + 1) {
+      throw new IllegalStateException("Violation table is full");
+    }
+
+    var oldChatIds = chatIds;
+    var oldUserIds = userIds;
+    var oldNotifications = notifications;
+    var oldCounts = counts;
+    var oldFirstSeen = firstSeen;
+    var oldLastSeen = lastSeen;
+
+    allocate((mask + 1) << 1);
+    for (var i = 0; oldNotifications.length > i; i++) {
+      if (null != oldNotifications[i]) {
+        var slot = -find(oldChatIds[i], oldUserIds[i]) - 1;
+
+        chatIds[slot] = oldChatIds[i];
+        userIds[slot] = oldUserIds[i];
+        notifications[slot] = oldNotifications[i];
+        counts[slot] = oldCounts[i];
+        firstSeen[slot] = oldFirstSeen[i];
+        lastSeen[slot] = oldLastSeen[i];
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    chatIds = new long[capacity];
+    userIds = new long[capacity];
+    notifications = new DelayedChatNotification[capacity];
+    counts = new int[capacity];
+    firstSeen = new long[capacity];
+    lastSeen = new long[capacity];
+    mask = capacity - 1;
+  }
+
+}
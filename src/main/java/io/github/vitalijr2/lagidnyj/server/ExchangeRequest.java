@@ -0,0 +1,140 @@
+package io.github.vitalijr2.lagidnyj.server;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.cloud.functions.HttpRequest;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * {@link HttpRequest} on top of an exchange of the embedded HTTP server.
+ */
+class ExchangeRequest implements HttpRequest {
+
+  private static final String CHARSET = "charset=";
+  private static final String CONTENT_LENGTH = "Content-Length";
+  private static final String CONTENT_TYPE = "Content-Type";
+
+  private final HttpExchange exchange;
+
+  ExchangeRequest(@NotNull HttpExchange exchange) {
+    this.exchange = exchange;
+  }
+
+  @Override
+  public String getMethod() {
+    return exchange.getRequestMethod();
+  }
+
+  @Override
+  public String getUri() {
+    return exchange.getRequestURI().toString();
+  }
+
+  @Override
+  public String getPath() {
+    return exchange.getRequestURI().getRawPath();
+  }
+
+  @Override
+  public Optional<String> getQuery() {
+    return Optional.ofNullable(exchange.getRequestURI().getRawQuery());
+  }
+
+  @Override
+  public Map<String, List<String>> getQueryParameters() {
+    var parameters = new LinkedHashMap<String, List<String>>();
+
+    getQuery().ifPresent(query -> {
+      for (String pair : query.split("&")) {
+        if (pair.isEmpty()) {
+          continue;
+        }
+
+        var separator = pair.indexOf('=');
+        var name = (0 > separator) ? pair : pair.substring(0, separator);
+        var value = (0 > separator) ? "" : pair.substring(separator + 1);
+
+        parameters.computeIfAbsent(URLDecoder.decode(name, UTF_8), key -> new ArrayList<>())
+            .add(URLDecoder.decode(value, UTF_8));
+      }
+    });
+
+    return Collections.unmodifiableMap(parameters);
+  }
+
+  /**
+   * Multipart requests are not supported.
+   *
+   * @return nothing, it always throws an exception
+   * @throws IllegalStateException always
+   */
+  @Override
+  public Map<String, HttpPart> getParts() {
+    throw new IllegalStateException("Multipart requests are not supported");
+  }
+
+  @Override
+  public Optional<String> getContentType() {
+    return getFirstHeader(CONTENT_TYPE);
+  }
+
+  @Override
+  public long getContentLength() {
+    try {
+      return getFirstHeader(CONTENT_LENGTH).map(Long::parseLong).orElse(-1L);
+    } catch (NumberFormatException exception) {
+      return -1;
+    }
+  }
+
+  @Override
+  public Optional<String> getCharacterEncoding() {
+    return getContentType().flatMap(contentType -> {
+      var index = contentType.toLowerCase(Locale.ROOT).indexOf(CHARSET);
+
+      if (0 > index) {
+        return Optional.empty();
+      }
+
+      var charset = contentType.substring(index + CHARSET.length());
+      var end = charset.indexOf(';');
+
+      return Optional.of(((0 > end) ? charset : charset.substring(0, end)).trim().replace("\"", ""));
+    });
+  }
+
+  @Override
+  public InputStream getInputStream() {
+    return exchange.getRequestBody();
+  }
+
+  @Override
+  public BufferedReader getReader() {
+    return new BufferedReader(
+        new InputStreamReader(getInputStream(), getCharacterEncoding().map(Charset::forName).orElse(UTF_8)));
+  }
+
+  @Override
+  public Map<String, List<String>> getHeaders() {
+    return exchange.getRequestHeaders();
+  }
+
+  @Override
+  public Optional<String> getFirstHeader(String name) {
+    return Optional.ofNullable(exchange.getRequestHeaders().getFirst(name));
+  }
+
+}
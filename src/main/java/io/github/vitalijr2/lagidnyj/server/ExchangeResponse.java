@@ -0,0 +1,118 @@
+package io.github.vitalijr2.lagidnyj.server;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.cloud.functions.HttpResponse;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * {@link HttpResponse} on top of an exchange of the embedded HTTP server.
+ * <p>
+ * Status, headers and body are buffered and sent by {@link #send()} after the function has returned, so the response
+ * always has {@code Content-Length}. Headers can be changed through {@link #getHeaders()} until then.
+ */
+class ExchangeResponse implements HttpResponse {
+
+  private static final String CONTENT_TYPE = "Content-Type";
+
+  private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+  private final HttpExchange exchange;
+  private final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+  private int statusCode = 200;
+  private BufferedWriter writer;
+
+  ExchangeResponse(@NotNull HttpExchange exchange) {
+    this.exchange = exchange;
+  }
+
+  @Override
+  public void setStatusCode(int code) {
+    statusCode = code;
+  }
+
+  /**
+   * Set status code, the embedded server does not support custom status messages.
+   *
+   * @param code    status code
+   * @param message status message, it is ignored
+   */
+  @Override
+  public void setStatusCode(int code, String message) {
+    setStatusCode(code);
+  }
+
+  @Override
+  public void setContentType(String contentType) {
+    headers.put(CONTENT_TYPE, new ArrayList<>(List.of(contentType)));
+  }
+
+  @Override
+  public Optional<String> getContentType() {
+    return Optional.ofNullable(headers.get(CONTENT_TYPE)).filter(values -> !values.isEmpty())
+        .map(values -> values.get(0));
+  }
+
+  @Override
+  public void appendHeader(String header, String value) {
+    headers.computeIfAbsent(header, key -> new ArrayList<>()).add(value);
+  }
+
+  @Override
+  public Map<String, List<String>> getHeaders() {
+    return headers;
+  }
+
+  @Override
+  public OutputStream getOutputStream() {
+    return body;
+  }
+
+  @Override
+  public BufferedWriter getWriter() {
+    if (null == writer) {
+      writer = new BufferedWriter(new OutputStreamWriter(body, UTF_8));
+    }
+
+    return writer;
+  }
+
+  int getStatusCode() {
+    return statusCode;
+  }
+
+  /**
+   * Send the buffered response and close the exchange.
+   *
+   * @throws IOException if the response could not be sent
+   */
+  void send() throws IOException {
+    if (null != writer) {
+      writer.flush();
+    }
+    exchange.getResponseHeaders().putAll(headers);
+
+    var bytes = body.toByteArray();
+
+    try {
+      exchange.sendResponseHeaders(statusCode, (0 == bytes.length) ? -1 : bytes.length);
+      if (0 < bytes.length) {
+        exchange.getResponseBody().write(bytes);
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+
+}
@@ -0,0 +1,161 @@
+package io.github.vitalijr2.lagidnyj.server;
+
+import com.google.cloud.functions.HttpFunction;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.vitalijr2.lagidnyj.telegram.AsyncLagidnyjBot;
+import io.github.vitalijr2.lagidnyj.telegram.LagidnyjBot;
+import io.github.vitalijr2.lagidnyj.telegram.TenantRouter;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Long-lived server that runs an HTTP function on the embedded HTTP server of the JDK.
+ * <p>
+ * Requests and responses are adapted to the interfaces of the Functions Framework, so the function does not know
+ * where it runs. On close the server stops accepting connections, lets queued and running requests finish within the
+ * grace period and then closes the function if it is closeable.
+ */
+public class StandaloneServer implements AutoCloseable {
+
+  /**
+   * Default grace period of shutdown.
+   */
+  public static final Duration DEFAULT_GRACE_PERIOD = Duration.ofSeconds(10);
+
+  private static final int DEFAULT_PORT = 8080;
+
+  private final ExecutorService executor;
+  private final HttpFunction function;
+  private final Duration gracePeriod;
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+  private final HttpServer server;
+
+  /**
+   * Standalone server.
+   *
+   * @param function    HTTP function
+   * @param address     address to listen to, port 0 means any free port
+   * @param threads     number of worker threads
+   * @param gracePeriod time to finish queued and running requests on close
+   * @throws IOException if the server could not be bound to the address
+   */
+  public StandaloneServer(@NotNull HttpFunction function, @NotNull InetSocketAddress address, int threads,
+      @NotNull Duration gracePeriod) throws IOException {
+    if (1 > threads) {
+      throw new IllegalArgumentException("Wrong number of threads: " + threads);
+    }
+    this.function = function;
+    this.gracePeriod = gracePeriod;
+    this.server = HttpServer.create(address, 0);
+    // Java 17 has no virtual threads: requests are served by a fixed pool of platform threads
+    var counter = new AtomicInteger();
+
+    this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+        runnable -> new Thread(runnable, "standalone-server-" + counter.incrementAndGet()));
+    this.server.createContext("/", this::handle);
+    this.server.setExecutor(executor);
+  }
+
+  /**
+   * Run the bot, the port is taken from the {@code PORT} environment variable, 8080 by default. The asynchronous mode
+   * is chosen by {@code FUNCTION_TARGET=io.github.vitalijr2.lagidnyj.telegram.AsyncLagidnyjBot} like in the Functions
+   * Framework, several bots by {@code FUNCTION_TARGET=io.github.vitalijr2.lagidnyj.telegram.TenantRouter}. Pending
+   * notifications survive a restart if the {@code JOURNAL_DIR} environment variable names a journal directory, every
+   * tenant of the router keeps its journal in a subdirectory of its name.
+   *
+   * @param args not used
+   * @throws IOException if the server could not be started
+   */
+  public static void main(String... args) throws IOException {
+    var port = System.getenv().getOrDefault("PORT", String.valueOf(DEFAULT_PORT));
+    var target = System.getenv("FUNCTION_TARGET");
+    HttpFunction function;
+
+    if (AsyncLagidnyjBot.class.getName().equals(target)) {
+      function = new AsyncLagidnyjBot();
+    } else if (TenantRouter.class.getName().equals(target)) {
+      function = new TenantRouter();
+    } else {
+      function = new LagidnyjBot();
+    }
+
+    var server = new StandaloneServer(function, new InetSocketAddress(Integer.parseInt(port)),
+        Runtime.getRuntime().availableProcessors() * 2, DEFAULT_GRACE_PERIOD);
+
+    Runtime.getRuntime().addShutdownHook(new Thread(server::close, "standalone-server-shutdown"));
+    server.start();
+  }
+
+  /**
+   * Start accepting connections.
+   */
+  public void start() {
+    server.start();
+    logger.info("Listen on {}", getAddress());
+  }
+
+  /**
+   * Bound address.
+   *
+   * @return socket address
+   */
+  public InetSocketAddress getAddress() {
+    return server.getAddress();
+  }
+
+  /**
+   * Stop accepting connections, wait for queued and running requests and close the function.
+   */
+  @Override
+  public void close() {
+    var deadline = System.nanoTime() + gracePeriod.toNanos();
+
+    server.stop((int) Math.max(0, gracePeriod.toSeconds()));
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+        var dropped = executor.shutdownNow();
+
+        if (!dropped.isEmpty()) {
+          logger.warn("Drop {} requests", dropped.size());
+        }
+      }
+    } catch (InterruptedException exception) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+    if (function instanceof AutoCloseable closeable) {
+      try {
+        closeable.close();
+      } catch (Exception exception) {
+        logger.warn("Could not close the function: {}", exception.getMessage());
+      }
+    }
+    logger.info("Server is stopped");
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    var response = new ExchangeResponse(exchange);
+
+    try {
+      function.service(new ExchangeRequest(exchange), response);
+    } catch (Exception exception) {
+      logger.warn("Could not serve {} {}: {}", exchange.getRequestMethod(), exchange.getRequestURI(),
+          exception.getMessage());
+      response = new ExchangeResponse(exchange);
+      response.setStatusCode(500);
+    }
+    response.send();
+  }
+
+}
@@ -0,0 +1,87 @@
+package io.github.vitalijr2.lagidnyj.server;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import io.github.vitalijr2.lagidnyj.telegram.LagidnyjBot;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Training run for a class data sharing archive.
+ * <p>
+ * It starts the standalone server with the bot, sends every update of a corpus and a request with a wrong method,
+ * then stops the server. Run it with {@code -XX:ArchiveClassesAtExit} and the same class path as the server: the
+ * archive keeps the classes that the first requests need, and a server started with {@code -XX:SharedArchiveFile}
+ * does not load and verify them again. Updates of the corpus do not cause outbound requests because pending warnings
+ * are dropped on close.
+ */
+public class StartupTraining {
+
+  private StartupTraining() {
+  }
+
+  /**
+   * Run the training.
+   *
+   * @param args files of the update corpus: one update per line, or pipe-separated test tables where the update is a
+   *             column that starts with a brace
+   * @throws IOException          if a corpus file could not be read or the server could not be started
+   * @throws InterruptedException if the thread is interrupted while waiting for a response
+   */
+  public static void main(String... args) throws IOException, InterruptedException {
+    var updates = new ArrayList<String>();
+
+    for (var file : args) {
+      updates.addAll(updates(Path.of(file)));
+    }
+    try (var server = new StandaloneServer(new LagidnyjBot(),
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1, Duration.ofSeconds(1))) {
+      server.start();
+
+      var httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+      var uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+      var answered = 0;
+
+      httpClient.send(HttpRequest.newBuilder(uri).GET().build(), BodyHandlers.discarding());
+      for (var update : updates) {
+        if (200 == httpClient.send(HttpRequest.newBuilder(uri).POST(BodyPublishers.ofString(update, UTF_8)).build(),
+            BodyHandlers.ofString(UTF_8)).statusCode()) {
+          answered++;
+        }
+      }
+      LoggerFactory.getLogger(StartupTraining.class).info("Trained on {} of {} updates", answered, updates.size());
+    }
+  }
+
+  @NotNull
+  static List<String> updates(@NotNull Path file) throws IOException {
+    var updates = new ArrayList<String>();
+
+    for (var line : Files.readAllLines(file, UTF_8)) {
+      for (var column : line.split("\\|")) {
+        var update = column.strip();
+
+        if (update.startsWith("{")) {
+          updates.add(update);
+          break;
+        }
+      }
+    }
+
+    return updates;
+  }
+
+}
@@ -0,0 +1,419 @@
+package io.github.vitalijr2.lagidnyj.settings;
+
+import io.github.vitalijr2.lagidnyj.beans.ChatSettings;
+import io.github.vitalijr2.lagidnyj.beans.ChatSettings.DetectionMode;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read-through cache of chat settings.
+ * <p>
+ * The message path never waits for the store: a miss answers {@link ChatSettings#DEFAULT} at once and loads the
+ * settings in the background, a stale entry is served while it is refreshed in the background. Entries are evicted in
+ * the least recently used order when a segment is full, failed loads are tried again after the time to live. The
+ * detection modes in use are asked from the store once at the first check and then again in the background after the
+ * time to live, so a chat may switch its mode while the bot runs.
+ * <p>
+ * The cache is split into segments by the hash of a chat identifier, each segment has its own lock. A segment keeps
+ * keys, values, load times and the recency list in plain arrays and finds a slot by an open-addressing index, so there
+ * are no objects per entry and no boxing of chat identifiers.
+ */
+public class ChatSettingsCache implements ChatSettingsSource {
+
+  /**
+   * Default number of cached chats.
+   */
+  public static final int DEFAULT_CAPACITY = 4096;
+
+  /**
+   * Default time to live of an entry.
+   */
+  public static final Duration DEFAULT_TTL = Duration.ofMinutes(5);
+
+  /**
+   * Environment variable with the path of the JSON settings file, see {@link JsonChatSettingsStore}.
+   */
+  public static final String CHAT_SETTINGS = "CHAT_SETTINGS";
+
+  private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+  private static final int SEGMENTS = 8;
+
+  private final Executor executor;
+  private final LongAdder failures = new LongAdder();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder loads = new LongAdder();
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+  private final LongAdder misses = new LongAdder();
+  private final ModeCheck[] modeChecks = new ModeCheck[DetectionMode.values().length];
+  private final Segment[] segments = new Segment[SEGMENTS];
+  private final ChatSettingsStore store;
+  private final LongSupplier ticker;
+  private final long ttlNanos;
+
+  /**
+   * Cache with default capacity and time to live, it loads settings by two daemon threads.
+   *
+   * @param store settings store
+   */
+  public ChatSettingsCache(@NotNull ChatSettingsStore store) {
+    this(store, DEFAULT_CAPACITY, DEFAULT_TTL, loaders(), System::nanoTime);
+  }
+
+  /**
+   * Cache.
+   *
+   * @param store    settings store
+   * @param capacity number of cached chats, at least the number of segments
+   * @param ttl      time to live of an entry
+   * @param executor executor of loads
+   * @param ticker   time source in nanoseconds
+   */
+  @VisibleForTesting
+  ChatSettingsCache(@NotNull ChatSettingsStore store, int capacity, @NotNull Duration ttl, @NotNull Executor executor,
+      @NotNull LongSupplier ticker) {
+    if (SEGMENTS > capacity) {
+      throw new IllegalArgumentException("Wrong capacity: " + capacity);
+    }
+    if (ttl.isNegative() || ttl.isZero()) {
+      throw new IllegalArgumentException("Wrong time to live: " + ttl);
+    }
+    this.executor = executor;
+    this.store = store;
+    this.ticker = ticker;
+    this.ttlNanos = ttl.toNanos();
+    for (var i = 0; SEGMENTS > i; i++) {
+      segments[i] = new Segment((capacity + SEGMENTS - 1) / SEGMENTS);
+    }
+    for (var mode : DetectionMode.values()) {
+      modeChecks[mode.ordinal()] = new ModeCheck(mode);
+    }
+  }
+
+  /**
+   * Shared settings source: the cache of the JSON file from the {@code CHAT_SETTINGS} environment variable, or default
+   * settings for every chat if the variable is not set.
+   *
+   * @return settings source
+   */
+  @NotNull
+  public static ChatSettingsSource getInstance() {
+    return Holder.INSTANCE;
+  }
+
+  /**
+   * Settings source of a JSON file, or default settings for every chat if the file is not set.
+   *
+   * @param file path of the JSON file, optional
+   * @return settings source
+   */
+  @NotNull
+  public static ChatSettingsSource create(@Nullable String file) {
+    if (null == file || file.isBlank()) {
+      return chatId -> ChatSettings.DEFAULT;
+    }
+
+    return new ChatSettingsCache(new JsonChatSettingsStore(Path.of(file.strip())));
+  }
+
+  private static ExecutorService loaders() {
+    var counter = new AtomicInteger();
+
+    return Executors.newFixedThreadPool(2, runnable -> {
+      var thread = new Thread(runnable, "chat-settings-" + counter.incrementAndGet());
+
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  private static long hash(long chatId) {
+    return chatId * GOLDEN_RATIO;
+  }
+
+  /**
+   * Settings of a chat, it never waits for the store.
+   *
+   * @param chatId chat identifier
+   * @return cached settings, default ones if the settings are not loaded yet
+   */
+  @Override
+  @NotNull
+  public ChatSettings apply(long chatId) {
+    var hash = hash(chatId);
+
+    return segments[(int) (hash >>> 61)].get(chatId, hash, ticker.getAsLong());
+  }
+
+  /**
+   * Check if any chat uses a detection mode. The first check asks the store, later ones answer at once and ask the
+   * store again in the background after the time to live.
+   *
+   * @param mode detection mode
+   * @return true if the mode is in use or the store could not answer
+   */
+  @Override
+  public boolean usesDetectionMode(@NotNull DetectionMode mode) {
+    return modeChecks[mode.ordinal()].inUse(ticker.getAsLong());
+  }
+
+  private boolean askDetectionMode(DetectionMode mode) {
+    try {
+      return store.usesDetectionMode(mode);
+    } catch (Exception exception) {
+      logger.warn("Could not check detection mode {}: {}", mode, exception.getMessage());
+      return true;
+    }
+  }
+
+  long getFailures() {
+    return failures.sum();
+  }
+
+  long getHits() {
+    return hits.sum();
+  }
+
+  long getLoads() {
+    return loads.sum();
+  }
+
+  long getMisses() {
+    return misses.sum();
+  }
+
+  private void load(Segment segment, long chatId, long hash) {
+    try {
+      executor.execute(() -> {
+        ChatSettings settings = null;
+
+        try {
+          settings = store.load(chatId);
+          loads.increment();
+        } catch (Exception exception) {
+          failures.increment();
+          logger.warn("Could not load settings of chat {}: {}", chatId, exception.getMessage());
+        }
+        segment.complete(chatId, hash, settings, ticker.getAsLong());
+      });
+    } catch (RejectedExecutionException exception) {
+      failures.increment();
+      segment.complete(chatId, hash, null, ticker.getAsLong());
+    }
+  }
+
+  private static class Holder {
+
+    private static final ChatSettingsSource INSTANCE = create(System.getenv(CHAT_SETTINGS));
+
+  }
+
+  private class ModeCheck {
+
+    private final DetectionMode mode;
+
+    private volatile long checkedAt;
+    private boolean checking;
+    private volatile boolean checked;
+    private volatile boolean inUse;
+
+    ModeCheck(DetectionMode mode) {
+      this.mode = mode;
+    }
+
+    boolean inUse(long now) {
+      if (checked && now - checkedAt < ttlNanos) {
+        return inUse;
+      }
+      synchronized (this) {
+        if (!checked) {
+          inUse = askDetectionMode(mode);
+          checkedAt = now;
+          checked = true;
+        } else if (!checking && now - checkedAt >= ttlNanos) {
+          checking = true;
+          try {
+            executor.execute(this::check);
+          } catch (RejectedExecutionException exception) {
+            checking = false;
+          }
+        }
+      }
+
+      return inUse;
+    }
+
+    private void check() {
+      var answer = askDetectionMode(mode);
+
+      synchronized (this) {
+        if (answer && !inUse) {
+          logger.info("Detection mode {} is in use now", mode);
+        }
+        inUse = answer;
+        checkedAt = ticker.getAsLong();
+        checking = false;
+      }
+    }
+
+  }
+
+  private class Segment {
+
+    private static final int NONE = -1;
+
+    private final int[] index;
+    private final long[] keys;
+    private final long[] loadedAt;
+    private final boolean[] loading;
+    private final int mask;
+    private final int[] newer;
+    private final int[] older;
+    private final ChatSettings[] values;
+
+    private int newest = NONE;
+    private int oldest = NONE;
+    private int size;
+
+    Segment(int capacity) {
+      index = new int[Integer.highestOneBit(capacity) << 2];
+      keys = new long[capacity];
+      loadedAt = new long[capacity];
+      loading = new boolean[capacity];
+      mask = index.length - 1;
+      newer = new int[capacity];
+      older = new int[capacity];
+      values = new ChatSettings[capacity];
+    }
+
+    // a load is only queued under the lock, the store is read by the executor
+    synchronized ChatSettings get(long chatId, long hash, long now) {
+      var slot = find(chatId, hash);
+
+      if (NONE != slot) {
+        hits.increment();
+        touch(slot);
+        if (!loading[slot] && now - loadedAt[slot] >= ttlNanos) {
+          loading[slot] = true;
+          load(this, chatId, hash);
+        }
+
+        return values[slot];
+      }
+      misses.increment();
+      if (keys.length == size) {
+        slot = oldest;
+        unlink(slot);
+        remove(keys[slot]);
+      } else {
+        slot = size++;
+      }
+      insert(hash, slot);
+      keys[slot] = chatId;
+      loadedAt[slot] = now;
+      loading[slot] = true;
+      values[slot] = ChatSettings.DEFAULT;
+      link(slot);
+      load(this, chatId, hash);
+
+      return values[slot];
+    }
+
+    /**
+     * Store loaded settings, they are dropped if the chat has been evicted meanwhile.
+     */
+    synchronized void complete(long chatId, long hash, @Nullable ChatSettings settings, long now) {
+      var slot = find(chatId, hash);
+
+      if (NONE != slot) {
+        if (null != settings) {
+          values[slot] = settings;
+        }
+        loadedAt[slot] = now;
+        loading[slot] = false;
+      }
+    }
+
+    private int find(long chatId, long hash) {
+      for (var position = (int) hash & mask; 0 != index[position]; position = (position + 1) & mask) {
+        if (chatId == keys[index[position] - 1]) {
+          return index[position] - 1;
+        }
+      }
+
+      return NONE;
+    }
+
+    // the index keeps slot + 1, zero marks an empty position
+    private void insert(long hash, int slot) {
+      var position = (int) hash & mask;
+
+      while (0 != index[position]) {
+        position = (position + 1) & mask;
+      }
+      index[position] = slot + 1;
+    }
+
+    private void remove(long chatId) {
+      var hole = (int) hash(chatId) & mask;
+
+      while (chatId != keys[index[hole] - 1]) {
+        hole = (hole + 1) & mask;
+      }
+      for (var position = (hole + 1) & mask; 0 != index[position]; position = (position + 1) & mask) {
+        var home = (int) hash(keys[index[position] - 1]) & mask;
+
+        // move the slot to the hole if the hole is between its home position and its current position
+        if (((position - home) & mask) >= ((position - hole) & mask)) {
+          index[hole] = index[position];
+          hole = position;
+        }
+      }
+      index[hole] = 0;
+    }
+
+    private void link(int slot) {
+      older[slot] = newest;
+      newer[slot] = NONE;
+      if (NONE == newest) {
+        oldest = slot;
+      } else {
+        newer[newest] = slot;
+      }
+      newest = slot;
+    }
+
+    private void touch(int slot) {
+      if (newest != slot) {
+        unlink(slot);
+        link(slot);
+      }
+    }
+
+    private void unlink(int slot) {
+      if (NONE == older[slot]) {
+        oldest = newer[slot];
+      } else {
+        newer[older[slot]] = newer[slot];
+      }
+      if (NONE == newer[slot]) {
+        newest = older[slot];
+      } else {
+        older[newer[slot]] = older[slot];
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,24 @@
+package io.github.vitalijr2.lagidnyj.settings;
+
+import io.github.vitalijr2.lagidnyj.beans.ChatSettings;
+import io.github.vitalijr2.lagidnyj.beans.ChatSettings.DetectionMode;
+import java.util.function.LongFunction;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Source of chat settings for the message path, it should not block.
+ */
+@FunctionalInterface
+public interface ChatSettingsSource extends LongFunction<ChatSettings> {
+
+  /**
+   * Check if any chat may use a detection mode, it is asked for every update before parsing, so it should not block.
+   *
+   * @param mode detection mode
+   * @return true if the mode may be in use, by default only {@link DetectionMode#Letters} is
+   */
+  default boolean usesDetectionMode(@NotNull DetectionMode mode) {
+    return DetectionMode.Letters == mode;
+  }
+
+}
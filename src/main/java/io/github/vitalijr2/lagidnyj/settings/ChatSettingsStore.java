@@ -0,0 +1,36 @@
+package io.github.vitalijr2.lagidnyj.settings;
+
+import io.github.vitalijr2.lagidnyj.beans.ChatSettings;
+import io.github.vitalijr2.lagidnyj.beans.ChatSettings.DetectionMode;
+import java.io.IOException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Source of chat settings, it may do slow I/O: settings are read through {@link ChatSettingsCache}.
+ */
+@FunctionalInterface
+public interface ChatSettingsStore {
+
+  /**
+   * Load settings of a chat.
+   *
+   * @param chatId chat identifier
+   * @return settings or null if the chat has no own settings
+   * @throws IOException if settings could not be loaded
+   */
+  @Nullable
+  ChatSettings load(long chatId) throws IOException;
+
+  /**
+   * Check if any chat uses a detection mode.
+   *
+   * @param mode detection mode
+   * @return true if the mode is in use, by default any mode may be
+   * @throws IOException if settings could not be loaded
+   */
+  default boolean usesDetectionMode(@NotNull DetectionMode mode) throws IOException {
+    return true;
+  }
+
+}
@@ -0,0 +1,118 @@
+package io.github.vitalijr2.lagidnyj.settings;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import io.github.vitalijr2.lagidnyj.beans.ChatSettings;
+import io.github.vitalijr2.lagidnyj.beans.ChatSettings.DetectionMode;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Chat settings in a JSON file.
+ * <p>
+ * The file is an object with chat identifiers as keys:
+ * <pre>{@code
+ * {
+ *   "-1001234567890": {"enabled": true, "delay": 60, "strikes_to_restrict": 3, "exempt_users": [123456],
+ *     "detection_mode": "letters"}
+ * }
+ * }</pre>
+ * Missing fields take default values, see {@link ChatSettings#DEFAULT}, the detection mode is {@code letters} or
+ * {@code scoring}. The file is read again when its modification time changes. {@link ChatSettingsCache} asks again
+ * which modes are in use after its time to live, so a chat that switches to the {@code scoring} mode gets updates
+ * without the Russian letters in a few minutes, without a restart.
+ */
+public class JsonChatSettingsStore implements ChatSettingsStore {
+
+  private final Path file;
+
+  private JSONObject chats;
+  private FileTime modified;
+
+  /**
+   * Store.
+   *
+   * @param file JSON file
+   */
+  public JsonChatSettingsStore(@NotNull Path file) {
+    this.file = file;
+  }
+
+  /**
+   * Parse settings.
+   *
+   * @param settings JSON settings
+   * @return chat settings
+   * @throws JSONException if settings are not valid
+   */
+  @NotNull
+  static ChatSettings parse(@NotNull JSONObject settings) throws JSONException {
+    var exemptUsers = settings.optJSONArray("exempt_users");
+    var userIds = new long[(null == exemptUsers) ? 0 : exemptUsers.length()];
+
+    for (var i = 0; userIds.length > i; i++) {
+      userIds[i] = exemptUsers.getLong(i);
+    }
+    try {
+      return new ChatSettings(settings.optBoolean("enabled", ChatSettings.DEFAULT.enabled()),
+          settings.optInt("delay", ChatSettings.DEFAULT.secondsOfDelay()),
+          settings.optInt("strikes_to_restrict", ChatSettings.DEFAULT.strikesToRestrict()), userIds,
+          DetectionMode.fromString(settings.optString("detection_mode", null)));
+    } catch (IllegalArgumentException exception) {
+      throw new JSONException(exception.getMessage());
+    }
+  }
+
+  @Override
+  @Nullable
+  public synchronized ChatSettings load(long chatId) throws IOException {
+    var settings = chats().optJSONObject(Long.toString(chatId));
+
+    try {
+      return (null == settings) ? null : parse(settings);
+    } catch (JSONException exception) {
+      throw new IOException("Wrong settings of chat " + chatId + ": " + exception.getMessage(), exception);
+    }
+  }
+
+  @Override
+  public synchronized boolean usesDetectionMode(@NotNull DetectionMode mode) throws IOException {
+    var chats = chats();
+
+    for (var chatId : chats.keySet()) {
+      var settings = chats.optJSONObject(chatId);
+
+      try {
+        if (null != settings && mode == DetectionMode.fromString(settings.optString("detection_mode", null))) {
+          return true;
+        }
+      } catch (IllegalArgumentException exception) {
+        throw new IOException("Wrong settings of chat " + chatId + ": " + exception.getMessage(), exception);
+      }
+    }
+
+    return DetectionMode.Letters == mode;
+  }
+
+  private JSONObject chats() throws IOException {
+    var lastModified = Files.getLastModifiedTime(file);
+
+    if (!lastModified.equals(modified)) {
+      try {
+        chats = new JSONObject(Files.readString(file, UTF_8));
+      } catch (JSONException exception) {
+        throw new IOException("Could not parse " + file + ": " + exception.getMessage(), exception);
+      }
+      modified = lastModified;
+    }
+
+    return chats;
+  }
+
+}
@@ -0,0 +1,417 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Outbound dispatcher of Bot API requests.
+ * <p>
+ * Actions are Bot API requests with the {@code method} field, e.g. made by {@link EscalationEngine}. Restrictions go
+ * before warnings. The dispatcher thread takes the next action when both the global token bucket and the bucket of its
+ * chat have a token: Telegram allows about 30 requests per second overall, 20 per minute in a group and one per second
+ * in a private chat. An action of a chat without tokens waits aside and does not hold up other chats.
+ * <p>
+ * Requests are sent by one shared HTTP/2 client. The answer 429 pauses the chat for {@code retry_after} seconds and the
+ * action is sent again; server and network errors are retried with exponential backoff.
+ */
+class ActionDispatcher implements Consumer<JSONObject>, AutoCloseable {
+
+  /**
+   * Default Bot API URL.
+   */
+  static final URI DEFAULT_API_URL = URI.create("https://api.telegram.org/");
+
+  /**
+   * Default time to send queued actions on close.
+   */
+  static final Duration DEFAULT_DRAIN_TIMEOUT = Duration.ofSeconds(5);
+
+  /**
+   * Default overall rate, requests per second.
+   */
+  static final int DEFAULT_GLOBAL_PER_SECOND = 30;
+
+  /**
+   * Default rate in a group, requests per minute.
+   */
+  static final int DEFAULT_GROUP_PER_MINUTE = 20;
+
+  /**
+   * Default rate in a private chat, requests per second.
+   */
+  static final int DEFAULT_PRIVATE_PER_SECOND = 1;
+
+  private static final Duration FIRST_RETRY = Duration.ofMillis(500);
+  private static final long IDLE_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+  private static final int MAX_ATTEMPTS = 5;
+  private static final int MAX_CHAT_BUCKETS = 10_000;
+  private static final String METHOD = "method";
+  private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+  private static final String RESTRICT_CHAT_MEMBER = "restrictChatMember";
+
+  private final Map<Long, TokenBucket> chatBuckets = new ConcurrentHashMap<>();
+  private final LongAdder dropped = new LongAdder();
+  private final ExecutorService executor;
+  private final TokenBucket globalBucket;
+  private final int groupPerMinute;
+  private final HttpClient httpClient;
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+  private final AtomicInteger outstanding = new AtomicInteger();
+  private final DelayQueue<Task> postponed = new DelayQueue<>();
+  private final int privatePerSecond;
+  private final BlockingQueue<Task> ready = new PriorityBlockingQueue<>(64,
+      Comparator.comparingInt(Task::priority).thenComparingLong(Task::sequence));
+  private final LongAdder retried = new LongAdder();
+  private final AtomicLong sequence = new AtomicLong();
+  private final LongAdder sent = new LongAdder();
+  private final String urlPrefix;
+  private final Thread worker;
+
+  private volatile boolean closed;
+
+  /**
+   * Dispatcher with the default Bot API URL and rates.
+   *
+   * @param token bot token
+   */
+  ActionDispatcher(@NotNull String token) {
+    this(DEFAULT_API_URL, token, DEFAULT_GLOBAL_PER_SECOND, DEFAULT_GROUP_PER_MINUTE, DEFAULT_PRIVATE_PER_SECOND);
+  }
+
+  /**
+   * Dispatcher.
+   *
+   * @param apiUrl           Bot API URL
+   * @param token            bot token
+   * @param globalPerSecond  overall requests per second
+   * @param groupPerMinute   requests per minute in the same group
+   * @param privatePerSecond requests per second in the same private chat
+   */
+  ActionDispatcher(@NotNull URI apiUrl, @NotNull String token, int globalPerSecond, int groupPerMinute,
+      int privatePerSecond) {
+    this(apiUrl, token, globalPerSecond, groupPerMinute, privatePerSecond, null);
+  }
+
+  /**
+   * Dispatcher with the default Bot API URL and rates that sends requests by a shared HTTP client.
+   *
+   * @param token      bot token
+   * @param httpClient shared HTTP client, it is not closed with the dispatcher
+   */
+  ActionDispatcher(@NotNull String token, @NotNull HttpClient httpClient) {
+    this(DEFAULT_API_URL, token, DEFAULT_GLOBAL_PER_SECOND, DEFAULT_GROUP_PER_MINUTE, DEFAULT_PRIVATE_PER_SECOND,
+        httpClient);
+  }
+
+  private ActionDispatcher(URI apiUrl, String token, int globalPerSecond, int groupPerMinute, int privatePerSecond,
+      @Nullable HttpClient httpClient) {
+    var now = System.nanoTime();
+
+    this.urlPrefix = BotTools.botUrl(apiUrl, token);
+    this.globalBucket = new TokenBucket(globalPerSecond, Duration.ofSeconds(1), now);
+    this.groupPerMinute = groupPerMinute;
+    this.privatePerSecond = privatePerSecond;
+    if (null == httpClient) {
+      // Java 17 has no virtual threads: a few daemon platform threads complete the asynchronous requests
+      this.executor = Executors.newFixedThreadPool(4, daemon("action-dispatcher-client"));
+      this.httpClient = httpClient(executor);
+    } else {
+      this.executor = null;
+      this.httpClient = httpClient;
+    }
+    this.worker = daemon("action-dispatcher").newThread(this::run);
+    this.worker.start();
+  }
+
+  /**
+   * HTTP client of the Bot API.
+   *
+   * @param executor executor that completes asynchronous requests
+   * @return HTTP client
+   */
+  static HttpClient httpClient(@NotNull ExecutorService executor) {
+    return HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).connectTimeout(REQUEST_TIMEOUT)
+        .executor(executor).build();
+  }
+
+  /**
+   * Factory of numbered daemon threads.
+   *
+   * @param name prefix of thread names
+   * @return thread factory
+   */
+  static ThreadFactory daemon(String name) {
+    var counter = new AtomicInteger();
+
+    return runnable -> {
+      var thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+
+      thread.setDaemon(true);
+
+      return thread;
+    };
+  }
+
+  private static int priority(String method) {
+    return RESTRICT_CHAT_MEMBER.equals(method) ? 0 : 1;
+  }
+
+  /**
+   * Queue an action.
+   *
+   * @param action Bot API request with the {@code method} and {@code chat_id} fields
+   */
+  @Override
+  public void accept(@NotNull JSONObject action) {
+    if (closed) {
+      throw new IllegalStateException("Dispatcher is closed");
+    }
+
+    var method = action.getString(METHOD);
+    var body = new JSONObject(action, JSONObject.getNames(action));
+
+    body.remove(METHOD);
+    outstanding.incrementAndGet();
+    ready.offer(new Task(method, body.getLong("chat_id"), body.toString(), priority(method),
+        sequence.incrementAndGet(), 1, 0));
+  }
+
+  /**
+   * Number of actions that are neither sent nor dropped yet.
+   *
+   * @return number of actions
+   */
+  int pending() {
+    return outstanding.get();
+  }
+
+  long getSent() {
+    return sent.sum();
+  }
+
+  long getRetried() {
+    return retried.sum();
+  }
+
+  long getDropped() {
+    return dropped.sum();
+  }
+
+  /**
+   * Wait until all queued actions are sent, then stop the dispatcher.
+   *
+   * @param timeout maximum time to wait
+   * @return true if all actions are sent
+   * @throws InterruptedException if the current thread is interrupted while waiting
+   */
+  boolean drain(@NotNull Duration timeout) throws InterruptedException {
+    var deadline = System.nanoTime() + timeout.toNanos();
+
+    closed = true;
+    while (worker.isAlive() && 0 < pending() && 0 < deadline - System.nanoTime()) {
+      TimeUnit.MILLISECONDS.sleep(10);
+    }
+
+    var drained = 0 == pending();
+
+    stop();
+
+    return drained;
+  }
+
+  /**
+   * Send queued actions within {@link #DEFAULT_DRAIN_TIMEOUT} and stop the dispatcher, the rest actions are dropped.
+   */
+  @Override
+  public void close() {
+    try {
+      drain(DEFAULT_DRAIN_TIMEOUT);
+    } catch (InterruptedException exception) {
+      stop();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void stop() {
+    closed = true;
+    if (!worker.isAlive()) {
+      return;
+    }
+    worker.interrupt();
+    try {
+      worker.join();
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    }
+    if (null != executor) {
+      executor.shutdownNow();
+    }
+    if (0 < pending()) {
+      logger.warn("Drop {} actions", pending());
+    }
+  }
+
+  private void run() {
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        for (var task = postponed.poll(); null != task; task = postponed.poll()) {
+          ready.offer(task);
+        }
+
+        var task = ready.poll(IDLE_POLL_NANOS, TimeUnit.NANOSECONDS);
+
+        if (null != task) {
+          try {
+            dispatch(task);
+          } catch (RuntimeException exception) {
+            dropped.increment();
+            outstanding.decrementAndGet();
+            logger.warn("Could not send {}: {}", task.method(), exception.getMessage());
+          }
+        }
+      }
+    } catch (InterruptedException exception) {
+      logger.debug("Dispatcher thread is interrupted");
+    }
+  }
+
+  private void dispatch(Task task) throws InterruptedException {
+    var now = System.nanoTime();
+    var chatBucket = chatBucket(task.chatId(), now);
+    var chatWait = chatBucket.nanosToWait(now);
+
+    if (0 < chatWait) {
+      postponed.offer(task.postpone(now + chatWait));
+      return;
+    }
+
+    var globalWait = globalBucket.nanosToWait(now);
+
+    if (0 < globalWait) {
+      ready.offer(task);
+      TimeUnit.NANOSECONDS.sleep(globalWait);
+      return;
+    }
+    globalBucket.tryAcquire(now);
+    chatBucket.tryAcquire(now);
+    send(task);
+  }
+
+  private TokenBucket chatBucket(long chatId, long now) {
+    if (MAX_CHAT_BUCKETS < chatBuckets.size()) {
+      chatBuckets.values().removeIf(bucket -> bucket.isIdle(now));
+    }
+
+    return chatBuckets.computeIfAbsent(chatId,
+        key -> (0 > key) ? new TokenBucket(groupPerMinute, Duration.ofMinutes(1), now)
+            : new TokenBucket(privatePerSecond, Duration.ofSeconds(1), now));
+  }
+
+  private void send(Task task) {
+    var request = HttpRequest.newBuilder(URI.create(urlPrefix + task.method()))
+        .header("Content-Type", "application/json").timeout(REQUEST_TIMEOUT)
+        .POST(BodyPublishers.ofString(task.body())).build();
+
+    httpClient.sendAsync(request, BodyHandlers.ofString()).whenComplete((response, throwable) -> {
+      if (null == throwable) {
+        handle(task, response);
+      } else {
+        retry(task, "request failed: " + throwable.getMessage());
+      }
+    });
+  }
+
+  private void handle(Task task, HttpResponse<String> response) {
+    var statusCode = response.statusCode();
+
+    if (200 == statusCode) {
+      sent.increment();
+      outstanding.decrementAndGet();
+      logger.trace("{} is sent: {}", task.method(), task.body());
+    } else if (429 == statusCode) {
+      var retryAfter = Duration.ofSeconds(retryAfter(response.body()));
+      var until = System.nanoTime() + retryAfter.toNanos();
+
+      logger.info("Too many requests to chat {}, retry after {}", task.chatId(), retryAfter);
+      chatBucket(task.chatId(), System.nanoTime()).pause(until);
+      retried.increment();
+      postponed.offer(task.postpone(until));
+    } else if (500 <= statusCode) {
+      retry(task, "status " + statusCode);
+    } else {
+      dropped.increment();
+      outstanding.decrementAndGet();
+      logger.warn("Could not send {}: {} {}", task.method(), statusCode, response.body());
+    }
+  }
+
+  private long retryAfter(String body) {
+    try {
+      return Math.max(1, new JSONObject(body).getJSONObject("parameters").getLong("retry_after"));
+    } catch (JSONException exception) {
+      return 1;
+    }
+  }
+
+  private void retry(Task task, String reason) {
+    if (MAX_ATTEMPTS <= task.attempt()) {
+      dropped.increment();
+      outstanding.decrementAndGet();
+      logger.warn("Could not send {} after {} attempts: {}", task.method(), task.attempt(), reason);
+      return;
+    }
+    retried.increment();
+    logger.debug("Retry {}: {}", task.method(), reason);
+    postponed.offer(task.retry(System.nanoTime() + (FIRST_RETRY.toNanos() << (task.attempt() - 1))));
+  }
+
+  private record Task(String method, long chatId, String body, int priority, long sequence, int attempt,
+                      long notBefore) implements Delayed {
+
+    Task postpone(long notBefore) {
+      return new Task(method, chatId, body, priority, sequence, attempt, notBefore);
+    }
+
+    Task retry(long notBefore) {
+      return new Task(method, chatId, body, priority, sequence, attempt + 1, notBefore);
+    }
+
+    @Override
+    public long getDelay(@NotNull TimeUnit unit) {
+      return unit.convert(notBefore - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(@NotNull Delayed delayed) {
+      return Long.compare(notBefore, ((Task) delayed).notBefore);
+    }
+
+  }
+
+}
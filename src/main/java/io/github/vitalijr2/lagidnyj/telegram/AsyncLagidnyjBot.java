@@ -0,0 +1,279 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import static io.github.vitalijr2.lagidnyj.telegram.BotTools.internalError;
+import static io.github.vitalijr2.lagidnyj.telegram.BotTools.ok;
+
+import com.google.cloud.functions.HttpFunction;
+import com.google.cloud.functions.HttpRequest;
+import com.google.cloud.functions.HttpResponse;
+import io.github.vitalijr2.lagidnyj.settings.ChatSettingsCache;
+import io.github.vitalijr2.lagidnyj.telegram.BotMetrics.Rejection;
+import io.github.vitalijr2.lagidnyj.telegram.BotMetrics.Submission;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Asynchronous mode of the bot: a webhook request is acknowledged at once and processed in the background.
+ * <p>
+ * Telegram slows down delivery to a bot that answers slowly. Here the request body is copied, because the parser of
+ * the request thread is reused, and put into a bounded queue; a pool of worker threads processes the queue. Replies
+ * cannot go with the webhook answer, so they are sent to the Bot API like other actions. When the queue is full, the
+ * {@link Backpressure backpressure} mode decides what to do with the request.
+ * <p>
+ * Settings are read from the environment variables {@code ASYNC_QUEUE_SIZE} (1024 by default),
+ * {@code ASYNC_WORKERS} (number of processors by default) and {@code ASYNC_BACKPRESSURE} ({@code block}, {@code shed}
+ * or {@code sync}, the default one).
+ */
+public class AsyncLagidnyjBot implements HttpFunction, AutoCloseable {
+
+  /**
+   * Default capacity of the queue.
+   */
+  static final int DEFAULT_QUEUE_SIZE = 1024;
+
+  private static final String HTTP_POST_METHOD = "POST";
+  private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(10);
+
+  private final Consumer<JSONObject> actions;
+  private final Backpressure backpressure;
+  private final LagidnyjBot bot;
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+  private final BlockingQueue<byte[]> queue;
+  private final Thread[] workers;
+
+  private volatile boolean closed;
+
+  public AsyncLagidnyjBot() {
+    this(LagidnyjBot.actionConsumer(System.getenv(LagidnyjBot.BOT_TOKEN)),
+        ChatMemberCache.create(System.getenv(LagidnyjBot.BOT_TOKEN)));
+  }
+
+  private AsyncLagidnyjBot(Consumer<JSONObject> actions, ChatMemberCache members) {
+    this(new LagidnyjBot(LagidnyjBot.chatKeeper(new EscalationEngine(actions, members),
+            System.getenv(LagidnyjBot.JOURNAL_DIR)), null,
+            System.getenv(LagidnyjBot.METRICS_TOKEN), ChatSettingsCache.getInstance(), members, null,
+            WebhookAdmission.fromEnvironment(System.getenv())), actions,
+        intSetting("ASYNC_QUEUE_SIZE", DEFAULT_QUEUE_SIZE),
+        intSetting("ASYNC_WORKERS", Runtime.getRuntime().availableProcessors()),
+        Backpressure.fromString(System.getenv("ASYNC_BACKPRESSURE")));
+  }
+
+  /**
+   * Asynchronous bot.
+   *
+   * @param bot          bot that processes updates, it should not piggyback actions
+   * @param actions      consumer of replies
+   * @param queueSize    capacity of the queue
+   * @param workers      number of worker threads
+   * @param backpressure what to do when the queue is full
+   */
+  AsyncLagidnyjBot(@NotNull LagidnyjBot bot, @NotNull Consumer<JSONObject> actions, int queueSize, int workers,
+      @NotNull Backpressure backpressure) {
+    if (1 > queueSize) {
+      throw new IllegalArgumentException("Wrong queue size: " + queueSize);
+    }
+    if (1 > workers) {
+      throw new IllegalArgumentException("Wrong number of workers: " + workers);
+    }
+    this.actions = actions;
+    this.backpressure = backpressure;
+    this.bot = bot;
+    this.queue = new ArrayBlockingQueue<>(queueSize);
+    // Java 17 has no virtual threads: updates are processed by a fixed pool of platform threads
+    this.workers = new Thread[workers];
+    for (var i = 0; workers > i; i++) {
+      this.workers[i] = new Thread(this::work, "async-bot-" + (i + 1));
+      this.workers[i].setDaemon(true);
+      this.workers[i].start();
+    }
+  }
+
+  private static int intSetting(String name, int defaultValue) {
+    var value = System.getenv(name);
+
+    return (null == value || value.isBlank()) ? defaultValue : Integer.parseInt(value.strip());
+  }
+
+  /**
+   * Stop the workers, process the rest of the queue and close the bot and the action consumer.
+   *
+   * @throws Exception if the bot or the action consumer could not be closed
+   */
+  @Override
+  public void close() throws Exception {
+    closed = true;
+    for (var worker : workers) {
+      worker.interrupt();
+    }
+    for (var worker : workers) {
+      worker.join(SHUTDOWN_TIMEOUT.toMillis());
+    }
+
+    byte[] body;
+
+    while (null != (body = queue.poll())) {
+      process(body);
+    }
+    bot.close();
+    if (actions instanceof AutoCloseable closeable) {
+      closeable.close();
+    }
+  }
+
+  /**
+   * Acknowledge a webhook request and queue its update, other requests go to the bot.
+   *
+   * @param httpRequest  Telegram update
+   * @param httpResponse Telegram webhook answer
+   */
+  @Override
+  public void service(HttpRequest httpRequest, HttpResponse httpResponse) {
+    if (!HTTP_POST_METHOD.equals(httpRequest.getMethod())) {
+      bot.service(httpRequest, httpResponse);
+      return;
+    }
+
+    if (!bot.admit(httpRequest, httpResponse)) {
+      return;
+    }
+
+    byte[] body;
+    var maxBodyLength = bot.maxBodyLength();
+
+    try (var requestBody = httpRequest.getInputStream()) {
+      // the parser of this thread is reused by the next request, so the worker takes a copy
+      body = requestBody.readNBytes((int) Math.min(Integer.MAX_VALUE, maxBodyLength + 1L));
+    } catch (IOException exception) {
+      logger.warn("Could not read request body: {}", exception.getMessage());
+      internalError(httpResponse);
+      return;
+    }
+    if (maxBodyLength < body.length) {
+      bot.reject(Rejection.BodySize, httpResponse);
+      return;
+    }
+    if (submit(body)) {
+      ok(httpResponse);
+    } else {
+      bot.metrics().submission(Submission.Synchronous);
+      bot.processWebhook(new ByteArrayInputStream(body), httpResponse);
+    }
+  }
+
+  /**
+   * Put an update into the queue.
+   *
+   * @param body request body
+   * @return false if the update should be processed synchronously
+   */
+  @VisibleForTesting
+  boolean submit(byte @NotNull [] body) {
+    if (!closed && queue.offer(body)) {
+      bot.metrics().submission(Submission.Queued);
+      return true;
+    }
+    switch (closed ? Backpressure.Sync : backpressure) {
+      case Block:
+        try {
+          queue.put(body);
+          bot.metrics().submission(Submission.Queued);
+        } catch (InterruptedException exception) {
+          Thread.currentThread().interrupt();
+          return false;
+        }
+        return true;
+      case Shed:
+        bot.metrics().submission(Submission.Shed);
+        logger.warn("Shed an update, the queue is full");
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  @VisibleForTesting
+  @NotNull
+  LagidnyjBot getBot() {
+    return bot;
+  }
+
+  @VisibleForTesting
+  int getQueueSize() {
+    return queue.size();
+  }
+
+  private void work() {
+    while (!closed) {
+      try {
+        var body = queue.poll(1, TimeUnit.SECONDS);
+
+        if (null != body) {
+          process(body);
+        }
+      } catch (InterruptedException exception) {
+        break;
+      }
+    }
+  }
+
+  private void process(byte[] body) {
+    try {
+      bot.processRequestBody(new ByteArrayInputStream(body))
+          .ifPresent(reply -> actions.accept(new JSONObject(reply.toString())));
+    } catch (IOException | RuntimeException exception) {
+      if (exception instanceof JSONException) {
+        bot.metrics().parseFailure();
+      } else if (exception instanceof RuntimeException) {
+        bot.metrics().processingFailure();
+      }
+      logger.warn("Could not process update: {}", exception.getMessage());
+    }
+  }
+
+  /**
+   * What to do with a request when the queue is full.
+   */
+  enum Backpressure {
+
+    /**
+     * Wait for a free place, Telegram waits for the answer meanwhile.
+     */
+    Block,
+    /**
+     * Acknowledge the request and drop the update.
+     */
+    Shed,
+    /**
+     * Process the update in the request thread and answer it like the synchronous mode.
+     */
+    Sync;
+
+    static Backpressure fromString(@Nullable String backpressure) {
+      if (null == backpressure || backpressure.isBlank()) {
+        return Sync;
+      }
+      for (var value : values()) {
+        if (value.name().equalsIgnoreCase(backpressure.strip())) {
+          return value;
+        }
+      }
+
+      throw new IllegalArgumentException("Wrong backpressure: " + backpressure.toLowerCase(Locale.ROOT));
+    }
+
+  }
+
+}
@@ -0,0 +1,278 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import io.github.vitalijr2.lagidnyj.telegram.BotTools.ChatType;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * In-process metrics of the webhook.
+ * <p>
+ * Counters are striped {@link LongAdder}s in arrays indexed by enum ordinals, latencies go to
+ * {@link LatencyHistogram}s, so recording neither allocates nor locks. Everything is written in the Prometheus text
+ * format on request.
+ */
+class BotMetrics {
+
+  private static final String PREFIX = "lagidnyj_";
+  private static final int UNKNOWN_CHAT = ChatType.values().length;
+
+  private final LongAdder[] chats = adders(UNKNOWN_CHAT + 1);
+  private final LongAdder[] deduplications = adders(2);
+  private final LongAdder keeperEnqueues = new LongAdder();
+  private final LongAdder parseFailures = new LongAdder();
+  private final LongAdder processingFailures = new LongAdder();
+  private final LongAdder[] rejections = adders(Rejection.values().length);
+  private final LongAdder[] requests = adders(Submission.values().length);
+  private final LongAdder[] scans = adders(2);
+  private final LatencyHistogram[] stages = new LatencyHistogram[Stage.values().length];
+  private final LongAdder[] updates = adders(UpdateType.values().length);
+
+  BotMetrics() {
+    for (var i = 0; stages.length > i; i++) {
+      stages[i] = new LatencyHistogram();
+    }
+  }
+
+  private static LongAdder[] adders(int size) {
+    var adders = new LongAdder[size];
+
+    for (var i = 0; size > i; i++) {
+      adders[i] = new LongAdder();
+    }
+
+    return adders;
+  }
+
+  private static void help(StringBuilder output, String name, String type, String help) {
+    output.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+    output.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+  }
+
+  private static void sample(StringBuilder output, String name, @Nullable String labels, long value) {
+    output.append(PREFIX).append(name);
+    if (null != labels) {
+      output.append('{').append(labels).append('}');
+    }
+    output.append(' ').append(value).append('\n');
+  }
+
+  /**
+   * Write a counter without labels in the Prometheus text format.
+   *
+   * @param output output
+   * @param name   metric name without the common prefix
+   * @param help   description
+   * @param value  counter value
+   */
+  static void writeCounter(@NotNull StringBuilder output, @NotNull String name, @NotNull String help, long value) {
+    help(output, name, "counter", help);
+    sample(output, name, null, value);
+  }
+
+  /**
+   * Count an update.
+   *
+   * @param type update type
+   */
+  void update(@NotNull UpdateType type) {
+    updates[type.ordinal()].increment();
+  }
+
+  /**
+   * Count a message by the type of its chat.
+   *
+   * @param chatType chat type, null if it is unknown
+   */
+  void chat(@Nullable ChatType chatType) {
+    chats[(null == chatType) ? UNKNOWN_CHAT : chatType.ordinal()].increment();
+  }
+
+  /**
+   * Count a scan for the Russian letters.
+   *
+   * @param hit true if the letters are found
+   */
+  void scan(boolean hit) {
+    scans[hit ? 1 : 0].increment();
+  }
+
+  /**
+   * Count a check of the deduplication window.
+   *
+   * @param replay true if the update has been seen already
+   */
+  void deduplication(boolean replay) {
+    deduplications[replay ? 1 : 0].increment();
+  }
+
+  /**
+   * Count a webhook request of the asynchronous mode.
+   *
+   * @param submission how the request has been handled
+   */
+  void submission(@NotNull Submission submission) {
+    requests[submission.ordinal()].increment();
+  }
+
+  /**
+   * Count a rejected webhook request.
+   *
+   * @param rejection reason of the rejection
+   */
+  void rejection(@NotNull Rejection rejection) {
+    rejections[rejection.ordinal()].increment();
+  }
+
+  void parseFailure() {
+    parseFailures.increment();
+  }
+
+  void processingFailure() {
+    processingFailures.increment();
+  }
+
+  void keeperEnqueue() {
+    keeperEnqueues.increment();
+  }
+
+  /**
+   * Histogram of a stage.
+   *
+   * @param stage stage
+   * @return latency histogram
+   */
+  @NotNull
+  LatencyHistogram stage(@NotNull Stage stage) {
+    return stages[stage.ordinal()];
+  }
+
+  long getUpdates(@NotNull UpdateType type) {
+    return updates[type.ordinal()].sum();
+  }
+
+  long getScans(boolean hit) {
+    return scans[hit ? 1 : 0].sum();
+  }
+
+  long getDeduplications(boolean replay) {
+    return deduplications[replay ? 1 : 0].sum();
+  }
+
+  long getSubmissions(@NotNull Submission submission) {
+    return requests[submission.ordinal()].sum();
+  }
+
+  long getRejections(@NotNull Rejection rejection) {
+    return rejections[rejection.ordinal()].sum();
+  }
+
+  long getParseFailures() {
+    return parseFailures.sum();
+  }
+
+  long getProcessingFailures() {
+    return processingFailures.sum();
+  }
+
+  long getKeeperEnqueues() {
+    return keeperEnqueues.sum();
+  }
+
+  /**
+   * Write all metrics in the Prometheus text format.
+   *
+   * @param output output
+   */
+  void writePrometheus(@NotNull StringBuilder output) {
+    help(output, "updates_total", "counter", "Updates by type.");
+    for (var type : UpdateType.values()) {
+      sample(output, "updates_total", "type=\"" + type.label + "\"", updates[type.ordinal()].sum());
+    }
+    help(output, "messages_total", "counter", "Messages by chat type.");
+    for (var chatType : ChatType.values()) {
+      sample(output, "messages_total", "chat_type=\"" + chatType.name().toLowerCase(Locale.ROOT) + "\"",
+          chats[chatType.ordinal()].sum());
+    }
+    sample(output, "messages_total", "chat_type=\"unknown\"", chats[UNKNOWN_CHAT].sum());
+    help(output, "scans_total", "counter", "Scans for the Russian letters by result.");
+    sample(output, "scans_total", "result=\"hit\"", scans[1].sum());
+    sample(output, "scans_total", "result=\"miss\"", scans[0].sum());
+    help(output, "deduplications_total", "counter", "Checks of the update deduplication window by result.");
+    sample(output, "deduplications_total", "result=\"new\"", deduplications[0].sum());
+    sample(output, "deduplications_total", "result=\"replay\"", deduplications[1].sum());
+    help(output, "async_requests_total", "counter", "Webhook requests of the asynchronous mode by handling.");
+    for (var submission : Submission.values()) {
+      sample(output, "async_requests_total", "handling=\"" + submission.label + "\"",
+          requests[submission.ordinal()].sum());
+    }
+    help(output, "rejections_total", "counter", "Webhook requests rejected before processing by reason.");
+    for (var rejection : Rejection.values()) {
+      sample(output, "rejections_total", "reason=\"" + rejection.label + "\"", rejections[rejection.ordinal()].sum());
+    }
+    writeCounter(output, "parse_failures_total", "Request bodies that could not be parsed.", parseFailures.sum());
+    writeCounter(output, "processing_failures_total", "Updates that failed after parsing.",
+        processingFailures.sum());
+    writeCounter(output, "keeper_enqueues_total", "Users added to the watch list.", keeperEnqueues.sum());
+    help(output, "stage_seconds", "histogram", "Latency of processing stages.");
+    for (var stage : Stage.values()) {
+      stages[stage.ordinal()].writePrometheus(output, PREFIX + "stage_seconds", "stage=\"" + stage.label + "\"");
+    }
+  }
+
+  /**
+   * Reasons to reject a webhook request, see {@link RequestAdmission}.
+   */
+  enum Rejection {
+    Address("address"), BodySize("body_size"), ContentLength("content_length"), Malformed("malformed"),
+    SecretToken("secret_token");
+
+    private final String label;
+
+    Rejection(String label) {
+      this.label = label;
+    }
+  }
+
+  /**
+   * Processing stages with latency histograms.
+   */
+  enum Stage {
+    Keeper("keeper"), Parse("parse"), Scan("scan"), Write("write");
+
+    private final String label;
+
+    Stage(String label) {
+      this.label = label;
+    }
+  }
+
+  /**
+   * Handling of webhook requests in the asynchronous mode.
+   */
+  enum Submission {
+    Queued("queued"), Shed("shed"), Synchronous("synchronous");
+
+    private final String label;
+
+    Submission(String label) {
+      this.label = label;
+    }
+  }
+
+  /**
+   * Update types, skipped updates are answered by the pre-filter without parsing.
+   */
+  enum UpdateType {
+    ChatMember("chat_member"), EditedMessage("edited_message"), Message("message"), Other("other"),
+    Skipped("skipped"), ViaBot("via_bot");
+
+    private final String label;
+
+    UpdateType(String label) {
+      this.label = label;
+    }
+  }
+
+}
@@ -1,71 +1,127 @@
 package io.github.vitalijr2.lagidnyj.telegram;
 
-import static java.util.Objects.isNull;
-import static java.util.Objects.nonNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
 
 import com.google.cloud.functions.HttpResponse;
-import io.github.vitalijr2.lagidnyj.beans.User;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Properties;
 import java.util.function.Function;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.json.JSONException;
 import org.json.JSONObject;
-import org.json.JSONPointerException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 class BotTools {
 
   private static final String APPLICATION_JSON = "application/json;charset=utf-8";
-  private static final String EDITED_MESSAGE = "edited_message";
-  private static final String FULL_VERSION_STRING;
-  private static final String HTTP_BAD_METHOD_RESPONSE;
+  private static final String CONTENT_LENGTH = "Content-Length";
+  private static final String FULL_VERSION_STRING = fullVersionString();
   private static final Logger LOGGER = LoggerFactory.getLogger(BotTools.class);
-  private static final String MESSAGE = "message";
-  private static final Pattern MARKDOWN_ESCAPE_PATTERN = Pattern.compile("([_*\\[\\]()~>#+-=|{}.!])");
+  private static final List<String> READ_ONLY_PERMISSIONS = List.of("can_send_messages", "can_send_audios",
+      "can_send_documents", "can_send_photos", "can_send_videos", "can_send_video_notes", "can_send_voice_notes",
+      "can_send_polls", "can_send_other_messages", "can_add_web_page_previews");
   private static final String SERVER_HEADER = "Server";
   private static final String TEXT_HTML = "text/html;charset=utf-8";
+  private static final String TEXT_PROMETHEUS = "text/plain;version=0.0.4;charset=utf-8";
+  private static final String UNKNOWN = "unknown";
 
-  static {
-    var body = "";
-    var name = "unknown";
-    var version = "unknown";
+  private BotTools() {
+  }
+
+  private static String fullVersionString() {
+    var name = UNKNOWN;
+    var version = UNKNOWN;
 
     try (InputStream versionPropsStream = BotTools.class.getResourceAsStream("/bot-tools.properties")) {
       var properties = new Properties();
 
-      properties.load(versionPropsStream);
-      body = properties.getProperty("http.bad-method");
-      name = properties.getProperty("bot.name");
-      version = properties.getProperty("bot.version");
-    } catch (Exception exception) {
-      LoggerFactory.getLogger(BotTools.class).error("Could not initialize the bot tools: {}", exception.getMessage());
-      System.exit(1);
+      properties.load(requireNonNull(versionPropsStream, "bot-tools.properties not found"));
+      name = properties.getProperty("bot.name", UNKNOWN);
+      version = properties.getProperty("bot.version", UNKNOWN);
+    } catch (IOException | RuntimeException exception) {
+      LoggerFactory.getLogger(BotTools.class).warn("Could not read the bot version: {}", exception.getMessage());
     }
-    FULL_VERSION_STRING = name + " - " + version;
-    HTTP_BAD_METHOD_RESPONSE = body;
+
+    return name + " - " + version;
   }
 
-  private BotTools() {
+  /**
+   * Prefix of Bot API method URLs.
+   *
+   * @param apiUrl Bot API URL
+   * @param token  bot token
+   * @return URL prefix that ends with a slash, the method name goes after it
+   */
+  static String botUrl(@NotNull URI apiUrl, @NotNull String token) {
+    return apiUrl.toString().replaceFirst("/*$", "/bot") + requireNonNull(token) + "/";
   }
 
   /**
-   * Markdown V2 escaping.
+   * Markdown V2 escaping of normal text.
    *
    * @param text raw text
    * @return Markdown safe text
    */
   static String markdownEscaping(String text) {
-    return MARKDOWN_ESCAPE_PATTERN.matcher(text).replaceAll("\\\\$1");
+    return markdownEscaping(text, MarkdownContext.Text);
+  }
+
+  /**
+   * Markdown V2 escaping.
+   *
+   * @param text    raw text
+   * @param context where the text goes
+   * @return Markdown safe text, the same instance if nothing is escaped
+   */
+  static String markdownEscaping(@NotNull String text, @NotNull MarkdownContext context) {
+    var length = text.length();
+
+    for (var i = 0; length > i; i++) {
+      if (context.needsEscaping(text.charAt(i))) {
+        // a few escapes usually, 1/8 more is enough not to grow the builder
+        return markdownEscaping(new StringBuilder(length + (length >> 3) + 8).append(text, 0, i), text, i,
+            context).toString();
+      }
+    }
+
+    return text;
+  }
+
+  /**
+   * Markdown V2 escaping into a builder.
+   *
+   * @param output  output
+   * @param text    raw text
+   * @param context where the text goes
+   * @return the output
+   */
+  static StringBuilder markdownEscaping(@NotNull StringBuilder output, @NotNull String text,
+      @NotNull MarkdownContext context) {
+    return markdownEscaping(output, text, 0, context);
+  }
+
+  private static StringBuilder markdownEscaping(StringBuilder output, String text, int start,
+      MarkdownContext context) {
+    var length = text.length();
+
+    for (var i = start; length > i; i++) {
+      var character = text.charAt(i);
+
+      if (context.needsEscaping(character)) {
+        output.append('\\');
+      }
+      output.append(character);
+    }
+
+    return output;
   }
 
   /**
@@ -100,158 +156,182 @@ class BotTools {
    */
   static void badMethod(@NotNull HttpResponse httpResponse, String... allowedMethods) {
     httpResponse.setContentType(TEXT_HTML);
-    doResponse(httpResponse, 405, "Method Not Allowed", HTTP_BAD_METHOD_RESPONSE).getHeaders()
+    doResponse(httpResponse, 405, "Method Not Allowed", BadMethodPage.BODY).getHeaders()
         .put("Allow", List.of(allowedMethods));
   }
 
   /**
-   * &quot;Internal Server Error&quot; HTTP response.
+   * &quot;Forbidden&quot; HTTP response.
    *
    * @param httpResponse instance of HTTP response
    */
-  static void internalError(@NotNull HttpResponse httpResponse) {
-    doResponse(httpResponse, 500, "Internal Server Error", null);
+  static void forbidden(@NotNull HttpResponse httpResponse) {
+    doResponse(httpResponse, 403, "Forbidden", null);
   }
 
   /**
-   * &quot;OK&quot; HTTP response without body.
+   * &quot;Payload Too Large&quot; HTTP response.
    *
    * @param httpResponse instance of HTTP response
    */
-  static void ok(HttpResponse httpResponse) {
-    okWithBody(httpResponse, null);
+  static void payloadTooLarge(@NotNull HttpResponse httpResponse) {
+    doResponse(httpResponse, 413, "Payload Too Large", null);
   }
 
   /**
-   * &quot;OK&quot; HTTP response with body.
+   * &quot;Internal Server Error&quot; HTTP response.
    *
    * @param httpResponse instance of HTTP response
-   * @param body         response body
    */
-  static void okWithBody(HttpResponse httpResponse, String body) {
-    httpResponse.setContentType(APPLICATION_JSON);
-    doResponse(httpResponse, 200, "OK", body);
+  static void internalError(@NotNull HttpResponse httpResponse) {
+    doResponse(httpResponse, 500, "Internal Server Error", null);
   }
 
   /**
-   * Check if a Telegram message is sent via bot.
+   * &quot;Unauthorized&quot; HTTP response.
    *
-   * @param update Telegram update
-   * @return true if the message has the {@code via_bot} field.
+   * @param httpResponse instance of HTTP response
    */
-  static boolean viaBot(JSONObject update) {
-    return nonNull(update.optQuery("/message/via_bot"));
+  static void unauthorized(@NotNull HttpResponse httpResponse) {
+    doResponse(httpResponse, 401, "Unauthorized", null).appendHeader("WWW-Authenticate", "Bearer");
   }
 
   /**
-   * Check if a Telegram update is an edited message.
+   * &quot;OK&quot; HTTP response with metrics in the Prometheus text format.
    *
-   * @param update Telegram update
-   * @return true if the message has the {@code edited_message} field.
+   * @param httpResponse instance of HTTP response
+   * @param metrics      metrics
    */
-  static boolean isEditedMessage(JSONObject update) {
-    return update.has(EDITED_MESSAGE);
+  static void okWithMetrics(@NotNull HttpResponse httpResponse, @NotNull String metrics) {
+    httpResponse.setContentType(TEXT_PROMETHEUS);
+    doResponse(httpResponse, 200, "OK", metrics);
   }
 
   /**
-   * Check if a Telegram update is a message.
+   * &quot;OK&quot; HTTP response without body.
    *
-   * @param update Telegram update
-   * @return true if the update has the {@code message} field.
+   * @param httpResponse instance of HTTP response
    */
-  static boolean isMessage(JSONObject update) {
-    return update.has(MESSAGE);
+  static void ok(HttpResponse httpResponse) {
+    okWithBody(httpResponse, null);
   }
 
   /**
-   * Get chat identifier.
+   * &quot;OK&quot; HTTP response with body.
    *
-   * @param message Telegram message
-   * @return chat identifier
-   * @throws JSONPointerException if the message does not contain a chat object
+   * @param httpResponse instance of HTTP response
+   * @param body         response body
    */
-  static long getChatId(JSONObject message) throws JSONPointerException {
-    return ((Number) message.query("/chat/id")).longValue();
+  static void okWithBody(HttpResponse httpResponse, String body) {
+    httpResponse.setContentType(APPLICATION_JSON);
+    doResponse(httpResponse, 200, "OK", body);
   }
 
   /**
-   * Get type of chat.
+   * &quot;OK&quot; HTTP response with a reply that is written straight to the output stream.
    *
-   * @param message Telegram message
-   * @return type of chat
-   * @throws JSONPointerException if the message does not contain a chat object
+   * @param httpResponse instance of HTTP response
+   * @param reply        webhook reply
    */
-  static ChatType getChatType(JSONObject message) throws JSONPointerException {
-    return ChatType.fromString((String) message.query("/chat/type"));
+  static void okWithReply(@NotNull HttpResponse httpResponse, @NotNull Reply reply) {
+    httpResponse.setContentType(APPLICATION_JSON);
+    doResponse(httpResponse, 200, "OK", null).appendHeader(CONTENT_LENGTH, Integer.toString(reply.length()));
+    try {
+      reply.writeTo(httpResponse.getOutputStream());
+    } catch (IOException exception) {
+      LOGGER.warn("Could not write reply: {}", exception.getMessage());
+    }
   }
 
   /**
-   * Get an edited message.
+   * Make a Telegram message.
    *
-   * @param update Telegram update
-   * @return message
-   * @throws JSONException if an update does not contain an edited message
+   * @param chatId chat identifier
+   * @param text   Markdown text
+   * @return JSON message
+   * @see <a href="https://core.telegram.org/bots/api#markdownv2-style">Formatting options, MarkdownV2 style</a>
    */
-  @NotNull
-  static JSONObject getEditedMessage(JSONObject update) throws JSONException {
-    return update.getJSONObject(EDITED_MESSAGE);
-  }
+  static JSONObject sendMessage(long chatId, @NotNull String text) {
+    var message = new JSONObject();
 
-  /**
-   * Get a "from" user.
-   *
-   * @param message Telegram message
-   * @return user
-   */
-  @NotNull
-  static User getFrom(JSONObject message) throws JSONException {
-    var from = message.getJSONObject("from");
+    message.put("chat_id", chatId);
+    message.put("text", text);
+    message.put("parse_mode", "MarkdownV2");
 
-    return new User(from.getNumber("id").longValue(), from.getString("first_name"), from.optString("last_name", null),
-        from.optString("username", null), from.optString("language_code", null));
+    return message;
   }
 
   /**
-   * Get a message or edited message.
+   * Make a restriction of a chat member: the user can read the chat but cannot send anything.
    *
-   * @param update Telegram update
-   * @return message
-   * @throws JSONException if an update does not contain a message
+   * @param chatId    chat identifier
+   * @param userId    user identifier
+   * @param untilDate date when the restriction will be lifted, Unix time in seconds
+   * @return JSON restriction
+   * @see <a href="https://core.telegram.org/bots/api#restrictchatmember">Telegram Bot API: restrictChatMember</a>
    */
-  @NotNull
-  static JSONObject getMessage(JSONObject update) throws JSONException {
-    return update.getJSONObject(MESSAGE);
+  static JSONObject restrictChatMember(long chatId, long userId, long untilDate) {
+    var restriction = new JSONObject();
+    var permissions = new JSONObject();
+
+    READ_ONLY_PERMISSIONS.forEach(permission -> permissions.put(permission, false));
+    restriction.put("chat_id", chatId);
+    restriction.put("user_id", userId);
+    restriction.put("permissions", permissions);
+    restriction.put("use_independent_chat_permissions", true);
+    restriction.put("until_date", untilDate);
+
+    return restriction;
   }
 
   /**
-   * Take a {@code text} or {@code caption} fields from a message or an edited message.
-   *
-   * @param message Telegram message
-   * @return text value
+   * The &quot;Method Not Allowed&quot; page is read on the first bad request, not on the cold start.
    */
-  @NotNull
-  static Optional<String> getText(JSONObject message) {
-    var text = message.optString("text", message.optString("caption", null));
+  private static class BadMethodPage {
+
+    private static final String BODY = read();
+
+    private static String read() {
+      try (InputStream pageStream = BotTools.class.getResourceAsStream("/http-bad-method.html")) {
+        return new String(requireNonNull(pageStream, "http-bad-method.html not found").readAllBytes(), UTF_8);
+      } catch (IOException | RuntimeException exception) {
+        LOGGER.warn("Could not read the bad method page: {}", exception.getMessage());
+        return "405 Method Not Allowed";
+      }
+    }
 
-    return (isNull(text)) ? Optional.empty() : Optional.of(text);
   }
 
   /**
-   * Make a Telegram message.
+   * Places with different MarkdownV2 escaping rules.
    *
-   * @param chatId chat identifier
-   * @param text   Markdown text
-   * @return JSON message
    * @see <a href="https://core.telegram.org/bots/api#markdownv2-style">Formatting options, MarkdownV2 style</a>
    */
-  static JSONObject sendMessage(long chatId, @NotNull String text) {
-    var message = new JSONObject();
+  enum MarkdownContext {
+
+    /**
+     * Inside {@code pre} and {@code code} entities: backticks and backslashes.
+     */
+    Code("`\\"),
+    /**
+     * Inside the {@code (...)} part of an inline link: closing parentheses and backslashes.
+     */
+    LinkUrl(")\\"),
+    /**
+     * All other places: formatting characters and backslashes.
+     */
+    Text("_*[]()~`>#+-=|{}.!\\");
+
+    private final boolean[] escaped = new boolean[128];
+
+    MarkdownContext(String characters) {
+      characters.chars().forEach(character -> escaped[character] = true);
+    }
 
-    message.put("chat_id", chatId);
-    message.put("text", text);
-    message.put("parse_mode", "MarkdownV2");
+    boolean needsEscaping(char character) {
+      return escaped.length > character && escaped[character];
+    }
 
-    return message;
   }
 
   enum ChatType {
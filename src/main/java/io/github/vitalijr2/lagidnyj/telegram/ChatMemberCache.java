@@ -0,0 +1,418 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of chat administrators and member statuses.
+ * <p>
+ * Administrators are loaded per chat by <a href="https://core.telegram.org/bots/api#getchatadministrators">
+ * getChatAdministrators</a>, statuses of other users by <a href="https://core.telegram.org/bots/api#getchatmember">
+ * getChatMember</a>. Concurrent misses of the same entry share one request. An entry is refreshed ahead in the
+ * background when it is used after {@code refreshAhead}, and it is loaded again with waiting only after the time to
+ * live. {@code chat_member} updates put the new status of a member straight into the cache and drop the administrators
+ * of the chat if the member was or becomes one; {@code my_chat_member} updates drop everything about the chat. Telegram
+ * sends {@code chat_member} updates only if the webhook is set with them in {@code allowed_updates}.
+ * <p>
+ * When the cache is full, expired entries are dropped, and then a small batch of the oldest ones if it is still full.
+ * Entries with a load in flight stay, so that their callers keep sharing one request.
+ * <p>
+ * The cache is used by the escalation, not by the message path. A lookup that fails or takes too long is treated as an
+ * ordinary member.
+ */
+class ChatMemberCache {
+
+  /**
+   * Default maximum number of entries of each kind.
+   */
+  static final int DEFAULT_CAPACITY = 16384;
+
+  /**
+   * Default time after which an entry is refreshed in the background.
+   */
+  static final Duration DEFAULT_REFRESH_AHEAD = Duration.ofMinutes(8);
+
+  /**
+   * Default time to live of an entry.
+   */
+  static final Duration DEFAULT_TTL = Duration.ofMinutes(10);
+
+  private static final int EVICTION_SHARE = 16;
+  private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+  private final Map<Long, Entry<long[]>> administrators = new ConcurrentHashMap<>();
+  private final int capacity;
+  private final LongAdder failures = new LongAdder();
+  private final LongAdder hits = new LongAdder();
+  private final HttpClient httpClient;
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+  private final Map<Member, Entry<Status>> members = new ConcurrentHashMap<>();
+  private final LongAdder misses = new LongAdder();
+  private final long refreshAheadNanos;
+  private final LongAdder requests = new LongAdder();
+  private final LongSupplier ticker;
+  private final long ttlNanos;
+  private final String urlPrefix;
+
+  /**
+   * Cache with the default Bot API URL, capacity, refresh and time to live.
+   *
+   * @param token bot token
+   */
+  ChatMemberCache(@NotNull String token) {
+    this(ActionDispatcher.DEFAULT_API_URL, token, DEFAULT_CAPACITY, DEFAULT_REFRESH_AHEAD, DEFAULT_TTL,
+        System::nanoTime);
+  }
+
+  /**
+   * Cache.
+   *
+   * @param apiUrl       Bot API URL
+   * @param token        bot token
+   * @param capacity     maximum number of entries of each kind
+   * @param refreshAhead time after which an entry is refreshed in the background
+   * @param ttl          time to live of an entry, longer than {@code refreshAhead}
+   * @param ticker       time source in nanoseconds
+   */
+  ChatMemberCache(@NotNull URI apiUrl, @NotNull String token, int capacity, @NotNull Duration refreshAhead,
+      @NotNull Duration ttl, @NotNull LongSupplier ticker) {
+    this(apiUrl, token, capacity, refreshAhead, ttl, ticker, null);
+  }
+
+  private ChatMemberCache(URI apiUrl, String token, int capacity, Duration refreshAhead, Duration ttl,
+      LongSupplier ticker, @Nullable HttpClient httpClient) {
+    if (1 > capacity) {
+      throw new IllegalArgumentException("Wrong capacity: " + capacity);
+    }
+    if (refreshAhead.isNegative() || 0 <= refreshAhead.compareTo(ttl)) {
+      throw new IllegalArgumentException("Wrong refresh ahead: " + refreshAhead);
+    }
+    this.capacity = capacity;
+    // Java 17 has no virtual threads: a few daemon platform threads complete the asynchronous requests
+    this.httpClient = (null == httpClient) ? HttpClient.newBuilder().connectTimeout(REQUEST_TIMEOUT)
+        .executor(Executors.newFixedThreadPool(2, ActionDispatcher.daemon("chat-member-client"))).build()
+        : httpClient;
+    this.refreshAheadNanos = refreshAhead.toNanos();
+    this.ticker = ticker;
+    this.ttlNanos = ttl.toNanos();
+    this.urlPrefix = BotTools.botUrl(apiUrl, token);
+  }
+
+  /**
+   * Cache if the bot token is known.
+   *
+   * @param token bot token
+   * @return cache or null if the token is not set
+   */
+  @Nullable
+  static ChatMemberCache create(@Nullable String token) {
+    return (null == token || token.isBlank()) ? null : new ChatMemberCache(token);
+  }
+
+  /**
+   * Cache that sends requests by a shared HTTP client if the bot token is known.
+   *
+   * @param token      bot token
+   * @param httpClient shared HTTP client
+   * @return cache or null if the token is not set
+   */
+  @Nullable
+  static ChatMemberCache create(@Nullable String token, @NotNull HttpClient httpClient) {
+    return (null == token || token.isBlank()) ? null
+        : new ChatMemberCache(ActionDispatcher.DEFAULT_API_URL, token, DEFAULT_CAPACITY, DEFAULT_REFRESH_AHEAD,
+            DEFAULT_TTL, System::nanoTime, httpClient);
+  }
+
+  /**
+   * Check if a user should not be warned or restricted: an administrator, or a member that is restricted already or
+   * is not in the chat anymore. The check never waits: the future is completed at once by cached entries, otherwise by
+   * the answers of the Bot API.
+   *
+   * @param chatId chat identifier
+   * @param userId user identifier
+   * @return future that is true if escalation should skip the user, false if a lookup fails or takes too long
+   */
+  @NotNull
+  CompletableFuture<Boolean> isExempt(long chatId, long userId) {
+    return lookup(entry(administrators, chatId), () -> getChatAdministrators(chatId))
+        .thenCompose(chatAdministrators -> (0 <= Arrays.binarySearch(chatAdministrators, userId))
+            ? CompletableFuture.completedFuture(true)
+            : lookup(entry(members, new Member(chatId, userId)), () -> getChatMember(chatId, userId))
+                .thenApply(Status::isExempt))
+        .exceptionally(failure -> {
+          failures.increment();
+          logger.warn("Could not get status of user {} in chat {}: {}", userId, chatId, failure.getMessage());
+          return false;
+        });
+  }
+
+  /**
+   * Take a change of a chat member.
+   *
+   * @param chatId    chat identifier
+   * @param userId    user identifier
+   * @param oldStatus status before the change
+   * @param newStatus status after the change
+   */
+  void chatMember(long chatId, long userId, @Nullable String oldStatus, @Nullable String newStatus) {
+    var status = Status.fromString(newStatus);
+
+    entry(members, new Member(chatId, userId)).set(status, ticker.getAsLong());
+    if (status.isAdministrator() || Status.fromString(oldStatus).isAdministrator()) {
+      administrators.remove(chatId);
+    }
+    logger.debug("Status of user {} in chat {}: {}", userId, chatId, status);
+  }
+
+  /**
+   * Take a change of the bot's own membership, everything about the chat is dropped.
+   *
+   * @param chatId chat identifier
+   */
+  void myChatMember(long chatId) {
+    administrators.remove(chatId);
+    members.keySet().removeIf(member -> chatId == member.chatId());
+    logger.debug("Invalidate chat {}", chatId);
+  }
+
+  long getFailures() {
+    return failures.sum();
+  }
+
+  long getHits() {
+    return hits.sum();
+  }
+
+  long getMisses() {
+    return misses.sum();
+  }
+
+  long getRequests() {
+    return requests.sum();
+  }
+
+  private <K, T> Entry<T> entry(Map<K, Entry<T>> entries, K key) {
+    var entry = entries.get(key);
+
+    if (null == entry) {
+      if (entries.size() >= capacity) {
+        evict(entries);
+      }
+      entry = entries.computeIfAbsent(key, ignored -> new Entry<>());
+    }
+
+    return entry;
+  }
+
+  private <K, T> void evict(Map<K, Entry<T>> entries) {
+    var now = ticker.getAsLong();
+
+    entries.values().removeIf(entry -> entry.isIdle() && entry.isExpired(now));
+    if (entries.size() < capacity) {
+      return;
+    }
+
+    // a batch of the oldest entries, not all of them: the reloads would come at once otherwise
+    var batch = Math.max(1, capacity / EVICTION_SHARE);
+    var loadTimes = entries.values().stream().filter(Entry::isIdle).mapToLong(Entry::loadedAt).sorted().toArray();
+
+    if (0 == loadTimes.length) {
+      return;
+    }
+
+    var cutoff = loadTimes[Math.min(batch, loadTimes.length) - 1];
+    var removed = 0;
+
+    for (var iterator = entries.values().iterator(); iterator.hasNext() && batch > removed; ) {
+      var entry = iterator.next();
+
+      if (entry.isIdle() && cutoff >= entry.loadedAt()) {
+        iterator.remove();
+        removed++;
+      }
+    }
+  }
+
+  // the shared future of an entry is copied, so the timeout completes only this lookup
+  private <T> CompletableFuture<T> lookup(Entry<T> entry, Supplier<CompletableFuture<T>> loader) {
+    var future = entry.get(ticker.getAsLong(), loader);
+
+    if (future.isDone()) {
+      hits.increment();
+    } else {
+      misses.increment();
+    }
+
+    return future.copy().orTimeout(REQUEST_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  private CompletableFuture<long[]> getChatAdministrators(long chatId) {
+    return call("getChatAdministrators", new JSONObject().put("chat_id", chatId)).thenApply(result -> {
+      var chatMembers = result.getJSONArray("result");
+      var userIds = new long[chatMembers.length()];
+
+      for (var i = 0; userIds.length > i; i++) {
+        userIds[i] = chatMembers.getJSONObject(i).getJSONObject("user").getLong("id");
+      }
+      Arrays.sort(userIds);
+
+      return userIds;
+    });
+  }
+
+  private CompletableFuture<Status> getChatMember(long chatId, long userId) {
+    return call("getChatMember", new JSONObject().put("chat_id", chatId).put("user_id", userId))
+        .thenApply(result -> Status.fromString(result.getJSONObject("result").getString("status")));
+  }
+
+  private CompletableFuture<JSONObject> call(String method, JSONObject body) {
+    var request = HttpRequest.newBuilder(URI.create(urlPrefix + method)).header("Content-Type", "application/json")
+        .timeout(REQUEST_TIMEOUT).POST(BodyPublishers.ofString(body.toString())).build();
+
+    requests.increment();
+    logger.trace("Request {}: {}", method, body);
+
+    return httpClient.sendAsync(request, BodyHandlers.ofString()).thenApply(ChatMemberCache::result);
+  }
+
+  private static JSONObject result(HttpResponse<String> response) {
+    if (200 != response.statusCode()) {
+      throw new CompletionException(new IOException("status " + response.statusCode() + " " + response.body()));
+    }
+    try {
+      var result = new JSONObject(response.body());
+
+      if (!result.optBoolean("ok")) {
+        throw new CompletionException(new IOException("not ok " + response.body()));
+      }
+
+      return result;
+    } catch (JSONException exception) {
+      throw new CompletionException(exception);
+    }
+  }
+
+  /**
+   * Statuses of chat members, see <a href="https://core.telegram.org/bots/api#chatmember">ChatMember</a>.
+   */
+  enum Status {
+    Administrator, Creator, Kicked, Left, Member, Restricted;
+
+    /**
+     * Status by its Bot API name, unknown ones are treated as members.
+     *
+     * @param status status name
+     * @return status
+     */
+    @NotNull
+    static Status fromString(@Nullable String status) {
+      if (null != status) {
+        for (var value : values()) {
+          if (value.name().toLowerCase(Locale.ROOT).equals(status)) {
+            return value;
+          }
+        }
+      }
+
+      return Member;
+    }
+
+    boolean isAdministrator() {
+      return Administrator == this || Creator == this;
+    }
+
+    boolean isExempt() {
+      return Member != this;
+    }
+
+  }
+
+  private record Member(long chatId, long userId) {
+
+  }
+
+  /**
+   * Entry with coalesced loads: a load is started by the first caller that needs it, the others share its future.
+   */
+  private class Entry<T> {
+
+    private long loadedAt;
+    private CompletableFuture<T> pending;
+    private CompletableFuture<T> value;
+
+    synchronized CompletableFuture<T> get(long now, Supplier<CompletableFuture<T>> loader) {
+      if (isExpired(now)) {
+        return (null == pending) ? load(loader) : pending;
+      }
+      if (null == pending && now - loadedAt >= refreshAheadNanos) {
+        load(loader);
+      }
+
+      return value;
+    }
+
+    synchronized boolean isExpired(long now) {
+      return null == value || now - loadedAt >= ttlNanos;
+    }
+
+    synchronized boolean isIdle() {
+      return null == pending;
+    }
+
+    synchronized long loadedAt() {
+      return loadedAt;
+    }
+
+    synchronized void set(T result, long now) {
+      // a load that is in flight brings an older state, it is ignored
+      pending = null;
+      value = CompletableFuture.completedFuture(result);
+      loadedAt = now;
+    }
+
+    private CompletableFuture<T> load(Supplier<CompletableFuture<T>> loader) {
+      var future = loader.get();
+
+      pending = future;
+      future.whenComplete((result, failure) -> complete(future, result, failure));
+
+      return future;
+    }
+
+    private synchronized void complete(CompletableFuture<T> future, T result, Throwable failure) {
+      if (pending != future) {
+        return;
+      }
+      pending = null;
+      if (null == failure) {
+        value = future;
+        loadedAt = ticker.getAsLong();
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,115 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import io.github.vitalijr2.lagidnyj.cyrillic.CyrillicTools;
+import io.github.vitalijr2.lagidnyj.cyrillic.ScoringDetector;
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Ranges of a message text that are not scanned: URLs, mentions, e-mails, bot commands, code and quotes.
+ * <p>
+ * The ranges come from <a href="https://core.telegram.org/bots/api#messageentity">message entities</a>, their offsets
+ * and lengths are in UTF-16 code units, the same as {@link String} indexes. They are kept sorted by offset in a
+ * reusable array, scanners walk the gaps between them on the original text without copying it.
+ */
+final class EntityRanges {
+
+  private static final int INITIAL_CAPACITY = 8;
+
+  private int[] bounds = new int[INITIAL_CAPACITY << 1];
+  private int count;
+
+  /**
+   * Add a range.
+   *
+   * @param offset offset of the range
+   * @param length length of the range
+   */
+  void add(int offset, int length) {
+    if (0 > offset || 0 >= length) {
+      return;
+    }
+    if (bounds.length == count << 1) {
+      bounds = Arrays.copyOf(bounds, bounds.length << 1);
+    }
+
+    var index = count << 1;
+
+    // entities usually come in order, otherwise shift the later ones
+    while (0 < index && bounds[index - 2] > offset) {
+      bounds[index] = bounds[index - 2];
+      bounds[index + 1] = bounds[index - 1];
+      index -= 2;
+    }
+    bounds[index] = offset;
+    bounds[index + 1] = (int) Math.min(Integer.MAX_VALUE, (long) offset + length);
+    count++;
+  }
+
+  /**
+   * Number of ranges.
+   *
+   * @return number of ranges
+   */
+  int count() {
+    return count;
+  }
+
+  /**
+   * Forget all ranges.
+   */
+  void reset() {
+    count = 0;
+  }
+
+  /**
+   * Check if a text contains the Russian letters outside the ranges.
+   *
+   * @param text text
+   * @return true if any letter is found
+   */
+  boolean hasRussianLetters(@NotNull CharSequence text) {
+    var from = 0;
+    var length = text.length();
+
+    for (var i = 0; count > i && length > from; i++) {
+      var start = bounds[i << 1];
+
+      if (start > from && 0 <= CyrillicTools.indexOfRussianLetter(text, from, Math.min(start, length))) {
+        return true;
+      }
+      from = Math.max(from, bounds[(i << 1) + 1]);
+    }
+
+    return length > from && 0 <= CyrillicTools.indexOfRussianLetter(text, from, length);
+  }
+
+  /**
+   * Check if a text is Russian outside the ranges, the gaps are scored one after another up to the threshold.
+   *
+   * @param text     text
+   * @param detector scoring detector
+   * @return true if the score of the gaps reaches the threshold
+   */
+  boolean isRussian(@NotNull CharSequence text, @NotNull ScoringDetector detector) {
+    var from = 0;
+    var length = text.length();
+    var score = 0;
+    var threshold = detector.getThreshold();
+
+    for (var i = 0; count > i && length > from && threshold > score; i++) {
+      var start = bounds[i << 1];
+
+      if (start > from) {
+        score += detector.score(text, from, Math.min(start, length), threshold - score);
+      }
+      from = Math.max(from, bounds[(i << 1) + 1]);
+    }
+    if (length > from && threshold > score) {
+      score += detector.score(text, from, length, threshold - score);
+    }
+
+    return threshold <= score;
+  }
+
+}
@@ -0,0 +1,203 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import static io.github.vitalijr2.lagidnyj.telegram.BotTools.restrictChatMember;
+import static io.github.vitalijr2.lagidnyj.telegram.BotTools.sendMessage;
+
+import io.github.vitalijr2.lagidnyj.beans.ChatSettings;
+import io.github.vitalijr2.lagidnyj.beans.CoalescedNotification;
+import io.github.vitalijr2.lagidnyj.beans.DelayedChatNotification;
+import io.github.vitalijr2.lagidnyj.settings.ChatSettingsCache;
+import io.github.vitalijr2.lagidnyj.settings.ChatSettingsSource;
+import io.github.vitalijr2.lagidnyj.telegram.ReplyTemplates.Kind;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Warn-then-restrict escalation.
+ * <p>
+ * Every matured notification is a strike of the user in the chat, a burst of messages gives one strike. Strikes before
+ * {@link ChatSettings#strikesToRestrict()} give warnings, the next ones switch the user to read-only mode; each next
+ * restriction is twice as long as the previous one but not longer than {@link #MAX_RESTRICTION}. Strikes decay with
+ * time, see {@link StrikeStore}.
+ * <p>
+ * Chat settings are checked again when a notification matures: it may have been queued with the default settings of a
+ * cache miss, so a disabled chat or an exempt user is skipped here.
+ * <p>
+ * Administrators and members that are restricted already or have left the chat are skipped, see
+ * {@link ChatMemberCache}. The lookup never blocks the thread of the chat keeper: a cached status is used at once,
+ * otherwise the action is passed when the Bot API answers. The decision itself takes constant time and uses only the
+ * strike store. Actions are Bot API requests with the {@code method} field, they are passed to the action consumer.
+ */
+class EscalationEngine implements Consumer<CoalescedNotification> {
+
+  /**
+   * Default decay period of one strike.
+   */
+  static final Duration DEFAULT_DECAY = Duration.ofDays(7);
+
+  /**
+   * Default duration of the first restriction.
+   */
+  static final Duration DEFAULT_RESTRICTION = Duration.ofHours(1);
+
+  /**
+   * Maximum duration of a restriction, Telegram treats longer ones as forever.
+   */
+  static final Duration MAX_RESTRICTION = Duration.ofDays(366);
+
+  private static final String RESTRICT_CHAT_MEMBER = "restrictChatMember";
+  private static final String SEND_MESSAGE = "sendMessage";
+
+  private final Consumer<JSONObject> actions;
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+  private final ChatMemberCache members;
+  private final long restrictionSeconds;
+  private final ChatSettingsSource settings;
+  private final StrikeStore strikes;
+  private final ReplyTemplates templates;
+
+  /**
+   * Escalation with default decay and restriction, chat settings are taken from the shared cache.
+   *
+   * @param actions consumer of actions
+   */
+  EscalationEngine(@NotNull Consumer<JSONObject> actions) {
+    this(actions, null);
+  }
+
+  /**
+   * Escalation with default decay and restriction, chat settings are taken from the shared cache.
+   *
+   * @param actions consumer of actions
+   * @param members cache of chat members, null if every user is an ordinary member
+   */
+  EscalationEngine(@NotNull Consumer<JSONObject> actions, @Nullable ChatMemberCache members) {
+    this(actions, new StrikeStore(DEFAULT_DECAY, 1024), DEFAULT_RESTRICTION, ChatSettingsCache.getInstance(),
+        members);
+  }
+
+  /**
+   * Escalation with default chat settings.
+   *
+   * @param actions     consumer of actions
+   * @param strikes     strike store
+   * @param restriction duration of the first restriction, at least one minute
+   */
+  EscalationEngine(@NotNull Consumer<JSONObject> actions, @NotNull StrikeStore strikes,
+      @NotNull Duration restriction) {
+    this(actions, strikes, restriction, chatId -> ChatSettings.DEFAULT, null);
+  }
+
+  /**
+   * Escalation.
+   *
+   * @param actions     consumer of actions
+   * @param strikes     strike store
+   * @param restriction duration of the first restriction, at least one minute
+   * @param settings    source of chat settings
+   * @param members     cache of chat members, null if every user is an ordinary member
+   */
+  EscalationEngine(@NotNull Consumer<JSONObject> actions, @NotNull StrikeStore strikes,
+      @NotNull Duration restriction, @NotNull ChatSettingsSource settings,
+      @Nullable ChatMemberCache members) {
+    this(actions, strikes, restriction, settings, members, null);
+  }
+
+  /**
+   * Escalation with own reply templates.
+   *
+   * @param actions     consumer of actions
+   * @param strikes     strike store
+   * @param restriction duration of the first restriction, at least one minute
+   * @param settings    source of chat settings
+   * @param members     cache of chat members, null if every user is an ordinary member
+   * @param templates   reply templates, null for the shared ones
+   */
+  EscalationEngine(@NotNull Consumer<JSONObject> actions, @NotNull StrikeStore strikes,
+      @NotNull Duration restriction, @NotNull ChatSettingsSource settings,
+      @Nullable ChatMemberCache members, @Nullable ReplyTemplates templates) {
+    if (0 > restriction.compareTo(Duration.ofMinutes(1)) || 0 < restriction.compareTo(MAX_RESTRICTION)) {
+      throw new IllegalArgumentException("Wrong restriction: " + restriction);
+    }
+    this.actions = actions;
+    this.members = members;
+    this.restrictionSeconds = restriction.toSeconds();
+    this.settings = settings;
+    this.strikes = strikes;
+    this.templates = templates;
+  }
+
+  @Override
+  public void accept(@NotNull CoalescedNotification violations) {
+    var notification = violations.notification();
+    var chatSettings = settings.apply(notification.chatId());
+
+    if (!chatSettings.enabled() || chatSettings.isExempt(notification.userId())) {
+      logger.debug("Skip user {} of chat {} by chat settings", notification.userId(), notification.chatId());
+      return;
+    }
+    if (null == members) {
+      escalate(violations);
+      return;
+    }
+    members.isExempt(notification.chatId(), notification.userId()).thenAccept(exempt -> {
+      if (exempt) {
+        logger.debug("Skip exempt member {} of chat {}", notification.userId(), notification.chatId());
+      } else {
+        escalate(violations);
+      }
+    }).exceptionally(failure -> {
+      logger.warn("Could not escalate violations of user {} in chat {}: {}", notification.userId(),
+          notification.chatId(), failure.getMessage());
+      return null;
+    });
+  }
+
+  private void escalate(CoalescedNotification violations) {
+    var action = escalate(violations.notification(), System.currentTimeMillis());
+
+    logger.debug("Escalate {} violations: {}", violations.count(), action);
+    actions.accept(action);
+  }
+
+  /**
+   * Add a strike and decide what to do.
+   *
+   * @param notification matured notification
+   * @param now          current time in milliseconds since the epoch
+   * @return warning or restriction
+   */
+  @VisibleForTesting
+  @NotNull
+  JSONObject escalate(@NotNull DelayedChatNotification notification, long now) {
+    var strike = strikes.strike(notification.chatId(), notification.userId(), now);
+    var strikesToRestrict = settings.apply(notification.chatId()).strikesToRestrict();
+    JSONObject action;
+
+    if (0 == strikesToRestrict || strike < strikesToRestrict) {
+      action = sendMessage(notification.chatId(), ((null == templates) ? ReplyTemplates.getInstance() : templates)
+          .get(Kind.Warning, notification.languageCode()).text(notification.firstName(), notification.userId()));
+      action.put("method", SEND_MESSAGE);
+    } else {
+      action = restrictChatMember(notification.chatId(), notification.userId(),
+          TimeUnit.MILLISECONDS.toSeconds(now) + restrictionSeconds(strike - strikesToRestrict));
+      action.put("method", RESTRICT_CHAT_MEMBER);
+    }
+
+    return action;
+  }
+
+  private long restrictionSeconds(int restriction) {
+    var seconds = restrictionSeconds << Math.min(restriction, 20);
+
+    return Math.min(seconds, MAX_RESTRICTION.toSeconds());
+  }
+
+}
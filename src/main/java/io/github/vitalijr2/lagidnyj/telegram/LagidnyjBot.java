@@ -1,58 +1,231 @@
 package io.github.vitalijr2.lagidnyj.telegram;
 
 import static io.github.vitalijr2.lagidnyj.telegram.BotTools.badMethod;
-import static io.github.vitalijr2.lagidnyj.telegram.BotTools.getChatId;
-import static io.github.vitalijr2.lagidnyj.telegram.BotTools.getChatType;
-import static io.github.vitalijr2.lagidnyj.telegram.BotTools.getEditedMessage;
-import static io.github.vitalijr2.lagidnyj.telegram.BotTools.getFrom;
-import static io.github.vitalijr2.lagidnyj.telegram.BotTools.getMessage;
-import static io.github.vitalijr2.lagidnyj.telegram.BotTools.getText;
+import static io.github.vitalijr2.lagidnyj.telegram.BotTools.forbidden;
 import static io.github.vitalijr2.lagidnyj.telegram.BotTools.internalError;
-import static io.github.vitalijr2.lagidnyj.telegram.BotTools.isEditedMessage;
-import static io.github.vitalijr2.lagidnyj.telegram.BotTools.isMessage;
-import static io.github.vitalijr2.lagidnyj.telegram.BotTools.markdownEscaping;
 import static io.github.vitalijr2.lagidnyj.telegram.BotTools.ok;
-import static io.github.vitalijr2.lagidnyj.telegram.BotTools.okWithBody;
-import static io.github.vitalijr2.lagidnyj.telegram.BotTools.sendMessage;
-import static io.github.vitalijr2.lagidnyj.telegram.BotTools.viaBot;
+import static io.github.vitalijr2.lagidnyj.telegram.BotTools.okWithMetrics;
+import static io.github.vitalijr2.lagidnyj.telegram.BotTools.okWithReply;
+import static io.github.vitalijr2.lagidnyj.telegram.BotTools.payloadTooLarge;
+import static io.github.vitalijr2.lagidnyj.telegram.BotTools.unauthorized;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.cloud.functions.HttpFunction;
 import com.google.cloud.functions.HttpRequest;
 import com.google.cloud.functions.HttpResponse;
+import io.github.vitalijr2.lagidnyj.beans.ChatSettings;
+import io.github.vitalijr2.lagidnyj.beans.ChatSettings.DetectionMode;
+import io.github.vitalijr2.lagidnyj.beans.CoalescedNotification;
 import io.github.vitalijr2.lagidnyj.beans.DelayedChatNotification;
-import io.github.vitalijr2.lagidnyj.cyrillic.CyrillicTools;
+import io.github.vitalijr2.lagidnyj.cyrillic.ScoringDetector;
 import io.github.vitalijr2.lagidnyj.keeper.ChatKeeper;
+import io.github.vitalijr2.lagidnyj.keeper.CoalescingChatKeeper;
+import io.github.vitalijr2.lagidnyj.keeper.JournalChatKeeper;
+import io.github.vitalijr2.lagidnyj.settings.ChatSettingsCache;
+import io.github.vitalijr2.lagidnyj.settings.ChatSettingsSource;
+import io.github.vitalijr2.lagidnyj.telegram.BotMetrics.Rejection;
+import io.github.vitalijr2.lagidnyj.telegram.BotMetrics.Stage;
+import io.github.vitalijr2.lagidnyj.telegram.BotMetrics.UpdateType;
+import io.github.vitalijr2.lagidnyj.telegram.ReplyTemplates.Kind;
+import io.github.vitalijr2.lagidnyj.telegram.UpdateParser.BodySizeException;
 import java.io.IOException;
-import java.io.Reader;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.security.MessageDigest;
 import java.util.Optional;
+import java.util.function.Consumer;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.VisibleForTesting;
 import org.json.JSONException;
 import org.json.JSONObject;
-import org.json.JSONTokener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class LagidnyjBot implements HttpFunction {
+public class LagidnyjBot implements HttpFunction, AutoCloseable {
 
-  private static final String HELP_MESSAGE = "Більше інформації для чого цей бот та як ним користуватись в дописі про %s.";
-  private static final String BUY_ME_A_COFFEE_LINK = "[лагідну українізацію](https://buymeacoffee.com/vitalij_r2/lagidna-ukrajinizacija)";
+  static final String BOT_TOKEN = "BOT_TOKEN";
+  static final String JOURNAL_DIR = "JOURNAL_DIR";
+  static final String METRICS_TOKEN = "METRICS_TOKEN";
+  private static final String HTTP_GET_METHOD = "GET";
   private static final String HTTP_POST_METHOD = "POST";
+  private static final String METRICS_PATH = "/metrics";
+  private static final ThreadLocal<UpdateParser> UPDATE_PARSER = ThreadLocal.withInitial(UpdateParser::new);
 
+  private final RequestAdmission admission;
   private final ChatKeeper chatKeeper;
+  private final UpdateDeduplicator deduplicator = new UpdateDeduplicator();
   private final Logger logger = LoggerFactory.getLogger(getClass());
+  private final ChatMemberCache members;
+  private final BotMetrics metrics = new BotMetrics();
+  private final byte[] metricsAuthorization;
+  private final PendingActions pendingActions;
+  private final UpdatePreFilter preFilter;
+  private final ChatSettingsSource settings;
+  private final ReplyTemplates templates;
 
   public LagidnyjBot() {
-    this(null);
+    this(new PendingActions(actionConsumer(System.getenv(BOT_TOKEN))),
+        ChatMemberCache.create(System.getenv(BOT_TOKEN)));
+  }
+
+  private LagidnyjBot(PendingActions pendingActions, ChatMemberCache members) {
+    this(chatKeeper(new EscalationEngine(pendingActions, members), System.getenv(JOURNAL_DIR)), pendingActions,
+        System.getenv(METRICS_TOKEN), ChatSettingsCache.getInstance(), members, null,
+        WebhookAdmission.fromEnvironment(System.getenv()));
   }
 
   LagidnyjBot(ChatKeeper chatKeeper) {
+    this(chatKeeper, null);
+  }
+
+  LagidnyjBot(ChatKeeper chatKeeper, @Nullable PendingActions pendingActions) {
+    this(chatKeeper, pendingActions, null);
+  }
+
+  /**
+   * Bot.
+   *
+   * @param chatKeeper     keeper of the watch list
+   * @param pendingActions actions that wait for webhook responses, null if actions are not piggybacked
+   * @param metricsToken   bearer token of the metrics path, metrics are not served if it is blank
+   */
+  LagidnyjBot(ChatKeeper chatKeeper, @Nullable PendingActions pendingActions, @Nullable String metricsToken) {
+    this(chatKeeper, pendingActions, metricsToken, chatId -> ChatSettings.DEFAULT, null);
+  }
+
+  /**
+   * Bot.
+   *
+   * @param chatKeeper     keeper of the watch list
+   * @param pendingActions actions that wait for webhook responses, null if actions are not piggybacked
+   * @param metricsToken   bearer token of the metrics path, metrics are not served if it is blank
+   * @param settings       source of chat settings, it should not block
+   * @param members        cache of chat members that is kept fresh by chat member updates, optional
+   */
+  LagidnyjBot(ChatKeeper chatKeeper, @Nullable PendingActions pendingActions, @Nullable String metricsToken,
+      ChatSettingsSource settings, @Nullable ChatMemberCache members) {
+    this(chatKeeper, pendingActions, metricsToken, settings, members, null, null);
+  }
+
+  /**
+   * Bot with own reply templates and admission of webhook requests.
+   *
+   * @param chatKeeper     keeper of the watch list
+   * @param pendingActions actions that wait for webhook responses, null if actions are not piggybacked
+   * @param metricsToken   bearer token of the metrics path, metrics are not served if it is blank
+   * @param settings       source of chat settings, it should not block
+   * @param members        cache of chat members that is kept fresh by chat member updates, optional
+   * @param templates      reply templates, null for the shared ones
+   * @param admission      admission of webhook requests, null admits every request
+   */
+  LagidnyjBot(ChatKeeper chatKeeper, @Nullable PendingActions pendingActions, @Nullable String metricsToken,
+      ChatSettingsSource settings, @Nullable ChatMemberCache members, @Nullable ReplyTemplates templates,
+      @Nullable RequestAdmission admission) {
+    this.admission = (null == admission) ? RequestAdmission.ALL : admission;
     this.chatKeeper = chatKeeper;
+    this.members = members;
+    this.metricsAuthorization = (null == metricsToken || metricsToken.isBlank()) ? null
+        : ("Bearer " + metricsToken).getBytes(UTF_8);
+    this.pendingActions = pendingActions;
+    // chats with the scoring mode need updates without the Russian letters too, a chat may switch to it later
+    this.preFilter = new UpdatePreFilter(() -> settings.usesDetectionMode(DetectionMode.Scoring));
+    if (settings.usesDetectionMode(DetectionMode.Scoring)) {
+      logger.info("Some chats use the scoring mode");
+    }
+    this.settings = settings;
+    this.templates = templates;
+  }
+
+  /**
+   * Bot of one tenant with its own chat keeper, pending actions, chat settings and reply templates. The Bot API
+   * requests of all tenants go by a shared HTTP client.
+   *
+   * @param token            bot token
+   * @param metricsToken     bearer token of the metrics path, metrics are not served if it is blank
+   * @param settings         source of chat settings
+   * @param templates        reply templates
+   * @param admission        admission of webhook requests
+   * @param httpClient       shared HTTP client
+   * @param journalDirectory journal directory of the tenant, notifications are kept in memory only if it is blank
+   * @return bot
+   * @throws UncheckedIOException if the journal could not be read or created
+   */
+  static LagidnyjBot tenant(@Nullable String token, @Nullable String metricsToken,
+      @NotNull ChatSettingsSource settings, @NotNull ReplyTemplates templates, @NotNull RequestAdmission admission,
+      @NotNull HttpClient httpClient, @Nullable String journalDirectory) {
+    var members = ChatMemberCache.create(token, httpClient);
+    var pendingActions = new PendingActions(actionConsumer(token, httpClient));
+    var escalation = new EscalationEngine(pendingActions, new StrikeStore(EscalationEngine.DEFAULT_DECAY, 1024),
+        EscalationEngine.DEFAULT_RESTRICTION, settings, members, templates);
+
+    return new LagidnyjBot(chatKeeper(escalation, journalDirectory), pendingActions, metricsToken, settings, members,
+        templates, admission);
+  }
+
+  /**
+   * Send actions to the Bot API if the bot token is known, otherwise only log them.
+   *
+   * @param token bot token
+   * @return consumer of actions
+   */
+  @VisibleForTesting
+  static Consumer<JSONObject> actionConsumer(@Nullable String token) {
+    if (null == token || token.isBlank()) {
+      LoggerFactory.getLogger(LagidnyjBot.class).warn("Bot token is not set, actions will be logged only");
+      return action -> LoggerFactory.getLogger(LagidnyjBot.class).info("Action is due: {}", action);
+    }
+
+    return new ActionDispatcher(token);
+  }
+
+  /**
+   * Chat keeper that coalesces violations, it keeps pending notifications in a {@link JournalChatKeeper journal} if
+   * the directory is set, e.g. by the {@code JOURNAL_DIR} environment variable of the standalone server.
+   *
+   * @param listener         listener of matured notifications
+   * @param journalDirectory directory of the journal, notifications are kept in memory only if it is blank
+   * @return chat keeper
+   * @throws UncheckedIOException if the journal could not be read or created
+   */
+  static ChatKeeper chatKeeper(@NotNull Consumer<CoalescedNotification> listener, @Nullable String journalDirectory) {
+    if (null == journalDirectory || journalDirectory.isBlank()) {
+      return new CoalescingChatKeeper(listener);
+    }
+
+    return new CoalescingChatKeeper(listener, CoalescingChatKeeper.DEFAULT_EXPECTED_SIZE, journalListener -> {
+      try {
+        return new JournalChatKeeper(Path.of(journalDirectory.strip()), journalListener);
+      } catch (IOException exception) {
+        throw new UncheckedIOException(exception);
+      }
+    });
+  }
+
+  private static Consumer<JSONObject> actionConsumer(@Nullable String token, HttpClient httpClient) {
+    return (null == token || token.isBlank()) ? actionConsumer(token) : new ActionDispatcher(token, httpClient);
   }
 
   /**
-   * Get request body and send response back.
+   * Stop the chat keeper and deliver pending actions, it is used by the standalone server on shutdown.
+   *
+   * @throws Exception if the chat keeper or pending actions could not be closed
+   */
+  @Override
+  public void close() throws Exception {
+    if (chatKeeper instanceof AutoCloseable closeable) {
+      closeable.close();
+    }
+    if (null != pendingActions) {
+      pendingActions.close();
+    }
+  }
+
+  /**
+   * Get request body and send response back. A webhook request is checked by the {@link RequestAdmission admission}
+   * before its body is read.
    *
    * @param httpRequest  Telegram update
    * @param httpResponse Telegram webhook answer
@@ -63,13 +236,24 @@ public class LagidnyjBot implements HttpFunction {
   @Override
   public void service(HttpRequest httpRequest, HttpResponse httpResponse) {
     if (HTTP_POST_METHOD.equals(httpRequest.getMethod())) {
+      if (!admit(httpRequest, httpResponse)) {
+        return;
+      }
       try {
-        processRequestBody(httpRequest.getReader()).ifPresentOrElse(body -> okWithBody(httpResponse, body),
-            () -> ok(httpResponse));
-      } catch (IOException | JSONException exception) {
+        processWebhook(httpRequest.getInputStream(), httpResponse);
+      } catch (IOException exception) {
+        metrics.parseFailure();
         logger.warn("Could not parse request body: {}", exception.getMessage());
         internalError(httpResponse);
       }
+    } else if (isMetricsRequest(httpRequest)) {
+      if (isAuthorized(httpRequest)) {
+        okWithMetrics(httpResponse, getMetrics());
+      } else {
+        logger.warn("Unauthorized request of metrics: {}",
+            httpRequest.getFirstHeader("X-Forwarded-For").orElse("address not known"));
+        unauthorized(httpResponse);
+      }
     } else {
       logger.warn("Method {} isn't implemented: {}", httpRequest.getMethod(),
           httpRequest.getFirstHeader("X-Forwarded-For").orElse("address not known"));
@@ -78,24 +262,158 @@ public class LagidnyjBot implements HttpFunction {
   }
 
   /**
-   * If the Telegram update is a regular message or an inline query, pass it to the appropriate method:
-   * {@link #processMessage(JSONObject)}.
+   * Check a webhook request by the admission, a rejected request is answered at once.
+   *
+   * @param httpRequest  webhook request
+   * @param httpResponse Telegram webhook answer
+   * @return true if the request is admitted
+   */
+  boolean admit(@NotNull HttpRequest httpRequest, @NotNull HttpResponse httpResponse) {
+    var rejection = admission.admit(httpRequest);
+
+    if (null == rejection) {
+      return true;
+    }
+    logger.debug("Reject request: {}", rejection);
+    reject(rejection, httpResponse);
+
+    return false;
+  }
+
+  /**
+   * Answer a rejected webhook request with a fixed response. A malformed body is answered with "OK", otherwise
+   * Telegram would deliver it again and again.
+   *
+   * @param rejection    reason of the rejection
+   * @param httpResponse Telegram webhook answer
+   */
+  void reject(@NotNull Rejection rejection, @NotNull HttpResponse httpResponse) {
+    metrics.rejection(rejection);
+    switch (rejection) {
+      case Address:
+      case SecretToken:
+        forbidden(httpResponse);
+        break;
+      case BodySize:
+      case ContentLength:
+        payloadTooLarge(httpResponse);
+        break;
+      default:
+        ok(httpResponse);
+    }
+  }
+
+  /**
+   * Maximum length of a webhook request body.
+   *
+   * @return number of bytes
+   */
+  int maxBodyLength() {
+    return admission.maxBodyLength();
+  }
+
+  /**
+   * Process a webhook request and answer it.
+   *
+   * @param requestBody  request body
+   * @param httpResponse Telegram webhook answer
+   */
+  void processWebhook(@NotNull InputStream requestBody, @NotNull HttpResponse httpResponse) {
+    try {
+      var answer = processRequestBody(requestBody);
+      var startTime = System.nanoTime();
+
+      answer.ifPresentOrElse(reply -> okWithReply(httpResponse, reply), () -> ok(httpResponse));
+      metrics.stage(Stage.Write).recordSince(startTime);
+    } catch (BodySizeException exception) {
+      logger.debug("Reject request: {}", Rejection.BodySize);
+      reject(Rejection.BodySize, httpResponse);
+    } catch (JSONException exception) {
+      metrics.parseFailure();
+      logger.warn("Could not parse request body: {}", exception.getMessage());
+      reject(Rejection.Malformed, httpResponse);
+    } catch (IOException exception) {
+      metrics.parseFailure();
+      logger.warn("Could not read request body: {}", exception.getMessage());
+      internalError(httpResponse);
+    } catch (RuntimeException exception) {
+      metrics.processingFailure();
+      logger.warn("Could not process request body: {}", exception.getMessage(), exception);
+      internalError(httpResponse);
+    }
+  }
+
+  /**
+   * If the Telegram update is a regular message or an edited message, pass it to the appropriate method:
+   * {@link #processMessage(UpdateView)}; changes of chat members go to {@link #processChatMember(UpdateView)}.
+   * <p>
+   * Updates that surely have neither Russian letters nor a private chat are answered without parsing, see
+   * {@link UpdatePreFilter}, unless some chats have pending actions. If there is no other answer, the next pending
+   * action of the update's chat is returned, see {@link PendingActions}. Repeated deliveries of an update are
+   * answered right after parsing, see {@link UpdateDeduplicator}. An update that fails is forgotten by the window, so
+   * that Telegram can deliver it again.
    *
-   * @param requestBodyReader request body
+   * @param requestBody request body
    * @return webhook answer if available
+   * @throws IOException if the request body could not be read or it is longer than the limit of the admission
    */
   @VisibleForTesting
   @NotNull
-  Optional<String> processRequestBody(Reader requestBodyReader) {
-    var update = new JSONObject(new JSONTokener(requestBodyReader));
-    var result = Optional.<String>empty();
+  Optional<Reply> processRequestBody(InputStream requestBody) throws IOException {
+    var parser = UPDATE_PARSER.get();
+
+    parser.read(requestBody, admission.maxBodyLength());
+
+    var piggyback = null != pendingActions && pendingActions.hasPending();
+
+    if (!piggyback && !preFilter.test(parser.buffer(), parser.length())) {
+      metrics.update(UpdateType.Skipped);
+      logger.trace("Skip update without Russian letters");
+      return Optional.empty();
+    }
+
+    var startTime = System.nanoTime();
+    var update = parser.parseUpdate();
+
+    metrics.stage(Stage.Parse).recordSince(startTime);
 
-    if (viaBot(update)) {
+    var replay = deduplicator.isReplay(update.getUpdateId());
+
+    metrics.deduplication(replay);
+    if (replay) {
+      logger.debug("Skip replay of update {}", update.getUpdateId());
+      return Optional.empty();
+    }
+    Optional<Reply> result;
+
+    try {
+      result = processUpdate(update);
+    } catch (RuntimeException exception) {
+      deduplicator.forget(update.getUpdateId());
+      throw exception;
+    }
+    if (piggyback && result.isEmpty() && update.hasChatId()) {
+      result = pendingActions.poll(update.getChatId()).map(JSONObject::toString).map(Reply::of);
+      result.ifPresent(action -> logger.trace("Piggyback action: {}", action));
+    }
+
+    return result;
+  }
+
+  private Optional<Reply> processUpdate(UpdateView update) {
+    var result = Optional.<Reply>empty();
+
+    if (update.viaBot()) {
+      metrics.update(UpdateType.ViaBot);
       logger.trace("Ignore message of another bot");
-    } else if (isMessage(update)) {
-      result = Optional.ofNullable(processMessage(getMessage(update)));
-    } else if (isEditedMessage(update)) {
-      result = Optional.ofNullable(processMessage(getEditedMessage(update)));
+    } else if (update.isMessage() || update.isEditedMessage()) {
+      metrics.update(update.isMessage() ? UpdateType.Message : UpdateType.EditedMessage);
+      result = Optional.ofNullable(processMessage(update));
+    } else if (update.isChatMember() || update.isMyChatMember()) {
+      metrics.update(UpdateType.ChatMember);
+      processChatMember(update);
+    } else {
+      metrics.update(UpdateType.Other);
     }
 
     return result;
@@ -105,37 +423,54 @@ public class LagidnyjBot implements HttpFunction {
    * Process <a href="https://core.telegram.org/bots/api#message">a message</a> or an edited message.
    * <p>
    * It takes {@code text} or {@code caption}, and then looks it for the Cyrillic letters <strong>ё</strong>,
-   * <strong>ъ</strong>, <strong>ы</strong> and <strong>э</strong>.
+   * <strong>ъ</strong>, <strong>ы</strong> and <strong>э</strong>. URLs, mentions, e-mails, bot commands, code and
+   * quotes marked by the message entities are skipped. If there are none and the chat uses
+   * {@link DetectionMode#Scoring the scoring mode}, the text is scored by Russian words and trigrams. Messages of chats
+   * disabled in their settings and of exempt users are not scanned.
    *
    * @param message Telegram message
    * @return warning for a user, restriction if some warnings have sent before or null
    */
   @VisibleForTesting
   @Nullable
-  String processMessage(JSONObject message) {
-    logger.trace(message.toString());
-    String reply = null;
+  Reply processMessage(UpdateView message) {
+    logger.trace("Process message: {}", message);
+    Reply reply = null;
     try {
-      switch (getChatType(message)) {
+      var chatType = message.getChatType();
+
+      metrics.chat(chatType);
+      switch (chatType) {
         case Channel:
           // do nothing
           break;
         case Private:
-          var helpMessage = sendMessage(getChatId(message),
-              String.format(markdownEscaping(HELP_MESSAGE), BUY_ME_A_COFFEE_LINK));
-
-          logger.info("help message: {}", helpMessage);
-          helpMessage.put("method", "sendMessage");
-          reply = helpMessage.toString();
+          reply = templates().get(Kind.Help, message.getLanguageCode()).reply(message.getChatId());
+          logger.info("help message: {}", reply);
           break;
         default:
-          getText(message).map(CyrillicTools::hasRussianLetters).ifPresent(hasRussianLetters -> {
+          var chatSettings = settings.apply(message.getChatId());
+
+          if (!chatSettings.enabled()) {
+            logger.trace("Skip message of disabled chat");
+            break;
+          }
+          message.getText().ifPresent(text -> {
+            var startTime = System.nanoTime();
+            var excludedRanges = message.getExcludedRanges();
+            var hasRussianLetters = excludedRanges.hasRussianLetters(text)
+                || (DetectionMode.Scoring == chatSettings.detectionMode()
+                && excludedRanges.isRussian(text, ScoringDetector.getInstance()));
+
+            metrics.stage(Stage.Scan).recordSince(startTime);
+            metrics.scan(hasRussianLetters);
             if (hasRussianLetters) {
-              addUserToWatchList(message);
+              addUserToWatchList(message, chatSettings);
             }
           });
       }
     } catch (JSONException exception) {
+      metrics.parseFailure();
       logger.warn("Could not parse message: {}", exception.getMessage());
     }
 
@@ -143,18 +478,115 @@ public class LagidnyjBot implements HttpFunction {
   }
 
   /**
-   * Add user to a watching list.
+   * Pass a <a href="https://core.telegram.org/bots/api#chatmemberupdated">change of a chat member</a> to the chat
+   * member cache.
+   *
+   * @param update Telegram update with {@code chat_member} or {@code my_chat_member}
+   */
+  @VisibleForTesting
+  void processChatMember(UpdateView update) {
+    if (null == members) {
+      return;
+    }
+    try {
+      if (update.isMyChatMember()) {
+        members.myChatMember(update.getChatId());
+      } else {
+        members.chatMember(update.getChatId(), update.getMemberId(), update.getOldMemberStatus(),
+            update.getNewMemberStatus());
+      }
+    } catch (JSONException exception) {
+      metrics.parseFailure();
+      logger.warn("Could not parse chat member: {}", exception.getMessage());
+    }
+  }
+
+  /**
+   * Add user to a watching list, exempt users are skipped.
    *
-   * @param update Telegram update
+   * @param message      Telegram message
+   * @param chatSettings settings of the message's chat
    */
   @VisibleForTesting
   @SuppressWarnings("PMD.UncommentedEmptyMethodBody")
-  void addUserToWatchList(JSONObject update) {
-    var russianSpeaker = getFrom(update);
-    var notification = new DelayedChatNotification(getChatId(update), russianSpeaker.id(), russianSpeaker.firstName(),
-        russianSpeaker.lastName(), russianSpeaker.username(), russianSpeaker.languageCode());
+  void addUserToWatchList(UpdateView message, ChatSettings chatSettings) {
+    var russianSpeaker = message.getFrom();
+
+    if (chatSettings.isExempt(russianSpeaker.id())) {
+      logger.trace("Skip exempt user {}", russianSpeaker.id());
+      return;
+    }
+
+    var notification = new DelayedChatNotification(message.getChatId(), russianSpeaker.id(),
+        russianSpeaker.firstName(), russianSpeaker.lastName(), russianSpeaker.username(),
+        russianSpeaker.languageCode(), chatSettings.secondsOfDelay());
     logger.trace("Add user to watch list: {}", notification);
+
+    var startTime = System.nanoTime();
+
     chatKeeper.addUserToWatchList(notification);
+    metrics.stage(Stage.Keeper).recordSince(startTime);
+    metrics.keeperEnqueue();
+  }
+
+  /**
+   * Metrics in the Prometheus text format.
+   *
+   * @return metrics
+   */
+  @VisibleForTesting
+  @NotNull
+  String getMetrics() {
+    var output = new StringBuilder(16384);
+
+    metrics.writePrometheus(output);
+    BotMetrics.writeCounter(output, "prefilter_passed_total", "Request bodies passed to the full processing.",
+        preFilter.getPassed());
+    BotMetrics.writeCounter(output, "prefilter_short_circuited_total", "Request bodies answered without parsing.",
+        preFilter.getShortCircuited());
+    if (null != pendingActions) {
+      BotMetrics.writeCounter(output, "actions_piggybacked_total", "Actions sent with webhook responses.",
+          pendingActions.getPiggybacked());
+      BotMetrics.writeCounter(output, "actions_handed_off_total", "Actions handed off to the dispatcher.",
+          pendingActions.getHandedOff());
+    }
+    if (null != members) {
+      BotMetrics.writeCounter(output, "member_lookups_cached_total", "Chat member lookups answered by the cache.",
+          members.getHits());
+      BotMetrics.writeCounter(output, "member_lookups_waited_total", "Chat member lookups that waited for a request.",
+          members.getMisses());
+      BotMetrics.writeCounter(output, "member_requests_total", "Bot API requests of chat members.",
+          members.getRequests());
+      BotMetrics.writeCounter(output, "member_failures_total", "Chat member lookups that failed.",
+          members.getFailures());
+    }
+
+    return output.toString();
+  }
+
+  @VisibleForTesting
+  BotMetrics metrics() {
+    return metrics;
+  }
+
+  private ReplyTemplates templates() {
+    return (null == templates) ? ReplyTemplates.getInstance() : templates;
+  }
+
+  private boolean isMetricsRequest(HttpRequest httpRequest) {
+    if (null == metricsAuthorization || !HTTP_GET_METHOD.equals(httpRequest.getMethod())) {
+      return false;
+    }
+
+    var path = httpRequest.getPath();
+
+    return null != path && path.endsWith(METRICS_PATH);
+  }
+
+  private boolean isAuthorized(HttpRequest httpRequest) {
+    // constant-time comparison does not reveal how much of the token is right
+    return MessageDigest.isEqual(metricsAuthorization,
+        httpRequest.getFirstHeader("Authorization").orElse("").getBytes(UTF_8));
   }
 
 }
@@ -0,0 +1,131 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import java.util.concurrent.atomic.LongAdder;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Lock-free latency histogram with exponential buckets.
+ * <p>
+ * The upper bound of the bucket {@code k} is {@code 1024 << k} nanoseconds, about a microsecond times a power of two,
+ * the last bucket takes everything above 8.6 seconds. The bucket is found by counting leading zeros, so recording
+ * costs a shift, an array access and two striped increments without allocation or locks.
+ */
+class LatencyHistogram {
+
+  /**
+   * Number of buckets with a finite upper bound.
+   */
+  static final int BUCKETS = 24;
+
+  private static final int FIRST_BOUND_SHIFT = 10;
+
+  private final LongAdder[] counts = new LongAdder[BUCKETS + 1];
+  private final LongAdder sum = new LongAdder();
+
+  LatencyHistogram() {
+    for (var i = 0; counts.length > i; i++) {
+      counts[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Bucket of a duration.
+   *
+   * @param nanos duration in nanoseconds
+   * @return bucket index, {@link #BUCKETS} is the overflow bucket
+   */
+  static int bucket(long nanos) {
+    if (nanos <= 1L << FIRST_BOUND_SHIFT) {
+      return 0;
+    }
+
+    return Math.min(BUCKETS, Long.SIZE - Long.numberOfLeadingZeros((nanos - 1) >>> FIRST_BOUND_SHIFT));
+  }
+
+  /**
+   * Upper bound of a bucket.
+   *
+   * @param bucket bucket index less than {@link #BUCKETS}
+   * @return bound in nanoseconds
+   */
+  static long upperBound(int bucket) {
+    return 1L << (FIRST_BOUND_SHIFT + bucket);
+  }
+
+  /**
+   * Record a duration.
+   *
+   * @param nanos duration in nanoseconds, negative values are counted as zero
+   */
+  void record(long nanos) {
+    var duration = Math.max(0, nanos);
+
+    counts[bucket(duration)].increment();
+    sum.add(duration);
+  }
+
+  /**
+   * Record the time passed since the start.
+   *
+   * @param startNanos start time from {@link System#nanoTime()}
+   */
+  void recordSince(long startNanos) {
+    record(System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Number of recorded durations in a bucket.
+   *
+   * @param bucket bucket index
+   * @return counter value
+   */
+  long count(int bucket) {
+    return counts[bucket].sum();
+  }
+
+  /**
+   * Number of recorded durations.
+   *
+   * @return counter value
+   */
+  long count() {
+    var total = 0L;
+
+    for (var count : counts) {
+      total += count.sum();
+    }
+
+    return total;
+  }
+
+  /**
+   * Sum of recorded durations.
+   *
+   * @return sum in nanoseconds
+   */
+  long sum() {
+    return sum.sum();
+  }
+
+  /**
+   * Write the histogram in the Prometheus text format: cumulative buckets in seconds, the sum and the count.
+   *
+   * @param output output
+   * @param name   metric name
+   * @param labels labels without braces, e.g. {@code stage="parse"}
+   */
+  void writePrometheus(@NotNull StringBuilder output, @NotNull String name, @NotNull String labels) {
+    var cumulative = 0L;
+
+    for (var i = 0; BUCKETS > i; i++) {
+      cumulative += count(i);
+      output.append(name).append("_bucket{").append(labels).append(",le=\"").append(upperBound(i) / 1e9)
+          .append("\"} ").append(cumulative).append('\n');
+    }
+    cumulative += count(BUCKETS);
+    output.append(name).append("_bucket{").append(labels).append(",le=\"+Inf\"} ").append(cumulative).append('\n');
+    output.append(name).append("_sum{").append(labels).append("} ").append(sum() / 1e9).append('\n');
+    output.append(name).append("_count{").append(labels).append("} ").append(cumulative).append('\n');
+  }
+
+}
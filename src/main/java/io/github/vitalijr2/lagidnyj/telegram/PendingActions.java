@@ -0,0 +1,188 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Actions waiting for a webhook response.
+ * <p>
+ * Telegram accepts one Bot API request as the body of a webhook response. An action is held in the lock-free queue of
+ * its chat for a short time: if an update from the same chat arrives meanwhile, the action goes back with the
+ * webhook response and saves an outbound request. Otherwise it is handed off to the fallback consumer, usually
+ * {@link ActionDispatcher}. Either way an action is delivered once: the webhook and the hand-off race for it with a
+ * compare-and-set.
+ */
+class PendingActions implements Consumer<JSONObject>, AutoCloseable {
+
+  /**
+   * Default time to wait for an update from the chat.
+   */
+  static final Duration DEFAULT_HOLD = Duration.ofSeconds(2);
+
+  private final Map<Long, Queue<Pending>> chats = new ConcurrentHashMap<>();
+  private final Consumer<JSONObject> fallback;
+  private final LongAdder handedOff = new LongAdder();
+  private final long holdMillis;
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+  private final AtomicInteger pending = new AtomicInteger();
+  private final LongAdder piggybacked = new LongAdder();
+  private final ScheduledExecutorService scheduler;
+
+  /**
+   * Pending actions with default hold time.
+   *
+   * @param fallback consumer of actions that are not taken by webhook responses
+   */
+  PendingActions(@NotNull Consumer<JSONObject> fallback) {
+    this(fallback, DEFAULT_HOLD);
+  }
+
+  /**
+   * Pending actions.
+   *
+   * @param fallback consumer of actions that are not taken by webhook responses
+   * @param hold     time to wait for an update from the chat
+   */
+  PendingActions(@NotNull Consumer<JSONObject> fallback, @NotNull Duration hold) {
+    if (hold.isNegative()) {
+      throw new IllegalArgumentException("Wrong hold time: " + hold);
+    }
+    this.fallback = fallback;
+    this.holdMillis = hold.toMillis();
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      var thread = new Thread(runnable, "pending-actions");
+
+      thread.setDaemon(true);
+
+      return thread;
+    });
+  }
+
+  /**
+   * Hold an action.
+   *
+   * @param action Bot API request with the {@code method} and {@code chat_id} fields
+   */
+  @Override
+  public void accept(@NotNull JSONObject action) {
+    var chatId = action.getLong("chat_id");
+    var item = new Pending(chatId, action);
+
+    pending.incrementAndGet();
+    chats.computeIfAbsent(chatId, key -> new ConcurrentLinkedQueue<>()).offer(item);
+    scheduler.schedule(() -> handOff(item), holdMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Check if any chat has pending actions.
+   *
+   * @return true if there are pending actions
+   */
+  boolean hasPending() {
+    return 0 < pending.get();
+  }
+
+  /**
+   * Take the next action of the chat.
+   *
+   * @param chatId chat identifier
+   * @return action if available
+   */
+  @NotNull
+  Optional<JSONObject> poll(long chatId) {
+    var queue = chats.get(chatId);
+
+    if (null == queue) {
+      return Optional.empty();
+    }
+    for (var item = queue.poll(); null != item; item = queue.poll()) {
+      if (item.claim()) {
+        pending.decrementAndGet();
+        piggybacked.increment();
+        return Optional.of(item.action());
+      }
+    }
+    removeIfEmpty(chatId, queue);
+
+    return Optional.empty();
+  }
+
+  long getPiggybacked() {
+    return piggybacked.sum();
+  }
+
+  long getHandedOff() {
+    return handedOff.sum();
+  }
+
+  /**
+   * Hand off all pending actions to the fallback consumer now and close it if it is closeable.
+   *
+   * @throws Exception if the fallback consumer could not be closed
+   */
+  @Override
+  public void close() throws Exception {
+    scheduler.shutdownNow();
+    // cancelled hand-offs do not run, hand off the rest now
+    chats.values().forEach(queue -> queue.forEach(this::handOff));
+    chats.clear();
+    if (fallback instanceof AutoCloseable closeable) {
+      closeable.close();
+    }
+  }
+
+  private void handOff(Pending item) {
+    if (!item.claim()) {
+      return;
+    }
+    pending.decrementAndGet();
+    handedOff.increment();
+
+    var queue = chats.get(item.chatId());
+
+    if (null != queue) {
+      queue.remove(item);
+      removeIfEmpty(item.chatId(), queue);
+    }
+    try {
+      fallback.accept(item.action());
+    } catch (RuntimeException exception) {
+      logger.warn("Could not hand off action {}: {}", item.action(), exception.getMessage());
+    }
+  }
+
+  private void removeIfEmpty(long chatId, Queue<Pending> queue) {
+    // an action that is added to the removed queue is still handed off
+    if (queue.isEmpty()) {
+      chats.remove(chatId, queue);
+    }
+  }
+
+  private record Pending(long chatId, JSONObject action, AtomicBoolean taken) {
+
+    Pending(long chatId, JSONObject action) {
+      this(chatId, action, new AtomicBoolean());
+    }
+
+    boolean claim() {
+      return taken.compareAndSet(false, true);
+    }
+
+  }
+
+}
@@ -0,0 +1,61 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Webhook answer: a Bot API request as UTF-8 encoded JSON.
+ * <p>
+ * The length is known before the body is written, so the response has {@code Content-Length}.
+ */
+interface Reply {
+
+  /**
+   * Reply of a ready JSON string, e.g. a piggybacked action.
+   *
+   * @param json Bot API request
+   * @return reply
+   */
+  @NotNull
+  static Reply of(@NotNull String json) {
+    return new JsonReply(json, json.getBytes(UTF_8));
+  }
+
+  /**
+   * Length of the body.
+   *
+   * @return number of bytes
+   */
+  int length();
+
+  /**
+   * Write the body.
+   *
+   * @param output output stream
+   * @throws IOException if the body could not be written
+   */
+  void writeTo(@NotNull OutputStream output) throws IOException;
+
+  record JsonReply(String json, byte[] bytes) implements Reply {
+
+    @Override
+    public int length() {
+      return bytes.length;
+    }
+
+    @Override
+    public void writeTo(@NotNull OutputStream output) throws IOException {
+      output.write(bytes);
+    }
+
+    @Override
+    public String toString() {
+      return json;
+    }
+
+  }
+
+}
@@ -0,0 +1,209 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import static io.github.vitalijr2.lagidnyj.telegram.BotTools.markdownEscaping;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import io.github.vitalijr2.lagidnyj.telegram.BotTools.MarkdownContext;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.regex.Pattern;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONObject;
+
+/**
+ * Precompiled {@code sendMessage} request.
+ * <p>
+ * The text is escaped for Markdown V2 and for JSON, and encoded to UTF-8 once. A reply only splices the chat
+ * identifier and the user mention between the ready byte arrays.
+ */
+class ReplyTemplate {
+
+  /**
+   * Placeholder of the link to the post.
+   */
+  static final String LINK = "{link}";
+
+  /**
+   * Placeholder of the user mention.
+   */
+  static final String USER = "{user}";
+
+  private static final byte[] CHAT_ID = "{\"method\":\"sendMessage\",\"chat_id\":".getBytes(UTF_8);
+  private static final byte[] NO_MENTION = new byte[0];
+  private static final String PARSE_MODE = "\",\"parse_mode\":\"MarkdownV2\"}";
+  private static final String TEXT = ",\"text\":\"";
+  private static final String USER_LINK = "](tg://user?id=";
+  // brackets, the link and the longest identifier with a few escapes
+  private static final int USER_MENTION_LENGTH = USER_LINK.length() + 32;
+  private static final String USER_PATTERN = Pattern.quote(USER);
+
+  private final byte[] head;
+  private final String prefix;
+  private final String suffix;
+  private final byte[] tail;
+  private final boolean userMention;
+
+  private ReplyTemplate(String prefix, @Nullable String suffix) {
+    this.head = (TEXT + jsonEscaping(prefix)).getBytes(UTF_8);
+    this.prefix = prefix;
+    this.suffix = (null == suffix) ? "" : suffix;
+    this.tail = (jsonEscaping(this.suffix) + PARSE_MODE).getBytes(UTF_8);
+    this.userMention = null != suffix;
+  }
+
+  /**
+   * Compile a template.
+   *
+   * @param text plain text with the optional {@link #LINK} and {@link #USER} placeholders
+   * @param link Markdown link that replaces {@link #LINK}
+   * @return template
+   */
+  @NotNull
+  static ReplyTemplate compile(@NotNull String text, @NotNull String link) {
+    var parts = text.split(USER_PATTERN, 2);
+
+    return new ReplyTemplate(markdown(parts[0], link), (1 < parts.length) ? markdown(parts[1], link) : null);
+  }
+
+  private static String markdown(String text, String link) {
+    var markdown = new StringBuilder();
+    var start = 0;
+
+    for (var index = text.indexOf(LINK); -1 < index; index = text.indexOf(LINK, start)) {
+      markdown.append(markdownEscaping(text.substring(start, index))).append(link);
+      start = index + LINK.length();
+    }
+
+    return markdown.append(markdownEscaping(text.substring(start))).toString();
+  }
+
+  private static String jsonEscaping(String text) {
+    var quoted = JSONObject.quote(text);
+
+    return quoted.substring(1, quoted.length() - 1);
+  }
+
+  private static String mention(String firstName, long userId) {
+    var mention = new StringBuilder(firstName.length() + USER_MENTION_LENGTH);
+
+    return markdownEscaping(mention.append('['), firstName, MarkdownContext.Text).append(USER_LINK).append(userId)
+        .append(')').toString();
+  }
+
+  /**
+   * Length of a number in the decimal notation.
+   *
+   * @param value number
+   * @return number of characters including the minus sign
+   */
+  static int decimalLength(long value) {
+    var length = (0 > value) ? 2 : 1;
+
+    for (var rest = value / 10; 0 != rest; rest /= 10) {
+      length++;
+    }
+
+    return length;
+  }
+
+  /**
+   * Write a number in the decimal notation without making a string.
+   *
+   * @param output output stream
+   * @param value  number
+   * @throws IOException if the number could not be written
+   */
+  static void writeDecimal(@NotNull OutputStream output, long value) throws IOException {
+    var divisor = 1L;
+
+    if (0 > value) {
+      output.write('-');
+    }
+    for (var rest = value / 10; 0 != rest; rest /= 10) {
+      divisor *= 10;
+    }
+    for (; 0 < divisor; divisor /= 10) {
+      output.write('0' + Math.abs((int) (value / divisor % 10)));
+    }
+  }
+
+  /**
+   * Check if the template has the user mention.
+   *
+   * @return true if the text has the {@link #USER} placeholder
+   */
+  boolean hasUserMention() {
+    return userMention;
+  }
+
+  /**
+   * Markdown text for a Bot API request that is made as a JSON object.
+   *
+   * @param firstName first name of the user
+   * @param userId    user identifier
+   * @return Markdown text
+   */
+  @NotNull
+  String text(@NotNull String firstName, long userId) {
+    if (!userMention) {
+      return prefix;
+    }
+
+    return prefix + mention(firstName, userId) + suffix;
+  }
+
+  /**
+   * Reply without the user mention.
+   *
+   * @param chatId chat identifier
+   * @return reply
+   */
+  @NotNull
+  Reply reply(long chatId) {
+    if (userMention) {
+      throw new IllegalStateException("The template needs a user mention");
+    }
+
+    return new TemplateReply(this, chatId, NO_MENTION);
+  }
+
+  /**
+   * Reply with the user mention.
+   *
+   * @param chatId    chat identifier
+   * @param firstName first name of the user
+   * @param userId    user identifier
+   * @return reply
+   */
+  @NotNull
+  Reply reply(long chatId, @NotNull String firstName, long userId) {
+    return new TemplateReply(this, chatId,
+        userMention ? jsonEscaping(mention(firstName, userId)).getBytes(UTF_8) : NO_MENTION);
+  }
+
+  private record TemplateReply(ReplyTemplate template, long chatId, byte[] mention) implements Reply {
+
+    @Override
+    public int length() {
+      return CHAT_ID.length + decimalLength(chatId) + template.head.length + mention.length + template.tail.length;
+    }
+
+    @Override
+    public void writeTo(@NotNull OutputStream output) throws IOException {
+      output.write(CHAT_ID);
+      writeDecimal(output, chatId);
+      output.write(template.head);
+      output.write(mention);
+      output.write(template.tail);
+    }
+
+    @Override
+    public String toString() {
+      return new String(CHAT_ID, UTF_8) + chatId + new String(template.head, UTF_8) + new String(mention, UTF_8)
+          + new String(template.tail, UTF_8);
+    }
+
+  }
+
+}
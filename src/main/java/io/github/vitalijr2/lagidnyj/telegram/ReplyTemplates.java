@@ -0,0 +1,155 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import static java.util.Objects.requireNonNull;
+
+import io.github.vitalijr2.lagidnyj.telegram.BotTools.MarkdownContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Localized replies of the bot.
+ * <p>
+ * Templates are read from {@code replies.properties} and compiled once, on the first reply. A variant is chosen by the
+ * user's {@code language_code}: {@code en-US} takes the {@code en} variant, an unknown or missing code takes the first
+ * language of the list. Every bot of {@link TenantRouter} may have its own file. Placeholders are checked while
+ * compiling: only a warning may mention the user, so a wrong file fails at startup, not on a request.
+ */
+class ReplyTemplates {
+
+  private final ReplyTemplate[] defaultTemplates;
+  private final Map<String, ReplyTemplate[]> templates = new HashMap<>();
+
+  /**
+   * Compile templates.
+   *
+   * @param properties texts of replies
+   * @throws IllegalArgumentException if a help text has the {@link ReplyTemplate#USER} placeholder
+   */
+  ReplyTemplates(@NotNull Properties properties) {
+    var url = requireNonNull(properties.getProperty("link.url"), "link.url not found");
+    ReplyTemplate[] first = null;
+
+    for (var language : requireNonNull(properties.getProperty("languages"), "languages not found").split(",")) {
+      var code = language.strip();
+      var link = "[" + BotTools.markdownEscaping(property(properties, "link", code)) + "]("
+          + BotTools.markdownEscaping(url, MarkdownContext.LinkUrl) + ")";
+      var variant = new ReplyTemplate[Kind.values().length];
+
+      for (var kind : Kind.values()) {
+        var template = ReplyTemplate.compile(property(properties, kind.key, code), link);
+
+        if (template.hasUserMention() && !kind.userMention) {
+          throw new IllegalArgumentException(kind.key + '.' + code + " must not have " + ReplyTemplate.USER);
+        }
+        variant[kind.ordinal()] = template;
+      }
+      templates.put(code, variant);
+      if (null == first) {
+        first = variant;
+      }
+    }
+    defaultTemplates = requireNonNull(first, "No languages");
+  }
+
+  /**
+   * Templates compiled from {@code replies.properties}.
+   *
+   * @return templates
+   */
+  @NotNull
+  static ReplyTemplates getInstance() {
+    return Holder.INSTANCE;
+  }
+
+  /**
+   * Templates compiled from a properties file, or the shared ones if the file is not set.
+   *
+   * @param file path of a file like {@code replies.properties}, optional
+   * @return templates
+   * @throws IllegalStateException    if the file could not be read
+   * @throws IllegalArgumentException if a help text has the {@link ReplyTemplate#USER} placeholder
+   */
+  @NotNull
+  static ReplyTemplates load(@Nullable String file) {
+    if (null == file || file.isBlank()) {
+      return getInstance();
+    }
+    try (InputStream repliesStream = Files.newInputStream(Path.of(file.strip()))) {
+      return new ReplyTemplates(read(repliesStream));
+    } catch (IOException exception) {
+      LoggerFactory.getLogger(ReplyTemplates.class).error("Could not read replies: {}", exception.getMessage());
+      throw new IllegalStateException(exception);
+    }
+  }
+
+  private static Properties read(InputStream repliesStream) throws IOException {
+    var properties = new Properties();
+
+    properties.load(new InputStreamReader(repliesStream, StandardCharsets.UTF_8));
+
+    return properties;
+  }
+
+  private static String property(Properties properties, String key, String language) {
+    return requireNonNull(properties.getProperty(key + '.' + language), key + '.' + language + " not found");
+  }
+
+  /**
+   * Template of a reply.
+   *
+   * @param kind         kind of reply
+   * @param languageCode IETF language tag of the user, optional
+   * @return template
+   */
+  @NotNull
+  ReplyTemplate get(@NotNull Kind kind, @Nullable String languageCode) {
+    var variant = defaultTemplates;
+
+    if (null != languageCode) {
+      var separator = languageCode.indexOf('-');
+
+      variant = templates.getOrDefault((-1 < separator) ? languageCode.substring(0, separator) : languageCode,
+          defaultTemplates);
+    }
+
+    return variant[kind.ordinal()];
+  }
+
+  enum Kind {
+    Help("help", false), Warning("warning", true);
+
+    private final String key;
+    private final boolean userMention;
+
+    Kind(String key, boolean userMention) {
+      this.key = key;
+      this.userMention = userMention;
+    }
+  }
+
+  private static class Holder {
+
+    private static final ReplyTemplates INSTANCE = new ReplyTemplates(read());
+
+    private static Properties read() {
+      try (InputStream repliesStream = ReplyTemplates.class.getResourceAsStream("/replies.properties")) {
+        return ReplyTemplates.read(requireNonNull(repliesStream, "replies.properties not found"));
+      } catch (IOException exception) {
+        LoggerFactory.getLogger(ReplyTemplates.class).error("Could not read replies: {}", exception.getMessage());
+        throw new IllegalStateException(exception);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,40 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import com.google.cloud.functions.HttpRequest;
+import io.github.vitalijr2.lagidnyj.telegram.BotMetrics.Rejection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Admission of webhook requests before their bodies are read.
+ * <p>
+ * A check should be cheap: it looks at the headers only, rejected requests get fixed responses without parsing. The
+ * body is read by the bot itself, and reading stops as soon as the body exceeds {@link #maxBodyLength()}.
+ */
+@FunctionalInterface
+interface RequestAdmission {
+
+  /**
+   * Admission of every request without a limit of the body.
+   */
+  RequestAdmission ALL = httpRequest -> null;
+
+  /**
+   * Check a request.
+   *
+   * @param httpRequest webhook request
+   * @return reason to reject the request or null if it is admitted
+   */
+  @Nullable
+  Rejection admit(@NotNull HttpRequest httpRequest);
+
+  /**
+   * Maximum length of a request body.
+   *
+   * @return number of bytes
+   */
+  default int maxBodyLength() {
+    return Integer.MAX_VALUE;
+  }
+
+}
@@ -0,0 +1,175 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import java.time.Duration;
+
+/**
+ * Strikes of users in chats with time decay.
+ * <p>
+ * The store is an open-addressing table over parallel primitive arrays: chat and user identifiers, number of strikes
+ * and time of the last strike. One strike decays every decay period after the last strike. When the table is
+ * getting full, it is rebuilt without decayed entries and grows only if that is not enough.
+ */
+class StrikeStore {
+
+  private static final int MAX_CAPACITY = 1 << 30;
+  private static final int MIN_CAPACITY = 16;
+
+  private final long decayMillis;
+
+  private long[] chatIds;
+  private long[] lastStrikes;
+  private int mask;
+  private int size;
+  private int[] strikes;
+  private long[] userIds;
+
+  /**
+   * Strike store.
+   *
+   * @param decay           decay period of one strike, at least one millisecond
+   * @param initialCapacity initial number of slots, it is rounded up to a power of two
+   */
+  StrikeStore(Duration decay, int initialCapacity) {
+    if (1 > decay.toMillis()) {
+      throw new IllegalArgumentException("Decay is shorter than one millisecond: " + decay);
+    }
+    if (1 > initialCapacity || MAX_CAPACITY < initialCapacity) {
+      throw new IllegalArgumentException("Wrong initial capacity: " + initialCapacity);
+    }
+    decayMillis = decay.toMillis();
+
+    var capacity = Integer.highestOneBit(initialCapacity);
+
+    allocate(Math.max(MIN_CAPACITY, (capacity == initialCapacity) ? capacity : capacity << 1));
+  }
+
+  private static int hash(long chatId, long userId) {
+    var hash = chatId * 0x9E3779B97F4A7C15L ^ userId;
+
+    hash ^= hash >>> 33;
+    hash *= 0xFF51AFD7ED558CCDL;
+    hash ^= hash >>> 33;
+
+    return (int) hash;
+  }
+
+  /**
+   * Add a strike.
+   *
+   * @param chatId chat identifier
+   * @param userId user identifier
+   * @param now    current time in milliseconds since the epoch
+   * @return number of strikes including this one
+   */
+  synchronized int strike(long chatId, long userId, long now) {
+    var slot = find(chatId, userId);
+
+    if (0 > slot) {
+      if (size + 1 > capacity() * 3 / 4) {
+        rebuild(now);
+        slot = find(chatId, userId);
+      }
+      slot = -slot - 1;
+      chatIds[slot] = chatId;
+      userIds[slot] = userId;
+      size++;
+    }
+    strikes[slot] = decayed(slot, now) + 1;
+    lastStrikes[slot] = now;
+
+    return strikes[slot];
+  }
+
+  /**
+   * Current number of strikes.
+   *
+   * @param chatId chat identifier
+   * @param userId user identifier
+   * @param now    current time in milliseconds since the epoch
+   * @return number of strikes, zero if there is none
+   */
+  synchronized int strikes(long chatId, long userId, long now) {
+    var slot = find(chatId, userId);
+
+    return (0 > slot) ? 0 : decayed(slot, now);
+  }
+
+  synchronized int size() {
+    return size;
+  }
+
+  synchronized int capacity() {
+    return mask + 1;
+  }
+
+  private int decayed(int slot, long now) {
+    return decayed(strikes[slot], lastStrikes[slot], now);
+  }
+
+  private int decayed(int count, long lastStrike, long now) {
+    var elapsed = Math.max(0, now - lastStrike) / decayMillis;
+
+    return (int) Math.max(0, count - elapsed);
+  }
+
+  private int find(long chatId, long userId) {
+    var slot = hash(chatId, userId) & mask;
+
+    while (0 != strikes[slot]) {
+      if (chatIds[slot] == chatId && userIds[slot] == userId) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    return -slot - 1;
+  }
+
+  private void rebuild(long now) {
+    var live = 0;
+
+    for (var slot = 0; capacity() > slot; slot++) {
+      if (0 != strikes[slot] && 0 < decayed(slot, now)) {
+        live++;
+      }
+    }
+
+    var capacity = capacity();
+
+    if (live + 1 > capacity / 2) {
+      if (MAX_CAPACITY == capacity) {
+        throw new IllegalStateException("Strike store is full");
+      }
+      capacity <<= 1;
+    }
+
+    var oldChatIds = chatIds;
+    var oldUserIds = userIds;
+    var oldStrikes = strikes;
+    var oldLastStrikes = lastStrikes;
+    var oldMask = mask;
+
+    allocate(capacity);
+    for (var i = 0; oldMask >= i; i++) {
+      if (0 < decayed(oldStrikes[i], oldLastStrikes[i], now)) {
+        var slot = -find(oldChatIds[i], oldUserIds[i]) - 1;
+
+        chatIds[slot] = oldChatIds[i];
+        userIds[slot] = oldUserIds[i];
+        strikes[slot] = oldStrikes[i];
+        lastStrikes[slot] = oldLastStrikes[i];
+        size++;
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    chatIds = new long[capacity];
+    userIds = new long[capacity];
+    strikes = new int[capacity];
+    lastStrikes = new long[capacity];
+    mask = capacity - 1;
+    size = 0;
+  }
+
+}
@@ -0,0 +1,183 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import static io.github.vitalijr2.lagidnyj.telegram.BotTools.unauthorized;
+
+import com.google.cloud.functions.HttpFunction;
+import com.google.cloud.functions.HttpRequest;
+import com.google.cloud.functions.HttpResponse;
+import io.github.vitalijr2.lagidnyj.settings.ChatSettingsCache;
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Several bots in one function.
+ * <p>
+ * Every bot is a tenant with its own {@link LagidnyjBot}: chat keeper, pending actions, chat settings, reply
+ * templates and metrics. The detector tables, the update parsers and the HTTP client of the Bot API are shared. A
+ * request goes to the tenant of the {@code X-Telegram-Bot-Api-Secret-Token} header, or of the first path segment if
+ * there is no header, e.g. {@code /secret} for webhooks and {@code /secret/metrics} for metrics. Requests of unknown
+ * tenants are unauthorized.
+ * <p>
+ * Tenants are listed in the {@code BOTS} environment variable separated by commas. Every tenant {@code NAME} is set by
+ * the variables {@code NAME_SECRET_TOKEN} (the secret token of its webhook, required), {@code NAME_BOT_TOKEN},
+ * {@code NAME_CHAT_SETTINGS} and {@code NAME_REPLIES} (a file like {@code replies.properties}, optional).
+ * {@code METRICS_TOKEN} and the settings of {@link WebhookAdmission} except the secret token are shared, the secret
+ * token is checked by the router in constant time. If {@code JOURNAL_DIR} is set, every tenant keeps its journal in
+ * the subdirectory {@code NAME} of it.
+ */
+public class TenantRouter implements HttpFunction, AutoCloseable {
+
+  static final String BOTS = "BOTS";
+  static final String SECRET_TOKEN_HEADER = WebhookAdmission.SECRET_TOKEN_HEADER;
+  private static final Pattern SECRET_TOKEN = Pattern.compile("[A-Za-z0-9_-]{1,256}");
+
+  private final LagidnyjBot[] bots;
+  private final ExecutorService executor;
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+  private final TenantTable<LagidnyjBot> tenants;
+
+  public TenantRouter() {
+    // Java 17 has no virtual threads: a few daemon platform threads complete the asynchronous requests
+    this(Executors.newFixedThreadPool(4, ActionDispatcher.daemon("tenant-client")));
+  }
+
+  private TenantRouter(ExecutorService executor) {
+    this(tenants(System.getenv(), ActionDispatcher.httpClient(executor)), executor);
+  }
+
+  /**
+   * Router.
+   *
+   * @param tenants  bots by their secret tokens
+   * @param executor executor of the shared HTTP client, it is stopped on close, optional
+   */
+  TenantRouter(@NotNull Map<String, LagidnyjBot> tenants, @Nullable ExecutorService executor) {
+    this.bots = tenants.values().toArray(new LagidnyjBot[0]);
+    this.executor = executor;
+    this.tenants = new TenantTable<>(tenants);
+  }
+
+  /**
+   * Create bots of tenants.
+   *
+   * @param environment environment variables
+   * @param httpClient  shared HTTP client
+   * @return bots by their secret tokens
+   * @throws IllegalArgumentException if there are no tenants, or a secret token is missed, wrong or not unique
+   * @throws java.io.UncheckedIOException if a journal could not be read or created
+   */
+  @VisibleForTesting
+  static Map<String, LagidnyjBot> tenants(@NotNull Map<String, String> environment,
+      @NotNull HttpClient httpClient) {
+    var names = environment.getOrDefault(BOTS, "");
+    var journalDirectory = environment.getOrDefault(LagidnyjBot.JOURNAL_DIR, "").strip();
+    var tenants = new LinkedHashMap<String, LagidnyjBot>();
+
+    if (names.isBlank()) {
+      throw new IllegalArgumentException("Bots are not set");
+    }
+    for (var name : names.split(",")) {
+      var prefix = name.strip() + '_';
+      var tenantJournal = journalDirectory.isEmpty() ? null : Path.of(journalDirectory, name.strip()).toString();
+      var secret = environment.getOrDefault(prefix + "SECRET_TOKEN", "").strip();
+
+      if (!SECRET_TOKEN.matcher(secret).matches()) {
+        throw new IllegalArgumentException("Wrong secret token of " + name.strip());
+      }
+      if (tenants.containsKey(secret)) {
+        throw new IllegalArgumentException("Secret token of " + name.strip() + " is not unique");
+      }
+      tenants.put(secret, LagidnyjBot.tenant(environment.get(prefix + LagidnyjBot.BOT_TOKEN),
+          environment.get(LagidnyjBot.METRICS_TOKEN),
+          ChatSettingsCache.create(environment.get(prefix + ChatSettingsCache.CHAT_SETTINGS)),
+          ReplyTemplates.load(environment.get(prefix + "REPLIES")),
+          WebhookAdmission.fromEnvironment(environment, null), httpClient, tenantJournal));
+    }
+
+    return tenants;
+  }
+
+  /**
+   * Close bots of all tenants and stop the shared HTTP client.
+   *
+   * @throws Exception if a bot could not be closed
+   */
+  @Override
+  public void close() throws Exception {
+    Exception failure = null;
+
+    for (var bot : bots) {
+      try {
+        bot.close();
+      } catch (Exception exception) {
+        if (null == failure) {
+          failure = exception;
+        } else {
+          failure.addSuppressed(exception);
+        }
+      }
+    }
+    if (null != executor) {
+      executor.shutdownNow();
+    }
+    if (null != failure) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Pass a request to the bot of its tenant.
+   *
+   * @param httpRequest  Telegram update or request of metrics
+   * @param httpResponse answer
+   */
+  @Override
+  public void service(HttpRequest httpRequest, HttpResponse httpResponse) {
+    var bot = find(httpRequest);
+
+    if (null == bot) {
+      logger.warn("Unknown bot: {}", httpRequest.getFirstHeader("X-Forwarded-For").orElse("address not known"));
+      unauthorized(httpResponse);
+      return;
+    }
+    bot.service(httpRequest, httpResponse);
+  }
+
+  /**
+   * Find the bot of a request.
+   *
+   * @param httpRequest request
+   * @return bot or null if the tenant is not known
+   */
+  @VisibleForTesting
+  @Nullable
+  LagidnyjBot find(HttpRequest httpRequest) {
+    var secret = httpRequest.getFirstHeader(SECRET_TOKEN_HEADER);
+
+    if (secret.isPresent()) {
+      return tenants.get(secret.get(), 0, secret.get().length());
+    }
+
+    var path = httpRequest.getPath();
+
+    if (null == path) {
+      return null;
+    }
+
+    var from = path.startsWith("/") ? 1 : 0;
+    var to = path.indexOf('/', from);
+
+    return tenants.get(path, from, (-1 == to) ? path.length() : to);
+  }
+
+}
@@ -0,0 +1,86 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Immutable lookup of tenants by their secrets.
+ * <p>
+ * It is an open addressing table with linear probing that is filled once. A secret may be looked up by a range of a
+ * longer string, e.g. a segment of a request path, without copying it. Secrets are compared in constant time.
+ *
+ * @param <T> type of tenants
+ */
+final class TenantTable<T> {
+
+  private final String[] keys;
+  private final int mask;
+  private final Object[] values;
+
+  /**
+   * Fill the table.
+   *
+   * @param tenants tenants by their secrets
+   */
+  TenantTable(@NotNull Map<String, T> tenants) {
+    var capacity = Integer.highestOneBit(Math.max(1, tenants.size()) << 1) << 1;
+
+    keys = new String[capacity];
+    mask = capacity - 1;
+    values = new Object[capacity];
+    tenants.forEach((secret, tenant) -> {
+      var index = hash(secret, 0, secret.length()) & mask;
+
+      while (null != keys[index]) {
+        index = (index + 1) & mask;
+      }
+      keys[index] = secret;
+      values[index] = tenant;
+    });
+  }
+
+  private static int hash(String text, int from, int to) {
+    var hash = 0;
+
+    for (var i = from; to > i; i++) {
+      hash = 31 * hash + text.charAt(i);
+    }
+
+    return hash ^ (hash >>> 16);
+  }
+
+  // constant-time comparison does not reveal how much of the secret is right
+  private static boolean matches(String key, String text, int from, int length) {
+    var difference = key.length() ^ length;
+
+    for (var i = Math.min(key.length(), length) - 1; 0 <= i; i--) {
+      difference |= key.charAt(i) ^ text.charAt(from + i);
+    }
+
+    return 0 == difference;
+  }
+
+  /**
+   * Find a tenant.
+   *
+   * @param text text that contains a secret
+   * @param from start offset of the secret, inclusive
+   * @param to   end offset of the secret, exclusive
+   * @return tenant or null if the secret is not known
+   */
+  @Nullable
+  @SuppressWarnings("unchecked")
+  T get(@NotNull String text, int from, int to) {
+    var length = to - from;
+
+    for (var index = hash(text, from, to) & mask; null != keys[index]; index = (index + 1) & mask) {
+      if (matches(keys[index], text, from, length)) {
+        return (T) values[index];
+      }
+    }
+
+    return null;
+  }
+
+}
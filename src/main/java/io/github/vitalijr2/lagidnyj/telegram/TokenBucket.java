@@ -0,0 +1,101 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import java.time.Duration;
+
+/**
+ * Token bucket: it holds up to {@code capacity} tokens and gets {@code capacity} new tokens every period.
+ * <p>
+ * Time is passed by the caller in nanoseconds, see {@link System#nanoTime()}.
+ */
+class TokenBucket {
+
+  private final int capacity;
+  private final double nanosPerToken;
+
+  private long lastRefill;
+  private long pausedUntil;
+  private double tokens;
+
+  /**
+   * Full token bucket.
+   *
+   * @param capacity number of tokens per period, it is the burst size too
+   * @param period   refill period
+   * @param now      current time
+   */
+  TokenBucket(int capacity, Duration period, long now) {
+    if (1 > capacity || period.isNegative() || period.isZero()) {
+      throw new IllegalArgumentException("Wrong rate: " + capacity + " per " + period);
+    }
+    this.capacity = capacity;
+    this.nanosPerToken = (double) period.toNanos() / capacity;
+    this.lastRefill = now;
+    this.pausedUntil = now;
+    this.tokens = capacity;
+  }
+
+  /**
+   * Time to wait for a token.
+   *
+   * @param now current time
+   * @return zero if a token is available, otherwise nanoseconds to wait
+   */
+  synchronized long nanosToWait(long now) {
+    refill(now);
+    if (0 < pausedUntil - now) {
+      return pausedUntil - now;
+    }
+
+    return (1 <= tokens) ? 0 : (long) Math.ceil((1 - tokens) * nanosPerToken);
+  }
+
+  /**
+   * Take a token if it is available.
+   *
+   * @param now current time
+   * @return true if a token is taken
+   */
+  synchronized boolean tryAcquire(long now) {
+    if (0 < nanosToWait(now)) {
+      return false;
+    }
+    tokens--;
+
+    return true;
+  }
+
+  /**
+   * Take no tokens until the time, and start with an empty bucket after that.
+   *
+   * @param until end of the pause
+   */
+  synchronized void pause(long until) {
+    if (0 < until - pausedUntil) {
+      pausedUntil = until;
+    }
+    tokens = 0;
+    lastRefill = pausedUntil;
+  }
+
+  /**
+   * The bucket is full and is not paused, it can be dropped.
+   *
+   * @param now current time
+   * @return true if the bucket is idle
+   */
+  synchronized boolean isIdle(long now) {
+    refill(now);
+
+    return capacity <= tokens && 0 >= pausedUntil - now;
+  }
+
+  private void refill(long now) {
+    var elapsed = now - lastRefill;
+
+    if (0 < elapsed) {
+      tokens = Math.min(capacity, tokens + elapsed / nanosPerToken);
+      lastRefill = now;
+    }
+  }
+
+}
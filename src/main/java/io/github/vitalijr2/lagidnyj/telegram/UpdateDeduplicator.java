@@ -0,0 +1,175 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+/**
+ * Window of recent update identifiers.
+ * <p>
+ * Telegram repeats a webhook request if the response is slow or is not successful, so the same update may come more
+ * than once. The window remembers the last identifiers and tells replays from new updates.
+ * <p>
+ * The window is split into segments by the hash of an identifier, each segment has its own lock. A segment is a ring
+ * buffer of identifiers in arrival order and an open-addressing hash set of the same identifiers on a plain
+ * {@code long} array, so there are no objects per entry. When the ring buffer is full, the oldest identifier is
+ * removed from the set with backward-shift deletion. Zero marks an empty slot: Telegram update identifiers are
+ * positive.
+ * <p>
+ * An update that failed is {@link #forget(long) forgotten}, so that the next delivery of it is processed again.
+ */
+class UpdateDeduplicator {
+
+  /**
+   * Default number of remembered updates.
+   */
+  static final int DEFAULT_CAPACITY = 8192;
+
+  /**
+   * Default number of segments.
+   */
+  static final int DEFAULT_SEGMENTS = 16;
+
+  private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+
+  private final Segment[] segments;
+  private final int segmentShift;
+
+  /**
+   * Window with default capacity and segments.
+   */
+  UpdateDeduplicator() {
+    this(DEFAULT_CAPACITY, DEFAULT_SEGMENTS);
+  }
+
+  /**
+   * Window.
+   *
+   * @param capacity number of remembered updates, a power of two
+   * @param segments number of segments, a power of two not greater than the capacity
+   */
+  UpdateDeduplicator(int capacity, int segments) {
+    if (0 >= capacity || 0 != (capacity & (capacity - 1))) {
+      throw new IllegalArgumentException("Wrong capacity: " + capacity);
+    }
+    if (0 >= segments || 0 != (segments & (segments - 1)) || segments > capacity) {
+      throw new IllegalArgumentException("Wrong number of segments: " + segments);
+    }
+    this.segments = new Segment[segments];
+    this.segmentShift = Long.SIZE - Integer.numberOfTrailingZeros(segments);
+    for (var i = 0; segments > i; i++) {
+      this.segments[i] = new Segment(capacity / segments);
+    }
+  }
+
+  private static long hash(long updateId) {
+    return updateId * GOLDEN_RATIO;
+  }
+
+  /**
+   * Remember an update.
+   *
+   * @param updateId update identifier, not positive ones are never replays and are not remembered
+   * @return true if the update is in the window already
+   */
+  boolean isReplay(long updateId) {
+    if (0 >= updateId) {
+      return false;
+    }
+
+    var hash = hash(updateId);
+
+    // the upper bits choose a segment, the lower bits choose a slot
+    return segments[(64 == segmentShift) ? 0 : (int) (hash >>> segmentShift)].isReplay(updateId, hash);
+  }
+
+  /**
+   * Forget an update, e.g. if it could not be processed.
+   *
+   * @param updateId update identifier
+   */
+  void forget(long updateId) {
+    if (0 >= updateId) {
+      return;
+    }
+
+    var hash = hash(updateId);
+
+    segments[(64 == segmentShift) ? 0 : (int) (hash >>> segmentShift)].forget(updateId, hash);
+  }
+
+  private static class Segment {
+
+    private final long[] identifiers;
+    private final int mask;
+    private final long[] ring;
+
+    private int next;
+    private int size;
+
+    Segment(int capacity) {
+      identifiers = new long[capacity * 2];
+      mask = identifiers.length - 1;
+      ring = new long[capacity];
+    }
+
+    synchronized boolean isReplay(long updateId, long hash) {
+      var slot = (int) hash & mask;
+
+      while (0 != identifiers[slot]) {
+        if (updateId == identifiers[slot]) {
+          return true;
+        }
+        slot = (slot + 1) & mask;
+      }
+      if (ring.length == size) {
+        if (0 != ring[next]) {
+          remove(ring[next]);
+        }
+        // the removal may move other identifiers, so look for a free slot again
+        for (slot = (int) hash & mask; 0 != identifiers[slot]; slot = (slot + 1) & mask) {
+          // skip occupied slots
+        }
+      } else {
+        size++;
+      }
+      identifiers[slot] = updateId;
+      ring[next] = updateId;
+      next = (next + 1 == ring.length) ? 0 : next + 1;
+
+      return false;
+    }
+
+    synchronized void forget(long updateId, long hash) {
+      for (var slot = (int) hash & mask; 0 != identifiers[slot]; slot = (slot + 1) & mask) {
+        if (updateId == identifiers[slot]) {
+          remove(updateId);
+          // the ring keeps an empty place, it is reused in turn
+          for (var i = 0; ring.length > i; i++) {
+            if (updateId == ring[i]) {
+              ring[i] = 0;
+              break;
+            }
+          }
+          return;
+        }
+      }
+    }
+
+    private void remove(long updateId) {
+      var hole = (int) hash(updateId) & mask;
+
+      while (updateId != identifiers[hole]) {
+        hole = (hole + 1) & mask;
+      }
+      for (var slot = (hole + 1) & mask; 0 != identifiers[slot]; slot = (slot + 1) & mask) {
+        var home = (int) hash(identifiers[slot]) & mask;
+
+        // move the identifier to the hole if the hole is between its home slot and its current slot
+        if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+          identifiers[hole] = identifiers[slot];
+          hole = slot;
+        }
+      }
+      identifiers[hole] = 0;
+    }
+
+  }
+
+}
@@ -0,0 +1,713 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONException;
+
+/**
+ * Single-pass reader of Telegram updates.
+ * <p>
+ * It works straight on the UTF-8 bytes of a request body and fills {@link UpdateView} with the fields the bot needs:
+ * {@code update_id}, {@code message} or {@code edited_message}, {@code via_bot}, {@code chat.id}, {@code chat.type},
+ * {@code from} and {@code text} or {@code caption} with the ranges of {@code entities} or {@code caption_entities}
+ * that are not scanned; for {@code chat_member} and {@code my_chat_member} updates the chat,
+ * the member and its old and new statuses. Everything else is skipped without allocation and without deep
+ * validation, the same way as trailing content after the update object.
+ * <p>
+ * The parser is not thread-safe: it keeps the body buffer and the view between calls, use one instance per thread.
+ */
+class UpdateParser {
+
+  private static final byte[] CAPTION = key("caption");
+  private static final byte[] CAPTION_ENTITIES = key("caption_entities");
+  private static final byte[] CHAT = key("chat");
+  private static final byte[] CHAT_MEMBER = key("chat_member");
+  private static final byte[] EDITED_MESSAGE = key("edited_message");
+  private static final byte[] ENTITIES = key("entities");
+  private static final byte[][] EXCLUDED_ENTITIES = {key("blockquote"), key("bot_command"), key("code"), key("email"),
+      key("expandable_blockquote"), key("mention"), key("pre"), key("url")};
+  private static final byte[] FIRST_NAME = key("first_name");
+  private static final byte[] FROM = key("from");
+  private static final byte[] ID = key("id");
+  private static final int INITIAL_CAPACITY = 4096;
+  private static final byte[] LANGUAGE_CODE = key("language_code");
+  private static final byte[] LAST_NAME = key("last_name");
+  private static final byte[] LENGTH = key("length");
+  private static final byte[] MESSAGE = key("message");
+  private static final byte[] MY_CHAT_MEMBER = key("my_chat_member");
+  private static final byte[] NEW_CHAT_MEMBER = key("new_chat_member");
+  private static final byte[] OFFSET = key("offset");
+  private static final byte[] OLD_CHAT_MEMBER = key("old_chat_member");
+  private static final byte[] RESULT = key("result");
+  private static final byte[] STATUS = key("status");
+  private static final byte[] TEXT = key("text");
+  private static final byte[] TYPE = key("type");
+  private static final byte[] UPDATE_ID = key("update_id");
+  private static final byte[] USER = key("user");
+  private static final byte[] USERNAME = key("username");
+  private static final byte[] VIA_BOT = key("via_bot");
+
+  private final StringBuilder builder = new StringBuilder();
+  private final UpdateView view = new UpdateView();
+
+  private byte[] buffer = new byte[INITIAL_CAPACITY];
+  private boolean keyEscaped;
+  private int keyEnd;
+  private int keyStart;
+  private int length;
+  private int position;
+
+  private static byte[] key(String name) {
+    return name.getBytes(UTF_8);
+  }
+
+  private static boolean isDelimiter(byte value) {
+    return ',' == value || '}' == value || ']' == value || isWhitespace(value);
+  }
+
+  private static boolean isWhitespace(byte value) {
+    return ' ' == value || '\n' == value || '\r' == value || '\t' == value;
+  }
+
+  /**
+   * Read a request body into the internal buffer.
+   *
+   * @param inputStream request body
+   * @return number of read bytes
+   * @throws IOException if the body could not be read
+   */
+  int read(@NotNull InputStream inputStream) throws IOException {
+    return read(inputStream, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Read a request body into the internal buffer, reading stops as soon as the body exceeds the limit.
+   *
+   * @param inputStream request body
+   * @param maxLength   maximum number of bytes
+   * @return number of read bytes
+   * @throws BodySizeException if the body is longer than the limit
+   * @throws IOException       if the body could not be read
+   */
+  int read(@NotNull InputStream inputStream, int maxLength) throws IOException {
+    int count;
+
+    length = 0;
+    while (-1 != (count = inputStream.read(buffer, length, buffer.length - length))) {
+      length += count;
+      if (length > maxLength) {
+        length = 0;
+        throw new BodySizeException(maxLength);
+      }
+      if (length == buffer.length) {
+        buffer = Arrays.copyOf(buffer, buffer.length << 1);
+      }
+    }
+
+    return length;
+  }
+
+  /**
+   * Raw body that was read last time, valid up to {@link #length()}.
+   *
+   * @return body bytes
+   */
+  byte[] buffer() {
+    return buffer;
+  }
+
+  /**
+   * Length of the body that was read last time.
+   *
+   * @return number of bytes
+   */
+  int length() {
+    return length;
+  }
+
+  /**
+   * Parse the body as an <a href="https://core.telegram.org/bots/api#update">update</a>.
+   *
+   * @return update view, it is reused by next calls
+   * @throws JSONException if the body is not a JSON object
+   */
+  @NotNull
+  UpdateView parseUpdate() throws JSONException {
+    view.reset();
+    position = 0;
+    if (beginObject()) {
+      do {
+        readKey();
+        if (keyIs(UPDATE_ID) && isNumber()) {
+          view.updateId = readLong();
+        } else if (keyIs(MESSAGE) && isNext('{')) {
+          view.message = true;
+          readMessage();
+        } else if (keyIs(EDITED_MESSAGE) && isNext('{')) {
+          view.editedMessage = true;
+          readMessage();
+        } else if (keyIs(CHAT_MEMBER) && isNext('{')) {
+          view.chatMember = true;
+          readChatMemberUpdated();
+        } else if (keyIs(MY_CHAT_MEMBER) && isNext('{')) {
+          view.myChatMember = true;
+          readChatMemberUpdated();
+        } else {
+          skipValue();
+        }
+      } while (nextMember());
+    }
+
+    return view;
+  }
+
+  /**
+   * Parse the body as a bare <a href="https://core.telegram.org/bots/api#message">message</a> without an update
+   * envelope.
+   *
+   * @return update view, it is reused by next calls
+   * @throws JSONException if the body is not a JSON object
+   */
+  @NotNull
+  UpdateView parseMessage() throws JSONException {
+    view.reset();
+    position = 0;
+    readMessage();
+
+    return view;
+  }
+
+  /**
+   * Parse the body as a <a href="https://core.telegram.org/bots/api#getupdates">getUpdates</a> response and find
+   * every update in its {@code result} array without parsing the update.
+   *
+   * @param consumer receives the identifier and the bounds of every update in {@link #buffer()}
+   * @return number of updates
+   * @throws JSONException if the body is not a JSON object or the result is not an array of objects
+   */
+  int parseUpdates(@NotNull UpdateBoundsConsumer consumer) throws JSONException {
+    var count = 0;
+
+    position = 0;
+    if (beginObject()) {
+      do {
+        readKey();
+        if (keyIs(RESULT) && isNext('[')) {
+          count = readUpdates(consumer);
+        } else {
+          skipValue();
+        }
+      } while (nextMember());
+    }
+
+    return count;
+  }
+
+  private int readUpdates(UpdateBoundsConsumer consumer) {
+    var count = 0;
+
+    position++;
+    if (isNext(']')) {
+      position++;
+      return count;
+    }
+    do {
+      skipWhitespace();
+
+      var start = position;
+      var updateId = 0L;
+
+      if (beginObject()) {
+        do {
+          readKey();
+          if (keyIs(UPDATE_ID) && isNumber()) {
+            updateId = readLong();
+          } else {
+            skipValue();
+          }
+        } while (nextMember());
+      }
+      consumer.accept(updateId, start, position);
+      count++;
+    } while (nextElement());
+
+    return count;
+  }
+
+  private void readMessage() {
+    if (beginObject()) {
+      do {
+        readKey();
+        if (keyIs(VIA_BOT)) {
+          view.viaBot = true;
+          skipValue();
+        } else if (keyIs(CHAT) && isNext('{')) {
+          readChat();
+        } else if (keyIs(FROM) && isNext('{')) {
+          readFrom();
+        } else if (keyIs(TEXT) && isNext('"')) {
+          view.text = readString();
+        } else if (keyIs(CAPTION) && isNext('"')) {
+          view.caption = readString();
+        } else if (keyIs(ENTITIES) && isNext('[')) {
+          readEntities(view.entities);
+        } else if (keyIs(CAPTION_ENTITIES) && isNext('[')) {
+          readEntities(view.captionEntities);
+        } else {
+          skipValue();
+        }
+      } while (nextMember());
+    }
+  }
+
+  private void readEntities(EntityRanges ranges) {
+    position++;
+    if (isNext(']')) {
+      position++;
+      return;
+    }
+    do {
+      readEntity(ranges);
+    } while (nextElement());
+  }
+
+  private void readEntity(EntityRanges ranges) {
+    var excluded = false;
+    var offset = -1L;
+    var length = 0L;
+
+    if (beginObject()) {
+      do {
+        readKey();
+        if (keyIs(TYPE) && isNext('"')) {
+          excluded = isExcludedEntity();
+        } else if (keyIs(OFFSET) && isNumber()) {
+          offset = readLong();
+        } else if (keyIs(LENGTH) && isNumber()) {
+          length = readLong();
+        } else {
+          skipValue();
+        }
+      } while (nextMember());
+    }
+    if (excluded && Integer.MAX_VALUE >= offset && Integer.MAX_VALUE >= length) {
+      ranges.add((int) offset, (int) length);
+    }
+  }
+
+  private boolean isExcludedEntity() {
+    var start = position + 1;
+
+    skipString();
+    for (var type : EXCLUDED_ENTITIES) {
+      if (Arrays.equals(buffer, start, position - 1, type, 0, type.length)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private void readChatMemberUpdated() {
+    if (beginObject()) {
+      do {
+        readKey();
+        if (keyIs(CHAT) && isNext('{')) {
+          readChat();
+        } else if (keyIs(OLD_CHAT_MEMBER) && isNext('{')) {
+          view.oldMemberStatus = readChatMember();
+        } else if (keyIs(NEW_CHAT_MEMBER) && isNext('{')) {
+          view.newMemberStatus = readChatMember();
+        } else {
+          skipValue();
+        }
+      } while (nextMember());
+    }
+  }
+
+  private String readChatMember() {
+    String status = null;
+
+    if (beginObject()) {
+      do {
+        readKey();
+        if (keyIs(STATUS) && isNext('"')) {
+          status = readString();
+        } else if (keyIs(USER) && isNext('{')) {
+          readMemberUser();
+        } else {
+          skipValue();
+        }
+      } while (nextMember());
+    }
+
+    return status;
+  }
+
+  private void readMemberUser() {
+    if (beginObject()) {
+      do {
+        readKey();
+        if (keyIs(ID) && isNumber()) {
+          view.memberId = readLong();
+          view.memberIdPresent = true;
+        } else {
+          skipValue();
+        }
+      } while (nextMember());
+    }
+  }
+
+  private void readChat() {
+    if (beginObject()) {
+      do {
+        readKey();
+        if (keyIs(ID) && isNumber()) {
+          view.chatId = readLong();
+          view.chatIdPresent = true;
+        } else if (keyIs(TYPE) && isNext('"')) {
+          view.chatType = readString();
+        } else {
+          skipValue();
+        }
+      } while (nextMember());
+    }
+  }
+
+  private void readFrom() {
+    if (beginObject()) {
+      do {
+        readKey();
+        if (keyIs(ID) && isNumber()) {
+          view.fromId = readLong();
+          view.fromIdPresent = true;
+        } else if (keyIs(FIRST_NAME) && isNext('"')) {
+          view.firstName = readString();
+        } else if (keyIs(LAST_NAME) && isNext('"')) {
+          view.lastName = readString();
+        } else if (keyIs(USERNAME) && isNext('"')) {
+          view.username = readString();
+        } else if (keyIs(LANGUAGE_CODE) && isNext('"')) {
+          view.languageCode = readString();
+        } else {
+          skipValue();
+        }
+      } while (nextMember());
+    }
+  }
+
+  private boolean beginObject() {
+    expect('{');
+    if (isNext('}')) {
+      position++;
+      return false;
+    }
+
+    return true;
+  }
+
+  private boolean nextMember() {
+    skipWhitespace();
+    if (isNext(',')) {
+      position++;
+      return true;
+    }
+    expect('}');
+
+    return false;
+  }
+
+  private boolean nextElement() {
+    skipWhitespace();
+    if (isNext(',')) {
+      position++;
+      return true;
+    }
+    expect(']');
+
+    return false;
+  }
+
+  private void expect(char expected) {
+    skipWhitespace();
+    if (position >= length || expected != buffer[position]) {
+      throw syntaxError("Expected '" + expected + "'");
+    }
+    position++;
+  }
+
+  private boolean isNext(char expected) {
+    skipWhitespace();
+    return position < length && expected == buffer[position];
+  }
+
+  private boolean isNumber() {
+    skipWhitespace();
+    return position < length && ('-' == buffer[position] || ('0' <= buffer[position] && '9' >= buffer[position]));
+  }
+
+  private boolean keyIs(byte[] key) {
+    return !keyEscaped && Arrays.equals(buffer, keyStart, keyEnd, key, 0, key.length);
+  }
+
+  private void readKey() {
+    expect('"');
+    keyEscaped = false;
+    keyStart = position;
+    while (position < length) {
+      var value = buffer[position];
+
+      if ('"' == value) {
+        keyEnd = position++;
+        expect(':');
+        return;
+      }
+      if ('\\' == value) {
+        keyEscaped = true;
+        position++;
+      }
+      position++;
+    }
+
+    throw syntaxError("Unterminated key");
+  }
+
+  private long readLong() {
+    var start = position;
+    var negative = '-' == buffer[position];
+    var result = 0L;
+
+    if (negative) {
+      position++;
+    }
+
+    var digits = position;
+
+    while (position < length && '0' <= buffer[position] && '9' >= buffer[position]) {
+      result = result * 10 + (buffer[position++] - '0');
+    }
+    if (digits == position) {
+      throw syntaxError("Bad number");
+    }
+    if (position < length && !isDelimiter(buffer[position]) || 18 < position - digits) {
+      while (position < length && !isDelimiter(buffer[position])) {
+        position++;
+      }
+      try {
+        return new BigDecimal(new String(buffer, start, position - start, UTF_8)).longValue();
+      } catch (NumberFormatException exception) {
+        throw syntaxError("Bad number");
+      }
+    }
+
+    return negative ? -result : result;
+  }
+
+  private String readString() {
+    var start = ++position;
+
+    while (position < length) {
+      var value = buffer[position];
+
+      if ('"' == value) {
+        return new String(buffer, start, position++ - start, UTF_8);
+      }
+      if ('\\' == value) {
+        return readEscapedString(start);
+      }
+      position++;
+    }
+
+    throw syntaxError("Unterminated string");
+  }
+
+  private String readEscapedString(int start) {
+    var segment = start;
+
+    builder.setLength(0);
+    while (position < length) {
+      var value = buffer[position];
+
+      if ('"' == value) {
+        builder.append(new String(buffer, segment, position++ - segment, UTF_8));
+        return builder.toString();
+      }
+      if ('\\' == value) {
+        builder.append(new String(buffer, segment, position - segment, UTF_8));
+        readEscape();
+        segment = position;
+      } else {
+        position++;
+      }
+    }
+
+    throw syntaxError("Unterminated string");
+  }
+
+  private void readEscape() {
+    if (position + 1 >= length) {
+      throw syntaxError("Unterminated string");
+    }
+    position += 2;
+    switch (buffer[position - 1]) {
+      case '"':
+      case '\\':
+      case '/':
+        builder.append((char) buffer[position - 1]);
+        break;
+      case 'b':
+        builder.append('\b');
+        break;
+      case 'f':
+        builder.append('\f');
+        break;
+      case 'n':
+        builder.append('\n');
+        break;
+      case 'r':
+        builder.append('\r');
+        break;
+      case 't':
+        builder.append('\t');
+        break;
+      case 'u':
+        builder.append(readHexCharacter());
+        break;
+      default:
+        throw syntaxError("Illegal escape");
+    }
+  }
+
+  private char readHexCharacter() {
+    if (position + 4 > length) {
+      throw syntaxError("Illegal escape");
+    }
+
+    var result = 0;
+
+    for (var i = 0; 4 > i; i++) {
+      var digit = Character.digit(buffer[position++], 16);
+
+      if (0 > digit) {
+        throw syntaxError("Illegal escape");
+      }
+      result = (result << 4) | digit;
+    }
+
+    return (char) result;
+  }
+
+  private void skipValue() {
+    skipWhitespace();
+    if (position >= length) {
+      throw syntaxError("Unexpected end of input");
+    }
+    switch (buffer[position]) {
+      case '"':
+        skipString();
+        break;
+      case '{':
+      case '[':
+        skipContainer();
+        break;
+      default:
+        skipLiteral();
+    }
+  }
+
+  private void skipContainer() {
+    var depth = 0;
+
+    while (position < length) {
+      var value = buffer[position];
+
+      if ('"' == value) {
+        skipString();
+        continue;
+      }
+      if ('{' == value || '[' == value) {
+        depth++;
+      } else if ('}' == value || ']' == value) {
+        depth--;
+      }
+      position++;
+      if (0 == depth) {
+        return;
+      }
+    }
+
+    throw syntaxError("Unterminated container");
+  }
+
+  private void skipLiteral() {
+    var start = position;
+
+    while (position < length && !isDelimiter(buffer[position])) {
+      position++;
+    }
+    if (start == position) {
+      throw syntaxError("Unexpected character");
+    }
+  }
+
+  private void skipString() {
+    position++;
+    while (position < length) {
+      var value = buffer[position++];
+
+      if ('\\' == value) {
+        position++;
+      } else if ('"' == value) {
+        return;
+      }
+    }
+
+    throw syntaxError("Unterminated string");
+  }
+
+  private void skipWhitespace() {
+    while (position < length && isWhitespace(buffer[position])) {
+      position++;
+    }
+  }
+
+  private JSONException syntaxError(String message) {
+    return new JSONException(message + " at " + position);
+  }
+
+  /**
+   * Request body is longer than the limit, the rest of it is not read.
+   */
+  static class BodySizeException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    BodySizeException(int maxLength) {
+      super("Body is longer than " + maxLength + " bytes");
+    }
+
+  }
+
+  /**
+   * Receiver of update bounds, see {@link #parseUpdates(UpdateBoundsConsumer)}.
+   */
+  @FunctionalInterface
+  interface UpdateBoundsConsumer {
+
+    /**
+     * Accept an update.
+     *
+     * @param updateId update identifier
+     * @param start    index of the first byte of the update
+     * @param end      index after the last byte of the update
+     */
+    void accept(long updateId, int start, int end);
+
+  }
+
+}
@@ -0,0 +1,279 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import io.github.vitalijr2.lagidnyj.keeper.CoalescingChatKeeper;
+import io.github.vitalijr2.lagidnyj.settings.ChatSettingsCache;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Ingestion of updates by long polling, for deployments without a public HTTPS endpoint.
+ * <p>
+ * One <a href="https://core.telegram.org/bots/api#getupdates">getUpdates</a> request brings a batch of up to 100
+ * updates. Every update goes through {@link LagidnyjBot#processRequestBody(InputStream)} like a webhook request, and
+ * answers are sent as actions because there is no webhook response to carry them. The offset is moved past the batch
+ * only after the whole batch is processed: Telegram confirms the updates with the next request, so a crash in the
+ * middle of a batch makes Telegram send the batch again.
+ */
+public class UpdatePoller implements Runnable, AutoCloseable {
+
+  /**
+   * Default maximum number of updates in a batch, it is the Bot API limit too.
+   */
+  static final int DEFAULT_LIMIT = 100;
+
+  /**
+   * Default time that Telegram holds a request without updates.
+   */
+  static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(50);
+
+  private static final Duration FIRST_BACKOFF = Duration.ofSeconds(1);
+  private static final Duration MAX_BACKOFF = Duration.ofMinutes(1);
+  private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+  private final Consumer<JSONObject> actions;
+  private final LongAdder batches = new LongAdder();
+  private final LagidnyjBot bot;
+  private final HttpClient httpClient;
+  private final int limit;
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+  private final UpdateParser parser = new UpdateParser();
+  private final LongAdder processed = new LongAdder();
+  private final Duration timeout;
+  private final URI url;
+
+  private volatile boolean closed;
+  private long confirmed;
+  private long nextOffset;
+  private long offset;
+  private Thread thread;
+
+  /**
+   * Poller with the default Bot API URL, batch size and timeout.
+   *
+   * @param token bot token
+   */
+  public UpdatePoller(@NotNull String token) {
+    this(new ActionDispatcher(token), new ChatMemberCache(token), token);
+  }
+
+  private UpdatePoller(ActionDispatcher dispatcher, ChatMemberCache members, String token) {
+    this(new LagidnyjBot(new CoalescingChatKeeper(new EscalationEngine(dispatcher, members)), null, null,
+            ChatSettingsCache.getInstance(), members), dispatcher,
+        ActionDispatcher.DEFAULT_API_URL, token, DEFAULT_LIMIT, DEFAULT_TIMEOUT);
+  }
+
+  /**
+   * Poller.
+   *
+   * @param bot     bot that processes updates
+   * @param actions consumer of answers, it is closed with the poller if it is closeable
+   * @param apiUrl  Bot API URL
+   * @param token   bot token
+   * @param limit   maximum number of updates in a batch, from 1 to 100
+   * @param timeout time that Telegram holds a request without updates
+   */
+  UpdatePoller(@NotNull LagidnyjBot bot, @NotNull Consumer<JSONObject> actions, @NotNull URI apiUrl,
+      @NotNull String token, int limit, @NotNull Duration timeout) {
+    if (1 > limit || DEFAULT_LIMIT < limit) {
+      throw new IllegalArgumentException("Wrong limit: " + limit);
+    }
+    if (timeout.isNegative()) {
+      throw new IllegalArgumentException("Wrong timeout: " + timeout);
+    }
+    this.actions = actions;
+    this.bot = bot;
+    this.httpClient = HttpClient.newBuilder().connectTimeout(REQUEST_TIMEOUT).build();
+    this.limit = limit;
+    this.timeout = timeout;
+    this.url = URI.create(BotTools.botUrl(apiUrl, token) + "getUpdates");
+  }
+
+  /**
+   * Run the bot with long polling, the bot token is taken from the {@code BOT_TOKEN} environment variable.
+   *
+   * @param args not used
+   */
+  public static void main(String... args) {
+    var token = System.getenv(LagidnyjBot.BOT_TOKEN);
+
+    if (null == token || token.isBlank()) {
+      LoggerFactory.getLogger(UpdatePoller.class).error("Bot token is not set");
+      System.exit(1);
+    }
+
+    var poller = new UpdatePoller(token);
+
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      try {
+        poller.close();
+      } catch (Exception exception) {
+        LoggerFactory.getLogger(UpdatePoller.class).warn("Could not stop polling: {}", exception.getMessage());
+      }
+    }, "update-poller-shutdown"));
+    poller.start();
+  }
+
+  /**
+   * Start polling in a new thread.
+   */
+  public synchronized void start() {
+    if (null != thread) {
+      throw new IllegalStateException("Poller is already started");
+    }
+    thread = new Thread(this, "update-poller");
+    thread.start();
+  }
+
+  /**
+   * Poll until the poller is closed, failed requests are repeated with exponential backoff.
+   */
+  @Override
+  public void run() {
+    var backoff = FIRST_BACKOFF;
+
+    logger.info("Start polling of updates");
+    while (!closed) {
+      try {
+        poll();
+        backoff = FIRST_BACKOFF;
+      } catch (IOException | JSONException exception) {
+        logger.warn("Could not get updates, retry after {}: {}", backoff, exception.getMessage());
+        try {
+          TimeUnit.MILLISECONDS.sleep(backoff.toMillis());
+        } catch (InterruptedException interruptedException) {
+          break;
+        }
+        backoff = (0 < backoff.compareTo(MAX_BACKOFF.dividedBy(2))) ? MAX_BACKOFF : backoff.multipliedBy(2);
+      } catch (InterruptedException exception) {
+        break;
+      }
+    }
+    logger.info("Stop polling of updates");
+  }
+
+  /**
+   * Request the next batch and process it.
+   *
+   * @return number of updates in the batch
+   * @throws IOException          if the request failed
+   * @throws InterruptedException if the thread is interrupted while waiting for updates
+   */
+  int poll() throws IOException, InterruptedException {
+    try (var body = getUpdates(offset, limit, timeout)) {
+      parser.read(body);
+    }
+    nextOffset = offset;
+
+    var count = parser.parseUpdates(this::process);
+
+    offset = nextOffset;
+    if (0 < count) {
+      batches.increment();
+      logger.debug("Process {} updates, next offset {}", count, offset);
+    }
+
+    return count;
+  }
+
+  long getBatches() {
+    return batches.sum();
+  }
+
+  long getProcessed() {
+    return processed.sum();
+  }
+
+  long getOffset() {
+    return offset;
+  }
+
+  /**
+   * Stop polling, confirm processed updates and close the bot and the answer consumer.
+   *
+   * @throws Exception if the bot or the answer consumer could not be closed
+   */
+  @Override
+  public void close() throws Exception {
+    closed = true;
+
+    Thread running;
+
+    synchronized (this) {
+      running = thread;
+    }
+    if (null != running) {
+      running.interrupt();
+      running.join(REQUEST_TIMEOUT.toMillis());
+    }
+    if (null == running || !running.isAlive()) {
+      confirm();
+    }
+    bot.close();
+    if (actions instanceof AutoCloseable closeable) {
+      closeable.close();
+    }
+  }
+
+  private InputStream getUpdates(long offset, int limit, Duration timeout) throws IOException, InterruptedException {
+    var request = HttpRequest.newBuilder(url).header("Content-Type", "application/json")
+        .timeout(timeout.plus(REQUEST_TIMEOUT)).POST(BodyPublishers.ofString(
+            new JSONObject().put("offset", offset).put("limit", limit).put("timeout", timeout.toSeconds())
+                .toString())).build();
+    var response = httpClient.send(request, BodyHandlers.ofInputStream());
+
+    confirmed = offset;
+    if (200 != response.statusCode()) {
+      try (var body = response.body()) {
+        throw new IOException("status " + response.statusCode() + " " + new String(body.readAllBytes(), UTF_8));
+      }
+    }
+
+    return response.body();
+  }
+
+  private void process(long updateId, int start, int end) {
+    try {
+      bot.processRequestBody(new ByteArrayInputStream(parser.buffer(), start, end - start))
+          .ifPresent(answer -> actions.accept(new JSONObject(answer.toString())));
+    } catch (IOException | RuntimeException exception) {
+      logger.warn("Could not process update {}: {}", updateId, exception.getMessage());
+    }
+    processed.increment();
+    nextOffset = Math.max(nextOffset, updateId + 1);
+  }
+
+  private void confirm() {
+    if (offset == confirmed) {
+      return;
+    }
+    // Telegram confirms updates before the offset of a request, the returned update is not confirmed
+    try (var body = getUpdates(offset, 1, Duration.ZERO)) {
+      // the response is drained so that the connection can be reused
+      body.transferTo(OutputStream.nullOutputStream());
+      logger.debug("Confirm updates before {}", offset);
+    } catch (IOException exception) {
+      logger.warn("Could not confirm updates before {}: {}", offset, exception.getMessage());
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}
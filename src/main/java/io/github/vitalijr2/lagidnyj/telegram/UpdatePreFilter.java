@@ -0,0 +1,263 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import io.github.vitalijr2.lagidnyj.cyrillic.Confusables;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Byte-level pre-filter of request bodies.
+ * <p>
+ * Most updates of group chats do not contain any of the letters <strong>ё</strong>, <strong>ъ</strong>,
+ * <strong>ы</strong> and <strong>э</strong>, so there is no need to parse them at all. The filter looks through raw
+ * UTF-8 bytes for the two-byte sequences of those letters in both cases and for their JSON escapes like
+ * <code>&#92;u0401</code>. Private chats get a help message, so a body with the {@code "private"} token passes the
+ * filter too, as well as {@code "chat_member"} and {@code "my_chat_member"} updates that keep the chat member cache
+ * fresh.
+ * <p>
+ * Letters hidden by look-alikes, combining diacritics or invisible characters are always next to a Cyrillic letter, so
+ * only a body with other Cyrillic text is scanned once more: the filter decodes the bytes and the escapes on the fly
+ * and feeds the characters to the same folding state machine as the scanner, see {@link Confusables}.
+ * <p>
+ * The filter is conservative: it may pass an update that is not interesting, but never drops one with the letters.
+ * When some chats use the scoring mode, Russian text may have none of the letters, so any Cyrillic text passes. The
+ * mode is asked for every body, chats may switch to it while the bot runs.
+ */
+class UpdatePreFilter {
+
+  private static final byte CYRILLIC_FIRST_HALF = (byte) 0xD0;
+  private static final byte CYRILLIC_SECOND_HALF = (byte) 0xD1;
+  private static final byte[] CHAT_MEMBER = "\"chat_member\"".getBytes(UTF_8);
+  private static final byte[] MY_CHAT_MEMBER = "\"my_chat_member\"".getBytes(UTF_8);
+  private static final byte[] PRIVATE = "\"private\"".getBytes(UTF_8);
+  private static final int CYRILLIC_EXTENDED = 0xD2;
+  private static final int THREE_BYTES = 0xE0;
+  private static final int TWO_BYTES = 0xC0;
+
+  private final BooleanSupplier passCyrillic;
+  private final LongAdder passed = new LongAdder();
+  private final LongAdder shortCircuited = new LongAdder();
+
+  UpdatePreFilter() {
+    this(false);
+  }
+
+  /**
+   * Pre-filter.
+   *
+   * @param passCyrillic pass any Cyrillic text, not only the Russian letters
+   */
+  UpdatePreFilter(boolean passCyrillic) {
+    this(() -> passCyrillic);
+  }
+
+  /**
+   * Pre-filter that follows the settings.
+   *
+   * @param passCyrillic tells if any Cyrillic text should pass, not only the Russian letters; it is asked for every
+   *                     body, so it should be cheap
+   */
+  UpdatePreFilter(@NotNull BooleanSupplier passCyrillic) {
+    this.passCyrillic = passCyrillic;
+  }
+
+  private static boolean isCapitalLetter(byte value) {
+    // Ё, Ъ, Ы, Э: U+0401, U+042A, U+042B, U+042D
+    return (byte) 0x81 == value || (byte) 0xAA == value || (byte) 0xAB == value || (byte) 0xAD == value;
+  }
+
+  private static boolean isSmallLetter(byte value) {
+    // ё, ъ, ы, э: U+0451, U+044A, U+044B, U+044D
+    return (byte) 0x91 == value || (byte) 0x8A == value || (byte) 0x8B == value || (byte) 0x8D == value;
+  }
+
+  private static boolean isEscapedCyrillic(byte[] body, int index, int length) {
+    return index + 6 <= length && 'u' == body[index + 1] && '0' == body[index + 2] && '4' == body[index + 3]
+        && 0 <= hexDigit(body[index + 4]) && 0 <= hexDigit(body[index + 5]);
+  }
+
+  private static boolean isEscapedLetter(byte[] body, int index, int length) {
+    if (!isEscapedCyrillic(body, index, length)) {
+      return false;
+    }
+
+    var high = body[index + 4];
+    var low = body[index + 5] | 0x20;
+
+    switch (high) {
+      case '0':
+        return '1' == low;
+      case '2':
+      case '4':
+        return 'a' == low || 'b' == low || 'd' == low;
+      case '5':
+        return '1' == low;
+      default:
+        return false;
+    }
+  }
+
+  private static int hexDigit(byte value) {
+    if ('0' <= value && '9' >= value) {
+      return value - '0';
+    }
+
+    var lowerCase = value | 0x20;
+
+    return ('a' <= lowerCase && 'f' >= lowerCase) ? lowerCase - 'a' + 10 : -1;
+  }
+
+  // the character of a JSON unicode escape, or -1 if it is another escape
+  private static int escapedCharacter(byte[] body, int index, int length) {
+    if (index + 6 > length || 'u' != body[index + 1]) {
+      return -1;
+    }
+
+    var character = 0;
+
+    for (var i = index + 2; index + 6 > i; i++) {
+      var digit = hexDigit(body[i]);
+
+      if (0 > digit) {
+        return -1;
+      }
+      character = (character << 4) | digit;
+    }
+
+    return character;
+  }
+
+  private static boolean isToken(byte[] token, byte[] body, int index, int length) {
+    if (index + token.length > length) {
+      return false;
+    }
+    for (var i = 1; token.length > i; i++) {
+      if (token[i] != body[index + i]) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  // the second scan: decode the characters and fold them like the scanner does
+  private static boolean hasFoldedLetters(byte[] body, int length) {
+    var state = Confusables.NONE;
+
+    for (var i = 0; length > i; i++) {
+      var value = body[i];
+      int character;
+
+      if ('\\' == value) {
+        character = escapedCharacter(body, i, length);
+        // skip the escape, an escaped backslash must not be taken for the start of a unicode escape
+        i += (0 > character) ? 1 : 5;
+      } else if (0 <= value) {
+        character = value;
+      } else if (TWO_BYTES == (value & 0xE0) && i + 1 < length) {
+        character = ((value & 0x1F) << 6) | (body[++i] & 0x3F);
+      } else if (THREE_BYTES == (value & 0xF0) && i + 2 < length) {
+        character = ((value & 0x0F) << 12) | ((body[++i] & 0x3F) << 6) | (body[++i] & 0x3F);
+      } else {
+        // four-byte sequences are outside of the tables, truncated sequences are at the end of the body
+        character = -1;
+      }
+      if (0 > character) {
+        state = Confusables.NONE;
+        continue;
+      }
+      state = Confusables.next(state, Confusables.kind((char) character));
+      if (Confusables.FOUND <= state) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Check if a request body may need processing.
+   *
+   * @param body   request body
+   * @param length length of the body
+   * @return false if the body surely does not contain Russian letters, even folded ones (or any Cyrillic text if it is
+   * passed), is not from a private chat and is not a change of a chat member
+   */
+  boolean test(byte @NotNull [] body, int length) {
+    var cyrillic = false;
+    var passCyrillic = this.passCyrillic.getAsBoolean();
+
+    for (var i = 0; length > i; i++) {
+      var value = body[i];
+
+      if (CYRILLIC_FIRST_HALF == value) {
+        if (passCyrillic || i + 1 < length && isCapitalLetter(body[i + 1])) {
+          return pass();
+        }
+        cyrillic = true;
+      } else if (CYRILLIC_SECOND_HALF == value) {
+        if (passCyrillic || i + 1 < length && isSmallLetter(body[i + 1])) {
+          return pass();
+        }
+        cyrillic = true;
+      } else if (CYRILLIC_EXTENDED == (value & 0xFE)) {
+        // the second half of the Cyrillic block has letters like ӭ and ӹ
+        cyrillic = true;
+      } else if ('\\' == value) {
+        if (passCyrillic ? isEscapedCyrillic(body, i, length) : isEscapedLetter(body, i, length)) {
+          return pass();
+        }
+        cyrillic |= isEscapedCyrillic(body, i, length);
+        // skip the escaped character to not take \\u0401 for a letter
+        i++;
+      } else if ('"' == value && (isToken(PRIVATE, body, i, length) || isToken(CHAT_MEMBER, body, i, length)
+          || isToken(MY_CHAT_MEMBER, body, i, length))) {
+        return pass();
+      }
+    }
+    if (cyrillic && hasFoldedLetters(body, length)) {
+      return pass();
+    }
+    shortCircuited.increment();
+
+    return false;
+  }
+
+  /**
+   * Number of bodies passed to the full processing.
+   *
+   * @return counter value
+   */
+  long getPassed() {
+    return passed.sum();
+  }
+
+  /**
+   * Number of bodies answered without parsing.
+   *
+   * @return counter value
+   */
+  long getShortCircuited() {
+    return shortCircuited.sum();
+  }
+
+  /**
+   * Share of bodies answered without parsing.
+   *
+   * @return value between 0 and 1
+   */
+  double getShortCircuitRate() {
+    var shortCircuitedCount = getShortCircuited();
+    var total = shortCircuitedCount + getPassed();
+
+    return (0 == total) ? 0 : (double) shortCircuitedCount / total;
+  }
+
+  private boolean pass() {
+    passed.increment();
+    return true;
+  }
+
+}
@@ -0,0 +1,252 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import static java.util.Objects.isNull;
+
+import io.github.vitalijr2.lagidnyj.beans.User;
+import io.github.vitalijr2.lagidnyj.telegram.BotTools.ChatType;
+import java.util.Optional;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONException;
+
+/**
+ * Flat view of a Telegram update.
+ * <p>
+ * It keeps only fields the bot reads: {@code update_id}, the kind of message, {@code via_bot}, {@code chat.id},
+ * {@code chat.type}, the {@code from} user, {@code text} or {@code caption} with the ranges of their entities that are
+ * not scanned, and the member with its old and new statuses of {@code chat_member} and {@code my_chat_member} updates.
+ * An instance is filled by {@link UpdateParser} and reused between updates, so do not keep a reference to it after a
+ * request is processed.
+ */
+final class UpdateView {
+
+  long updateId;
+  boolean message;
+  boolean editedMessage;
+  boolean chatMember;
+  boolean myChatMember;
+  boolean viaBot;
+  boolean chatIdPresent;
+  long chatId;
+  String chatType;
+  boolean fromIdPresent;
+  long fromId;
+  String firstName;
+  String lastName;
+  String username;
+  String languageCode;
+  String text;
+  String caption;
+  final EntityRanges entities = new EntityRanges();
+  final EntityRanges captionEntities = new EntityRanges();
+  boolean memberIdPresent;
+  long memberId;
+  String oldMemberStatus;
+  String newMemberStatus;
+
+  /**
+   * Forget all fields of a previous update.
+   */
+  void reset() {
+    updateId = 0;
+    message = false;
+    editedMessage = false;
+    chatMember = false;
+    myChatMember = false;
+    viaBot = false;
+    chatIdPresent = false;
+    chatId = 0;
+    chatType = null;
+    fromIdPresent = false;
+    fromId = 0;
+    firstName = null;
+    lastName = null;
+    username = null;
+    languageCode = null;
+    text = null;
+    caption = null;
+    entities.reset();
+    captionEntities.reset();
+    memberIdPresent = false;
+    memberId = 0;
+    oldMemberStatus = null;
+    newMemberStatus = null;
+  }
+
+  /**
+   * Get update identifier.
+   *
+   * @return update identifier or zero if an update does not have it
+   */
+  long getUpdateId() {
+    return updateId;
+  }
+
+  /**
+   * Check if a Telegram update is a message.
+   *
+   * @return true if the update has the {@code message} field.
+   */
+  boolean isMessage() {
+    return message;
+  }
+
+  /**
+   * Check if a Telegram update is an edited message.
+   *
+   * @return true if the update has the {@code edited_message} field.
+   */
+  boolean isEditedMessage() {
+    return editedMessage;
+  }
+
+  /**
+   * Check if a Telegram update is a change of a chat member.
+   *
+   * @return true if the update has the {@code chat_member} field.
+   */
+  boolean isChatMember() {
+    return chatMember;
+  }
+
+  /**
+   * Check if a Telegram update is a change of the bot's own membership.
+   *
+   * @return true if the update has the {@code my_chat_member} field.
+   */
+  boolean isMyChatMember() {
+    return myChatMember;
+  }
+
+  /**
+   * Check if a Telegram message is sent via bot.
+   *
+   * @return true if the message has the {@code via_bot} field.
+   */
+  boolean viaBot() {
+    return viaBot;
+  }
+
+  /**
+   * Check if a Telegram update has a chat.
+   *
+   * @return true if the message has the {@code chat.id} field.
+   */
+  boolean hasChatId() {
+    return chatIdPresent;
+  }
+
+  /**
+   * Get chat identifier.
+   *
+   * @return chat identifier
+   * @throws JSONException if the message does not contain a chat object
+   */
+  long getChatId() throws JSONException {
+    if (!chatIdPresent) {
+      throw new JSONException("Chat identifier not found");
+    }
+
+    return chatId;
+  }
+
+  /**
+   * Get type of chat.
+   *
+   * @return type of chat
+   * @throws JSONException if the message does not contain a chat object
+   */
+  ChatType getChatType() throws JSONException {
+    if (isNull(chatType)) {
+      throw new JSONException("Chat type not found");
+    }
+
+    return ChatType.fromString(chatType);
+  }
+
+  /**
+   * Get a "from" user.
+   *
+   * @return user
+   * @throws JSONException if the message does not contain a user object
+   */
+  @NotNull
+  User getFrom() throws JSONException {
+    if (!fromIdPresent || isNull(firstName)) {
+      throw new JSONException("User not found");
+    }
+
+    return new User(fromId, firstName, lastName, username, languageCode);
+  }
+
+  /**
+   * Get a language code of the "from" user.
+   *
+   * @return IETF language tag or null if the message does not have it
+   */
+  @Nullable
+  String getLanguageCode() {
+    return languageCode;
+  }
+
+  /**
+   * Get identifier of the changed chat member.
+   *
+   * @return user identifier
+   * @throws JSONException if the update does not contain a new chat member
+   */
+  long getMemberId() throws JSONException {
+    if (!memberIdPresent) {
+      throw new JSONException("Chat member not found");
+    }
+
+    return memberId;
+  }
+
+  /**
+   * Get status of the chat member before the change.
+   *
+   * @return status or null if the update does not have it
+   */
+  @Nullable
+  String getOldMemberStatus() {
+    return oldMemberStatus;
+  }
+
+  /**
+   * Get status of the chat member after the change.
+   *
+   * @return status or null if the update does not have it
+   */
+  @Nullable
+  String getNewMemberStatus() {
+    return newMemberStatus;
+  }
+
+  /**
+   * Take a {@code text} or {@code caption} fields from a message or an edited message.
+   *
+   * @return text value
+   */
+  @NotNull
+  Optional<String> getText() {
+    return Optional.ofNullable(isNull(text) ? caption : text);
+  }
+
+  /**
+   * Take ranges of {@code entities} or {@code caption_entities} that belong to the text of {@link #getText()}.
+   *
+   * @return ranges that are not scanned
+   */
+  @NotNull
+  EntityRanges getExcludedRanges() {
+    return isNull(text) ? captionEntities : entities;
+  }
+
+  @Override
+  public String toString() {
+    return "UpdateView{updateId=" + updateId + ", message=" + message + ", editedMessage=" + editedMessage
+        + ", viaBot=" + viaBot + ", chatId=" + chatId + ", chatType=" + chatType + ", fromId=" + fromId + '}';
+  }
+
+}
@@ -0,0 +1,198 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.cloud.functions.HttpRequest;
+import io.github.vitalijr2.lagidnyj.telegram.BotMetrics.Rejection;
+import java.security.MessageDigest;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Admission of Telegram webhook requests.
+ * <p>
+ * It checks the source address, the {@code X-Telegram-Bot-Api-Secret-Token} header and {@code Content-Length}. The
+ * address is the last one of {@code X-Forwarded-For}, it is added by the proxy of the platform, and only IPv4 ranges
+ * are supported like the ones Telegram sends webhooks from. The secret token is compared in constant time.
+ * <p>
+ * Settings are read from the environment variables {@code SECRET_TOKEN} (the secret token of the webhook, optional),
+ * {@code MAX_BODY_SIZE} (1 MiB by default) and {@code ALLOWED_ADDRESSES} (address ranges separated by commas, e.g.
+ * {@code 149.154.160.0/20,91.108.4.0/22}, optional).
+ */
+final class WebhookAdmission implements RequestAdmission {
+
+  static final String ALLOWED_ADDRESSES = "ALLOWED_ADDRESSES";
+  static final int DEFAULT_MAX_BODY_SIZE = 1 << 20;
+  static final String MAX_BODY_SIZE = "MAX_BODY_SIZE";
+  static final String SECRET_TOKEN = "SECRET_TOKEN";
+  static final String SECRET_TOKEN_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+  private static final String X_FORWARDED_FOR = "X-Forwarded-For";
+
+  private final long[] masks;
+  private final int maxBodyLength;
+  private final long[] networks;
+  private final byte[] secretToken;
+
+  /**
+   * Admission.
+   *
+   * @param secretToken   secret token of the webhook, the header is not checked if it is blank
+   * @param maxBodyLength maximum length of a request body
+   * @param addresses     allowed address ranges separated by commas, the address is not checked if it is blank
+   * @throws IllegalArgumentException if the maximum length or an address range is wrong
+   */
+  WebhookAdmission(@Nullable String secretToken, int maxBodyLength, @Nullable String addresses) {
+    if (1 > maxBodyLength) {
+      throw new IllegalArgumentException("Wrong maximum body size: " + maxBodyLength);
+    }
+
+    var ranges = (null == addresses || addresses.isBlank()) ? new String[0] : addresses.split(",");
+
+    this.masks = new long[ranges.length];
+    this.maxBodyLength = maxBodyLength;
+    this.networks = new long[ranges.length];
+    this.secretToken = (null == secretToken || secretToken.isBlank()) ? null : secretToken.strip().getBytes(UTF_8);
+    for (var i = 0; ranges.length > i; i++) {
+      var range = ranges[i].strip();
+      var separator = range.indexOf('/');
+      var address = ipv4(range, 0, (-1 == separator) ? range.length() : separator);
+      var prefix = (-1 == separator) ? 32 : prefix(range.substring(separator + 1));
+
+      if (0 > address || 0 > prefix || 32 < prefix) {
+        throw new IllegalArgumentException("Wrong address range: " + range);
+      }
+      masks[i] = (0xFFFF_FFFFL << (32 - prefix)) & 0xFFFF_FFFFL;
+      networks[i] = address & masks[i];
+    }
+  }
+
+  /**
+   * Admission of the settings from the environment.
+   *
+   * @param environment environment variables
+   * @return admission
+   * @throws IllegalArgumentException if a setting is wrong
+   */
+  @NotNull
+  static WebhookAdmission fromEnvironment(@NotNull Map<String, String> environment) {
+    return fromEnvironment(environment, environment.get(SECRET_TOKEN));
+  }
+
+  /**
+   * Admission of the settings from the environment with another secret token.
+   *
+   * @param environment environment variables
+   * @param secretToken secret token of the webhook, optional
+   * @return admission
+   * @throws IllegalArgumentException if a setting is wrong
+   */
+  @NotNull
+  static WebhookAdmission fromEnvironment(@NotNull Map<String, String> environment, @Nullable String secretToken) {
+    var maxBodySize = environment.get(MAX_BODY_SIZE);
+    int maxBodyLength;
+
+    try {
+      maxBodyLength = (null == maxBodySize || maxBodySize.isBlank()) ? DEFAULT_MAX_BODY_SIZE
+          : Integer.parseInt(maxBodySize.strip());
+    } catch (NumberFormatException exception) {
+      throw new IllegalArgumentException("Wrong maximum body size: " + maxBodySize);
+    }
+
+    return new WebhookAdmission(secretToken, maxBodyLength, environment.get(ALLOWED_ADDRESSES));
+  }
+
+  /**
+   * Parse an IPv4 address in the dotted-decimal notation.
+   *
+   * @param text text that contains an address
+   * @param from start offset of the address, inclusive
+   * @param to   end offset of the address, exclusive
+   * @return address or -1 if it is not an IPv4 address
+   */
+  static long ipv4(@NotNull String text, int from, int to) {
+    var address = 0L;
+    var dots = 0;
+    var octet = -1;
+
+    for (var i = from; to > i; i++) {
+      var character = text.charAt(i);
+
+      if ('0' <= character && '9' >= character) {
+        octet = Math.max(0, octet) * 10 + character - '0';
+        if (255 < octet) {
+          return -1;
+        }
+      } else if ('.' == character && 0 <= octet && 3 > dots) {
+        address = (address << 8) | octet;
+        dots++;
+        octet = -1;
+      } else {
+        return -1;
+      }
+    }
+
+    return (3 == dots && 0 <= octet) ? (address << 8) | octet : -1;
+  }
+
+  private static int prefix(String value) {
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException exception) {
+      return -1;
+    }
+  }
+
+  @Override
+  @Nullable
+  public Rejection admit(@NotNull HttpRequest httpRequest) {
+    if (0 < networks.length && !isAllowed(httpRequest.getFirstHeader(X_FORWARDED_FOR).orElse(null))) {
+      return Rejection.Address;
+    }
+    // constant-time comparison does not reveal how much of the token is right
+    if (null != secretToken && !MessageDigest.isEqual(secretToken,
+        httpRequest.getFirstHeader(SECRET_TOKEN_HEADER).orElse("").getBytes(UTF_8))) {
+      return Rejection.SecretToken;
+    }
+    if (maxBodyLength < httpRequest.getContentLength()) {
+      return Rejection.ContentLength;
+    }
+
+    return null;
+  }
+
+  @Override
+  public int maxBodyLength() {
+    return maxBodyLength;
+  }
+
+  private boolean isAllowed(@Nullable String forwardedFor) {
+    if (null == forwardedFor) {
+      return false;
+    }
+
+    var from = forwardedFor.lastIndexOf(',') + 1;
+    var to = forwardedFor.length();
+
+    while (from < to && ' ' == forwardedFor.charAt(from)) {
+      from++;
+    }
+    while (from < to && ' ' == forwardedFor.charAt(to - 1)) {
+      to--;
+    }
+
+    var address = ipv4(forwardedFor, from, to);
+
+    if (0 > address) {
+      return false;
+    }
+    for (var i = 0; networks.length > i; i++) {
+      if (networks[i] == (address & masks[i])) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+}
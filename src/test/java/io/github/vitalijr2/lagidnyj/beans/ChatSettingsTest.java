@@ -0,0 +1,86 @@
+package io.github.vitalijr2.lagidnyj.beans;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.vitalijr2.lagidnyj.beans.ChatSettings.DetectionMode;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+@Tag("fast")
+class ChatSettingsTest {
+
+  @DisplayName("Exempt users")
+  @ParameterizedTest(name = "{0}: {1}")
+  @CsvSource({"456,true", "789,true", "123,true", "457,false", "-456,false"})
+  void exempt(long userId, boolean expected) {
+    // given
+    var settings = new ChatSettings(true, 92, 2, new long[]{789, 123, 456}, DetectionMode.Letters);
+
+    // when and then
+    assertEquals(expected, settings.isExempt(userId));
+  }
+
+  @DisplayName("Exempt users are copied")
+  @Test
+  void exemptUsersCopied() {
+    // given
+    var userIds = new long[]{456, 123};
+    var settings = new ChatSettings(true, 92, 2, userIds, DetectionMode.Letters);
+
+    // when
+    userIds[0] = 789;
+    settings.exemptUsers()[0] = 789;
+
+    // then
+    assertAll("Settings", () -> assertArrayEquals(new long[]{123, 456}, settings.exemptUsers()),
+        () -> assertFalse(settings.isExempt(789)), () -> assertTrue(settings.isExempt(456)));
+  }
+
+  @DisplayName("Equal settings")
+  @Test
+  void equality() {
+    // given
+    var settings = new ChatSettings(true, 60, 3, new long[]{456, 123}, DetectionMode.Letters);
+    var same = new ChatSettings(true, 60, 3, new long[]{123, 456}, DetectionMode.Letters);
+
+    // when and then
+    assertAll("Equality", () -> assertEquals(settings, same), () -> assertEquals(settings.hashCode(), same.hashCode()),
+        () -> assertEquals(settings.toString(), same.toString()), () -> assertNotEquals(ChatSettings.DEFAULT, same),
+        () -> assertNotEquals(settings, new ChatSettings(true, 60, 3, new long[]{123}, DetectionMode.Letters)));
+  }
+
+  @DisplayName("Wrong delay or strikes")
+  @ParameterizedTest
+  @CsvSource({"0,2", "-1,2", "92,-1"})
+  void wrongSettings(int secondsOfDelay, int strikesToRestrict) {
+    // when and then
+    assertThrows(IllegalArgumentException.class,
+        () -> new ChatSettings(true, secondsOfDelay, strikesToRestrict, new long[0], DetectionMode.Letters));
+  }
+
+  @DisplayName("Detection mode by name")
+  @ParameterizedTest
+  @CsvSource({"letters, Letters", "LETTERS, Letters", "' Letters ', Letters", "scoring, Scoring"})
+  void detectionMode(String mode, DetectionMode expected) {
+    // when and then
+    assertEquals(expected, DetectionMode.fromString(mode));
+  }
+
+  @DisplayName("Default and wrong detection mode")
+  @Test
+  void defaultDetectionMode() {
+    // when and then
+    assertAll("Detection mode", () -> assertEquals(DetectionMode.Letters, DetectionMode.fromString(null)),
+        () -> assertThrows(IllegalArgumentException.class, () -> DetectionMode.fromString("words")));
+  }
+
+}
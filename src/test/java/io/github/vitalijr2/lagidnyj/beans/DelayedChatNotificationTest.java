@@ -1,10 +1,17 @@
 package io.github.vitalijr2.lagidnyj.beans;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.util.concurrent.Delayed;
 import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 
@@ -13,14 +20,37 @@ class DelayedChatNotificationTest {
 
   @DisplayName("Compare")
   @ParameterizedTest
-  @CsvSource({"123,321,-198", "321,123,198", "123,123,0"})
-  void compareTo(int firstSecondsOfDelay, int secondSecondsOfDelay, int expected) {
+  @CsvSource({"123,321,-1", "321,123,1", "123,123,0", "-9223372036854775808,9223372036854775807,-1"})
+  void compareTo(long firstDeadline, long secondDeadline, int expected) {
     // given
-    var first = new DelayedChatNotification(123, 456, "John", "Smith", "johnsmith", "en", firstSecondsOfDelay);
-    var second = new DelayedChatNotification(123, 456, "John", "Smith", "johnsmith", "en", secondSecondsOfDelay);
+    var first = new DelayedChatNotification(123, 456, "John", "Smith", "johnsmith", "en", 92, firstDeadline);
+    var second = new DelayedChatNotification(123, 456, "John", "Smith", "johnsmith", "en", 92, secondDeadline);
 
     // when
-    assertEquals(expected, first.compareTo(second));
+    assertEquals(expected, Integer.signum(first.compareTo(second)));
+  }
+
+  @DisplayName("Compare with another delayed object")
+  @Test
+  void compareToDelayed() {
+    // given
+    var notification = new DelayedChatNotification(123, 456, "John", "Smith", "johnsmith", "en", 60);
+    var delayed = new Delayed() {
+
+      @Override
+      public long getDelay(@NotNull TimeUnit timeUnit) {
+        return timeUnit.convert(1, TimeUnit.HOURS);
+      }
+
+      @Override
+      public int compareTo(@NotNull Delayed delayed) {
+        return 0;
+      }
+
+    };
+
+    // when
+    assertEquals(-1, Integer.signum(notification.compareTo(delayed)));
   }
 
   @DisplayName("Get delay")
@@ -32,7 +62,20 @@ class DelayedChatNotificationTest {
     var delayed = new DelayedChatNotification(123, 456, "John", "Smith", "johnsmith", "en", secondsOfDelay);
 
     // when and then
-    assertEquals(expectedDelay, delayed.getDelay(timeUnit));
+    assertThat(delayed.getDelay(timeUnit),
+        allOf(lessThanOrEqualTo(expectedDelay),
+            greaterThanOrEqualTo(expectedDelay - timeUnit.convert(1, TimeUnit.SECONDS))));
+  }
+
+  @DisplayName("Delay decreases until the deadline and then becomes negative")
+  @Test
+  void getDelayAfterDeadline() {
+    // given
+    var delayed = new DelayedChatNotification(123, 456, "John", "Smith", "johnsmith", "en", 92,
+        System.currentTimeMillis() - 5000);
+
+    // when and then
+    assertThat(delayed.getDelay(TimeUnit.SECONDS), lessThanOrEqualTo(-5L));
   }
 
 }
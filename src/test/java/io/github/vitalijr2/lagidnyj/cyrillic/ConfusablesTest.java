@@ -0,0 +1,90 @@
+package io.github.vitalijr2.lagidnyj.cyrillic;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+@Tag("fast")
+class ConfusablesTest {
+
+  @DisplayName("Latin look-alikes")
+  @ParameterizedTest
+  @CsvSource({"a, а", "c, с", "o, о", "H, Н", "T, Т", "ａ, а", "Ｈ, Н", "b, b", "щ, щ", "ｂ, ｂ", "~, ~"})
+  void toCyrillic(char character, char expected) {
+    // when and then
+    assertEquals(expected, Confusables.toCyrillic(character));
+  }
+
+  @DisplayName("Ignorable characters")
+  @ParameterizedTest
+  @ValueSource(chars = {'\u00AD', '\u200B', '\u200D', '\u2060', '\uFEFF', '\u0301', '\uFE0F'})
+  void ignorable(char character) {
+    // when and then
+    assertAll("Ignorable", () -> assertTrue(Confusables.isIgnorable(character)),
+        () -> assertEquals(Confusables.CYRILLIC, Confusables.next(Confusables.CYRILLIC, Confusables.kind(character))));
+  }
+
+  @DisplayName("Cyrillic letters")
+  @Test
+  void cyrillic() {
+    // when and then
+    assertAll("Cyrillic", () -> assertTrue(Confusables.isCyrillic('ї')),
+        () -> assertTrue(Confusables.isCyrillic('Ы')), () -> assertFalse(Confusables.isCyrillic('b')),
+        () -> assertFalse(Confusables.isCyrillic('\u0483')),
+        () -> assertFalse(Confusables.isIgnorable('ь')));
+  }
+
+  @DisplayName("Soft sign at the end of a Ukrainian word")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @ValueSource(strings = {"сіль|перець", "день1", "Учитель|Учень", "ціль|мета", "кіньl", "сільI мета"})
+  void softSignAtEnd(String text) {
+    // given
+    var found = false;
+    var state = Confusables.NONE;
+
+    // when
+    for (var i = 0; text.length() > i; i++) {
+      state = Confusables.next(state, Confusables.kind(text.charAt(i)));
+      found |= Confusables.FOUND <= state;
+    }
+
+    // then
+    assertFalse(found);
+  }
+
+  @DisplayName("State machine")
+  @Test
+  void stateMachine() {
+    // given
+    var softSign = Confusables.next(Confusables.CYRILLIC, Confusables.kind('ь'));
+    var stick = Confusables.next(softSign, Confusables.kind('I'));
+    var latinSoftSign = Confusables.next(Confusables.CYRILLIC, Confusables.kind('b'));
+
+    // when and then
+    assertAll("States",
+        () -> assertEquals(Confusables.FOUND, Confusables.next(Confusables.NONE, Confusables.kind('ё'))),
+        () -> assertEquals(Confusables.FOUND_PAIR, Confusables.next(stick, Confusables.kind('н'))),
+        () -> assertEquals(Confusables.NONE, Confusables.next(stick, Confusables.kind(' '))),
+        () -> assertEquals(Confusables.FOUND_PAIR, Confusables.next(latinSoftSign, Confusables.kind('I'))),
+        () -> assertEquals(Confusables.FOUND_PAIR, Confusables.next(latinSoftSign, Confusables.kind('і'))),
+        () -> assertEquals(Confusables.NONE, Confusables.next(latinSoftSign, Confusables.kind('|'))),
+        () -> assertEquals(Confusables.CYRILLIC, Confusables.next(softSign, Confusables.kind('н'))),
+        () -> assertEquals(Confusables.NONE, Confusables.next(Confusables.NONE, Confusables.kind('b'))),
+        () -> assertEquals(Confusables.FOUND, Confusables.next(Confusables.CYRILLIC, Confusables.kind('ë'))),
+        () -> assertEquals(Confusables.NONE, Confusables.next(Confusables.NONE, Confusables.kind('ë'))),
+        () -> assertEquals(Confusables.NONE, Confusables.next(Confusables.NONE, Confusables.kind('e'))),
+        () -> assertEquals(Confusables.NONE, Confusables.next(Confusables.CYRILLIC, Confusables.kind('\u0308'))),
+        () -> assertTrue(Confusables.isIgnorable('\u0308')),
+        () -> assertTrue(Confusables.startsPair(Confusables.kind('e'))),
+        () -> assertFalse(Confusables.startsPair(Confusables.kind('I'))));
+  }
+
+}
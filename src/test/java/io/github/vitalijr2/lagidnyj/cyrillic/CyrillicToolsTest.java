@@ -1,13 +1,19 @@
 package io.github.vitalijr2.lagidnyj.cyrillic;
 
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import io.github.vitalijr2.lagidnyj.cyrillic.CyrillicTools.Engine;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.NullAndEmptySource;
+import org.junit.jupiter.params.provider.ValueSource;
 
 @Tag("fast")
 class CyrillicToolsTest {
@@ -27,4 +33,126 @@ class CyrillicToolsTest {
     assertFalse(CyrillicTools.hasRussianLetters(String.format("qwerty%sйцукен", "ї")));
   }
 
-}
\ No newline at end of file
+  @DisplayName("Neighbours of the Russian letters")
+  @ParameterizedTest
+  @ValueSource(chars = {'Ѐ', 'Ђ', 'Щ', 'Ь', 'Ю', 'щ', 'ь', 'ю', 'ѐ', 'ђ', 'a', '\u0000', '￿'})
+  void neighbours(char character) {
+    // when and then
+    assertFalse(CyrillicTools.isRussianLetter(character));
+  }
+
+  @DisplayName("Scan")
+  @ParameterizedTest(name = "{0}: {1}")
+  @CsvSource({"TABLE,qwerty,-1,0", "TABLE,qwertyёж,6,1", "TABLE,ъqwЫerЭtyэ,0,4", "REGEX,qwerty,-1,0",
+      "REGEX,qwertyёж,6,1", "REGEX,ъqwЫerЭtyэ,0,4"})
+  void scan(Engine engine, String text, int expectedFirstHit, int expectedHitCount) {
+    // when
+    var result = engine.scan(text, 0, text.length());
+
+    // then
+    assertAll("Scan", () -> assertEquals(expectedFirstHit, CyrillicTools.firstHit(result)),
+        () -> assertEquals(expectedHitCount, CyrillicTools.hitCount(result)),
+        () -> assertEquals(expectedFirstHit, engine.indexOf(text, 0, text.length())));
+  }
+
+  @DisplayName("Folded Russian letters")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @CsvSource({"мbIло, 1", "МЬIЛО, 1", "вьlход, 1", "вь\u200Bl\u200Bход, 1", "мbl, 1", "мb\u200BIло, 1", "мｂＩло, 1",
+      "вьIе, 1", "е\u0308жик, 0", "Е\u200B\u0308ж, 0", "ещe\u0308, 2", "мëд, 1", "Мe\u200B\u0308д, 1",
+      "п\u04F9ль, 1"})
+  void foldedLetters(String text, int expectedFirstHit) {
+    // when
+    var result = Engine.TABLE.scan(text, 0, text.length());
+
+    // then
+    assertAll("Folded", () -> assertEquals(expectedFirstHit, CyrillicTools.firstHit(result)),
+        () -> assertEquals(1, CyrillicTools.hitCount(result)),
+        () -> assertEquals(expectedFirstHit, Engine.TABLE.indexOf(text, 0, text.length())));
+  }
+
+  @DisplayName("No folded letters")
+  @ParameterizedTest
+  @ValueSource(strings = {"table", "bIg", "Bl", "1bl", "мb Iло", "е\u0301", "сьогодні", "вільний", "e", "ь", "\u0308",
+      "\u200Bе\u200B", "\u03F6то", "∋то", "сіль|перець", "день1", "Учитель|Учень", "ціль|мета", "кіньl", "мb|",
+      "ть1", "сільI мета"})
+  void noFoldedLetters(String text) {
+    // when and then
+    assertAll("Not folded", () -> assertFalse(CyrillicTools.hasRussianLetters(text)),
+        () -> assertEquals(-1, Engine.TABLE.indexOf(text, 0, text.length())),
+        () -> assertEquals(CyrillicTools.NO_HITS, Engine.TABLE.scan(text, 0, text.length())));
+  }
+
+  @DisplayName("Latin words with a diaeresis")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @ValueSource(strings = {"Citroën", "Noël", "België", "ËLA", "Citroe\u0308n", "Noe\u0308l", "E\u0308", "ëжик",
+      "e\u0308жик"})
+  void latinDiaeresis(String text) {
+    // when and then
+    assertAll("Latin", () -> assertEquals(-1, Engine.TABLE.indexOf(text, 0, text.length())),
+        () -> assertEquals(CyrillicTools.NO_HITS, Engine.TABLE.scan(text, 0, text.length())));
+  }
+
+  @DisplayName("Count folded and plain letters")
+  @Test
+  void countFoldedLetters() {
+    // given
+    var text = "мbIлоёe\u0308ыbI";
+
+    // when
+    var result = Engine.TABLE.scan(text, 0, text.length());
+
+    // then
+    assertAll("Count", () -> assertEquals(1, CyrillicTools.firstHit(result)),
+        () -> assertEquals(5, CyrillicTools.hitCount(result)),
+        () -> assertEquals(5, CyrillicTools.firstHit(Engine.REGEX.scan(text, 0, text.length()))));
+  }
+
+  @DisplayName("Scan a range")
+  @ParameterizedTest
+  @EnumSource(Engine.class)
+  void scanRange(Engine engine) {
+    // given
+    var text = "ыqwertyыasdыf";
+
+    // when
+    var result = engine.scan(text, 1, 12);
+
+    // then
+    assertAll("Scan", () -> assertEquals(7, CyrillicTools.firstHit(result)),
+        () -> assertEquals(2, CyrillicTools.hitCount(result)), () -> assertEquals(-1, engine.indexOf(text, 1, 7)),
+        () -> assertEquals(CyrillicTools.NO_HITS, engine.scan(text, 1, 7)));
+  }
+
+  @DisplayName("Scan a character array")
+  @Test
+  void scanCharArray() {
+    // given
+    var text = "ыqwertyыasdыf".toCharArray();
+
+    // when
+    var result = CyrillicTools.scan(text, 1, 11);
+
+    // then
+    assertAll("Scan", () -> assertEquals(7, CyrillicTools.firstHit(result)),
+        () -> assertEquals(2, CyrillicTools.hitCount(result)),
+        () -> assertEquals(CyrillicTools.NO_HITS, CyrillicTools.scan(text, 1, 6)));
+  }
+
+  @DisplayName("Default engine")
+  @ParameterizedTest
+  @NullAndEmptySource
+  @ValueSource(strings = {"vector", "simd"})
+  void defaultEngine(String engine) {
+    // when and then
+    assertEquals(Engine.TABLE, Engine.fromString(engine));
+  }
+
+  @DisplayName("Choose an engine")
+  @ParameterizedTest
+  @CsvSource({"regex,REGEX", " Table ,TABLE"})
+  void chooseEngine(String engine, Engine expectedEngine) {
+    // when and then
+    assertEquals(expectedEngine, Engine.fromString(engine));
+  }
+
+}
@@ -0,0 +1,120 @@
+package io.github.vitalijr2.lagidnyj.cyrillic;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvFileSource;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+@Tag("fast")
+class ScoringDetectorTest {
+
+  private static final String TABLE = "# test table\n[words]\nкак 2\nчто 1\nпусто 0\n\n[trigrams]\nтся 2\n_зд 1\n";
+
+  private static ScoringDetector detector(String table, int threshold) throws IOException {
+    return new ScoringDetector(new StringReader(table), threshold);
+  }
+
+  @DisplayName("Russian text without the letters")
+  @ParameterizedTest
+  @ValueSource(strings = {"Привет, как у тебя дела сегодня?", "Что нужно сделать? Не знаю, надо спросить",
+      "КАК ЖЕ ХОРОШО", "Спасибо большое, очень помогли", "Он говорит, что все нормально"})
+  void russianText(String text) {
+    // when and then
+    assertTrue(ScoringDetector.getInstance().isRussian(text));
+  }
+
+  @DisplayName("Ukrainian and other text")
+  @ParameterizedTest
+  @ValueSource(strings = {"Привіт, як у тебе справи сьогодні?", "Що потрібно зробити? Не знаю, треба спитати",
+      "Дякую, дуже допомогли", "Hello, how are you?", "", "123 456 !!!", "Добрий день, друзі"})
+  void otherText(String text) {
+    // when and then
+    assertFalse(ScoringDetector.getInstance().isRussian(text));
+  }
+
+  @DisplayName("Ukrainian sentences stay below the threshold")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @CsvFileSource(resources = "ukrainian_sentences.csv", numLinesToSkip = 1, delimiter = '|')
+  void ukrainianSentences(String text) {
+    // when and then
+    assertThat(ScoringDetector.getInstance().score(text, 0, text.length(), ScoringDetector.DEFAULT_THRESHOLD),
+        lessThan(ScoringDetector.DEFAULT_THRESHOLD));
+  }
+
+  @DisplayName("Score of words and trigrams")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @CsvSource({"как, 2", "Как что, 3", "Здесь, 1", "учится, 2", "пусто, 0", "Її звати Марія, -2", "как-то, 2",
+      "'', 0"})
+  void score(String text, int expected) throws IOException {
+    // given
+    var detector = detector(TABLE, 10);
+
+    // when and then
+    assertEquals(expected, detector.score(text, 0, text.length(), 10));
+  }
+
+  @DisplayName("Invisible characters and Latin look-alikes")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @CsvSource({"кaк, 2", "к\u200Bак, 2", "ка\u0301к, 2", "КAК что, 3", "ｋａｋ, 0", "cake, 0", "как kak, 2"})
+  void confusables(String text, int expected) throws IOException {
+    // given
+    var detector = detector(TABLE, 10);
+
+    // when and then
+    assertEquals(expected, detector.score(text, 0, text.length(), 10));
+  }
+
+  @DisplayName("Stop at the limit")
+  @Test
+  void earlyExit() throws IOException {
+    // given
+    var detector = detector(TABLE, 2);
+    var text = "как что как что";
+
+    // when and then
+    assertAll("Early exit", () -> assertEquals(2, detector.score(text, 0, text.length(), 2)),
+        () -> assertEquals(6, detector.score(text, 0, text.length(), 100)),
+        () -> assertEquals(1, detector.score(text, 4, 7, 100)), () -> assertTrue(detector.isRussian("как")),
+        () -> assertFalse(detector.isRussian("что")));
+  }
+
+  @DisplayName("Threshold")
+  @Test
+  void threshold() throws IOException {
+    // when and then
+    assertAll("Threshold", () -> assertEquals(5, detector(TABLE, 5).getThreshold()),
+        () -> assertEquals(ScoringDetector.DEFAULT_THRESHOLD, ScoringDetector.getInstance().getThreshold()),
+        () -> assertThrows(IllegalArgumentException.class, () -> detector(TABLE, 0)));
+  }
+
+  @DisplayName("Lower case of Cyrillic letters")
+  @ParameterizedTest
+  @CsvSource({"А, а", "Я, я", "Ё, ё", "Ї, ї", "Є, є", "І, і", "Ґ, ґ", "а, а", "Q, Q"})
+  void lowerCase(char character, char expected) {
+    // when and then
+    assertEquals(expected, ScoringDetector.lowerCase(character));
+  }
+
+  @DisplayName("Wrong table")
+  @ParameterizedTest
+  @ValueSource(strings = {"как 1", "[words]\nкак", "[words]\nкак 1 2", "[words]\nhow 1", "[words]\nкак x",
+      "[trigrams]\nтс 1", "[trigrams]\nт-я 1"})
+  void wrongTable(String table) {
+    // when and then
+    assertThrows(IllegalArgumentException.class, () -> detector(table, 1));
+  }
+
+}
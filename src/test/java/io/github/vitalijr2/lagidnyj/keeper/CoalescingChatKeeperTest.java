@@ -0,0 +1,135 @@
+package io.github.vitalijr2.lagidnyj.keeper;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.withSettings;
+
+import io.github.vitalijr2.lagidnyj.beans.CoalescedNotification;
+import io.github.vitalijr2.lagidnyj.beans.DelayedChatNotification;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("fast")
+class CoalescingChatKeeperTest {
+
+  private final List<CoalescedNotification> matured = new ArrayList<>();
+  private final List<DelayedChatNotification> scheduled = new ArrayList<>();
+
+  private Consumer<DelayedChatNotification> delegateListener;
+  private CoalescingChatKeeper keeper;
+
+  private static DelayedChatNotification notification(long userId) {
+    return new DelayedChatNotification(-100123, userId, "John", null, null, null, 92);
+  }
+
+  @BeforeEach
+  void setUp() {
+    matured.clear();
+    scheduled.clear();
+    keeper = new CoalescingChatKeeper(matured::add, 4, listener -> {
+      delegateListener = listener;
+      return scheduled::add;
+    });
+  }
+
+  @DisplayName("A burst costs one pending entry")
+  @Test
+  void burst() {
+    // given
+    var first = notification(456);
+
+    // when
+    keeper.addUserToWatchList(first);
+    for (var i = 0; 29 > i; i++) {
+      keeper.addUserToWatchList(notification(456));
+    }
+
+    // then
+    assertAll("Coalesced", () -> assertThat(scheduled, contains(first)), () -> assertEquals(1, keeper.size()),
+        () -> assertEquals(30, keeper.count(-100123, 456)));
+  }
+
+  @DisplayName("Matured notification carries all violations")
+  @Test
+  void matured() {
+    // given
+    var startTime = System.currentTimeMillis();
+    var first = notification(456);
+
+    keeper.addUserToWatchList(first);
+    keeper.addUserToWatchList(notification(456));
+
+    // when
+    delegateListener.accept(first);
+
+    // then
+    var violations = matured.get(0);
+
+    assertAll("Matured", () -> assertSame(first, violations.notification()), () -> assertEquals(2, violations.count()),
+        () -> assertTrue(violations.firstSeen() >= startTime),
+        () -> assertTrue(violations.lastSeen() >= violations.firstSeen()),
+        () -> assertEquals(0, keeper.size()));
+  }
+
+  @DisplayName("A violation after maturity starts a new entry")
+  @Test
+  void violationAfterMaturity() {
+    // given
+    var first = notification(456);
+
+    keeper.addUserToWatchList(first);
+    delegateListener.accept(first);
+
+    // when
+    var second = notification(456);
+
+    keeper.addUserToWatchList(second);
+
+    // then
+    assertThat(scheduled, contains(first, second));
+  }
+
+  @DisplayName("Unknown matured notification, e.g. restored from a journal")
+  @Test
+  void unknownNotification() {
+    // given
+    var notification = new DelayedChatNotification(-100123, 456, "John", null, null, null, 92, 100_000);
+
+    // when
+    delegateListener.accept(notification);
+
+    // then
+    var violations = matured.get(0);
+
+    assertAll("Matured", () -> assertEquals(1, violations.count()), () -> assertEquals(8_000, violations.firstSeen()),
+        () -> assertEquals(8_000, violations.lastSeen()), () -> assertThat(scheduled, empty()));
+  }
+
+  @DisplayName("Close the delegate")
+  @Test
+  void closeDelegate() throws Exception {
+    // given
+    var delegate = mock(ChatKeeper.class, withSettings().extraInterfaces(AutoCloseable.class));
+
+    keeper = new CoalescingChatKeeper(matured::add, 4, listener -> delegate);
+
+    // when
+    keeper.close();
+
+    // then
+    verify((AutoCloseable) delegate).close();
+  }
+
+}
@@ -0,0 +1,80 @@
+package io.github.vitalijr2.lagidnyj.keeper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.github.vitalijr2.lagidnyj.beans.DelayedChatNotification;
+import java.nio.file.Path;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Append throughput and recovery time of the journal, run it with {@code mvn test -P benchmark}.
+ */
+@Tag("benchmark")
+class JournalChatKeeperBenchmark {
+
+  private static final int NOTIFICATIONS = 200_000;
+
+  @TempDir
+  private Path directory;
+
+  private static DelayedChatNotification notification(long userId, long deadline) {
+    return new DelayedChatNotification(-100123, userId, "Джон", "Smith", "john_smith", "uk", 92, deadline);
+  }
+
+  private static void report(String name, long startTime, int count) {
+    var millis = Math.max(1, (System.nanoTime() - startTime) / 1_000_000);
+
+    System.out.printf("%s: %d notifications in %d ms, %d per second%n", name, count, millis, count * 1000L / millis);
+  }
+
+  @DisplayName("Append")
+  @ParameterizedTest(name = "sync commit: {0}")
+  @ValueSource(booleans = {false, true})
+  void append(boolean syncCommit) throws Exception {
+    var count = syncCommit ? NOTIFICATIONS / 20 : NOTIFICATIONS;
+    var deadline = System.currentTimeMillis() + 3_600_000;
+
+    try (var keeper = new JournalChatKeeper(directory, JournalChatKeeper.DEFAULT_SEGMENT_SIZE, syncCommit,
+        notification -> {
+        }, listener -> notification -> {
+        })) {
+      var startTime = System.nanoTime();
+
+      for (var i = 0; count > i; i++) {
+        keeper.addUserToWatchList(notification(i, deadline));
+      }
+      report("Append, sync commit " + syncCommit, startTime, count);
+    }
+  }
+
+  @DisplayName("Recover")
+  @Test
+  void recover() throws Exception {
+    var deadline = System.currentTimeMillis() + 3_600_000;
+
+    try (var keeper = new JournalChatKeeper(directory, JournalChatKeeper.DEFAULT_SEGMENT_SIZE, false,
+        notification -> {
+        }, listener -> notification -> {
+        })) {
+      for (var i = 0; NOTIFICATIONS > i; i++) {
+        keeper.addUserToWatchList(notification(i, deadline));
+      }
+    }
+
+    var startTime = System.nanoTime();
+
+    try (var keeper = new JournalChatKeeper(directory, JournalChatKeeper.DEFAULT_SEGMENT_SIZE, false,
+        notification -> {
+        }, listener -> notification -> {
+        })) {
+      report("Recover", startTime, keeper.getRecovered());
+      assertEquals(NOTIFICATIONS, keeper.getRecovered());
+    }
+  }
+
+}
@@ -0,0 +1,239 @@
+package io.github.vitalijr2.lagidnyj.keeper;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.github.vitalijr2.lagidnyj.beans.DelayedChatNotification;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@Tag("fast")
+class JournalChatKeeperTest {
+
+  private final List<DelayedChatNotification> matured = new ArrayList<>();
+  private final List<DelayedChatNotification> scheduled = new ArrayList<>();
+
+  @TempDir
+  private Path directory;
+
+  private static DelayedChatNotification notification(long userId, long deadline) {
+    return new DelayedChatNotification(-100123, userId, "Джон", userId % 2 == 0 ? null : "Smith", "john_smith", "uk",
+        92, deadline);
+  }
+
+  private static List<Path> segments(Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.sorted().collect(Collectors.toList());
+    }
+  }
+
+  @BeforeEach
+  void setUp() {
+    matured.clear();
+    scheduled.clear();
+  }
+
+  private JournalChatKeeper open(int segmentSize) throws IOException {
+    return new JournalChatKeeper(directory, segmentSize, true, matured::add, this::schedulingKeeper);
+  }
+
+  private ChatKeeper schedulingKeeper(Consumer<DelayedChatNotification> journalListener) {
+    return notification -> {
+      scheduled.add(notification);
+      if (notification.deadline() <= System.currentTimeMillis()) {
+        journalListener.accept(notification);
+      }
+    };
+  }
+
+  @DisplayName("Restore pending notifications")
+  @Test
+  void restore() throws Exception {
+    // given
+    var deadline = System.currentTimeMillis() + 60_000;
+    var first = notification(1, deadline);
+    var second = notification(2, deadline + 1);
+
+    try (var keeper = open(JournalChatKeeper.DEFAULT_SEGMENT_SIZE)) {
+      keeper.addUserToWatchList(first);
+      keeper.addUserToWatchList(second);
+    }
+    scheduled.clear();
+
+    // when
+    try (var keeper = open(JournalChatKeeper.DEFAULT_SEGMENT_SIZE)) {
+      // then
+      assertAll("Restored", () -> assertEquals(2, keeper.getRecovered()),
+          () -> assertThat(scheduled, contains(first, second)), () -> assertThat(segments(directory), hasSize(1)));
+    }
+  }
+
+  @DisplayName("Matured notifications are not restored")
+  @Test
+  void maturedNotifications() throws Exception {
+    // given
+    var pending = notification(1, System.currentTimeMillis() + 60_000);
+    var due = notification(2, System.currentTimeMillis() - 1);
+
+    try (var keeper = open(JournalChatKeeper.DEFAULT_SEGMENT_SIZE)) {
+      keeper.addUserToWatchList(pending);
+      keeper.addUserToWatchList(due);
+    }
+    assertThat(matured, contains(due));
+    scheduled.clear();
+
+    // when
+    try (var keeper = open(JournalChatKeeper.DEFAULT_SEGMENT_SIZE)) {
+      // then
+      assertAll("Restored", () -> assertEquals(1, keeper.getRecovered()),
+          () -> assertThat(scheduled, contains(pending)));
+    }
+  }
+
+  @DisplayName("Rotate segments")
+  @Test
+  void rotateSegments() throws Exception {
+    // given
+    var deadline = System.currentTimeMillis() + 60_000;
+    var expected = new ArrayList<DelayedChatNotification>();
+
+    try (var keeper = new JournalChatKeeper(directory, 8192, false, matured::add, this::schedulingKeeper)) {
+      for (var i = 0; 500 > i; i++) {
+        var notification = notification(i, deadline + i);
+
+        expected.add(notification);
+        keeper.addUserToWatchList(notification);
+      }
+      assertThat(segments(directory).size(), greaterThan(1));
+    }
+    scheduled.clear();
+
+    // when
+    try (var keeper = open(8192)) {
+      // then
+      assertAll("Restored", () -> assertEquals(500, keeper.getRecovered()),
+          () -> assertThat(scheduled, containsInAnyOrder(expected.toArray())));
+    }
+  }
+
+  @DisplayName("Compact segments while running")
+  @Test
+  void compactSegments() throws Exception {
+    // given
+    var deadline = System.currentTimeMillis() + 60_000;
+    var pending = notification(0, deadline);
+
+    try (var keeper = new JournalChatKeeper(directory, 8192, false, matured::add, this::schedulingKeeper)) {
+      keeper.addUserToWatchList(pending);
+
+      // when
+      for (var i = 1; 2000 > i; i++) {
+        keeper.addUserToWatchList(notification(i, System.currentTimeMillis() - 1));
+      }
+
+      // then
+      assertAll("Compacted", () -> assertThat(keeper.getCompactions(), greaterThan(1L)),
+          () -> assertThat(segments(directory).size(), lessThanOrEqualTo(3)),
+          () -> assertThat(matured, hasSize(1999)));
+    }
+    scheduled.clear();
+    try (var keeper = open(8192)) {
+      assertAll("Restored", () -> assertEquals(1, keeper.getRecovered()),
+          () -> assertThat(scheduled, contains(pending)));
+    }
+  }
+
+  @DisplayName("A torn record finishes the segment")
+  @Test
+  void tornRecord() throws Exception {
+    // given
+    var deadline = System.currentTimeMillis() + 60_000;
+
+    try (var keeper = open(JournalChatKeeper.DEFAULT_SEGMENT_SIZE)) {
+      keeper.addUserToWatchList(notification(1, deadline));
+      keeper.addUserToWatchList(notification(2, deadline));
+    }
+    try (var file = new RandomAccessFile(segments(directory).get(0).toFile(), "rw")) {
+      // the second record starts right after the first one: skip its length and type and break the chat identifier
+      file.seek(0);
+
+      var firstLength = file.readInt();
+
+      file.seek(4 + firstLength + 4 + 4 + 1);
+      file.writeLong(42);
+    }
+    scheduled.clear();
+
+    // when
+    try (var keeper = open(JournalChatKeeper.DEFAULT_SEGMENT_SIZE)) {
+      // then
+      assertAll("Restored", () -> assertEquals(1, keeper.getRecovered()),
+          () -> assertThat(scheduled, contains(notification(1, deadline))));
+    }
+  }
+
+  @DisplayName("Empty journal")
+  @Test
+  void emptyJournal() throws Exception {
+    // when
+    try (var keeper = open(JournalChatKeeper.DEFAULT_SEGMENT_SIZE)) {
+      // then
+      assertAll("Empty", () -> assertEquals(0, keeper.getRecovered()), () -> assertThat(scheduled, empty()));
+    }
+  }
+
+  @DisplayName("Closed journal")
+  @Test
+  void closed() throws Exception {
+    // given
+    var keeper = open(JournalChatKeeper.DEFAULT_SEGMENT_SIZE);
+
+    // when
+    keeper.close();
+
+    // then
+    assertThrows(IllegalStateException.class,
+        () -> keeper.addUserToWatchList(notification(1, System.currentTimeMillis())));
+  }
+
+  @DisplayName("Too small segment")
+  @Test
+  void tooSmallSegment() {
+    // when and then
+    assertThrows(IllegalArgumentException.class, () -> open(1024));
+  }
+
+  @DisplayName("Too long name")
+  @Test
+  void tooLongName() throws Exception {
+    // given
+    try (var keeper = open(JournalChatKeeper.DEFAULT_SEGMENT_SIZE)) {
+      var notification = new DelayedChatNotification(1, 2, "J".repeat(2000), null, null, null, 92,
+          System.currentTimeMillis());
+
+      // when and then
+      assertThrows(IllegalArgumentException.class, () -> keeper.addUserToWatchList(notification));
+    }
+  }
+
+}
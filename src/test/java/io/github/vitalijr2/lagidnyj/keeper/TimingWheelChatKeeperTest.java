@@ -0,0 +1,155 @@
+package io.github.vitalijr2.lagidnyj.keeper;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.vitalijr2.lagidnyj.beans.DelayedChatNotification;
+import java.time.Duration;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+@Tag("fast")
+class TimingWheelChatKeeperTest {
+
+  private TimingWheelChatKeeper keeper;
+
+  private static DelayedChatNotification notification(long userId, long deadline) {
+    return new DelayedChatNotification(123, userId, "John", null, null, null, 0, deadline);
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (null != keeper) {
+      keeper.close();
+    }
+  }
+
+  @DisplayName("Notifications mature by their deadlines")
+  @Test
+  void matureByDeadlines() throws InterruptedException {
+    // given
+    var latch = new CountDownLatch(4);
+    var matured = new CopyOnWriteArrayList<Long>();
+    var now = System.currentTimeMillis();
+
+    keeper = new TimingWheelChatKeeper(notification -> {
+      assertThat("not earlier than the deadline", System.currentTimeMillis(),
+          greaterThanOrEqualTo(notification.deadline()));
+      matured.add(notification.userId());
+      latch.countDown();
+    }, Duration.ofMillis(5), 8, Thread::new);
+
+    // when
+    keeper.addUserToWatchList(notification(3, now + 150));
+    keeper.addUserToWatchList(notification(2, now + 60));
+    keeper.addUserToWatchList(notification(1, now - 1000));
+    keeper.addUserToWatchList(notification(4, now + 400));
+
+    // then
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertAll("Matured", () -> assertThat(matured, contains(1L, 2L, 3L, 4L)), () -> assertEquals(0, keeper.size()));
+  }
+
+  @DisplayName("A failed listener does not stop the wheel")
+  @Test
+  void failedListener() throws InterruptedException {
+    // given
+    var latch = new CountDownLatch(2);
+    var now = System.currentTimeMillis();
+
+    keeper = new TimingWheelChatKeeper(notification -> {
+      latch.countDown();
+      throw new IllegalStateException("test exception");
+    }, Duration.ofMillis(1), 4, Thread::new);
+
+    // when
+    keeper.addUserToWatchList(notification(1, now));
+    keeper.addUserToWatchList(notification(2, now + 20));
+
+    // then
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+  }
+
+  @DisplayName("Pending notifications")
+  @Test
+  void pendingNotifications() {
+    // given
+    var now = System.currentTimeMillis();
+
+    keeper = new TimingWheelChatKeeper(notification -> {
+    });
+
+    // when
+    for (var i = 0; 1000 > i; i++) {
+      keeper.addUserToWatchList(notification(i, now + 60_000 + i));
+    }
+
+    // then
+    assertEquals(1000, keeper.size());
+  }
+
+  @DisplayName("Closed keeper")
+  @Test
+  void closed() {
+    // given
+    keeper = new TimingWheelChatKeeper(notification -> {
+    });
+    keeper.addUserToWatchList(notification(1, System.currentTimeMillis() + 60_000));
+
+    // when
+    keeper.close();
+
+    // then
+    assertThrows(IllegalStateException.class,
+        () -> keeper.addUserToWatchList(notification(2, System.currentTimeMillis())));
+  }
+
+  @DisplayName("Wrong wheel size")
+  @ParameterizedTest
+  @ValueSource(ints = {0, -1, (1 << 30) + 1})
+  void wrongWheelSize(int wheelSize) {
+    // when and then
+    assertThrows(IllegalArgumentException.class,
+        () -> new TimingWheelChatKeeper(notification -> {
+        }, Duration.ofMillis(1), wheelSize, Thread::new));
+  }
+
+  @DisplayName("Wrong tick")
+  @Test
+  void wrongTick() {
+    // when and then
+    assertThrows(IllegalArgumentException.class,
+        () -> new TimingWheelChatKeeper(notification -> {
+        }, Duration.ofNanos(999), 8, Thread::new));
+  }
+
+  @DisplayName("Many rounds")
+  @Test
+  void manyRounds() throws InterruptedException {
+    // given
+    var latch = new CountDownLatch(1);
+    var now = System.currentTimeMillis();
+
+    keeper = new TimingWheelChatKeeper(notification -> latch.countDown(), Duration.ofMillis(1), 2, Thread::new);
+
+    // when
+    keeper.addUserToWatchList(notification(1, now + 50));
+
+    // then
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertThat(System.currentTimeMillis() - now, greaterThanOrEqualTo(50L));
+  }
+
+}
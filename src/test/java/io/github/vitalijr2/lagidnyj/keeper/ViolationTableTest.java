@@ -0,0 +1,133 @@
+package io.github.vitalijr2.lagidnyj.keeper;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.vitalijr2.lagidnyj.beans.DelayedChatNotification;
+import java.util.HashMap;
+import java.util.Random;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+@Tag("fast")
+class ViolationTableTest {
+
+  private static DelayedChatNotification notification(long chatId, long userId) {
+    return new DelayedChatNotification(chatId, userId, "John", null, null, null, 92, 0);
+  }
+
+  @DisplayName("Count repeated violations")
+  @Test
+  void countRepeats() {
+    // given
+    var table = new ViolationTable(4);
+    var first = notification(-100123, 456);
+
+    // when
+    var added = table.add(first, 10);
+
+    table.add(notification(-100123, 456), 20);
+    table.add(notification(-100123, 456), 30);
+    table.add(notification(-100123, 789), 40);
+
+    // then
+    var violations = table.remove(-100123, 456);
+
+    assertAll("Coalesced", () -> assertTrue(added), () -> assertSame(first, violations.notification()),
+        () -> assertEquals(3, violations.count()), () -> assertEquals(10, violations.firstSeen()),
+        () -> assertEquals(30, violations.lastSeen()), () -> assertEquals(1, table.size()),
+        () -> assertEquals(0, table.count(-100123, 456)), () -> assertEquals(1, table.count(-100123, 789)));
+  }
+
+  @DisplayName("Repeated violation is not the first one")
+  @Test
+  void repeatedViolation() {
+    // given
+    var table = new ViolationTable(4);
+
+    table.add(notification(1, 2), 0);
+
+    // when and then
+    assertFalse(table.add(notification(1, 2), 0));
+  }
+
+  @DisplayName("Remove an absent pair")
+  @Test
+  void removeAbsent() {
+    // given
+    var table = new ViolationTable(4);
+
+    table.add(notification(1, 2), 0);
+
+    // when and then
+    assertThat(table.remove(2, 1), nullValue());
+  }
+
+  @DisplayName("Random additions and removals")
+  @Test
+  void randomOperations() {
+    // given
+    var random = new Random(42);
+    var table = new ViolationTable(0);
+    var expected = new HashMap<String, Integer>();
+
+    // when
+    for (var i = 0; 100_000 > i; i++) {
+      long chatId = random.nextInt(50);
+      long userId = random.nextInt(200);
+      var key = chatId + ":" + userId;
+
+      if (random.nextInt(3) == 0) {
+        var removed = table.remove(chatId, userId);
+
+        assertEquals(expected.remove(key), (null == removed) ? null : removed.count(), key);
+      } else {
+        table.add(notification(chatId, userId), i);
+        expected.merge(key, 1, Integer::sum);
+      }
+    }
+
+    // then
+    assertEquals(expected.size(), table.size());
+    expected.forEach((key, count) -> {
+      var ids = key.split(":");
+
+      assertEquals(count, table.count(Long.parseLong(ids[0]), Long.parseLong(ids[1])), key);
+    });
+  }
+
+  @DisplayName("Grow")
+  @Test
+  void grow() {
+    // given
+    var table = new ViolationTable(1);
+    var capacity = table.capacity();
+
+    // when
+    for (var i = 0; 1000 > i; i++) {
+      table.add(notification(-i, i), i);
+    }
+
+    // then
+    assertAll("Grown", () -> assertEquals(1000, table.size()), () -> assertTrue(table.capacity() > capacity),
+        () -> assertEquals(1, table.count(-999, 999)));
+  }
+
+  @DisplayName("Wrong expected size")
+  @ParameterizedTest
+  @ValueSource(ints = {-1, 1 << 30})
+  void wrongExpectedSize(int expectedSize) {
+    // when and then
+    assertThrows(IllegalArgumentException.class, () -> new ViolationTable(expectedSize));
+  }
+
+}
@@ -0,0 +1,34 @@
+package io.github.vitalijr2.lagidnyj.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+@Tag("fast")
+class ExchangeRequestTest {
+
+  @DisplayName("Content length")
+  @ParameterizedTest(name = "[{index}] {0} -> {1}")
+  @CsvSource(value = {"N/A,-1", "'',-1", "abc,-1", "0,0", "123,123"}, nullValues = "N/A")
+  void contentLength(String header, long expected) {
+    // given
+    var exchange = mock(HttpExchange.class);
+    var headers = new Headers();
+
+    if (null != header) {
+      headers.add("Content-Length", header);
+    }
+    given(exchange.getRequestHeaders()).willReturn(headers);
+
+    // when and then
+    assertEquals(expected, new ExchangeRequest(exchange).getContentLength());
+  }
+
+}
@@ -0,0 +1,198 @@
+package io.github.vitalijr2.lagidnyj.server;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.withSettings;
+
+import com.google.cloud.functions.HttpFunction;
+import com.google.cloud.functions.HttpRequest;
+import io.github.vitalijr2.lagidnyj.telegram.LagidnyjBot;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("fast")
+class StandaloneServerTest {
+
+  private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+  private StandaloneServer server;
+
+  private static StandaloneServer server(HttpFunction function) throws IOException {
+    var server = new StandaloneServer(function, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2,
+        Duration.ofSeconds(1));
+
+    server.start();
+
+    return server;
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (null != server) {
+      server.close();
+    }
+  }
+
+  private URI uri(String path) {
+    return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+  }
+
+  @DisplayName("Adapt a request and a response")
+  @Test
+  void adapt() throws Exception {
+    // given
+    var captured = new CompletableFuture<Map<String, Object>>();
+
+    server = server((request, response) -> {
+      captured.complete(Map.of("method", request.getMethod(), "path", request.getPath(), "query",
+          request.getQueryParameters(), "contentType", request.getContentType().orElse("none"), "charset",
+          request.getCharacterEncoding().orElse("none"), "contentLength", request.getContentLength(), "body",
+          request.getReader().readLine(), "header", request.getFirstHeader("x-test").orElse("none")));
+      response.setStatusCode(201, "Created");
+      response.setContentType("text/plain;charset=utf-8");
+      response.appendHeader("X-Answer", "42");
+      response.getHeaders().put("Allow", List.of("POST"));
+      response.getWriter().write("привіт");
+    });
+
+    // when
+    var response = httpClient.send(java.net.http.HttpRequest.newBuilder(uri("/webhook?a=1&b=%D1%97&a=2&c"))
+        .header("Content-Type", "application/json; charset=\"UTF-8\"").header("X-Test", "test")
+        .POST(BodyPublishers.ofString("{\"ok\":true}")).build(), BodyHandlers.ofString(UTF_8));
+
+    // then
+    var request = captured.get(5, TimeUnit.SECONDS);
+
+    assertAll("Request", () -> assertEquals("POST", request.get("method")),
+        () -> assertEquals("/webhook", request.get("path")),
+        () -> assertEquals(Map.of("a", List.of("1", "2"), "b", List.of("ї"), "c", List.of("")), request.get("query")),
+        () -> assertEquals("application/json; charset=\"UTF-8\"", request.get("contentType")),
+        () -> assertEquals("UTF-8", request.get("charset")), () -> assertEquals(11L, request.get("contentLength")),
+        () -> assertEquals("{\"ok\":true}", request.get("body")), () -> assertEquals("test", request.get("header")));
+    assertAll("Response", () -> assertEquals(201, response.statusCode()),
+        () -> assertEquals("привіт", response.body()),
+        () -> assertEquals(Optional.of("42"), response.headers().firstValue("X-Answer")),
+        () -> assertEquals(Optional.of("POST"), response.headers().firstValue("Allow")),
+        () -> assertEquals(Optional.of("12"), response.headers().firstValue("Content-Length")));
+  }
+
+  @DisplayName("Serve the bot")
+  @Test
+  void serveBot() throws Exception {
+    // given
+    server = server(new LagidnyjBot());
+
+    // when
+    var notAllowed = httpClient.send(java.net.http.HttpRequest.newBuilder(uri("/")).GET().build(),
+        BodyHandlers.ofString(UTF_8));
+    var update = httpClient.send(java.net.http.HttpRequest.newBuilder(uri("/"))
+        .POST(BodyPublishers.ofString("{\"update_id\":1,\"message\":{\"text\":\"test\"}}")).build(),
+        BodyHandlers.ofString(UTF_8));
+
+    // then
+    assertAll("Bot", () -> assertEquals(405, notAllowed.statusCode()),
+        () -> assertThat(notAllowed.body(), containsString("405 Method Not Allowed")),
+        () -> assertEquals(Optional.of("POST"), notAllowed.headers().firstValue("Allow")),
+        () -> assertEquals(200, update.statusCode()), () -> assertEquals("", update.body()));
+  }
+
+  @DisplayName("A failed function gives Internal Server Error")
+  @Test
+  void failedFunction() throws Exception {
+    // given
+    server = server((request, response) -> {
+      response.getWriter().write("partial");
+      throw new IllegalStateException("test exception");
+    });
+
+    // when
+    var response = httpClient.send(java.net.http.HttpRequest.newBuilder(uri("/")).GET().build(),
+        BodyHandlers.ofString(UTF_8));
+
+    // then
+    assertAll("Error", () -> assertEquals(500, response.statusCode()), () -> assertEquals("", response.body()));
+  }
+
+  @DisplayName("Running requests finish on close, then the function is closed")
+  @Test
+  void gracefulShutdown() throws Exception {
+    // given
+    var started = new CountDownLatch(1);
+    var function = mock(HttpFunction.class, withSettings().extraInterfaces(AutoCloseable.class).defaultAnswer(
+        invocation -> {
+          if ("service".equals(invocation.getMethod().getName())) {
+            started.countDown();
+            TimeUnit.MILLISECONDS.sleep(300);
+            ((com.google.cloud.functions.HttpResponse) invocation.getArgument(1)).getWriter().write("done");
+          }
+          return null;
+        }));
+
+    server = server(function);
+
+    var response = httpClient.sendAsync(java.net.http.HttpRequest.newBuilder(uri("/")).GET().build(),
+        BodyHandlers.ofString(UTF_8));
+
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    // when
+    server.close();
+    server = null;
+
+    // then
+    assertEquals("done", response.get(5, TimeUnit.SECONDS).body());
+    verify((AutoCloseable) function).close();
+  }
+
+  @DisplayName("Multipart requests are not supported")
+  @Test
+  void multipart() throws Exception {
+    // given
+    var captured = new CompletableFuture<HttpRequest>();
+
+    server = server((request, response) -> captured.complete(request));
+
+    // when
+    httpClient.send(java.net.http.HttpRequest.newBuilder(uri("/")).GET().build(), BodyHandlers.discarding());
+
+    // then
+    var request = captured.get(5, TimeUnit.SECONDS);
+
+    assertAll("Request", () -> assertThrows(IllegalStateException.class, request::getParts),
+        () -> assertEquals(Optional.empty(), request.getCharacterEncoding()),
+        () -> assertEquals(Optional.empty(), request.getQuery()));
+  }
+
+  @DisplayName("Wrong number of threads")
+  @Test
+  void wrongThreads() {
+    // when and then
+    assertThrows(IllegalArgumentException.class,
+        () -> new StandaloneServer((request, response) -> {
+        }, new InetSocketAddress(0), 0, Duration.ZERO));
+  }
+
+}
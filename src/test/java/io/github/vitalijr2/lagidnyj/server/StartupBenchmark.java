@@ -0,0 +1,113 @@
+package io.github.vitalijr2.lagidnyj.server;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Time to the first response of the standalone server, with and without the class data sharing archive.
+ * <p>
+ * Build the server first with {@code mvn package -P standalone}, then run it with {@code mvn test -P benchmark}.
+ */
+@Tag("benchmark")
+class StartupBenchmark {
+
+  private static final int RUNS = 7;
+  private static final Path SHADED = Path.of("target", "shaded");
+  private static final String UPDATE = "{\"update_id\":1,\"message\":{\"chat\":{\"id\":-100123,\"type\":\"group\"},"
+      + "\"from\":{\"id\":456,\"first_name\":\"John\"},\"text\":\"ёжик\"}}";
+
+  private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+      .connectTimeout(Duration.ofSeconds(1)).build();
+
+  private static Path find(String suffix) throws IOException {
+    if (!Files.isDirectory(SHADED)) {
+      return null;
+    }
+    try (var files = Files.list(SHADED)) {
+      return files.filter(file -> file.getFileName().toString().endsWith(suffix)).findFirst().orElse(null);
+    }
+  }
+
+  private static int freePort() throws IOException {
+    try (var socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  @DisplayName("Time to the first response")
+  @ParameterizedTest(name = "class data sharing: {0}")
+  @ValueSource(booleans = {false, true})
+  void timeToFirstResponse(boolean classDataSharing) throws Exception {
+    var jar = find("-standalone.jar");
+    var archive = find("-standalone.jsa");
+
+    assumeTrue(null != jar, "Build the standalone server first");
+    assumeTrue(!classDataSharing || null != archive, "Build the class data sharing archive first");
+
+    var millis = new long[RUNS];
+
+    for (var i = 0; RUNS > i; i++) {
+      millis[i] = run(jar, classDataSharing ? archive : null);
+    }
+    Arrays.sort(millis);
+    System.out.printf("Time to the first response, class data sharing %s: min %d ms, median %d ms, max %d ms%n",
+        classDataSharing, millis[0], millis[RUNS / 2], millis[RUNS - 1]);
+  }
+
+  private long run(Path jar, Path archive) throws IOException, InterruptedException {
+    var port = freePort();
+    var command = new ArrayList<>(List.of(Path.of(System.getProperty("java.home"), "bin", "java").toString()));
+
+    if (null != archive) {
+      command.add("-XX:SharedArchiveFile=" + archive);
+    }
+    command.addAll(List.of("-jar", jar.toString()));
+
+    var builder = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD);
+
+    builder.environment().put("PORT", String.valueOf(port));
+    builder.environment().remove("BOT_TOKEN");
+
+    var request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/"))
+        .POST(BodyPublishers.ofString(UPDATE, UTF_8)).build();
+    var startTime = System.nanoTime();
+    var process = builder.start();
+
+    try {
+      while (process.isAlive()) {
+        try {
+          if (200 == httpClient.send(request, BodyHandlers.discarding()).statusCode()) {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+          }
+        } catch (ConnectException exception) {
+          TimeUnit.MILLISECONDS.sleep(2);
+        }
+      }
+      throw new IllegalStateException("Server exited with " + process.exitValue());
+    } finally {
+      process.destroy();
+      process.waitFor(10, TimeUnit.SECONDS);
+    }
+  }
+
+}
@@ -0,0 +1,47 @@
+package io.github.vitalijr2.lagidnyj.server;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@Tag("fast")
+class StartupTrainingTest {
+
+  @TempDir
+  private Path directory;
+
+  @DisplayName("Take updates from lines and test tables")
+  @Test
+  void updates() throws IOException {
+    // given
+    var corpus = directory.resolve("corpus.csv");
+
+    Files.writeString(corpus, String.join("\n", "case title | message | response body",
+        "message    | {\"message\":{\"text\":\"ёж\"}} | message", "{\"update_id\":1}", "", "no update | N/A"), UTF_8);
+
+    // when and then
+    assertThat(StartupTraining.updates(corpus), contains("{\"message\":{\"text\":\"ёж\"}}", "{\"update_id\":1}"));
+  }
+
+  @DisplayName("Train on a corpus")
+  @Test
+  void train() throws IOException {
+    // given
+    var corpus = directory.resolve("corpus.txt");
+
+    Files.writeString(corpus, "{\"message\":{\"chat\":{\"id\":1,\"type\":\"private\"}}}\n", UTF_8);
+
+    // when and then
+    assertDoesNotThrow(() -> StartupTraining.main(corpus.toString()));
+  }
+
+}
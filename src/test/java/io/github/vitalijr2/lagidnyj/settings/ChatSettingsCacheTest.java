@@ -0,0 +1,295 @@
+package io.github.vitalijr2.lagidnyj.settings;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.github.vitalijr2.lagidnyj.beans.ChatSettings;
+import io.github.vitalijr2.lagidnyj.beans.ChatSettings.DetectionMode;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+@Tag("fast")
+class ChatSettingsCacheTest {
+
+  private static final ChatSettings DISABLED = new ChatSettings(false, 60, 3, new long[0], DetectionMode.Letters);
+  private static final Duration TTL = Duration.ofMinutes(5);
+
+  private final List<Runnable> loads = new ArrayList<>();
+  private final AtomicLong now = new AtomicLong();
+
+  @Mock
+  private ChatSettingsStore store;
+
+  private void runLoads() {
+    var pending = new ArrayList<>(loads);
+
+    loads.clear();
+    pending.forEach(Runnable::run);
+  }
+
+  @DisplayName("A miss answers defaults at once and loads in the background")
+  @Test
+  void readThrough() throws IOException {
+    // given
+    var cache = new ChatSettingsCache(store, 64, TTL, loads::add, now::get);
+
+    when(store.load(-100123)).thenReturn(DISABLED);
+
+    // when
+    var first = cache.apply(-100123);
+
+    runLoads();
+
+    var second = cache.apply(-100123);
+
+    // then
+    assertAll("Read-through", () -> assertSame(ChatSettings.DEFAULT, first), () -> assertSame(DISABLED, second),
+        () -> assertEquals(1, cache.getMisses()), () -> assertEquals(1, cache.getHits()),
+        () -> assertEquals(1, cache.getLoads()));
+    verify(store).load(-100123);
+  }
+
+  @DisplayName("Only one load of a chat at a time")
+  @Test
+  void singleLoad() throws IOException {
+    // given
+    var cache = new ChatSettingsCache(store, 64, TTL, loads::add, now::get);
+
+    // when
+    cache.apply(-100123);
+    cache.apply(-100123);
+    cache.apply(-100123);
+
+    // then
+    assertEquals(1, loads.size());
+    runLoads();
+    verify(store).load(-100123);
+  }
+
+  @DisplayName("A stale entry is served while it is refreshed")
+  @Test
+  void refresh() throws IOException {
+    // given
+    var cache = new ChatSettingsCache(store, 64, TTL, Runnable::run, now::get);
+
+    when(store.load(-100123)).thenReturn(DISABLED, ChatSettings.DEFAULT);
+    cache.apply(-100123);
+    now.addAndGet(TTL.toNanos() - 1);
+
+    // when
+    var fresh = cache.apply(-100123);
+
+    now.addAndGet(1);
+
+    var stale = cache.apply(-100123);
+
+    // then
+    assertAll("Refresh", () -> assertSame(DISABLED, fresh), () -> assertSame(ChatSettings.DEFAULT, stale),
+        () -> assertEquals(2, cache.getLoads()));
+  }
+
+  @DisplayName("A stale entry is kept if the store fails")
+  @Test
+  void failure() throws IOException {
+    // given
+    var cache = new ChatSettingsCache(store, 64, TTL, Runnable::run, now::get);
+
+    when(store.load(-100123)).thenReturn(DISABLED).thenThrow(new IOException("test exception"));
+    cache.apply(-100123);
+    now.addAndGet(TTL.toNanos());
+
+    // when
+    var settings = cache.apply(-100123);
+
+    // then
+    assertAll("Failure", () -> assertSame(DISABLED, settings), () -> assertSame(DISABLED, cache.apply(-100123)),
+        () -> assertEquals(1, cache.getFailures()));
+    verify(store, times(2)).load(-100123);
+  }
+
+  @DisplayName("Rejected load is tried again after the time to live")
+  @Test
+  void rejected() throws IOException {
+    // given
+    var executor = Executors.newSingleThreadExecutor();
+
+    executor.shutdown();
+
+    var cache = new ChatSettingsCache(store, 64, TTL, executor, now::get);
+
+    // when
+    var settings = cache.apply(-100123);
+
+    // then
+    assertAll("Rejected", () -> assertSame(ChatSettings.DEFAULT, settings),
+        () -> assertEquals(1, cache.getFailures()));
+    verify(store, never()).load(anyLong());
+  }
+
+  @DisplayName("The least recently used chat is evicted")
+  @Test
+  void eviction() throws IOException {
+    // given
+    var cache = new ChatSettingsCache(store, 16, TTL, Runnable::run, now::get);
+    var chatIds = new ArrayList<Long>();
+
+    when(store.load(anyLong())).thenReturn(DISABLED);
+    // all chats of the same segment
+    for (var chatId = 1L; 3 > chatIds.size(); chatId++) {
+      if (((chatId * 0x9E3779B97F4A7C15L) >>> 61) == 0) {
+        chatIds.add(chatId);
+      }
+    }
+    cache.apply(chatIds.get(0));
+    cache.apply(chatIds.get(1));
+
+    // when
+    cache.apply(chatIds.get(0));
+    cache.apply(chatIds.get(2));
+
+    // then
+    assertAll("Eviction", () -> assertSame(DISABLED, cache.apply(chatIds.get(0))),
+        () -> assertSame(DISABLED, cache.apply(chatIds.get(2))), () -> assertEquals(3, cache.getMisses()));
+    cache.apply(chatIds.get(1));
+    assertEquals(4, cache.getMisses());
+  }
+
+  @DisplayName("Many chats in a small cache")
+  @Test
+  void manyChats() throws IOException {
+    // given
+    var cache = new ChatSettingsCache(chatId -> (0 == chatId % 2) ? DISABLED : null, 64, TTL, Runnable::run,
+        now::get);
+
+    // when
+    for (var round = 0; 3 > round; round++) {
+      for (var chatId = -1000L; 1000 > chatId; chatId++) {
+        var settings = cache.apply(chatId);
+
+        // then
+        assertSame((0 == chatId % 2) ? DISABLED : ChatSettings.DEFAULT, settings, "chat " + chatId);
+      }
+    }
+  }
+
+  @DisplayName("Concurrent lookups")
+  @Test
+  void concurrency() throws Exception {
+    // given
+    var cache = new ChatSettingsCache(chatId -> DISABLED, 128, TTL, Runnable::run, System::nanoTime);
+    var executor = Executors.newFixedThreadPool(4);
+    var start = new CountDownLatch(1);
+
+    for (var thread = 0; 4 > thread; thread++) {
+      var offset = thread * 100L;
+
+      executor.execute(() -> {
+        try {
+          start.await();
+          for (var i = 0; 10_000 > i; i++) {
+            assertSame(DISABLED, cache.apply(offset + i % 300));
+          }
+        } catch (InterruptedException exception) {
+          Thread.currentThread().interrupt();
+        }
+      });
+    }
+
+    // when
+    start.countDown();
+    executor.shutdown();
+
+    // then
+    assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+    assertEquals(40_000, cache.getHits() + cache.getMisses());
+  }
+
+  @DisplayName("Wrong capacity or time to live")
+  @Test
+  void wrongSettings() {
+    // when and then
+    assertAll("Settings",
+        () -> assertThrows(IllegalArgumentException.class,
+            () -> new ChatSettingsCache(store, 7, TTL, Runnable::run, now::get)),
+        () -> assertThrows(IllegalArgumentException.class,
+            () -> new ChatSettingsCache(store, 64, Duration.ZERO, Runnable::run, now::get)));
+  }
+
+  @DisplayName("Detection modes are asked from the store, a failure means any mode")
+  @Test
+  void detectionModes() throws IOException {
+    // given
+    var cache = new ChatSettingsCache(store, 64, TTL, loads::add, now::get);
+
+    when(store.usesDetectionMode(DetectionMode.Letters)).thenReturn(false);
+    when(store.usesDetectionMode(DetectionMode.Scoring)).thenThrow(new IOException("test exception"));
+
+    // when and then
+    assertAll("Detection modes", () -> assertFalse(cache.usesDetectionMode(DetectionMode.Letters)),
+        () -> assertTrue(cache.usesDetectionMode(DetectionMode.Scoring)),
+        () -> assertFalse(ChatSettingsCache.getInstance().usesDetectionMode(DetectionMode.Scoring)));
+  }
+
+  @DisplayName("Detection modes are asked again in the background after the time to live")
+  @Test
+  void detectionModesChange() throws IOException {
+    // given
+    var cache = new ChatSettingsCache(store, 64, TTL, loads::add, now::get);
+
+    when(store.usesDetectionMode(DetectionMode.Scoring)).thenReturn(false, true);
+
+    var before = cache.usesDetectionMode(DetectionMode.Scoring);
+    var cached = cache.usesDetectionMode(DetectionMode.Scoring);
+
+    now.addAndGet(TTL.toNanos());
+
+    // when
+    var stale = cache.usesDetectionMode(DetectionMode.Scoring);
+
+    runLoads();
+
+    // then
+    assertAll("Detection modes", () -> assertFalse(before, "first check"), () -> assertFalse(cached, "cached"),
+        () -> assertFalse(stale, "stale answer"),
+        () -> assertTrue(cache.usesDetectionMode(DetectionMode.Scoring), "fresh answer"),
+        () -> verify(store, times(2)).usesDetectionMode(DetectionMode.Scoring));
+  }
+
+  @DisplayName("Shared instance without a settings file")
+  @Test
+  void sharedInstance() {
+    // when and then
+    assertSame(ChatSettings.DEFAULT, ChatSettingsCache.getInstance().apply(-100123));
+  }
+
+  @DisplayName("Settings source of a file")
+  @Test
+  void create() {
+    // when and then
+    assertAll("Sources", () -> assertSame(ChatSettings.DEFAULT, ChatSettingsCache.create(" ").apply(-100123)),
+        () -> assertTrue(ChatSettingsCache.create("chats.json") instanceof ChatSettingsCache));
+  }
+
+}
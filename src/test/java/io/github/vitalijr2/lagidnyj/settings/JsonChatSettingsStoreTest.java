@@ -0,0 +1,111 @@
+package io.github.vitalijr2.lagidnyj.settings;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.vitalijr2.lagidnyj.beans.ChatSettings;
+import io.github.vitalijr2.lagidnyj.beans.ChatSettings.DetectionMode;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+@Tag("fast")
+class JsonChatSettingsStoreTest {
+
+  @TempDir
+  Path folder;
+
+  private Path file;
+  private JsonChatSettingsStore store;
+
+  @BeforeEach
+  void setUp() {
+    file = folder.resolve("chats.json");
+    store = new JsonChatSettingsStore(file);
+  }
+
+  @DisplayName("Load settings of a chat")
+  @Test
+  void load() throws IOException {
+    // given
+    Files.writeString(file, "{\"-100123\":{\"enabled\":false,\"delay\":60,\"strikes_to_restrict\":3,"
+        + "\"exempt_users\":[789,456],\"detection_mode\":\"letters\"},\"-100321\":{}}", UTF_8);
+
+    // when
+    var settings = store.load(-100123);
+
+    // then
+    assertAll("Settings", () -> assertEquals(new ChatSettings(false, 60, 3, new long[]{456, 789},
+            DetectionMode.Letters), settings), () -> assertEquals(ChatSettings.DEFAULT, store.load(-100321)),
+        () -> assertNull(store.load(-100456)));
+  }
+
+  @DisplayName("Detection modes in use")
+  @Test
+  void detectionModes() throws IOException {
+    // given
+    Files.writeString(file, "{\"-100123\":{\"detection_mode\":\"letters\"},\"-100321\":{}}", UTF_8);
+    Files.setLastModifiedTime(file, FileTime.fromMillis(1_700_000_000_000L));
+
+    // when
+    var scoring = store.usesDetectionMode(DetectionMode.Scoring);
+
+    // then
+    Files.writeString(file, "{\"-100123\":{\"detection_mode\":\"Scoring\"}}", UTF_8);
+    Files.setLastModifiedTime(file, FileTime.fromMillis(1_700_000_001_000L));
+    assertAll("Detection modes", () -> assertFalse(scoring),
+        () -> assertTrue(store.usesDetectionMode(DetectionMode.Letters)),
+        () -> assertTrue(store.usesDetectionMode(DetectionMode.Scoring)),
+        () -> assertEquals(DetectionMode.Scoring, store.load(-100123).detectionMode()));
+  }
+
+  @DisplayName("Read the file again when it is changed")
+  @Test
+  void reload() throws IOException {
+    // given
+    Files.writeString(file, "{\"-100123\":{\"delay\":60}}", UTF_8);
+    Files.setLastModifiedTime(file, FileTime.fromMillis(1_700_000_000_000L));
+    store.load(-100123);
+    Files.writeString(file, "{\"-100123\":{\"delay\":30}}", UTF_8);
+    Files.setLastModifiedTime(file, FileTime.fromMillis(1_700_000_001_000L));
+
+    // when
+    var settings = store.load(-100123);
+
+    // then
+    assertEquals(30, settings.secondsOfDelay());
+  }
+
+  @DisplayName("Wrong settings")
+  @ParameterizedTest
+  @ValueSource(strings = {"[]", "{\"-100123\":{\"delay\":0}}", "{\"-100123\":{\"detection_mode\":\"words\"}}",
+      "{\"-100123\":{\"exempt_users\":[\"John\"]}}"})
+  void wrongSettings(String json) throws IOException {
+    // given
+    Files.writeString(file, json, UTF_8);
+
+    // when and then
+    assertThrows(IOException.class, () -> store.load(-100123));
+  }
+
+  @DisplayName("Missing file")
+  @Test
+  void missingFile() {
+    // when and then
+    assertThrows(IOException.class, () -> store.load(-100123));
+  }
+
+}
@@ -0,0 +1,238 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("fast")
+class ActionDispatcherTest {
+
+  private final Queue<String> received = new ConcurrentLinkedQueue<>();
+  private final Queue<Reply> replies = new ConcurrentLinkedQueue<>();
+
+  private ActionDispatcher dispatcher;
+  private CountDownLatch release;
+  private HttpServer server;
+
+  private static JSONObject warning(long chatId) {
+    return BotTools.sendMessage(chatId, "warning").put("method", "sendMessage");
+  }
+
+  private static JSONObject restriction(long chatId) {
+    return BotTools.restrictChatMember(chatId, 456, 1700000000).put("method", "restrictChatMember");
+  }
+
+  @BeforeEach
+  void setUp() throws IOException {
+    release = new CountDownLatch(0);
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", this::handle);
+    server.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (null != dispatcher) {
+      dispatcher.close();
+    }
+    server.stop(0);
+  }
+
+  private ActionDispatcher dispatcher(int globalPerSecond, int groupPerMinute) {
+    return new ActionDispatcher(URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/"), "123:test",
+        globalPerSecond, groupPerMinute, 1);
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    var body = new JSONObject(new String(exchange.getRequestBody().readAllBytes(), UTF_8));
+
+    received.add(exchange.getRequestURI().getPath() + " " + body.getLong("chat_id"));
+    try {
+      release.await();
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    }
+
+    var reply = replies.poll();
+
+    if (null == reply) {
+      reply = new Reply(200, "{\"ok\":true,\"result\":true}");
+    }
+
+    var bytes = reply.body().getBytes(UTF_8);
+
+    exchange.sendResponseHeaders(reply.status(), bytes.length);
+    exchange.getResponseBody().write(bytes);
+    exchange.close();
+  }
+
+  @DisplayName("Send an action to its Bot API method")
+  @Test
+  void send() throws InterruptedException {
+    // given
+    dispatcher = dispatcher(30, 20);
+
+    // when
+    dispatcher.accept(warning(-100123));
+
+    // then
+    assertTrue(dispatcher.drain(Duration.ofSeconds(5)));
+    assertAll("Sent", () -> assertThat(received, contains("/bot123:test/sendMessage -100123")),
+        () -> assertEquals(1, dispatcher.getSent()));
+  }
+
+  @DisplayName("Restrictions go before warnings")
+  @Test
+  void priority() throws InterruptedException {
+    // given
+    release = new CountDownLatch(1);
+    dispatcher = dispatcher(1, 20);
+    dispatcher.accept(warning(-1));
+    while (received.isEmpty()) {
+      TimeUnit.MILLISECONDS.sleep(10);
+    }
+
+    // when
+    dispatcher.accept(warning(-2));
+    dispatcher.accept(warning(-3));
+    dispatcher.accept(restriction(-4));
+    release.countDown();
+
+    // then
+    assertTrue(dispatcher.drain(Duration.ofSeconds(10)));
+    assertThat(received, contains("/bot123:test/sendMessage -1", "/bot123:test/restrictChatMember -4",
+        "/bot123:test/sendMessage -2", "/bot123:test/sendMessage -3"));
+  }
+
+  @DisplayName("A chat without tokens does not hold up other chats")
+  @Test
+  void chatRate() throws InterruptedException {
+    // given
+    dispatcher = dispatcher(30, 1);
+
+    // when
+    dispatcher.accept(warning(-1));
+    dispatcher.accept(warning(-1));
+    dispatcher.accept(warning(-2));
+
+    // then
+    assertFalse(dispatcher.drain(Duration.ofSeconds(1)));
+    assertThat(received, containsInAnyOrder("/bot123:test/sendMessage -1", "/bot123:test/sendMessage -2"));
+  }
+
+  @DisplayName("Too many requests: retry after the pause")
+  @Test
+  void tooManyRequests() throws InterruptedException {
+    // given
+    replies.add(new Reply(429,
+        "{\"ok\":false,\"error_code\":429,\"description\":\"Too Many Requests\",\"parameters\":{\"retry_after\":1}}"));
+    dispatcher = dispatcher(30, 20);
+
+    var startTime = System.nanoTime();
+
+    // when
+    dispatcher.accept(warning(-100123));
+
+    // then
+    assertTrue(dispatcher.drain(Duration.ofSeconds(5)));
+    assertAll("Retried", () -> assertEquals(2, received.size()), () -> assertEquals(1, dispatcher.getRetried()),
+        () -> assertEquals(1, dispatcher.getSent()),
+        () -> assertThat(System.nanoTime() - startTime, greaterThanOrEqualTo(Duration.ofSeconds(1).toNanos())));
+  }
+
+  @DisplayName("Server error: retry with backoff")
+  @Test
+  void serverError() throws InterruptedException {
+    // given
+    replies.add(new Reply(502, "Bad Gateway"));
+    replies.add(new Reply(500, "{\"ok\":false}"));
+    dispatcher = dispatcher(30, 20);
+
+    // when
+    dispatcher.accept(warning(-100123));
+
+    // then
+    assertTrue(dispatcher.drain(Duration.ofSeconds(5)));
+    assertAll("Retried", () -> assertEquals(3, received.size()), () -> assertEquals(2, dispatcher.getRetried()),
+        () -> assertEquals(1, dispatcher.getSent()));
+  }
+
+  @DisplayName("Client error: drop the action")
+  @Test
+  void clientError() throws InterruptedException {
+    // given
+    replies.add(new Reply(400, "{\"ok\":false,\"error_code\":400,\"description\":\"Bad Request: chat not found\"}"));
+    dispatcher = dispatcher(30, 20);
+
+    // when
+    dispatcher.accept(warning(-100123));
+
+    // then
+    assertTrue(dispatcher.drain(Duration.ofSeconds(5)));
+    assertAll("Dropped", () -> assertEquals(1, dispatcher.getDropped()), () -> assertEquals(0, dispatcher.getSent()));
+  }
+
+  @DisplayName("Network error: drop the action after all attempts")
+  @Test
+  void networkError() throws InterruptedException {
+    // given
+    var attempts = new AtomicInteger();
+
+    server.removeContext("/");
+    server.createContext("/", exchange -> {
+      attempts.incrementAndGet();
+      exchange.close();
+    });
+    dispatcher = dispatcher(30, 20);
+
+    // when
+    dispatcher.accept(warning(-100123));
+
+    // then
+    assertTrue(dispatcher.drain(Duration.ofSeconds(20)));
+    assertAll("Dropped", () -> assertEquals(1, dispatcher.getDropped()), () -> assertEquals(5, attempts.get()));
+  }
+
+  @DisplayName("Closed dispatcher")
+  @Test
+  void closed() {
+    // given
+    dispatcher = dispatcher(30, 20);
+    dispatcher.close();
+
+    // when and then
+    var warning = warning(-1);
+
+    assertThrows(IllegalStateException.class, () -> dispatcher.accept(warning));
+  }
+
+  private record Reply(int status, String body) {
+
+  }
+
+}
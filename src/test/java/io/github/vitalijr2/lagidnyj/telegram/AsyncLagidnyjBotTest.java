@@ -0,0 +1,270 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.functions.HttpRequest;
+import com.google.cloud.functions.HttpResponse;
+import io.github.vitalijr2.lagidnyj.beans.ChatSettings;
+import io.github.vitalijr2.lagidnyj.beans.DelayedChatNotification;
+import io.github.vitalijr2.lagidnyj.keeper.ChatKeeper;
+import io.github.vitalijr2.lagidnyj.telegram.AsyncLagidnyjBot.Backpressure;
+import io.github.vitalijr2.lagidnyj.telegram.BotMetrics.Rejection;
+import io.github.vitalijr2.lagidnyj.telegram.BotMetrics.Submission;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.NullAndEmptySource;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+@Tag("fast")
+class AsyncLagidnyjBotTest {
+
+  private static final String GROUP_MESSAGE = "{\"update_id\":%d,\"message\":{\"chat\":{\"id\":-100123,"
+      + "\"type\":\"group\"},\"from\":{\"id\":456,\"first_name\":\"John\"},\"text\":\"ёжик\"}}";
+  private static final String PRIVATE_MESSAGE = "{\"update_id\":%d,\"message\":{\"chat\":{\"id\":456,"
+      + "\"type\":\"private\"},\"from\":{\"id\":456,\"first_name\":\"John\"},\"text\":\"привіт\"}}";
+
+  private final List<JSONObject> actions = new CopyOnWriteArrayList<>();
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  private AsyncLagidnyjBot bot;
+  @Mock
+  private ChatKeeper chatKeeper;
+  @Mock
+  private HttpRequest httpRequest;
+  @Mock
+  private HttpResponse httpResponse;
+
+  private static byte[] body(String update, long updateId) {
+    return String.format(update, updateId).getBytes(UTF_8);
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    release.countDown();
+    if (null != bot) {
+      bot.close();
+    }
+  }
+
+  private AsyncLagidnyjBot bot(int queueSize, Backpressure backpressure) {
+    return new AsyncLagidnyjBot(new LagidnyjBot(chatKeeper), actions::add, queueSize, 1, backpressure);
+  }
+
+  // the only worker waits in the chat keeper, the queue is full
+  private void fillQueue(int queueSize) throws InterruptedException {
+    var busy = new CountDownLatch(1);
+
+    doAnswer(invocation -> {
+      busy.countDown();
+      return release.await(5, TimeUnit.SECONDS);
+    }).when(chatKeeper).addUserToWatchList(isA(DelayedChatNotification.class));
+    assertTrue(bot.submit(body(GROUP_MESSAGE, 1)));
+    assertTrue(busy.await(5, TimeUnit.SECONDS));
+    for (var i = 0; queueSize > i; i++) {
+      assertTrue(bot.submit(body(GROUP_MESSAGE, 2 + i)));
+    }
+  }
+
+  @DisplayName("Acknowledge at once, process in the background")
+  @Test
+  void acknowledge() throws IOException {
+    // given
+    bot = bot(10, Backpressure.Sync);
+    when(httpRequest.getMethod()).thenReturn("POST");
+    when(httpRequest.getInputStream()).thenReturn(new ByteArrayInputStream(body(GROUP_MESSAGE, 1)));
+
+    // when
+    bot.service(httpRequest, httpResponse);
+
+    // then
+    verify(httpResponse).setStatusCode(200, "OK");
+    verify(httpResponse, never()).getOutputStream();
+    verify(chatKeeper, timeout(5000)).addUserToWatchList(isA(DelayedChatNotification.class));
+    assertEquals(1, bot.getBot().metrics().getSubmissions(Submission.Queued));
+  }
+
+  @DisplayName("Reject a body longer than the limit without queueing it")
+  @Test
+  void bodySize() throws IOException {
+    // given
+    bot = new AsyncLagidnyjBot(new LagidnyjBot(chatKeeper, null, null, chatId -> ChatSettings.DEFAULT, null, null,
+        new WebhookAdmission(null, 16, null)), actions::add, 10, 1, Backpressure.Sync);
+    when(httpRequest.getMethod()).thenReturn("POST");
+    when(httpRequest.getInputStream()).thenReturn(new ByteArrayInputStream(body(GROUP_MESSAGE, 1)));
+
+    // when
+    bot.service(httpRequest, httpResponse);
+
+    // then
+    verify(httpResponse).setStatusCode(413, "Payload Too Large");
+    assertAll("Metrics", () -> assertEquals(1, bot.getBot().metrics().getRejections(Rejection.BodySize)),
+        () -> assertEquals(0, bot.getBot().metrics().getSubmissions(Submission.Queued)));
+  }
+
+  @DisplayName("Reject a request with a wrong secret token before reading it")
+  @Test
+  void secretToken() throws IOException {
+    // given
+    bot = new AsyncLagidnyjBot(new LagidnyjBot(chatKeeper, null, null, chatId -> ChatSettings.DEFAULT, null, null,
+        new WebhookAdmission("secret", 16, null)), actions::add, 10, 1, Backpressure.Sync);
+    when(httpRequest.getMethod()).thenReturn("POST");
+    when(httpRequest.getFirstHeader(WebhookAdmission.SECRET_TOKEN_HEADER)).thenReturn(Optional.empty());
+
+    // when
+    bot.service(httpRequest, httpResponse);
+
+    // then
+    verify(httpResponse).setStatusCode(403, "Forbidden");
+    verify(httpRequest, never()).getInputStream();
+    assertEquals(1, bot.getBot().metrics().getRejections(Rejection.SecretToken));
+  }
+
+  @DisplayName("Replies are sent as actions")
+  @Test
+  void reply() throws Exception {
+    // given
+    bot = bot(10, Backpressure.Sync);
+
+    // when
+    bot.submit(body(PRIVATE_MESSAGE, 1));
+    bot.close();
+
+    // then
+    assertThat(actions, hasSize(1));
+    assertAll("Reply", () -> assertEquals("sendMessage", actions.get(0).getString("method")),
+        () -> assertEquals(456, actions.get(0).getLong("chat_id")));
+    bot = null;
+  }
+
+  @DisplayName("Shed updates when the queue is full")
+  @Test
+  void shed() throws InterruptedException {
+    // given
+    bot = bot(1, Backpressure.Shed);
+    fillQueue(1);
+
+    // when
+    var accepted = bot.submit(body(GROUP_MESSAGE, 10));
+
+    // then
+    assertAll("Shed", () -> assertTrue(accepted), () -> assertEquals(1, bot.getQueueSize()),
+        () -> assertEquals(1, bot.getBot().metrics().getSubmissions(Submission.Shed)));
+  }
+
+  @DisplayName("Process synchronously when the queue is full")
+  @Test
+  void synchronous() throws IOException, InterruptedException {
+    // given
+    var output = new ByteArrayOutputStream();
+
+    bot = bot(1, Backpressure.Sync);
+    fillQueue(1);
+    when(httpRequest.getMethod()).thenReturn("POST");
+    when(httpRequest.getInputStream()).thenReturn(new ByteArrayInputStream(body(PRIVATE_MESSAGE, 10)));
+    when(httpResponse.getOutputStream()).thenReturn(output);
+
+    // when
+    bot.service(httpRequest, httpResponse);
+
+    // then
+    var reply = new JSONObject(output.toString(UTF_8));
+
+    assertAll("Synchronous", () -> assertEquals(456, reply.getLong("chat_id")),
+        () -> assertEquals(1, bot.getBot().metrics().getSubmissions(Submission.Synchronous)));
+  }
+
+  @DisplayName("Block until the queue has a free place")
+  @Test
+  void block() throws Exception {
+    // given
+    bot = bot(1, Backpressure.Block);
+    fillQueue(1);
+
+    // when
+    var submission = CompletableFuture.supplyAsync(() -> bot.submit(body(GROUP_MESSAGE, 10)));
+
+    // then
+    TimeUnit.MILLISECONDS.sleep(100);
+    assertFalse(submission.isDone());
+    release.countDown();
+    assertTrue(submission.get(5, TimeUnit.SECONDS));
+    verify(chatKeeper, timeout(5000).times(3)).addUserToWatchList(isA(DelayedChatNotification.class));
+  }
+
+  @DisplayName("Other requests go to the bot")
+  @Test
+  void otherRequests() {
+    try (var botTools = mockStatic(BotTools.class)) {
+      // given
+      bot = bot(10, Backpressure.Sync);
+      when(httpRequest.getMethod()).thenReturn("GET");
+      when(httpRequest.getFirstHeader(anyString())).thenReturn(Optional.empty());
+
+      // when
+      bot.service(httpRequest, httpResponse);
+
+      // then
+      botTools.verify(() -> BotTools.badMethod(isA(HttpResponse.class), eq("POST")));
+    }
+  }
+
+  @DisplayName("Backpressure by name")
+  @ParameterizedTest(name = "{0}")
+  @CsvSource({"block, Block", "SHED, Shed", "' sync ', Sync"})
+  void backpressure(String name, Backpressure expected) {
+    // when and then
+    assertEquals(expected, Backpressure.fromString(name));
+  }
+
+  @DisplayName("Synchronous fallback by default")
+  @ParameterizedTest
+  @NullAndEmptySource
+  void defaultBackpressure(String name) {
+    // when and then
+    assertEquals(Backpressure.Sync, Backpressure.fromString(name));
+  }
+
+  @DisplayName("Wrong settings")
+  @Test
+  void wrongSettings() {
+    // when and then
+    assertAll("Settings", () -> assertThrows(IllegalArgumentException.class, () -> Backpressure.fromString("wait")),
+        () -> assertThrows(IllegalArgumentException.class, () -> bot(0, Backpressure.Sync)),
+        () -> assertThrows(IllegalArgumentException.class,
+            () -> new AsyncLagidnyjBot(new LagidnyjBot(chatKeeper), actions::add, 1, 0, Backpressure.Sync)));
+  }
+
+}
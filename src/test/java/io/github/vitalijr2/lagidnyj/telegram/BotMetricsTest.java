@@ -0,0 +1,61 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+import io.github.vitalijr2.lagidnyj.telegram.BotMetrics.Stage;
+import io.github.vitalijr2.lagidnyj.telegram.BotMetrics.UpdateType;
+import io.github.vitalijr2.lagidnyj.telegram.BotTools.ChatType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("fast")
+class BotMetricsTest {
+
+  @DisplayName("Prometheus text format")
+  @Test
+  void writePrometheus() {
+    // given
+    var metrics = new BotMetrics();
+    var output = new StringBuilder();
+
+    metrics.update(UpdateType.Message);
+    metrics.update(UpdateType.Message);
+    metrics.update(UpdateType.Skipped);
+    metrics.chat(ChatType.Supergroup);
+    metrics.chat(null);
+    metrics.scan(true);
+    metrics.scan(false);
+    metrics.scan(false);
+    metrics.deduplication(true);
+    metrics.parseFailure();
+    metrics.processingFailure();
+    metrics.keeperEnqueue();
+    metrics.stage(Stage.Write).record(100);
+
+    // when
+    metrics.writePrometheus(output);
+
+    // then
+    var text = output.toString();
+
+    assertAll("Samples", () -> assertThat(text, containsString("# TYPE lagidnyj_updates_total counter\n")),
+        () -> assertThat(text, containsString("lagidnyj_updates_total{type=\"message\"} 2\n")),
+        () -> assertThat(text, containsString("lagidnyj_updates_total{type=\"skipped\"} 1\n")),
+        () -> assertThat(text, containsString("lagidnyj_updates_total{type=\"via_bot\"} 0\n")),
+        () -> assertThat(text, containsString("lagidnyj_messages_total{chat_type=\"supergroup\"} 1\n")),
+        () -> assertThat(text, containsString("lagidnyj_messages_total{chat_type=\"unknown\"} 1\n")),
+        () -> assertThat(text, containsString("lagidnyj_scans_total{result=\"hit\"} 1\n")),
+        () -> assertThat(text, containsString("lagidnyj_scans_total{result=\"miss\"} 2\n")),
+        () -> assertThat(text, containsString("lagidnyj_deduplications_total{result=\"new\"} 0\n")),
+        () -> assertThat(text, containsString("lagidnyj_deduplications_total{result=\"replay\"} 1\n")),
+        () -> assertThat(text, containsString("lagidnyj_parse_failures_total 1\n")),
+        () -> assertThat(text, containsString("lagidnyj_processing_failures_total 1\n")),
+        () -> assertThat(text, containsString("lagidnyj_keeper_enqueues_total 1\n")),
+        () -> assertThat(text, containsString("# TYPE lagidnyj_stage_seconds histogram\n")),
+        () -> assertThat(text, containsString("lagidnyj_stage_seconds_count{stage=\"write\"} 1\n")));
+  }
+
+}
@@ -1,12 +1,9 @@
 package io.github.vitalijr2.lagidnyj.telegram;
 
-import static com.github.npathai.hamcrestopt.OptionalMatchers.isEmpty;
-import static com.github.npathai.hamcrestopt.OptionalMatchers.isPresent;
-import static java.util.Objects.nonNull;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -18,11 +15,8 @@ import static org.mockito.Mockito.when;
 import static org.skyscreamer.jsonassert.JSONAssert.assertEquals;
 
 import com.google.cloud.functions.HttpResponse;
-import io.github.vitalijr2.lagidnyj.beans.User;
-import io.github.vitalijr2.lagidnyj.telegram.BotTools.ChatType;
+import io.github.vitalijr2.lagidnyj.telegram.BotTools.MarkdownContext;
 import java.io.IOException;
-import org.json.JSONException;
-import org.json.JSONObject;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
@@ -30,7 +24,9 @@ import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
-import org.junit.jupiter.params.provider.CsvFileSource;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.slf4j.Logger;
@@ -72,135 +68,70 @@ class BotToolsTest {
     }
   }
 
-  @DisplayName("Take text from a message")
-  @ParameterizedTest(name = "{0}")
-  @CsvFileSource(resources = "take_text.csv", delimiterString = "|", numLinesToSkip = 1)
-  void takeTextFromMessage(String title, String message) {
-    // when and then
-    assertThat(BotTools.getText(new JSONObject(message)), isPresent());
-  }
-
-  @DisplayName("Take text from a message: no text")
+  @DisplayName("Restrict chat member")
   @Test
-  void notTakeTextFromMessage() {
-    // given
-    var message = new JSONObject("{\"dice\":{\"emoji\": \"\uD83C\uDFB2\", \"value\": 1}}");
-
-    // when and then
-    assertThat(BotTools.getText(message), isEmpty());
-  }
-
-  @DisplayName("Get a chat identifier")
-  @Test
-  void getChatIdentifier() {
-    // given
-    var chatMessage = new JSONObject("{\"chat\":{\"id\":12345}}");
-
+  void restrictChatMember() {
     // when
-    var result = BotTools.getChatId(chatMessage);
+    var restriction = BotTools.restrictChatMember(-100123, 456, 1700000000);
 
     // then
-    assertEquals(12345, result);
+    assertEquals("{\"chat_id\":-100123,\"user_id\":456,\"until_date\":1700000000,"
+        + "\"use_independent_chat_permissions\":true,\"permissions\":{\"can_send_messages\":false,"
+        + "\"can_send_audios\":false,\"can_send_documents\":false,\"can_send_photos\":false,"
+        + "\"can_send_videos\":false,\"can_send_video_notes\":false,\"can_send_voice_notes\":false,"
+        + "\"can_send_polls\":false,\"can_send_other_messages\":false,\"can_add_web_page_previews\":false}}",
+        restriction, true);
   }
 
-  @DisplayName("Chat type")
-  @ParameterizedTest(name = "{0}")
-  @CsvFileSource(resources = "chat_type.csv", delimiterString = "|", numLinesToSkip = 1)
-  void chatTypeFromMessage(String chatType, String message) {
-    // given
-    var expectedChatType = ChatType.fromString(chatType);
-
-    // when and then
-    assertEquals(expectedChatType, BotTools.getChatType(new JSONObject(message)));
-  }
-
-  @DisplayName("Not a chat")
+  @DisplayName("Send message")
   @Test
-  void notChat() {
-    // when and then
-    assertThrows(JSONException.class, () -> BotTools.getChatType(new JSONObject("{\"query\":\"test query\"}")));
-  }
-
-  @DisplayName("Get a \"from\" user")
-  @ParameterizedTest(name = "{0}")
-  @CsvFileSource(resources = "get_from.csv", delimiterString = "|", nullValues = "N/A", numLinesToSkip = 1)
-  void getFrom(String title, String message, String expectedValue) {
-    // given
-    User expectedUser = null;
-
-    if (nonNull(expectedValue)) {
-      var index = 0;
-      var values = new String[5];
-
-      for (String value : expectedValue.split(" ")) {
-        values[index++] = value;
-      }
-
-      expectedUser = new User(Long.parseLong(values[0]), values[1], values[2], values[3], values[4]);
-    }
-
+  void sendMessage() {
     // when
-    var actualUser = BotTools.getFrom(new JSONObject(message));
+    var message = BotTools.sendMessage(12345, "test message");
 
     // then
-    assertEquals(expectedUser, actualUser);
+    assertEquals("{\"parse_mode\":\"MarkdownV2\",\"text\":\"test message\",\"chat_id\":12345}", message, true);
   }
 
-  @DisplayName("Not a user")
-  @Test
-  void notUser() {
-    // given
-    var message = new JSONObject("{\"inline_query\":{\"text\":\"qwerty\"}}");
-
+  @DisplayName("Markdown V2 escaping")
+  @ParameterizedTest(name = "{0}: {1}")
+  @CsvSource(delimiterString = " => ", quoteCharacter = '"', textBlock = """
+      Text    => John_Smith              => John\\_Smith
+      Text    => 1+1=2, a-b; c/d: <e>    => 1\\+1\\=2, a\\-b; c/d: <e\\>
+      Text    => *[x](y)~`#|{}.!          => \\*\\[x\\]\\(y\\)\\~\\`\\#\\|\\{\\}\\.\\!
+      Text    => back\\slash               => back\\\\slash
+      Code    => a_b `c` \\d               => a_b \\`c\\` \\\\d
+      LinkUrl => https://e.com/a_(b)     => https://e.com/a_(b\\)
+      LinkUrl => https://e.com/\\q         => https://e.com/\\\\q
+      """)
+  void markdownEscaping(MarkdownContext context, String text, String expected) {
     // when and then
-    assertThrows(JSONException.class, () -> BotTools.getFrom(message));
+    assertThat(BotTools.markdownEscaping(text, context), equalTo(expected));
   }
 
-  @DisplayName("Get an edited message")
-  @Test
-  void getEditedMessage() {
-    // given
-    var update = new JSONObject("{\"edited_message\":{\"text\":\"qwerty\"}}");
-
-    // when
-    var result = BotTools.getEditedMessage(update);
-
-    // then
-    assertEquals("{\"text\":\"qwerty\"}", result, true);
-  }
-
-  @DisplayName("Get a message")
-  @Test
-  void getMessage() {
+  @DisplayName("Text without special characters is not copied")
+  @ParameterizedTest(name = "{0}")
+  @EnumSource(MarkdownContext.class)
+  void markdownEscapingSameInstance(MarkdownContext context) {
     // given
-    var update = new JSONObject("{\"message\":{\"text\":\"qwerty\"}}");
-
-    // when
-    var result = BotTools.getMessage(update);
+    var text = "Привіт, світе 123";
 
-    // then
-    assertEquals("{\"text\":\"qwerty\"}", result, true);
+    // when and then
+    assertThat(BotTools.markdownEscaping(text, context), sameInstance(text));
   }
 
-  @DisplayName("Not a message")
-  @Test
-  void notMessage() {
+  @DisplayName("Markdown V2 escaping into a builder")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @ValueSource(strings = {"", "plain", "a.b"})
+  void markdownEscapingIntoBuilder(String text) {
     // given
-    var update = new JSONObject("{\"inline_query\":{\"text\":\"qwerty\"}}");
-
-    // when and then
-    assertThrows(JSONException.class, () -> BotTools.getEditedMessage(update));
-    assertThrows(JSONException.class, () -> BotTools.getMessage(update));
-  }
+    var output = new StringBuilder("[");
 
-  @DisplayName("Send message")
-  @Test
-  void sendMessage() {
     // when
-    var message = BotTools.sendMessage(12345, "test message");
+    BotTools.markdownEscaping(output, text, MarkdownContext.Text).append(']');
 
     // then
-    assertEquals("{\"parse_mode\":\"MarkdownV2\",\"text\":\"test message\",\"chat_id\":12345}", message, true);
+    assertThat(output.toString(), equalTo("[" + BotTools.markdownEscaping(text) + "]"));
   }
 
 }
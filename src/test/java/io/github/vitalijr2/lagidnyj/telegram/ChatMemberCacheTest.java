@@ -0,0 +1,322 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.vitalijr2.lagidnyj.telegram.ChatMemberCache.Status;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+@Tag("fast")
+class ChatMemberCacheTest {
+
+  private static final String ADMINISTRATORS = "{\"ok\":true,\"result\":[{\"status\":\"creator\",\"user\":{\"id\":1}},"
+      + "{\"status\":\"administrator\",\"user\":{\"id\":789}}]}";
+  private static final Duration REFRESH_AHEAD = Duration.ofMinutes(8);
+  private static final Duration TTL = Duration.ofMinutes(10);
+
+  private final List<JSONObject> requests = new CopyOnWriteArrayList<>();
+  private final AtomicLong now = new AtomicLong();
+
+  private ChatMemberCache cache;
+  private volatile CountDownLatch release = new CountDownLatch(0);
+  private HttpServer server;
+  private volatile String status = "member";
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.createContext("/", this::handle);
+    server.start();
+    cache = cache(16);
+  }
+
+  @AfterEach
+  void tearDown() {
+    release.countDown();
+    server.stop(0);
+  }
+
+  private ChatMemberCache cache(int capacity) {
+    return new ChatMemberCache(URI.create("http://127.0.0.1:" + server.getAddress().getPort()), "123:test", capacity,
+        REFRESH_AHEAD, TTL, now::get);
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    var request = new JSONObject(new String(exchange.getRequestBody().readAllBytes(), UTF_8));
+    var path = exchange.getRequestURI().getPath();
+
+    request.put("method", path.substring(path.lastIndexOf('/') + 1)).put("path", path);
+    requests.add(request);
+    try {
+      release.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    }
+
+    String response;
+    var statusCode = 200;
+
+    if (-100500 == request.getLong("chat_id")) {
+      response = "{\"ok\":false,\"description\":\"Internal Server Error\"}";
+      statusCode = 500;
+    } else if (-100400 == request.getLong("chat_id")) {
+      response = "{\"ok\":false,\"description\":\"Bad Request: chat not found\"}";
+    } else if ("getChatAdministrators".equals(request.getString("method"))) {
+      response = ADMINISTRATORS;
+    } else {
+      response = "{\"ok\":true,\"result\":{\"status\":\"" + status + "\",\"user\":{\"id\":"
+          + request.getLong("user_id") + "}}}";
+    }
+
+    var bytes = response.getBytes(UTF_8);
+
+    exchange.sendResponseHeaders(statusCode, bytes.length);
+    exchange.getResponseBody().write(bytes);
+    exchange.close();
+  }
+
+  private static void waitFor(BooleanSupplier condition) {
+    var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+    while (!condition.getAsBoolean()) {
+      if (System.nanoTime() > deadline) {
+        throw new AssertionError("Condition is not met");
+      }
+      Thread.onSpinWait();
+    }
+  }
+
+  private boolean isExempt(long chatId, long userId) {
+    return cache.isExempt(chatId, userId).join();
+  }
+
+  private long count(String method) {
+    return requests.stream().filter(request -> method.equals(request.getString("method"))).count();
+  }
+
+  @DisplayName("Administrators are exempt, one request per chat")
+  @Test
+  void administrators() {
+    // when
+    var creator = isExempt(-100123, 1);
+    var administrator = isExempt(-100123, 789);
+
+    // then
+    assertAll("Administrators", () -> assertTrue(creator), () -> assertTrue(administrator),
+        () -> assertEquals(1, count("getChatAdministrators")), () -> assertEquals(0, count("getChatMember")),
+        () -> assertEquals("/bot123:test/getChatAdministrators", requests.get(0).getString("path")),
+        () -> assertEquals(1, cache.getMisses()), () -> assertEquals(1, cache.getHits()));
+  }
+
+  @DisplayName("Status of a member")
+  @ParameterizedTest(name = "{0}: {1}")
+  @CsvSource({"member,false", "restricted,true", "left,true", "kicked,true", "unknown,false"})
+  void memberStatus(String memberStatus, boolean exempt) {
+    // given
+    status = memberStatus;
+
+    // when
+    var result = isExempt(-100123, 456);
+
+    // then
+    assertAll("Member", () -> assertEquals(exempt, result), () -> assertEquals(exempt, isExempt(-100123, 456)),
+        () -> assertEquals(1, count("getChatMember")));
+  }
+
+  @DisplayName("Concurrent misses share one request")
+  @Test
+  void coalesce() throws Exception {
+    // given
+    var executor = Executors.newFixedThreadPool(8);
+    var results = new ArrayList<Future<Boolean>>();
+
+    release = new CountDownLatch(1);
+
+    // when
+    for (var i = 0; 8 > i; i++) {
+      results.add(executor.submit(() -> isExempt(-100123, 789)));
+    }
+    TimeUnit.MILLISECONDS.sleep(200);
+    release.countDown();
+
+    // then
+    for (var result : results) {
+      assertTrue(result.get(5, TimeUnit.SECONDS));
+    }
+    executor.shutdown();
+    assertEquals(1, count("getChatAdministrators"));
+  }
+
+  @DisplayName("A lookup does not wait for the Bot API")
+  @Test
+  void doNotWait() {
+    // given
+    release = new CountDownLatch(1);
+
+    // when
+    var result = cache.isExempt(-100123, 789);
+
+    // then
+    assertFalse(result.isDone());
+    release.countDown();
+    assertTrue(result.join());
+  }
+
+  @DisplayName("Refresh ahead in the background, wait after the time to live")
+  @Test
+  void refreshAhead() {
+    // given
+    isExempt(-100123, 456);
+    status = "restricted";
+    now.set(REFRESH_AHEAD.toNanos());
+
+    // when
+    var refreshed = isExempt(-100123, 456);
+
+    // then
+    assertFalse(refreshed);
+    waitFor(() -> isExempt(-100123, 456));
+    assertAll("Refresh ahead", () -> assertEquals(2, count("getChatAdministrators")),
+        () -> assertEquals(2, count("getChatMember")));
+    now.set(REFRESH_AHEAD.toNanos() + TTL.toNanos());
+    status = "member";
+    assertFalse(isExempt(-100123, 456));
+  }
+
+  @DisplayName("Changes of a chat member")
+  @Test
+  void chatMember() {
+    // given
+    isExempt(-100123, 456);
+
+    // when
+    cache.chatMember(-100123, 456, "member", "restricted");
+
+    // then
+    assertTrue(isExempt(-100123, 456));
+    cache.chatMember(-100123, 456, "restricted", "administrator");
+    assertAll("Promotion", () -> assertTrue(isExempt(-100123, 456)),
+        () -> assertEquals(2, count("getChatAdministrators")), () -> assertEquals(1, count("getChatMember")));
+  }
+
+  @DisplayName("Changes of the bot drop the chat")
+  @Test
+  void myChatMember() {
+    // given
+    isExempt(-100123, 456);
+    isExempt(-100321, 456);
+
+    // when
+    cache.myChatMember(-100123);
+
+    // then
+    isExempt(-100123, 456);
+    isExempt(-100321, 456);
+    assertAll("Invalidation", () -> assertEquals(3, count("getChatAdministrators")),
+        () -> assertEquals(3, count("getChatMember")));
+  }
+
+  @DisplayName("A failed lookup is an ordinary member")
+  @ParameterizedTest(name = "{0}")
+  @ValueSource(longs = {-100500, -100400})
+  void failure(long chatId) {
+    // when
+    var result = isExempt(chatId, 456);
+
+    // then
+    assertAll("Failure", () -> assertFalse(result), () -> assertEquals(1, cache.getFailures()));
+  }
+
+  @DisplayName("The oldest entry is evicted when the cache is full")
+  @Test
+  void eviction() {
+    // given
+    cache = cache(2);
+
+    for (var chatId = -100100L; -100097L > chatId; chatId++) {
+      isExempt(chatId, 789);
+      now.addAndGet(Duration.ofMinutes(1).toNanos());
+    }
+
+    // when
+    isExempt(-100099, 789);
+
+    var newer = count("getChatAdministrators");
+
+    isExempt(-100100, 789);
+
+    // then
+    assertAll("Eviction", () -> assertEquals(3, newer, "newer entries stay"),
+        () -> assertEquals(4, count("getChatAdministrators"), "the oldest entry is gone"));
+  }
+
+  @DisplayName("Entries with a load in flight are not evicted")
+  @Test
+  void evictionInFlight() {
+    // given
+    cache = cache(1);
+    release = new CountDownLatch(1);
+
+    var first = cache.isExempt(-100100, 789);
+
+    waitFor(() -> 1 == requests.size());
+
+    // when
+    var second = cache.isExempt(-100099, 789);
+
+    release.countDown();
+
+    // then
+    assertAll("In flight", () -> assertTrue(first.join()), () -> assertTrue(second.join()),
+        () -> assertTrue(isExempt(-100099, 789)), () -> assertEquals(2, count("getChatAdministrators")));
+  }
+
+  @DisplayName("Status by name")
+  @Test
+  void statusFromString() {
+    // when and then
+    assertAll("Status", () -> assertEquals(Status.Creator, Status.fromString("creator")),
+        () -> assertEquals(Status.Member, Status.fromString(null)),
+        () -> assertTrue(Status.Administrator.isAdministrator()), () -> assertFalse(Status.Left.isAdministrator()));
+  }
+
+  @DisplayName("No cache without a bot token")
+  @Test
+  void withoutToken() {
+    // when and then
+    assertAll("Token", () -> assertNull(ChatMemberCache.create(null)), () -> assertNull(ChatMemberCache.create(" ")),
+        () -> assertThrows(IllegalArgumentException.class, () -> cache(0)),
+        () -> assertThrows(IllegalArgumentException.class,
+            () -> new ChatMemberCache(URI.create("http://127.0.0.1"), "123:test", 16, TTL, TTL, now::get)));
+  }
+
+}
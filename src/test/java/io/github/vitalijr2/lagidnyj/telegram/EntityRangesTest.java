@@ -0,0 +1,87 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.vitalijr2.lagidnyj.cyrillic.ScoringDetector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+@Tag("fast")
+class EntityRangesTest {
+
+  private EntityRanges ranges;
+
+  @BeforeEach
+  void setUp() {
+    ranges = new EntityRanges();
+  }
+
+  @DisplayName("No ranges")
+  @Test
+  void noRanges() {
+    // when and then
+    assertAll("Scan", () -> assertEquals(0, ranges.count()), () -> assertTrue(ranges.hasRussianLetters("ёж")),
+        () -> assertFalse(ranges.hasRussianLetters("їжак")), () -> assertFalse(ranges.hasRussianLetters("")));
+  }
+
+  @DisplayName("Letters outside the ranges")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @CsvSource(delimiter = '|', value = {"ab ёъ cd | 3 | 2 | false", "ab ёъ cd | 3 | 1 | true",
+      "ёж ab cd | 3 | 2 | true", "ab cd ёж | 100 | 5 | true", "ab cd ёж | 6 | 100 | false",
+      "ab cd ёж | 2147483640 | 2147483640 | true"})
+  void lettersOutsideRanges(String text, int offset, int length, boolean expected) {
+    // given
+    ranges.add(offset, length);
+
+    // when and then
+    assertEquals(expected, ranges.hasRussianLetters(text));
+  }
+
+  @DisplayName("Unordered and nested ranges")
+  @Test
+  void unorderedRanges() {
+    // given
+    for (var i = 9; 0 <= i; i--) {
+      ranges.add(i * 3, 2);
+    }
+    ranges.add(0, 30);
+    ranges.add(-1, 3);
+    ranges.add(3, 0);
+
+    // when and then
+    assertAll("Ranges", () -> assertEquals(11, ranges.count()),
+        () -> assertFalse(ranges.hasRussianLetters("ёж ".repeat(10))),
+        () -> assertTrue(ranges.hasRussianLetters("ёж ".repeat(10) + "ы")));
+  }
+
+  @DisplayName("Score the gaps")
+  @Test
+  void score() {
+    // given
+    var detector = ScoringDetector.getInstance();
+    var text = "Привет, как у тебя дела сегодня? Дякую, як справи?";
+
+    // when and then
+    assertAll("Scoring", () -> assertTrue(ranges.isRussian(text, detector)),
+        () -> {
+          ranges.add(7, 4);
+          assertTrue(ranges.isRussian(text, detector));
+        },
+        () -> {
+          ranges.add(0, 32);
+          assertFalse(ranges.isRussian(text, detector));
+        },
+        () -> {
+          ranges.reset();
+          assertEquals(0, ranges.count());
+        });
+  }
+
+}
@@ -0,0 +1,186 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.github.vitalijr2.lagidnyj.beans.ChatSettings;
+import io.github.vitalijr2.lagidnyj.beans.ChatSettings.DetectionMode;
+import io.github.vitalijr2.lagidnyj.beans.CoalescedNotification;
+import io.github.vitalijr2.lagidnyj.beans.DelayedChatNotification;
+import io.github.vitalijr2.lagidnyj.settings.ChatSettingsCache;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+@Tag("fast")
+class EscalationEngineTest {
+
+  private static final long NOW = 1_700_000_000_000L;
+
+  private final List<JSONObject> actions = new ArrayList<>();
+
+  private EscalationEngine engine;
+
+  private static DelayedChatNotification notification() {
+    return new DelayedChatNotification(-100123, 456, "John_Smith", null, null, null, 92, NOW);
+  }
+
+  @BeforeEach
+  void setUp() {
+    actions.clear();
+    engine = new EscalationEngine(actions::add, new StrikeStore(Duration.ofDays(7), 16), Duration.ofHours(1));
+  }
+
+  @DisplayName("Warn on the first strike")
+  @Test
+  void warning() {
+    // when
+    var action = engine.escalate(notification(), NOW);
+
+    // then
+    assertAll("Warning", () -> assertEquals("sendMessage", action.getString("method")),
+        () -> assertEquals(-100123, action.getLong("chat_id")),
+        () -> assertEquals("[John\\_Smith](tg://user?id=456), в цьому чаті спілкуються українською\\. "
+            + "Наступного разу бот переведе вас у режим \"тільки читання\"\\.", action.getString("text")));
+  }
+
+  @DisplayName("Restrict on next strikes, each restriction is twice as long")
+  @ParameterizedTest(name = "strike {0}")
+  @CsvSource({"2,3600", "3,7200", "4,14400", "30,31622400"})
+  void restriction(int strike, long seconds) {
+    // given
+    for (var i = 1; strike > i; i++) {
+      engine.escalate(notification(), NOW);
+    }
+
+    // when
+    var action = engine.escalate(notification(), NOW);
+
+    // then
+    assertAll("Restriction", () -> assertEquals("restrictChatMember", action.getString("method")),
+        () -> assertEquals(456, action.getLong("user_id")),
+        () -> assertEquals(NOW / 1000 + seconds, action.getLong("until_date")));
+  }
+
+  @DisplayName("Strikes to restrict from chat settings")
+  @ParameterizedTest(name = "strikes to restrict {0}, strike {1}: {2}")
+  @CsvSource({"3,2,sendMessage", "3,3,restrictChatMember", "0,5,sendMessage", "1,1,restrictChatMember"})
+  void strikesToRestrict(int strikesToRestrict, int strike, String method) {
+    // given
+    var chatSettings = new ChatSettings(true, 92, strikesToRestrict, new long[0], DetectionMode.Letters);
+
+    engine = new EscalationEngine(actions::add, new StrikeStore(Duration.ofDays(7), 16), Duration.ofHours(1),
+        chatId -> chatSettings, null);
+    for (var i = 1; strike > i; i++) {
+      engine.escalate(notification(), NOW);
+    }
+
+    // when
+    var action = engine.escalate(notification(), NOW);
+
+    // then
+    assertEquals(method, action.getString("method"));
+  }
+
+  @DisplayName("Pass actions to the consumer")
+  @Test
+  void accept() {
+    // when
+    engine.accept(new CoalescedNotification(notification(), 30, NOW, NOW));
+    engine.accept(new CoalescedNotification(notification(), 1, NOW, NOW));
+
+    // then
+    assertAll("Actions", () -> assertEquals(2, actions.size()),
+        () -> assertEquals("sendMessage", actions.get(0).getString("method")),
+        () -> assertEquals("restrictChatMember", actions.get(1).getString("method")));
+  }
+
+  @DisplayName("Skip exempt chat members")
+  @Test
+  void exemptMember() {
+    // given
+    var members = mock(ChatMemberCache.class);
+
+    when(members.isExempt(-100123, 456)).thenReturn(CompletableFuture.completedFuture(true));
+    engine = new EscalationEngine(actions::add, new StrikeStore(Duration.ofDays(7), 16), Duration.ofHours(1),
+        chatId -> ChatSettings.DEFAULT, members);
+
+    // when
+    engine.accept(new CoalescedNotification(notification(), 1, NOW, NOW));
+
+    // then
+    assertTrue(actions.isEmpty());
+  }
+
+  @DisplayName("Pass the action when the member lookup completes")
+  @Test
+  void pendingLookup() {
+    // given
+    var members = mock(ChatMemberCache.class);
+    var lookup = new CompletableFuture<Boolean>();
+
+    when(members.isExempt(-100123, 456)).thenReturn(lookup);
+    engine = new EscalationEngine(actions::add, new StrikeStore(Duration.ofDays(7), 16), Duration.ofHours(1),
+        chatId -> ChatSettings.DEFAULT, members);
+
+    // when
+    engine.accept(new CoalescedNotification(notification(), 1, NOW, NOW));
+
+    // then
+    assertTrue(actions.isEmpty());
+    lookup.complete(false);
+    assertAll("Actions", () -> assertEquals(1, actions.size()),
+        () -> assertEquals("sendMessage", actions.get(0).getString("method")));
+  }
+
+  @DisplayName("Check chat settings again when settings arrive after a cache miss")
+  @ParameterizedTest(name = "[{index}] enabled {0}, exempt {1}")
+  @CsvSource({"false, 0", "true, 456"})
+  void settingsAfterMiss(boolean enabled, long exemptUser) {
+    // given
+    var chatSettings = new ChatSettings(enabled, 92, 2, new long[]{exemptUser}, DetectionMode.Letters);
+    var cache = new ChatSettingsCache(chatId -> chatSettings);
+
+    engine = new EscalationEngine(actions::add, new StrikeStore(Duration.ofDays(7), 16), Duration.ofHours(1), cache,
+        null);
+    // the notification is queued with the default settings of the miss
+    assertEquals(ChatSettings.DEFAULT, cache.apply(-100123));
+
+    var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+    while (ChatSettings.DEFAULT.equals(cache.apply(-100123))) {
+      assertTrue(System.nanoTime() < deadline, "Settings are not loaded");
+      Thread.onSpinWait();
+    }
+
+    // when
+    engine.accept(new CoalescedNotification(notification(), 1, NOW, NOW));
+
+    // then
+    assertTrue(actions.isEmpty());
+  }
+
+  @DisplayName("Wrong restriction")
+  @ParameterizedTest
+  @ValueSource(longs = {59, 31622401})
+  void wrongRestriction(long seconds) {
+    // when and then
+    assertThrows(IllegalArgumentException.class,
+        () -> new EscalationEngine(actions::add, new StrikeStore(Duration.ofDays(7), 16), Duration.ofSeconds(seconds)));
+  }
+
+}
@@ -1,38 +1,59 @@
 package io.github.vitalijr2.lagidnyj.telegram;
 
 import static io.github.vitalijr2.lagidnyj.beans.DelayedChatNotification.DEFAULT_DELAY;
+import static io.github.vitalijr2.lagidnyj.telegram.UpdateParserTest.message;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isA;
 import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mockStatic;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.cloud.functions.HttpRequest;
 import com.google.cloud.functions.HttpResponse;
+import io.github.vitalijr2.lagidnyj.beans.ChatSettings;
 import io.github.vitalijr2.lagidnyj.beans.DelayedChatNotification;
 import io.github.vitalijr2.lagidnyj.keeper.ChatKeeper;
-import java.io.BufferedReader;
-import java.io.CharArrayReader;
+import io.github.vitalijr2.lagidnyj.keeper.CoalescingChatKeeper;
+import io.github.vitalijr2.lagidnyj.settings.ChatSettingsSource;
+import io.github.vitalijr2.lagidnyj.telegram.BotMetrics.Rejection;
+import io.github.vitalijr2.lagidnyj.telegram.BotMetrics.Stage;
+import io.github.vitalijr2.lagidnyj.telegram.BotMetrics.UpdateType;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.Reader;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Optional;
 import org.json.JSONException;
 import org.json.JSONObject;
-import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvFileSource;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.NullAndEmptySource;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
@@ -58,6 +79,12 @@ class LagidnyjBotFastTest {
   private HttpRequest httpRequest;
   @Mock
   private HttpResponse httpResponse;
+  @Mock
+  private ChatMemberCache members;
+  @Mock
+  private PendingActions pendingActions;
+  @Mock
+  private ChatSettingsSource settings;
 
   @InjectMocks
   @Spy
@@ -68,15 +95,16 @@ class LagidnyjBotFastTest {
     logger = LoggerFactory.getLogger(LagidnyjBot.class);
   }
 
-  @AfterEach
-  void tearDown() {
+  @BeforeEach
+  void setUp() {
     clearInvocations(logger);
+    lenient().when(settings.apply(anyLong())).thenReturn(ChatSettings.DEFAULT);
   }
 
   @DisplayName("HTTP method not allowed")
   @ParameterizedTest(name = "{0}")
   @ValueSource(strings = {"GET", "HEAD", "PUT", "DELETE", "CONNECT", "OPTIONS", "TRACE", "PATCH"})
-  void methodNotAllowed(String methodName) {
+  void methodNotAllowed(String methodName) throws IOException {
     try (var botTools = mockStatic(BotTools.class)) {
       // given
       when(httpRequest.getMethod()).thenReturn(methodName);
@@ -86,44 +114,116 @@ class LagidnyjBotFastTest {
       assertDoesNotThrow(() -> bot.service(httpRequest, httpResponse));
 
       // then
-      verify(bot, never()).processRequestBody(isA(Reader.class));
+      verify(bot, never()).processRequestBody(isA(InputStream.class));
       verify(logger).warn(eq("Method {} isn't implemented: {}"), eq(methodName), eq("1.2.3.4"));
       botTools.verify(() -> BotTools.badMethod(isA(HttpResponse.class), eq("POST")));
     }
   }
 
-  @DisplayName("Bad request body")
+  @DisplayName("Malformed request body is answered with OK")
   @Test
   void requestBody() throws IOException {
     try (var botTools = mockStatic(BotTools.class)) {
       // given
-      var reader = new CharArrayReader("{\"a\":\"b\"}".toCharArray());
-
       when(httpRequest.getMethod()).thenReturn("POST");
-      when(httpRequest.getReader()).thenReturn(new BufferedReader(reader));
-      doThrow(new JSONException("test exception")).when(bot).processRequestBody(isA(Reader.class));
+      when(httpRequest.getInputStream()).thenReturn(new ByteArrayInputStream("{\"a\":\"b\"}".getBytes()));
+      doThrow(new JSONException("test exception")).when(bot).processRequestBody(isA(InputStream.class));
 
       // when
       assertDoesNotThrow(() -> bot.service(httpRequest, httpResponse));
 
       // then
       verify(logger).warn(eq("Could not parse request body: {}"), eq("test exception"));
+      botTools.verify(() -> BotTools.ok(isA(HttpResponse.class)));
+      botTools.verify(() -> BotTools.internalError(isA(HttpResponse.class)), never());
+      assertEquals(1, bot.metrics().getRejections(Rejection.Malformed));
+    }
+  }
+
+  @DisplayName("Request body could not be read")
+  @Test
+  void unreadableBody() throws IOException {
+    try (var botTools = mockStatic(BotTools.class)) {
+      // given
+      when(httpRequest.getMethod()).thenReturn("POST");
+      when(httpRequest.getInputStream()).thenReturn(new ByteArrayInputStream(new byte[0]));
+      doThrow(new IOException("test exception")).when(bot).processRequestBody(isA(InputStream.class));
+
+      // when
+      bot.service(httpRequest, httpResponse);
+
+      // then
+      verify(logger).warn(eq("Could not read request body: {}"), eq("test exception"));
       botTools.verify(() -> BotTools.internalError(isA(HttpResponse.class)));
     }
   }
 
+  @DisplayName("Rejected requests get fixed responses before their bodies are read")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @CsvSource({"SecretToken, wrong, 1.2.3.4, 10", "Address, secret, 10.0.0.1, 10", "ContentLength, secret, 1.2.3.4, 17"})
+  void rejectedRequest(Rejection rejection, String secretToken, String address, long contentLength)
+      throws IOException {
+    try (var botTools = mockStatic(BotTools.class)) {
+      // given
+      var admittedBot = new LagidnyjBot(chatKeeper, null, null, settings, null, null,
+          new WebhookAdmission("secret", 16, "1.2.3.0/24"));
+
+      when(httpRequest.getMethod()).thenReturn("POST");
+      lenient().when(httpRequest.getFirstHeader(WebhookAdmission.SECRET_TOKEN_HEADER))
+          .thenReturn(Optional.of(secretToken));
+      when(httpRequest.getFirstHeader("X-Forwarded-For")).thenReturn(Optional.of(address));
+      lenient().when(httpRequest.getContentLength()).thenReturn(contentLength);
+
+      // when
+      admittedBot.service(httpRequest, httpResponse);
+
+      // then
+      verify(httpRequest, never()).getInputStream();
+      if (Rejection.ContentLength == rejection) {
+        botTools.verify(() -> BotTools.payloadTooLarge(isA(HttpResponse.class)));
+      } else {
+        botTools.verify(() -> BotTools.forbidden(isA(HttpResponse.class)));
+      }
+      assertEquals(1, admittedBot.metrics().getRejections(rejection));
+      assertThat(admittedBot.getMetrics(), containsString("lagidnyj_rejections_total{reason=\""));
+    }
+  }
+
+  @DisplayName("Reading stops when the body exceeds the limit")
+  @Test
+  void bodySize() throws IOException {
+    try (var botTools = mockStatic(BotTools.class)) {
+      // given
+      var admittedBot = new LagidnyjBot(chatKeeper, null, null, settings, null, null,
+          new WebhookAdmission(null, 16, null));
+
+      when(httpRequest.getMethod()).thenReturn("POST");
+      when(httpRequest.getContentLength()).thenReturn(-1L);
+      when(httpRequest.getInputStream()).thenReturn(
+          new ByteArrayInputStream("{\"message\":{\"text\":\"ёжик\"}}".getBytes(UTF_8)));
+
+      // when
+      admittedBot.service(httpRequest, httpResponse);
+
+      // then
+      botTools.verify(() -> BotTools.payloadTooLarge(isA(HttpResponse.class)));
+      assertEquals(1, admittedBot.metrics().getRejections(Rejection.BodySize));
+      verify(chatKeeper, never()).addUserToWatchList(isA(DelayedChatNotification.class));
+    }
+  }
+
   @DisplayName("Unexpected message type")
   @Test
   void unexpectedMessageType() {
     // given
-    var update = new JSONObject("{\"fiels\":\"value\"}");
+    var update = message("{\"fiels\":\"value\"}");
 
     // when
     bot.processMessage(update);
 
     // then
-    verify(bot, never()).addUserToWatchList(isA(JSONObject.class));
-    verify(logger).trace("{\"fiels\":\"value\"}");
+    verify(bot, never()).addUserToWatchList(isA(UpdateView.class), isA(ChatSettings.class));
+    verify(logger).trace("Process message: {}", update);
     verify(logger).warn(eq("Could not parse message: {}"), anyString());
   }
 
@@ -133,18 +233,417 @@ class LagidnyjBotFastTest {
   void addUserToWatchList(String title, String update, String expectedValue) {
     // given
     var values = Arrays.copyOf(expectedValue.split(" "), 6);
+    var startTime = System.currentTimeMillis();
+
+    // when
+    bot.addUserToWatchList(message(update), ChatSettings.DEFAULT);
+
+    // then
+    verify(chatKeeper).addUserToWatchList(delayedChatNotificationCaptor.capture());
 
+    var notification = delayedChatNotificationCaptor.getValue();
     var expectedUser = new DelayedChatNotification(Long.parseLong(values[0]), Long.parseLong(values[1]), values[2],
-        values[3], values[4], values[5]);
+        values[3], values[4], values[5], DEFAULT_DELAY, notification.deadline());
+
+    verify(logger).trace(anyString(), eq(expectedUser));
+
+    assertEquals(DEFAULT_DELAY, notification.secondsOfDelay());
+    assertThat(notification.deadline() - startTime, greaterThanOrEqualTo(DEFAULT_DELAY * 1000L));
+  }
+
+  @DisplayName("Delay from chat settings")
+  @Test
+  void chatDelay() {
+    // given
+    var chatSettings = new ChatSettings(true, 30, 2, new long[0], ChatSettings.DetectionMode.Letters);
+    var update = message("{\"chat\":{\"id\":-100123,\"type\":\"group\"},\"from\":{\"id\":456,"
+        + "\"first_name\":\"John\"},\"text\":\"ёжик\"}");
+
+    when(settings.apply(-100123)).thenReturn(chatSettings);
 
     // when
-    bot.addUserToWatchList(new JSONObject(update));
+    bot.processMessage(update);
 
     // then
     verify(chatKeeper).addUserToWatchList(delayedChatNotificationCaptor.capture());
-    verify(logger).trace(anyString(), eq(expectedUser));
+    assertEquals(30, delayedChatNotificationCaptor.getValue().secondsOfDelay());
+  }
+
+  @DisplayName("Disabled chat is not scanned")
+  @Test
+  void disabledChat() {
+    // given
+    var chatSettings = new ChatSettings(false, 30, 2, new long[0], ChatSettings.DetectionMode.Letters);
+    var update = message("{\"chat\":{\"id\":-100123,\"type\":\"group\"},\"from\":{\"id\":456,"
+        + "\"first_name\":\"John\"},\"text\":\"ёжик\"}");
+
+    when(settings.apply(-100123)).thenReturn(chatSettings);
+
+    // when
+    bot.processMessage(update);
+
+    // then
+    verify(bot, never()).addUserToWatchList(isA(UpdateView.class), isA(ChatSettings.class));
+    verify(logger).trace("Skip message of disabled chat");
+    assertEquals(0, bot.metrics().getScans(true));
+  }
+
+  @DisplayName("Russian text without the letters is found by the scoring mode")
+  @ParameterizedTest(name = "{0}")
+  @CsvSource({"Letters, 0", "Scoring, 1"})
+  void scoringMode(ChatSettings.DetectionMode detectionMode, int hits) {
+    // given
+    var chatSettings = new ChatSettings(true, 30, 2, new long[0], detectionMode);
+    var update = message("{\"chat\":{\"id\":-100123,\"type\":\"group\"},\"from\":{\"id\":456,"
+        + "\"first_name\":\"John\"},\"text\":\"Привет, как у тебя дела сегодня?\"}");
+
+    when(settings.apply(-100123)).thenReturn(chatSettings);
+
+    // when
+    bot.processMessage(update);
+
+    // then
+    verify(chatKeeper, times(hits)).addUserToWatchList(isA(DelayedChatNotification.class));
+    assertEquals(hits, bot.metrics().getScans(true));
+  }
+
+  @DisplayName("Pre-filter follows a chat that switches to the scoring mode")
+  @Test
+  void switchToScoringMode() throws IOException {
+    // given
+    var body = "{\"update_id\":123,\"message\":{\"chat\":{\"id\":-100123,\"type\":\"group\"},"
+        + "\"from\":{\"id\":456,\"first_name\":\"John\"},"
+        + "\"text\":\"Привет, как у тебя дела сегодня?\"}}";
+
+    when(settings.usesDetectionMode(ChatSettings.DetectionMode.Scoring)).thenReturn(false, true);
+
+    // when
+    bot.processRequestBody(new ByteArrayInputStream(body.getBytes(UTF_8)));
+    bot.processRequestBody(new ByteArrayInputStream(body.getBytes(UTF_8)));
+
+    // then
+    assertAll("Updates", () -> assertEquals(1, bot.metrics().getUpdates(UpdateType.Skipped)),
+        () -> assertEquals(1, bot.metrics().getUpdates(UpdateType.Message)));
+  }
+
+  @DisplayName("Russian letters inside URLs, mentions, code and quotes are skipped")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @CsvSource(delimiter = '|', value = {
+      "see https://ёж.рф here | text | entities | [{\"type\":\"url\",\"offset\":4,\"length\":13}] | 0",
+      "hi @эхо_bot | text | entities | [{\"type\":\"mention\",\"offset\":3,\"length\":8}] | 0",
+      "run ёж() now | text | entities | [{\"type\":\"code\",\"offset\":4,\"length\":4}] | 0",
+      "run ёж() ёж | text | entities | [{\"type\":\"code\",\"offset\":4,\"length\":4}] | 1",
+      "ёж, bold | text | entities | [{\"type\":\"bold\",\"offset\":0,\"length\":2}] | 1",
+      "цитата: съел | caption | caption_entities | [{\"type\":\"blockquote\",\"offset\":8,\"length\":4}] | 0",
+      "цитата: съел | caption | entities | [{\"type\":\"blockquote\",\"offset\":8,\"length\":4}] | 1"})
+  void excludedEntities(String text, String textKey, String entitiesKey, String entities, int hits) {
+    // given
+    var update = message("{\"chat\":{\"id\":-100123,\"type\":\"group\"},\"from\":{\"id\":456,"
+        + "\"first_name\":\"John\"},\"" + textKey + "\":\"" + text + "\",\"" + entitiesKey + "\":" + entities + "}");
+
+    // when
+    bot.processMessage(update);
+
+    // then
+    verify(chatKeeper, times(hits)).addUserToWatchList(isA(DelayedChatNotification.class));
+  }
+
+  @DisplayName("Russian text inside a quote is not scored")
+  @Test
+  void scoringSkipsEntities() {
+    // given
+    var chatSettings = new ChatSettings(true, 30, 2, new long[0], ChatSettings.DetectionMode.Scoring);
+    var update = message("{\"chat\":{\"id\":-100123,\"type\":\"group\"},\"from\":{\"id\":456,"
+        + "\"first_name\":\"John\"},\"text\":\"Привет, как у тебя дела сегодня? Дякую\",\"entities\":["
+        + "{\"type\":\"blockquote\",\"offset\":0,\"length\":32}]}");
+
+    when(settings.apply(-100123)).thenReturn(chatSettings);
+
+    // when
+    bot.processMessage(update);
+
+    // then
+    verify(chatKeeper, never()).addUserToWatchList(isA(DelayedChatNotification.class));
+    assertEquals(1, bot.metrics().getScans(false));
+  }
+
+  @DisplayName("Exempt user is not watched")
+  @Test
+  void exemptUser() {
+    // given
+    var chatSettings = new ChatSettings(true, 30, 2, new long[]{789, 456}, ChatSettings.DetectionMode.Letters);
+    var update = message("{\"chat\":{\"id\":-100123,\"type\":\"group\"},\"from\":{\"id\":456,"
+        + "\"first_name\":\"John\"},\"text\":\"ёжик\"}");
+
+    // when
+    bot.addUserToWatchList(update, chatSettings);
+
+    // then
+    verify(chatKeeper, never()).addUserToWatchList(isA(DelayedChatNotification.class));
+    verify(logger).trace("Skip exempt user {}", 456L);
+  }
+
+  @DisplayName("Changes of chat members go to the cache")
+  @Test
+  void chatMember() throws IOException {
+    // given
+    var chatMember = "{\"update_id\":1,\"chat_member\":{\"chat\":{\"id\":-100123,\"type\":\"group\"},"
+        + "\"old_chat_member\":{\"status\":\"member\",\"user\":{\"id\":456}},\"new_chat_member\":{"
+        + "\"status\":\"administrator\",\"user\":{\"id\":456}}}}";
+    var myChatMember = "{\"update_id\":2,\"my_chat_member\":{\"chat\":{\"id\":-100321,\"type\":\"group\"},"
+        + "\"new_chat_member\":{\"status\":\"left\",\"user\":{\"id\":123}}}}";
+    var broken = "{\"update_id\":3,\"chat_member\":{\"chat\":{\"id\":-100123,\"type\":\"group\"}}}";
+
+    // when
+    bot.processRequestBody(new ByteArrayInputStream(chatMember.getBytes(UTF_8)));
+    bot.processRequestBody(new ByteArrayInputStream(myChatMember.getBytes(UTF_8)));
+    bot.processRequestBody(new ByteArrayInputStream(broken.getBytes(UTF_8)));
+
+    // then
+    verify(members).chatMember(-100123, 456, "member", "administrator");
+    verify(members).myChatMember(-100321);
+    verify(logger).warn(eq("Could not parse chat member: {}"), anyString());
+    assertAll("Metrics", () -> assertEquals(3, bot.metrics().getUpdates(UpdateType.ChatMember)),
+        () -> assertEquals(1, bot.metrics().getParseFailures()));
+  }
+
+  @DisplayName("Piggyback a pending action of the chat")
+  @Test
+  void piggyback() throws IOException {
+    // given
+    var action = new JSONObject().put("method", "restrictChatMember").put("chat_id", -100123);
+    var body = "{\"message\":{\"chat\":{\"id\":-100123,\"type\":\"group\"},\"text\":\"hello\"}}";
+
+    when(pendingActions.hasPending()).thenReturn(true);
+    when(pendingActions.poll(-100123)).thenReturn(Optional.of(action));
+
+    // when
+    var result = bot.processRequestBody(new ByteArrayInputStream(body.getBytes()));
+
+    // then
+    assertEquals(Optional.of(action.toString()), result.map(Reply::toString));
+    verify(logger).trace("Piggyback action: {}", result.get());
+  }
+
+  @DisplayName("No pending actions of the chat")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @ValueSource(strings = {"{\"message\":{\"chat\":{\"id\":-100123,\"type\":\"group\"},\"text\":\"hello\"}}",
+      "{\"poll\":{\"id\":\"123\"}}"})
+  void noPendingActionsOfChat(String body) throws IOException {
+    // given
+    when(pendingActions.hasPending()).thenReturn(true);
+
+    // when
+    var result = bot.processRequestBody(new ByteArrayInputStream(body.getBytes()));
+
+    // then
+    assertEquals(Optional.empty(), result);
+  }
+
+  @DisplayName("Skip a replay of an update")
+  @Test
+  void replay() throws IOException {
+    // given
+    var body = "{\"update_id\":123,\"message\":{\"chat\":{\"id\":-100123,\"type\":\"group\"},"
+        + "\"from\":{\"id\":456,\"first_name\":\"John\"},\"text\":\"ёжик\"}}";
+
+    // when
+    bot.processRequestBody(new ByteArrayInputStream(body.getBytes(UTF_8)));
+    bot.processRequestBody(new ByteArrayInputStream(body.getBytes(UTF_8)));
+
+    // then
+    verify(chatKeeper).addUserToWatchList(isA(DelayedChatNotification.class));
+    verify(logger).debug("Skip replay of update {}", 123L);
+    assertAll("Metrics", () -> assertEquals(1, bot.metrics().getDeduplications(false)),
+        () -> assertEquals(1, bot.metrics().getDeduplications(true)));
+  }
+
+  @DisplayName("Failed update is processed again on the next delivery")
+  @Test
+  void failedUpdate() {
+    try (var botTools = mockStatic(BotTools.class)) {
+      // given
+      var body = "{\"update_id\":123,\"message\":{\"chat\":{\"id\":-100123,\"type\":\"group\"},"
+          + "\"from\":{\"id\":456,\"first_name\":\"John\"},\"text\":\"ёжик\"}}";
+
+      doThrow(new IllegalStateException("test exception")).doNothing().when(chatKeeper)
+          .addUserToWatchList(isA(DelayedChatNotification.class));
+
+      // when
+      assertDoesNotThrow(() -> bot.processWebhook(new ByteArrayInputStream(body.getBytes(UTF_8)), httpResponse));
+      bot.processWebhook(new ByteArrayInputStream(body.getBytes(UTF_8)), httpResponse);
+
+      // then
+      verify(chatKeeper, times(2)).addUserToWatchList(isA(DelayedChatNotification.class));
+      verify(logger).warn(eq("Could not process request body: {}"), eq("test exception"),
+          isA(IllegalStateException.class));
+      botTools.verify(() -> BotTools.internalError(isA(HttpResponse.class)));
+      botTools.verify(() -> BotTools.ok(isA(HttpResponse.class)));
+      assertAll("Metrics", () -> assertEquals(1, bot.metrics().getProcessingFailures()),
+          () -> assertEquals(2, bot.metrics().getDeduplications(false)),
+          () -> assertEquals(0, bot.metrics().getDeduplications(true)));
+    }
+  }
+
+  @DisplayName("Close pending actions")
+  @Test
+  void close() throws Exception {
+    // when
+    bot.close();
+
+    // then
+    verify(pendingActions).close();
+  }
+
+  @DisplayName("Without a bot token actions are logged only")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @NullAndEmptySource
+  @ValueSource(strings = " ")
+  void actionsAreLogged(String token) {
+    // given
+    var action = new JSONObject().put("method", "sendMessage");
+
+    // when
+    LagidnyjBot.actionConsumer(token).accept(action);
+
+    // then
+    verify(logger).warn("Bot token is not set, actions will be logged only");
+    verify(logger).info("Action is due: {}", action);
+  }
+
+  @DisplayName("With a bot token actions are dispatched")
+  @Test
+  void actionsAreDispatched() {
+    // when
+    var consumer = LagidnyjBot.actionConsumer("123:test");
+
+    // then
+    assertThat(consumer, instanceOf(ActionDispatcher.class));
+    ((ActionDispatcher) consumer).close();
+  }
+
+  @DisplayName("Keep notifications in memory without a journal directory")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @NullAndEmptySource
+  @ValueSource(strings = " ")
+  void chatKeeperWithoutJournal(String journalDirectory) throws Exception {
+    // when
+    try (var keeper = (CoalescingChatKeeper) LagidnyjBot.chatKeeper(notification -> {
+    }, journalDirectory)) {
+      // then
+      assertEquals(0, keeper.size());
+    }
+  }
+
+  @DisplayName("Keep notifications in a journal")
+  @Test
+  void chatKeeperWithJournal(@TempDir Path directory) throws Exception {
+    // given
+    var journal = directory.resolve("journal");
+
+    // when
+    try (var keeper = (CoalescingChatKeeper) LagidnyjBot.chatKeeper(notification -> {
+    }, " " + journal + " ")) {
+      keeper.addUserToWatchList(new DelayedChatNotification(-100123, 456, "John", null, null, null, 60));
+    }
+
+    // then
+    try (var files = Files.list(journal)) {
+      assertEquals(1, files.count());
+    }
+  }
+
+  @DisplayName("Serve metrics to an authorized request")
+  @Test
+  void metrics() throws IOException {
+    try (var botTools = mockStatic(BotTools.class)) {
+      // given
+      var metricsBot = new LagidnyjBot(chatKeeper, pendingActions, "secret");
+
+      when(httpRequest.getMethod()).thenReturn("GET");
+      when(httpRequest.getPath()).thenReturn("/metrics");
+      when(httpRequest.getFirstHeader("Authorization")).thenReturn(Optional.of("Bearer secret"));
+
+      // when
+      metricsBot.service(httpRequest, httpResponse);
+
+      // then
+      botTools.verify(() -> BotTools.okWithMetrics(isA(HttpResponse.class),
+          argThat(text -> text.contains("lagidnyj_actions_piggybacked_total 0"))));
+    }
+  }
+
+  @DisplayName("Reject a request of metrics with a wrong token")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @NullAndEmptySource
+  @ValueSource(strings = {"Bearer wrong", "Bearer secret2", "Basic secret"})
+  void metricsUnauthorized(String authorization) throws IOException {
+    try (var botTools = mockStatic(BotTools.class)) {
+      // given
+      var metricsBot = new LagidnyjBot(chatKeeper, null, "secret");
+
+      when(httpRequest.getMethod()).thenReturn("GET");
+      when(httpRequest.getPath()).thenReturn("/metrics");
+      when(httpRequest.getFirstHeader(anyString())).thenReturn(Optional.ofNullable(authorization));
+
+      // when
+      metricsBot.service(httpRequest, httpResponse);
+
+      // then
+      botTools.verify(() -> BotTools.unauthorized(isA(HttpResponse.class)));
+      botTools.verify(() -> BotTools.okWithMetrics(isA(HttpResponse.class), anyString()), never());
+    }
+  }
+
+  @DisplayName("Metrics are not served without a token")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @NullAndEmptySource
+  @ValueSource(strings = " ")
+  void metricsDisabled(String token) throws IOException {
+    try (var botTools = mockStatic(BotTools.class)) {
+      // given
+      var metricsBot = new LagidnyjBot(chatKeeper, null, token);
+
+      when(httpRequest.getMethod()).thenReturn("GET");
+      when(httpRequest.getFirstHeader(anyString())).thenReturn(Optional.empty());
+
+      // when
+      metricsBot.service(httpRequest, httpResponse);
+
+      // then
+      botTools.verify(() -> BotTools.badMethod(isA(HttpResponse.class), eq("POST")));
+    }
+  }
+
+  @DisplayName("Count updates, chats, scans and keeper enqueues")
+  @Test
+  void countUpdates() throws IOException {
+    // given
+    var metricsBot = new LagidnyjBot(chatKeeper);
+    var bodies = new String[]{"{\"message\":{\"chat\":{\"id\":-100123,\"type\":\"group\"},"
+        + "\"from\":{\"id\":456,\"first_name\":\"John\"},\"text\":\"ёжик\"}}",
+        "{\"edited_message\":{\"chat\":{\"id\":-100123,\"type\":\"group\"},"
+            + "\"from\":{\"id\":456,\"first_name\":\"John\"},\"text\":\"привіт ы\"}}",
+        "{\"message\":{\"chat\":{\"id\":-100123,\"type\":\"group\"},\"text\":\"ы\",\"via_bot\":{\"id\":1}}}",
+        "{\"callback_query\":{\"id\":\"1\",\"data\":\"ы\"}}", "{\"message\":{\"text\":\"hello\"}}"};
+
+    // when
+    for (var body : bodies) {
+      metricsBot.processRequestBody(new ByteArrayInputStream(body.getBytes(UTF_8)));
+    }
+
+    // then
+    var metrics = metricsBot.metrics();
 
-    assertEquals(DEFAULT_DELAY, delayedChatNotificationCaptor.getValue().secondsOfDelay());
+    assertAll("Metrics", () -> assertEquals(1, metrics.getUpdates(UpdateType.Message)),
+        () -> assertEquals(1, metrics.getUpdates(UpdateType.EditedMessage)),
+        () -> assertEquals(1, metrics.getUpdates(UpdateType.ViaBot)),
+        () -> assertEquals(1, metrics.getUpdates(UpdateType.Other)),
+        () -> assertEquals(1, metrics.getUpdates(UpdateType.Skipped)), () -> assertEquals(2, metrics.getScans(true)),
+        () -> assertEquals(2, metrics.getKeeperEnqueues()), () -> assertEquals(4, metrics.stage(Stage.Parse).count()),
+        () -> assertEquals(2, metrics.stage(Stage.Scan).count()),
+        () -> assertEquals(2, metrics.stage(Stage.Keeper).count()));
+    assertThat(metricsBot.getMetrics(), containsString("lagidnyj_messages_total{chat_type=\"group\"} 2"));
   }
 
-}
\ No newline at end of file
+}
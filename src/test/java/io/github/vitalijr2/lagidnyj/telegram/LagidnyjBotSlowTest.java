@@ -1,5 +1,7 @@
 package io.github.vitalijr2.lagidnyj.telegram;
 
+import static io.github.vitalijr2.lagidnyj.telegram.UpdateParserTest.message;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.collection.IsIterableContainingInOrder.contains;
 import static org.hamcrest.collection.IsMapContaining.hasEntry;
@@ -21,11 +23,12 @@ import static org.skyscreamer.jsonassert.JSONAssert.assertEquals;
 
 import com.google.cloud.functions.HttpRequest;
 import com.google.cloud.functions.HttpResponse;
-import java.io.BufferedReader;
+import io.github.vitalijr2.lagidnyj.beans.ChatSettings;
 import java.io.BufferedWriter;
-import java.io.CharArrayReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.Reader;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Optional;
@@ -61,13 +64,13 @@ class LagidnyjBotSlowTest {
   @CsvFileSource(resources = "webhook.csv", delimiterString = "|", nullValues = "N/A", numLinesToSkip = 1)
   void webhook(String title, String requestBody, String messageResponseBody) throws IOException {
     // given
-    var reader = new CharArrayReader(requestBody.toCharArray());
-
     when(httpRequest.getMethod()).thenReturn("POST");
-    when(httpRequest.getReader()).thenReturn(new BufferedReader(reader));
+    when(httpRequest.getInputStream()).thenReturn(new ByteArrayInputStream(requestBody.getBytes(UTF_8)));
+    var output = new ByteArrayOutputStream();
+
     if (null != messageResponseBody) {
-      when(httpResponse.getWriter()).thenReturn(writer);
-      doReturn(messageResponseBody).when(bot).processMessage(isA(JSONObject.class));
+      when(httpResponse.getOutputStream()).thenReturn(output);
+      doReturn(Reply.of(messageResponseBody)).when(bot).processMessage(isA(UpdateView.class));
     }
 
     // when
@@ -78,8 +81,10 @@ class LagidnyjBotSlowTest {
     verify(httpResponse).appendHeader(eq("Server"), anyString());
     verify(httpResponse).setContentType("application/json;charset=utf-8");
     if (null != messageResponseBody) {
-      verify(httpResponse).getWriter();
-      verify(writer).write(anyString());
+      verify(httpResponse).appendHeader("Content-Length",
+          Integer.toString(messageResponseBody.getBytes(UTF_8).length));
+      verify(httpResponse).getOutputStream();
+      assertThat(output.toString(UTF_8), equalTo(messageResponseBody));
     }
     verifyNoMoreInteractions(httpResponse);
   }
@@ -110,21 +115,20 @@ class LagidnyjBotSlowTest {
     assertThat("", headers, hasEntry(equalTo("Allow"), contains("POST")));
   }
 
-  @DisplayName("Bad request body")
+  @DisplayName("Malformed request body is answered with OK")
   @Test
   void requestBody() throws IOException {
     // given
-    var reader = new CharArrayReader("{\"a\":\"b\"}".toCharArray());
-
     when(httpRequest.getMethod()).thenReturn("POST");
-    when(httpRequest.getReader()).thenReturn(new BufferedReader(reader));
-    doThrow(new JSONException("test exception")).when(bot).processRequestBody(isA(Reader.class));
+    when(httpRequest.getInputStream()).thenReturn(new ByteArrayInputStream("{\"a\":\"b\"}".getBytes(UTF_8)));
+    doThrow(new JSONException("test exception")).when(bot).processRequestBody(isA(InputStream.class));
 
     // when
     assertDoesNotThrow(() -> bot.service(httpRequest, httpResponse));
 
     // then
-    verify(httpResponse).setStatusCode(500, "Internal Server Error");
+    verify(httpResponse).setContentType("application/json;charset=utf-8");
+    verify(httpResponse).setStatusCode(200, "OK");
     verify(httpResponse).appendHeader(eq("Server"), anyString());
     verifyNoMoreInteractions(httpResponse);
   }
@@ -134,13 +138,13 @@ class LagidnyjBotSlowTest {
   @CsvFileSource(resources = "russian_letters.csv", delimiterString = "|", numLinesToSkip = 1)
   void russianLetters(String title, String message) {
     // given
-    doNothing().when(bot).addUserToWatchList(isA(JSONObject.class));
+    doNothing().when(bot).addUserToWatchList(isA(UpdateView.class), isA(ChatSettings.class));
 
     // when
-    bot.processMessage(new JSONObject(message));
+    bot.processMessage(message(message));
 
     // then
-    verify(bot).addUserToWatchList(isA(JSONObject.class));
+    verify(bot).addUserToWatchList(isA(UpdateView.class), isA(ChatSettings.class));
   }
 
   @DisplayName("Process message without Russian letters")
@@ -148,28 +152,28 @@ class LagidnyjBotSlowTest {
   @CsvFileSource(resources = "non_russian_letters.csv", delimiterString = "|", numLinesToSkip = 1)
   void nonRussianLetters(String chatType, String message) {
     // given
-    var update = new JSONObject(message);
+    var update = message(message);
 
     // when
     bot.processMessage(update);
 
     // then
-    verify(bot, never()).addUserToWatchList(isA(JSONObject.class));
+    verify(bot, never()).addUserToWatchList(isA(UpdateView.class), isA(ChatSettings.class));
   }
 
   @DisplayName("Reply a help message in a private chat")
   @Test
   void helpMessageInPrivateChat() {
     // given
-    var update = new JSONObject("{\"chat\":{\"id\":321,\"type\":\"private\"}}");
+    var update = message("{\"chat\":{\"id\":321,\"type\":\"private\"}}");
 
     // when
     var reply = bot.processMessage(update);
 
     // then
-    verify(bot, never()).addUserToWatchList(isA(JSONObject.class));
+    verify(bot, never()).addUserToWatchList(isA(UpdateView.class), isA(ChatSettings.class));
 
-    var jsonReply = new JSONObject(reply);
+    var jsonReply = new JSONObject(reply.toString());
     assertEquals("{\"method\":\"sendMessage\",\"parse_mode\":\"MarkdownV2\",\"chat_id\":321}", jsonReply, false);
   }
 
@@ -177,13 +181,13 @@ class LagidnyjBotSlowTest {
   @Test
   void channelsIgnored() {
     // given
-    var update = new JSONObject("{\"text\":\"ёж\",\"chat\":{\"type\":\"channel\"}}");
+    var update = message("{\"text\":\"ёж\",\"chat\":{\"type\":\"channel\"}}");
 
     // when
     var reply = bot.processMessage(update);
 
     // then
-    verify(bot, never()).addUserToWatchList(isA(JSONObject.class));
+    verify(bot, never()).addUserToWatchList(isA(UpdateView.class), isA(ChatSettings.class));
     assertNull(reply);
   }
 
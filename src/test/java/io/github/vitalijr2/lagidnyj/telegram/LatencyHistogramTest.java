@@ -0,0 +1,69 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+@Tag("fast")
+class LatencyHistogramTest {
+
+  @DisplayName("Bucket of a duration")
+  @ParameterizedTest(name = "{0} ns")
+  @CsvSource({"0, 0", "1024, 0", "1025, 1", "2048, 1", "2049, 2", "1000000, 10", "8589934592, 23", "8589934593, 24",
+      "9223372036854775807, 24"})
+  void bucket(long nanos, int expectedBucket) {
+    // when and then
+    assertEquals(expectedBucket, LatencyHistogram.bucket(nanos));
+  }
+
+  @DisplayName("Record durations")
+  @Test
+  void record() {
+    // given
+    var histogram = new LatencyHistogram();
+
+    // when
+    histogram.record(-5);
+    histogram.record(1500);
+    histogram.record(1_000_000);
+    histogram.record(Long.MAX_VALUE / 2);
+
+    // then
+    assertAll("Histogram", () -> assertEquals(4, histogram.count()), () -> assertEquals(1, histogram.count(0)),
+        () -> assertEquals(1, histogram.count(1)), () -> assertEquals(1, histogram.count(10)),
+        () -> assertEquals(1, histogram.count(LatencyHistogram.BUCKETS)),
+        () -> assertEquals(1_001_500 + Long.MAX_VALUE / 2, histogram.sum()));
+  }
+
+  @DisplayName("Prometheus text format")
+  @Test
+  void writePrometheus() {
+    // given
+    var histogram = new LatencyHistogram();
+    var output = new StringBuilder();
+
+    histogram.record(500);
+    histogram.record(1500);
+
+    // when
+    histogram.writePrometheus(output, "test_seconds", "stage=\"parse\"");
+
+    // then
+    var text = output.toString();
+
+    assertAll("Samples",
+        () -> assertThat(text, containsString("test_seconds_bucket{stage=\"parse\",le=\"1.024E-6\"} 1\n")),
+        () -> assertThat(text, containsString("test_seconds_bucket{stage=\"parse\",le=\"2.048E-6\"} 2\n")),
+        () -> assertThat(text, containsString("test_seconds_bucket{stage=\"parse\",le=\"+Inf\"} 2\n")),
+        () -> assertThat(text, containsString("test_seconds_sum{stage=\"parse\"} 2.0E-6\n")),
+        () -> assertThat(text, containsString("test_seconds_count{stage=\"parse\"} 2\n")));
+  }
+
+}
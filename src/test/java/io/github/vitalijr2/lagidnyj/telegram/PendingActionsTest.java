@@ -0,0 +1,180 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("fast")
+class PendingActionsTest {
+
+  private final List<JSONObject> handedOff = new CopyOnWriteArrayList<>();
+
+  private PendingActions pendingActions;
+
+  private static JSONObject action(long chatId) {
+    return new JSONObject().put("method", "sendMessage").put("chat_id", chatId);
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    if (null != pendingActions) {
+      pendingActions.close();
+    }
+  }
+
+  @DisplayName("An update from the chat takes the action")
+  @Test
+  void piggyback() {
+    // given
+    pendingActions = new PendingActions(handedOff::add, Duration.ofMinutes(1));
+
+    var first = action(-100123);
+    var second = action(-100123);
+
+    pendingActions.accept(first);
+    pendingActions.accept(second);
+    pendingActions.accept(action(-100321));
+
+    // when
+    var firstTaken = pendingActions.poll(-100123);
+    var secondTaken = pendingActions.poll(-100123);
+    var none = pendingActions.poll(-100123);
+
+    // then
+    assertAll("Piggybacked",
+        () -> assertSame(first, firstTaken.orElseThrow()),
+        () -> assertSame(second, secondTaken.orElseThrow()),
+        () -> assertEquals(Optional.empty(), none),
+        () -> assertEquals(Optional.empty(), pendingActions.poll(-100456)),
+        () -> assertTrue(pendingActions.hasPending()),
+        () -> assertEquals(2, pendingActions.getPiggybacked()),
+        () -> assertThat(handedOff, empty()));
+  }
+
+  @DisplayName("An action without updates is handed off")
+  @Test
+  void handOff() throws InterruptedException {
+    // given
+    var latch = new CountDownLatch(1);
+    var action = action(-100123);
+
+    pendingActions = new PendingActions(handed -> {
+      handedOff.add(handed);
+      latch.countDown();
+    }, Duration.ofMillis(10));
+
+    // when
+    pendingActions.accept(action);
+
+    // then
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertAll("Handed off", () -> assertThat(handedOff, contains(action)),
+        () -> assertEquals(Optional.empty(), pendingActions.poll(-100123)),
+        () -> assertFalse(pendingActions.hasPending()), () -> assertEquals(1, pendingActions.getHandedOff()));
+  }
+
+  @DisplayName("Close hands off all actions")
+  @Test
+  void close() throws Exception {
+    // given
+    pendingActions = new PendingActions(handedOff::add, Duration.ofMinutes(1));
+
+    var action = action(-100123);
+
+    pendingActions.accept(action);
+
+    // when
+    pendingActions.close();
+
+    // then
+    assertAll("Handed off", () -> assertThat(handedOff, contains(action)),
+        () -> assertFalse(pendingActions.hasPending()));
+  }
+
+  @DisplayName("A failed fallback does not break hand-off")
+  @Test
+  void failedFallback() throws Exception {
+    // given
+    pendingActions = new PendingActions(action -> {
+      throw new IllegalStateException("test exception");
+    }, Duration.ofMinutes(1));
+    pendingActions.accept(action(-100123));
+
+    // when
+    pendingActions.close();
+
+    // then
+    assertFalse(pendingActions.hasPending());
+  }
+
+  @DisplayName("Close the fallback")
+  @Test
+  void closeFallback() throws Exception {
+    // given
+    var fallback = mock(ActionDispatcher.class);
+
+    pendingActions = new PendingActions(fallback, Duration.ofMinutes(1));
+
+    // when
+    pendingActions.close();
+
+    // then
+    verify(fallback).close();
+  }
+
+  @DisplayName("Every action is delivered once")
+  @Test
+  void deliveredOnce() throws Exception {
+    // given
+    var delivered = new AtomicInteger();
+    var executor = Executors.newFixedThreadPool(4);
+
+    pendingActions = new PendingActions(action -> delivered.incrementAndGet(), Duration.ofMillis(1));
+
+    // when
+    for (var i = 0; 4 > i; i++) {
+      executor.execute(() -> {
+        for (var j = 0; 1000 > j; j++) {
+          pendingActions.accept(action(j % 10));
+          pendingActions.poll(j % 10).ifPresent(action -> delivered.incrementAndGet());
+        }
+      });
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    pendingActions.close();
+
+    // then
+    assertEquals(4000, delivered.get());
+  }
+
+  @DisplayName("Wrong hold time")
+  @Test
+  void wrongHold() {
+    // when and then
+    assertThrows(IllegalArgumentException.class, () -> new PendingActions(handedOff::add, Duration.ofMillis(-1)));
+  }
+
+}
@@ -0,0 +1,178 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import org.json.JSONObject;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+@Tag("fast")
+class ReplyTemplateTest {
+
+  private static String write(Reply reply) throws IOException {
+    var output = new ByteArrayOutputStream();
+
+    reply.writeTo(output);
+    assertEquals(output.size(), reply.length(), "Length");
+
+    return output.toString(UTF_8);
+  }
+
+  @DisplayName("Decimal notation")
+  @ParameterizedTest(name = "{0}")
+  @ValueSource(longs = {0, 7, -7, 10, 321, -1001234567890L, Long.MAX_VALUE, Long.MIN_VALUE})
+  void decimal(long value) throws IOException {
+    // given
+    var output = new ByteArrayOutputStream();
+
+    // when
+    ReplyTemplate.writeDecimal(output, value);
+
+    // then
+    assertAll("Decimal", () -> assertEquals(Long.toString(value), output.toString(UTF_8)),
+        () -> assertEquals(Long.toString(value).length(), ReplyTemplate.decimalLength(value)));
+  }
+
+  @DisplayName("Reply without the user mention")
+  @Test
+  void reply() throws IOException {
+    // given
+    var template = ReplyTemplate.compile("See \"the post\" about {link}.", "[it](https://example.com)");
+
+    // when
+    var reply = template.reply(-100123);
+
+    // then
+    var json = new JSONObject(write(reply));
+
+    assertAll("Reply", () -> assertFalse(template.hasUserMention()),
+        () -> assertEquals("sendMessage", json.getString("method")),
+        () -> assertEquals(-100123, json.getLong("chat_id")),
+        () -> assertEquals("MarkdownV2", json.getString("parse_mode")),
+        () -> assertEquals("See \"the post\" about [it](https://example.com)\\.", json.getString("text")),
+        () -> assertEquals(json.toString(), new JSONObject(reply.toString()).toString()));
+  }
+
+  @DisplayName("Reply with the user mention")
+  @ParameterizedTest(name = "{0}")
+  @CsvSource(delimiter = '|', quoteCharacter = '\'', textBlock = """
+      John   | [John](tg://user?id=456) hello\\!
+      Jo_hn  | [Jo\\_hn](tg://user?id=456) hello\\!
+      "Іван" | ["Іван"](tg://user?id=456) hello\\!
+      """)
+  void replyWithMention(String firstName, String expectedText) throws IOException {
+    // given
+    var template = ReplyTemplate.compile("{user} hello!", "");
+
+    // when
+    var reply = template.reply(-100123, firstName, 456);
+
+    // then
+    var json = new JSONObject(write(reply));
+
+    assertAll("Reply", () -> assertTrue(template.hasUserMention()),
+        () -> assertEquals(expectedText, json.getString("text")),
+        () -> assertEquals(expectedText, template.text(firstName, 456)));
+  }
+
+  @DisplayName("The template needs a user mention")
+  @Test
+  void userMentionIsRequired() {
+    // given
+    var template = ReplyTemplate.compile("{user} hello!", "");
+
+    // when and then
+    assertThrows(IllegalStateException.class, () -> template.reply(-100123));
+  }
+
+  @DisplayName("Choose a variant by the language code")
+  @ParameterizedTest(name = "{0}")
+  @CsvSource(nullValues = "N/A", value = {"N/A, Привіт", "uk, Привіт", "en, Hi", "en-US, Hi", "ru, Привіт"})
+  void language(String languageCode, String expectedText) {
+    // given
+    var properties = new Properties();
+
+    properties.setProperty("languages", "uk, en");
+    properties.setProperty("link.url", "https://example.com");
+    properties.setProperty("link.uk", "допис");
+    properties.setProperty("link.en", "post");
+    properties.setProperty("help.uk", "Привіт");
+    properties.setProperty("help.en", "Hi");
+    properties.setProperty("warning.uk", "{user}");
+    properties.setProperty("warning.en", "{user}");
+
+    // when
+    var template = new ReplyTemplates(properties).get(ReplyTemplates.Kind.Help, languageCode);
+
+    // then
+    assertEquals(expectedText, template.text("John", 456));
+  }
+
+  @DisplayName("Help does not mention the user")
+  @Test
+  void helpWithUserMention(@TempDir Path directory) throws IOException {
+    // given
+    var file = directory.resolve("replies.properties");
+
+    Files.writeString(file, "languages=pl\nlink.url=https://example.com\nlink.pl=wpis\n"
+        + "help.pl={user}, cze\u015b\u0107\nwarning.pl={user}\n", UTF_8);
+
+    // when
+    var exception = assertThrows(IllegalArgumentException.class, () -> ReplyTemplates.load(file.toString()));
+
+    // then
+    assertEquals("help.pl must not have {user}", exception.getMessage());
+  }
+
+  @DisplayName("Bundled replies")
+  @Test
+  void bundledReplies() {
+    // when
+    var replies = ReplyTemplates.getInstance();
+
+    // then
+    assertAll("Replies",
+        () -> assertEquals("Більше інформації для чого цей бот та як ним користуватись в дописі про "
+                + "[лагідну українізацію](https://buymeacoffee.com/vitalij_r2/lagidna-ukrajinizacija)\\.",
+            replies.get(ReplyTemplates.Kind.Help, "uk").text("John", 456)),
+        () -> assertTrue(replies.get(ReplyTemplates.Kind.Warning, "en").text("John", 456)
+            .startsWith("[John](tg://user?id=456)")));
+  }
+
+  @DisplayName("Replies of a file")
+  @Test
+  void repliesOfFile(@TempDir Path directory) throws IOException {
+    // given
+    var file = directory.resolve("replies.properties");
+
+    Files.writeString(file, "languages=pl\nlink.url=https://example.com\nlink.pl=wpis\nhelp.pl=Cze\u015b\u0107\n"
+        + "warning.pl={user}\n", UTF_8);
+
+    // when
+    var replies = ReplyTemplates.load(file.toString());
+
+    // then
+    assertAll("Replies",
+        () -> assertEquals("Cze\u015b\u0107", replies.get(ReplyTemplates.Kind.Help, "uk").text("John", 456)),
+        () -> assertSame(ReplyTemplates.getInstance(), ReplyTemplates.load(" ")),
+        () -> assertThrows(IllegalStateException.class,
+            () -> ReplyTemplates.load(directory.resolve("missing.properties").toString())));
+  }
+
+}
@@ -0,0 +1,115 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+@Tag("fast")
+class StrikeStoreTest {
+
+  private static final long DAY = Duration.ofDays(1).toMillis();
+
+  @DisplayName("Strikes are counted per chat and user")
+  @Test
+  void countStrikes() {
+    // given
+    var store = new StrikeStore(Duration.ofDays(1), 16);
+
+    // when
+    store.strike(-100123, 456, 0);
+    store.strike(-100123, 456, 1);
+    store.strike(-100123, 789, 2);
+    store.strike(-100321, 456, 3);
+
+    // then
+    assertAll("Strikes", () -> assertEquals(2, store.strikes(-100123, 456, 4)),
+        () -> assertEquals(1, store.strikes(-100123, 789, 4)), () -> assertEquals(1, store.strikes(-100321, 456, 4)),
+        () -> assertEquals(0, store.strikes(-100321, 789, 4)), () -> assertEquals(3, store.size()));
+  }
+
+  @DisplayName("Strikes decay with time")
+  @ParameterizedTest(name = "{0} days after the third strike")
+  @CsvSource({"0,3", "1,2", "2,1", "3,0", "30,0"})
+  void decay(int days, int expected) {
+    // given
+    var store = new StrikeStore(Duration.ofDays(1), 16);
+
+    for (var i = 0; 3 > i; i++) {
+      store.strike(1, 2, 0);
+    }
+
+    // when and then
+    assertEquals(expected, store.strikes(1, 2, days * DAY));
+  }
+
+  @DisplayName("A strike after decay starts from the decayed count")
+  @Test
+  void strikeAfterDecay() {
+    // given
+    var store = new StrikeStore(Duration.ofDays(1), 16);
+
+    store.strike(1, 2, 0);
+    store.strike(1, 2, 0);
+
+    // when and then
+    assertEquals(2, store.strike(1, 2, DAY));
+  }
+
+  @DisplayName("Decayed entries are dropped instead of growing")
+  @Test
+  void dropDecayed() {
+    // given
+    var store = new StrikeStore(Duration.ofDays(1), 16);
+
+    for (var i = 0; 12 > i; i++) {
+      store.strike(1, i, 0);
+    }
+
+    // when
+    store.strike(1, 100, 2 * DAY);
+
+    // then
+    assertAll("Rebuilt", () -> assertEquals(1, store.size()), () -> assertEquals(16, store.capacity()),
+        () -> assertEquals(1, store.strikes(1, 100, 2 * DAY)));
+  }
+
+  @DisplayName("Live entries make it grow")
+  @Test
+  void grow() {
+    // given
+    var store = new StrikeStore(Duration.ofDays(1), 1);
+
+    // when
+    for (var i = 0; 1000 > i; i++) {
+      store.strike(-i, i, 0);
+    }
+
+    // then
+    assertAll("Grown", () -> assertEquals(1000, store.size()), () -> assertEquals(2048, store.capacity()),
+        () -> assertEquals(1, store.strikes(-999, 999, 0)), () -> assertEquals(1, store.strikes(0, 0, 0)));
+  }
+
+  @DisplayName("Wrong initial capacity")
+  @ParameterizedTest
+  @ValueSource(ints = {0, (1 << 30) + 1})
+  void wrongInitialCapacity(int initialCapacity) {
+    // when and then
+    assertThrows(IllegalArgumentException.class, () -> new StrikeStore(Duration.ofDays(1), initialCapacity));
+  }
+
+  @DisplayName("Wrong decay")
+  @Test
+  void wrongDecay() {
+    // when and then
+    assertThrows(IllegalArgumentException.class, () -> new StrikeStore(Duration.ofNanos(999), 16));
+  }
+
+}
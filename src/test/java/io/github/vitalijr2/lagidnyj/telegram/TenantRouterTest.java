@@ -0,0 +1,193 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.functions.HttpRequest;
+import com.google.cloud.functions.HttpResponse;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+@Tag("fast")
+class TenantRouterTest {
+
+  @Mock
+  private LagidnyjBot first;
+  @Mock
+  private HttpRequest httpRequest;
+  @Mock
+  private HttpResponse httpResponse;
+  private TenantRouter router;
+  @Mock
+  private LagidnyjBot second;
+
+  @BeforeEach
+  void setUp() {
+    var tenants = new LinkedHashMap<String, LagidnyjBot>();
+
+    tenants.put("first-secret", first);
+    tenants.put("second_secret", second);
+    router = new TenantRouter(tenants, null);
+  }
+
+  @DisplayName("Find a bot by the secret token header")
+  @Test
+  void header() {
+    // given
+    when(httpRequest.getFirstHeader(TenantRouter.SECRET_TOKEN_HEADER)).thenReturn(Optional.of("second_secret"));
+
+    // when
+    router.service(httpRequest, httpResponse);
+
+    // then
+    verify(second).service(httpRequest, httpResponse);
+    verify(first, never()).service(httpRequest, httpResponse);
+    verify(httpRequest, never()).getPath();
+  }
+
+  @DisplayName("Find a bot by the first path segment")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @CsvSource({"/first-secret, true", "/first-secret/metrics, true", "second_secret, false",
+      "/second_secret/, false"})
+  void path(String path, boolean isFirst) {
+    // given
+    when(httpRequest.getFirstHeader(TenantRouter.SECRET_TOKEN_HEADER)).thenReturn(Optional.empty());
+    when(httpRequest.getPath()).thenReturn(path);
+
+    // when and then
+    assertSame(isFirst ? first : second, router.find(httpRequest));
+  }
+
+  @DisplayName("Unknown bot")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @ValueSource(strings = {"/", "/first", "/first-secret2", "/metrics", "/first-secret-x/metrics"})
+  void unknownBot(String path) {
+    // given
+    when(httpRequest.getFirstHeader(TenantRouter.SECRET_TOKEN_HEADER)).thenReturn(Optional.empty());
+    when(httpRequest.getFirstHeader("X-Forwarded-For")).thenReturn(Optional.empty());
+    when(httpRequest.getPath()).thenReturn(path);
+
+    // when
+    try (var botTools = mockStatic(BotTools.class)) {
+      router.service(httpRequest, httpResponse);
+
+      // then
+      botTools.verify(() -> BotTools.unauthorized(isA(HttpResponse.class)));
+    }
+    verify(first, never()).service(httpRequest, httpResponse);
+    verify(second, never()).service(httpRequest, httpResponse);
+  }
+
+  @DisplayName("Wrong header is not overridden by the path")
+  @Test
+  void wrongHeader() {
+    // given
+    when(httpRequest.getFirstHeader(TenantRouter.SECRET_TOKEN_HEADER)).thenReturn(Optional.of("first"));
+
+    // when and then
+    assertNull(router.find(httpRequest));
+    verify(httpRequest, never()).getPath();
+  }
+
+  @DisplayName("Request without path")
+  @Test
+  void noPath() {
+    // given
+    when(httpRequest.getFirstHeader(TenantRouter.SECRET_TOKEN_HEADER)).thenReturn(Optional.empty());
+
+    // when and then
+    assertNull(router.find(httpRequest));
+  }
+
+  @DisplayName("Close all bots and the shared client")
+  @Test
+  void close() throws Exception {
+    // given
+    var executor = Executors.newSingleThreadExecutor();
+
+    router = new TenantRouter(Map.of("a", first, "b", second), executor);
+    doThrow(new IOException("first")).when(first).close();
+    doThrow(new IOException("second")).when(second).close();
+
+    // when
+    var exception = assertThrows(IOException.class, router::close);
+
+    // then
+    assertAll("Closed", () -> assertTrue(executor.isShutdown()),
+        () -> assertEquals(1, exception.getSuppressed().length));
+  }
+
+  @DisplayName("Bots of the environment")
+  @Test
+  void tenants() throws Exception {
+    // given
+    var environment = Map.of(TenantRouter.BOTS, "UK, PL", "UK_SECRET_TOKEN", "uk-secret", "UK_BOT_TOKEN", "123:test",
+        "PL_SECRET_TOKEN", "pl_secret", "METRICS_TOKEN", "metrics");
+
+    // when
+    var tenants = TenantRouter.tenants(environment, HttpClient.newHttpClient());
+
+    // then
+    try (var tenantRouter = new TenantRouter(tenants, null)) {
+      assertThat(tenants.keySet(), contains("uk-secret", "pl_secret"));
+    }
+  }
+
+  @DisplayName("Every bot keeps its own journal")
+  @Test
+  void journals(@TempDir Path directory) throws Exception {
+    // given
+    var environment = Map.of(TenantRouter.BOTS, "UK, PL", "UK_SECRET_TOKEN", "uk-secret", "PL_SECRET_TOKEN",
+        "pl_secret", LagidnyjBot.JOURNAL_DIR, " " + directory + " ");
+
+    // when
+    try (var tenantRouter = new TenantRouter(TenantRouter.tenants(environment, HttpClient.newHttpClient()), null)) {
+      // then
+      assertAll("Journals", () -> assertTrue(Files.isDirectory(directory.resolve("UK"))),
+          () -> assertTrue(Files.isDirectory(directory.resolve("PL"))));
+    }
+  }
+
+  @DisplayName("Wrong environment")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @ValueSource(strings = {"", " ", "UK,PL", "UK,UK", "PL,UK", "UK,EN"})
+  void wrongEnvironment(String bots) {
+    // given
+    var environment = Map.of(TenantRouter.BOTS, bots, "UK_SECRET_TOKEN", "uk-secret", "PL_SECRET_TOKEN",
+        "pl/secret");
+
+    // when and then
+    assertThrows(IllegalArgumentException.class, () -> TenantRouter.tenants(environment, HttpClient.newHttpClient()));
+  }
+
+}
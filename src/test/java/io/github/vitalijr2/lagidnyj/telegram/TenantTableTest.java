@@ -0,0 +1,55 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+@Tag("fast")
+class TenantTableTest {
+
+  @DisplayName("Find a tenant by a range of a text")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @CsvSource(delimiter = '|', value = {"first | 0 | 5 | 1", "/first/metrics | 1 | 6 | 1", "/second | 1 | 7 | 2",
+      "/firs | 1 | 5 | ", "/firstly | 1 | 8 | ", "/ | 1 | 1 | "})
+  void get(String text, int from, int to, Integer expected) {
+    // given
+    var table = new TenantTable<>(Map.of("first", 1, "second", 2));
+
+    // when and then
+    assertEquals(expected, table.get(text, from, to));
+  }
+
+  @DisplayName("Many tenants")
+  @Test
+  void manyTenants() {
+    // given
+    var tenants = new HashMap<String, Integer>();
+
+    for (var i = 0; 1000 > i; i++) {
+      tenants.put("secret-" + i, i);
+    }
+
+    var table = new TenantTable<>(tenants);
+
+    // when and then
+    assertAll("Tenants", () -> assertEquals(0, table.get("secret-0", 0, 8)),
+        () -> assertEquals(999, table.get("/secret-999/metrics", 1, 11)),
+        () -> assertNull(table.get("secret-1000", 0, 11)));
+  }
+
+  @DisplayName("No tenants")
+  @Test
+  void noTenants() {
+    // when and then
+    assertNull(new TenantTable<>(Map.of()).get("secret", 0, 6));
+  }
+
+}
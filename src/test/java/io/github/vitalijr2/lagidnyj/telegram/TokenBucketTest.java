@@ -0,0 +1,72 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+@Tag("fast")
+class TokenBucketTest {
+
+  private static final long SECOND = Duration.ofSeconds(1).toNanos();
+
+  @DisplayName("A full bucket allows a burst")
+  @Test
+  void burst() {
+    // given
+    var bucket = new TokenBucket(3, Duration.ofSeconds(1), 0);
+
+    // when and then
+    assertAll("Burst", () -> assertTrue(bucket.tryAcquire(0)), () -> assertTrue(bucket.tryAcquire(0)),
+        () -> assertTrue(bucket.tryAcquire(0)), () -> assertFalse(bucket.tryAcquire(0)),
+        () -> assertEquals(SECOND / 3 + 1, bucket.nanosToWait(0), 1));
+  }
+
+  @DisplayName("Tokens are refilled with time")
+  @Test
+  void refill() {
+    // given
+    var bucket = new TokenBucket(2, Duration.ofSeconds(1), 0);
+
+    bucket.tryAcquire(0);
+    bucket.tryAcquire(0);
+
+    // when and then
+    assertAll("Refill",
+        () -> assertFalse(bucket.tryAcquire(SECOND / 4)),
+        () -> assertTrue(bucket.tryAcquire(SECOND / 2)),
+        () -> assertFalse(bucket.tryAcquire(SECOND / 2)),
+        () -> assertTrue(bucket.isIdle(10 * SECOND)));
+  }
+
+  @DisplayName("A paused bucket gives no tokens")
+  @Test
+  void pause() {
+    // given
+    var bucket = new TokenBucket(20, Duration.ofMinutes(1), 0);
+
+    // when
+    bucket.pause(5 * SECOND);
+
+    // then
+    assertAll("Pause", () -> assertEquals(5 * SECOND, bucket.nanosToWait(0)), () -> assertFalse(bucket.isIdle(0)),
+        () -> assertFalse(bucket.tryAcquire(5 * SECOND)), () -> assertTrue(bucket.tryAcquire(8 * SECOND)));
+  }
+
+  @DisplayName("Wrong rate")
+  @ParameterizedTest
+  @CsvSource({"0,1", "1,0", "1,-1"})
+  void wrongRate(int capacity, int seconds) {
+    // when and then
+    assertThrows(IllegalArgumentException.class, () -> new TokenBucket(capacity, Duration.ofSeconds(seconds), 0));
+  }
+
+}
@@ -0,0 +1,160 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+@Tag("fast")
+class UpdateDeduplicatorTest {
+
+  @DisplayName("Replay of an update")
+  @Test
+  void replay() {
+    // given
+    var deduplicator = new UpdateDeduplicator();
+
+    // when and then
+    assertAll("Replays", () -> assertFalse(deduplicator.isReplay(123), "first delivery"),
+        () -> assertTrue(deduplicator.isReplay(123), "second delivery"),
+        () -> assertFalse(deduplicator.isReplay(124), "next update"));
+  }
+
+  @DisplayName("Forgotten update is not a replay")
+  @Test
+  void forget() {
+    // given
+    var deduplicator = new UpdateDeduplicator(4, 1);
+
+    deduplicator.isReplay(1);
+    deduplicator.isReplay(2);
+
+    // when
+    deduplicator.forget(2);
+    deduplicator.forget(3);
+
+    // then
+    assertAll("Forgotten", () -> assertFalse(deduplicator.isReplay(2), "next delivery"),
+        () -> assertTrue(deduplicator.isReplay(2), "one more delivery"),
+        () -> assertFalse(deduplicator.isReplay(3), "unknown update"),
+        () -> assertFalse(deduplicator.isReplay(4), "the oldest update leaves"),
+        () -> assertFalse(deduplicator.isReplay(5), "the forgotten place is reused"),
+        () -> assertTrue(deduplicator.isReplay(2), "newer update"),
+        () -> assertTrue(deduplicator.isReplay(3), "newer update"),
+        () -> assertFalse(deduplicator.isReplay(1), "the oldest update is gone"));
+  }
+
+  @DisplayName("Updates without identifiers are never replays")
+  @ParameterizedTest(name = "{0}")
+  @ValueSource(longs = {0, -1})
+  void withoutIdentifier(long updateId) {
+    // given
+    var deduplicator = new UpdateDeduplicator();
+
+    // when
+    deduplicator.isReplay(updateId);
+
+    // then
+    assertFalse(deduplicator.isReplay(updateId));
+  }
+
+  @DisplayName("The oldest update leaves the full window")
+  @Test
+  void eviction() {
+    // given
+    var deduplicator = new UpdateDeduplicator(4, 1);
+
+    for (var updateId = 1; 5 >= updateId; updateId++) {
+      deduplicator.isReplay(updateId);
+    }
+
+    // when and then
+    assertAll("Window", () -> assertTrue(deduplicator.isReplay(5)), () -> assertTrue(deduplicator.isReplay(2)),
+        () -> assertFalse(deduplicator.isReplay(1)));
+  }
+
+  @DisplayName("The window works like a queue of the last updates")
+  @Test
+  void randomUpdates() {
+    // given
+    var capacity = 64;
+    var deduplicator = new UpdateDeduplicator(capacity, 1);
+    var queue = new ArrayDeque<Long>();
+    var set = new HashSet<Long>();
+    var random = new Random(42);
+
+    for (var i = 0; 100_000 > i; i++) {
+      var updateId = 1 + random.nextInt(200);
+      var expected = set.contains((long) updateId);
+
+      // when
+      var replay = deduplicator.isReplay(updateId);
+
+      // then
+      assertEquals(expected, replay, "update " + updateId + " at step " + i);
+      if (!expected) {
+        if (capacity == queue.size()) {
+          set.remove(queue.poll());
+        }
+        queue.add((long) updateId);
+        set.add((long) updateId);
+      }
+    }
+  }
+
+  @DisplayName("Concurrent deliveries of the same update")
+  @Test
+  void concurrentDeliveries() throws Exception {
+    // given
+    var threads = 8;
+    var deduplicator = new UpdateDeduplicator();
+    var barrier = new CyclicBarrier(threads);
+    var newUpdates = new AtomicInteger();
+    var executor = Executors.newFixedThreadPool(threads);
+
+    // when
+    for (var i = 0; threads > i; i++) {
+      executor.execute(() -> {
+        try {
+          barrier.await();
+          for (var updateId = 1; 1000 >= updateId; updateId++) {
+            if (!deduplicator.isReplay(updateId)) {
+              newUpdates.incrementAndGet();
+            }
+          }
+        } catch (Exception exception) {
+          throw new IllegalStateException(exception);
+        }
+      });
+    }
+    executor.shutdown();
+
+    // then
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    assertEquals(1000, newUpdates.get());
+  }
+
+  @DisplayName("Wrong capacity or segments")
+  @ParameterizedTest(name = "capacity {0}, segments {1}")
+  @CsvSource({"0, 1", "3, 1", "4, 0", "4, 3", "4, 8"})
+  void wrongSize(int capacity, int segments) {
+    // when and then
+    assertThrows(IllegalArgumentException.class, () -> new UpdateDeduplicator(capacity, segments));
+  }
+
+}
@@ -0,0 +1,373 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import static com.github.npathai.hamcrestopt.OptionalMatchers.isEmpty;
+import static com.github.npathai.hamcrestopt.OptionalMatchers.isPresent;
+import static com.github.npathai.hamcrestopt.OptionalMatchers.isPresentAndIs;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.nonNull;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.vitalijr2.lagidnyj.beans.User;
+import io.github.vitalijr2.lagidnyj.telegram.BotTools.ChatType;
+import io.github.vitalijr2.lagidnyj.telegram.UpdateParser.BodySizeException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import org.json.JSONException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvFileSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+@Tag("fast")
+class UpdateParserTest {
+
+  private UpdateParser parser;
+
+  static UpdateView message(String message) {
+    var parser = new UpdateParser();
+
+    read(parser, message);
+
+    return parser.parseMessage();
+  }
+
+  private static void read(UpdateParser parser, String body) {
+    try {
+      parser.read(new ByteArrayInputStream(body.getBytes(UTF_8)));
+    } catch (IOException exception) {
+      throw new AssertionError(exception);
+    }
+  }
+
+  @BeforeEach
+  void setUp() {
+    parser = new UpdateParser();
+  }
+
+  @DisplayName("Take text from a message")
+  @ParameterizedTest(name = "{0}")
+  @CsvFileSource(resources = "take_text.csv", delimiterString = "|", numLinesToSkip = 1)
+  void takeTextFromMessage(String title, String message) {
+    // when and then
+    assertThat(message(message).getText(), isPresent());
+  }
+
+  @DisplayName("Take text from a message: no text")
+  @ParameterizedTest(name = "{0}")
+  @CsvFileSource(resources = "not_take_text.csv", delimiterString = "|", numLinesToSkip = 1)
+  void notTakeTextFromMessage(String title, String message) {
+    // when and then
+    assertThat(message(message).getText(), isEmpty());
+  }
+
+  @DisplayName("Text wins over caption")
+  @Test
+  void textAndCaption() {
+    // when and then
+    assertThat(message("{\"caption\":\"caption\",\"text\":\"text\"}").getText(), isPresentAndIs("text"));
+  }
+
+  @DisplayName("Get a chat identifier")
+  @ParameterizedTest
+  @ValueSource(longs = {12345, -1001234567890L, Long.MAX_VALUE, Long.MIN_VALUE})
+  void getChatIdentifier(long chatId) {
+    // when
+    var result = message("{\"chat\":{\"id\":" + chatId + "}}").getChatId();
+
+    // then
+    assertEquals(chatId, result);
+  }
+
+  @DisplayName("Chat type")
+  @ParameterizedTest(name = "{0}")
+  @CsvFileSource(resources = "chat_type.csv", delimiterString = "|", numLinesToSkip = 1)
+  void chatTypeFromMessage(String chatType, String message) {
+    // given
+    var expectedChatType = ChatType.fromString(chatType);
+
+    // when and then
+    assertEquals(expectedChatType, message(message).getChatType());
+  }
+
+  @DisplayName("Not a chat")
+  @Test
+  void notChat() {
+    // given
+    var message = message("{\"query\":\"test query\"}");
+
+    // when and then
+    assertThrows(JSONException.class, message::getChatId);
+    assertThrows(JSONException.class, message::getChatType);
+  }
+
+  @DisplayName("Get a \"from\" user")
+  @ParameterizedTest(name = "{0}")
+  @CsvFileSource(resources = "get_from.csv", delimiterString = "|", nullValues = "N/A", numLinesToSkip = 1)
+  void getFrom(String title, String message, String expectedValue) {
+    // given
+    User expectedUser = null;
+
+    if (nonNull(expectedValue)) {
+      var index = 0;
+      var values = new String[5];
+
+      for (String value : expectedValue.split(" ")) {
+        values[index++] = value;
+      }
+
+      expectedUser = new User(Long.parseLong(values[0]), values[1], values[2], values[3], values[4]);
+    }
+
+    // when
+    var actualUser = message(message).getFrom();
+
+    // then
+    assertEquals(expectedUser, actualUser);
+  }
+
+  @DisplayName("Not a user")
+  @Test
+  void notUser() {
+    // given
+    var message = message("{\"inline_query\":{\"text\":\"qwerty\"}}");
+
+    // when and then
+    assertThrows(JSONException.class, message::getFrom);
+  }
+
+  @DisplayName("Update envelope")
+  @ParameterizedTest(name = "{0}")
+  @ValueSource(strings = {"message", "edited_message"})
+  void update(String kind) {
+    // given
+    read(parser, "{\"update_id\":987654321,\"" + kind + "\":{\"message_id\":1,\"text\":\"qwerty\"}}");
+
+    // when
+    var update = parser.parseUpdate();
+
+    // then
+    assertAll("Update", () -> assertEquals(987654321, update.getUpdateId()),
+        () -> assertEquals("message".equals(kind), update.isMessage()),
+        () -> assertEquals("edited_message".equals(kind), update.isEditedMessage()),
+        () -> assertFalse(update.viaBot()), () -> assertThat(update.getText(), isPresentAndIs("qwerty")));
+  }
+
+  @DisplayName("Change of a chat member")
+  @ParameterizedTest(name = "{0}")
+  @ValueSource(strings = {"chat_member", "my_chat_member"})
+  void chatMember(String kind) {
+    // given
+    read(parser, "{\"update_id\":1,\"" + kind + "\":{\"chat\":{\"id\":-100123,\"type\":\"supergroup\"},"
+        + "\"from\":{\"id\":1,\"first_name\":\"Admin\"},\"date\":1700000000,\"old_chat_member\":{"
+        + "\"status\":\"member\",\"user\":{\"id\":456,\"first_name\":\"John\"}},\"new_chat_member\":{"
+        + "\"user\":{\"id\":456,\"first_name\":\"John\"},\"status\":\"restricted\",\"can_send_messages\":false}}}");
+
+    // when
+    var update = parser.parseUpdate();
+
+    // then
+    assertAll("Chat member", () -> assertEquals("chat_member".equals(kind), update.isChatMember()),
+        () -> assertEquals("my_chat_member".equals(kind), update.isMyChatMember()),
+        () -> assertFalse(update.isMessage()), () -> assertEquals(-100123, update.getChatId()),
+        () -> assertEquals(456, update.getMemberId()), () -> assertEquals("member", update.getOldMemberStatus()),
+        () -> assertEquals("restricted", update.getNewMemberStatus()));
+  }
+
+  @DisplayName("Change of a chat member without a member")
+  @Test
+  void chatMemberWithoutMember() {
+    // given
+    read(parser, "{\"update_id\":1,\"chat_member\":{\"chat\":{\"id\":-100123}}}");
+
+    // when
+    var update = parser.parseUpdate();
+
+    // then
+    assertThrows(JSONException.class, update::getMemberId);
+  }
+
+  @DisplayName("Via bot")
+  @Test
+  void viaBot() {
+    // given
+    read(parser, "{\"message\":{\"text\":\"test message\",\"via_bot\":{\"id\":12345}}}");
+
+    // when and then
+    assertTrue(parser.parseUpdate().viaBot());
+  }
+
+  @DisplayName("Skip subtrees and trailing content")
+  @Test
+  void skipSubtrees() {
+    // given
+    var body = "{\"update_id\":1,\"message\":{\"entities\":[{\"type\":\"bold\",\"offset\":0,\"length\":3}],"
+        + "\"photo\":[{\"file_id\":\"a}b\\\"c\"},{\"file_id\":\"d]e\"}],\"reply_to_message\":{\"text\":\"nested\","
+        + "\"chat\":{\"id\":1}},\"forward_origin\":null,\"is_topic\":true,\"date\":1.5e3,"
+        + "\"text\":\"top\",\"chat\":{\"id\":-42,\"type\":\"supergroup\"}} , \"extra\" : [ ] }}";
+
+    read(parser, body);
+
+    // when
+    var update = parser.parseUpdate();
+
+    // then
+    assertAll("Update", () -> assertThat(update.getText(), isPresentAndIs("top")),
+        () -> assertEquals(-42, update.getChatId()), () -> assertEquals(ChatType.Supergroup, update.getChatType()));
+  }
+
+  @DisplayName("Excluded entities of text and caption")
+  @Test
+  void excludedEntities() {
+    // when
+    var message = message("{\"entities\":[{\"type\":\"bold\",\"offset\":0,\"length\":3},{\"offset\":4,"
+        + "\"length\":5,\"type\":\"url\"},{\"type\":\"text_link\",\"offset\":10,\"length\":2,\"url\":"
+        + "\"https://t.me\"},{\"type\":\"code\",\"offset\":12,\"length\":1}],\"caption_entities\":[ ],"
+        + "\"text\":\"text\"}");
+
+    // then
+    assertAll("Entities", () -> assertEquals(2, message.entities.count()),
+        () -> assertEquals(0, message.captionEntities.count()),
+        () -> assertEquals(message.entities, message.getExcludedRanges()));
+  }
+
+  @DisplayName("Caption entities")
+  @Test
+  void captionEntities() {
+    // when
+    var message = message("{\"caption\":\"caption\",\"caption_entities\":[{\"type\":\"mention\","
+        + "\"offset\":0,\"length\":3},{\"type\":\"pre\",\"offset\":-1,\"length\":3},{\"type\":\"\\u0070re\","
+        + "\"offset\":0,\"length\":3},{\"type\":\"email\",\"offset\":0,\"length\":12345678901}]}");
+
+    // then
+    assertAll("Entities", () -> assertEquals(1, message.captionEntities.count()),
+        () -> assertEquals(message.captionEntities, message.getExcludedRanges()));
+  }
+
+  @DisplayName("Escaped strings")
+  @Test
+  void escapedStrings() {
+    // when
+    var message = message("{\"text\":\"\\u0451\\u0436 \\\"q\\\\w\\/e\\\" \\n\\t\\r\\b\\f ї\\uD83C\\uDFB2\"}");
+
+    // then
+    assertThat(message.getText(), isPresentAndIs("ёж \"q\\w/e\" \n\t\r\b\f ї\uD83C\uDFB2"));
+  }
+
+  @DisplayName("Large body")
+  @Test
+  void largeBody() {
+    // given
+    var text = "ї".repeat(10_000);
+
+    read(parser, "{\"message\":{\"text\":\"" + text + "\"}}");
+
+    // when and then
+    assertThat(parser.parseUpdate().getText(), isPresentAndIs(text));
+  }
+
+  @DisplayName("Body longer than the limit")
+  @Test
+  void bodySize() throws IOException {
+    // given
+    var body = "{\"message\":{\"text\":\"ёжик\"}}".getBytes(UTF_8);
+
+    // when
+    var exception = assertThrows(BodySizeException.class,
+        () -> parser.read(new ByteArrayInputStream(body), body.length - 1));
+
+    // then
+    assertEquals("Body is longer than " + (body.length - 1) + " bytes", exception.getMessage());
+    parser.read(new ByteArrayInputStream(body), body.length);
+    assertThat(parser.parseUpdate().getText(), isPresentAndIs("ёжик"));
+  }
+
+  @DisplayName("Reuse the view")
+  @Test
+  void reuseView() {
+    // given
+    read(parser, "{\"message\":{\"text\":\"qwerty\",\"chat\":{\"id\":1},\"entities\":[{\"type\":\"url\","
+        + "\"offset\":0,\"length\":6}]}}");
+    parser.parseUpdate();
+    read(parser, "{\"update_id\":2}");
+
+    // when
+    var update = parser.parseUpdate();
+
+    // then
+    assertAll("Update", () -> assertFalse(update.isMessage()), () -> assertThat(update.getText(), isEmpty()),
+        () -> assertThrows(JSONException.class, update::getChatId),
+        () -> assertEquals(0, update.getExcludedRanges().count()));
+  }
+
+  @DisplayName("Malformed body")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @ValueSource(strings = {"", "[]", "{", "{\"message\"}", "{\"message\":{\"text\":\"qwerty}}",
+      "{\"message\":{\"text\":\"\\x\"}}", "{\"message\":{\"text\":\"\\u04\"}}", "{\"update_id\":-}",
+      "{\"message\":{\"photo\":[{}}", "{\"a\":,}",
+      "{\"message\":{\"entities\":[1]}}", "{\"message\":{\"entities\":[{},]}}"})
+  void malformedBody(String body) {
+    // given
+    read(parser, body);
+
+    // when and then
+    assertThrows(JSONException.class, parser::parseUpdate);
+  }
+
+  @DisplayName("Find updates in a getUpdates response")
+  @Test
+  void updates() {
+    // given
+    var first = "{\"update_id\":10,\"message\":{\"text\":\"a]}\"}}";
+    var second = "{\"message\":{\"text\":\"b\"},\"update_id\":11}";
+    var body = "{\"ok\":true, \"result\": [ " + first + " ,\n" + second + " ]}";
+    var found = new ArrayList<String>();
+
+    read(parser, body);
+
+    // when
+    var count = parser.parseUpdates((updateId, start, end) -> found.add(
+        updateId + " " + new String(parser.buffer(), start, end - start, UTF_8)));
+
+    // then
+    assertAll("Updates", () -> assertEquals(2, count),
+        () -> assertThat(found, contains("10 " + first, "11 " + second)));
+  }
+
+  @DisplayName("No updates in a getUpdates response")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @ValueSource(strings = {"{}", "{\"ok\":true,\"result\":[]}", "{\"ok\":true,\"result\":[ ]}",
+      "{\"ok\":false,\"error_code\":409,\"description\":\"Conflict\"}"})
+  void noUpdates(String body) {
+    // given
+    read(parser, body);
+
+    // when and then
+    assertEquals(0, parser.parseUpdates((updateId, start, end) -> {
+      throw new AssertionError("Unexpected update");
+    }));
+  }
+
+  @DisplayName("Malformed getUpdates response")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @ValueSource(strings = {"", "[]", "{\"result\":[1]}", "{\"result\":[{}", "{\"result\":[{},]}",
+      "{\"result\":[{\"update_id\":1}}"})
+  void malformedUpdates(String body) {
+    // given
+    read(parser, body);
+
+    // when and then
+    assertThrows(JSONException.class, () -> parser.parseUpdates((updateId, start, end) -> {
+    }));
+  }
+
+}
@@ -0,0 +1,234 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.verify;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.vitalijr2.lagidnyj.keeper.ChatKeeper;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+@Tag("fast")
+class UpdatePollerTest {
+
+  private static final String EMPTY_BATCH = "{\"ok\":true,\"result\":[]}";
+
+  private final List<JSONObject> answers = new CopyOnWriteArrayList<>();
+  private final BlockingQueue<JSONObject> requests = new LinkedBlockingQueue<>();
+  private final Queue<String> responses = new ConcurrentLinkedQueue<>();
+
+  @Mock
+  private ChatKeeper chatKeeper;
+  private UpdatePoller poller;
+  private HttpServer server;
+
+  private static String message(long updateId, long chatId, String chatType, String text) {
+    return String.format("{\"update_id\":%d,\"message\":{\"message_id\":1,"
+        + "\"from\":{\"id\":456,\"first_name\":\"John\"},\"chat\":{\"id\":%d,\"type\":\"%s\"},\"text\":\"%s\"}}",
+        updateId, chatId, chatType, text);
+  }
+
+  private static String batch(String... updates) {
+    return "{\"ok\":true,\"result\":[" + String.join(",", updates) + "]}";
+  }
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", this::handle);
+    server.start();
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    if (null != poller) {
+      poller.close();
+    }
+    server.stop(0);
+  }
+
+  private UpdatePoller poller(int limit) {
+    return new UpdatePoller(new LagidnyjBot(chatKeeper), answers::add,
+        URI.create("http://127.0.0.1:" + server.getAddress().getPort()), "123:test", limit, Duration.ofSeconds(1));
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    var request = new JSONObject(new String(exchange.getRequestBody().readAllBytes(), UTF_8));
+
+    request.put("path", exchange.getRequestURI().getPath());
+    requests.add(request);
+
+    var response = responses.poll();
+    var status = 200;
+
+    if (null == response) {
+      response = EMPTY_BATCH;
+    } else if (response.startsWith("500")) {
+      status = 500;
+    }
+
+    var bytes = response.getBytes(UTF_8);
+
+    exchange.sendResponseHeaders(status, bytes.length);
+    exchange.getResponseBody().write(bytes);
+    exchange.close();
+  }
+
+  private JSONObject nextRequest() throws InterruptedException {
+    var request = requests.poll(5, TimeUnit.SECONDS);
+
+    if (null == request) {
+      throw new AssertionError("No request");
+    }
+
+    return request;
+  }
+
+  @DisplayName("Process a batch, then move the offset")
+  @Test
+  void batch() throws Exception {
+    // given
+    poller = poller(100);
+    responses.add(batch(message(10, -100123, "supergroup", "ёжик"), message(11, 456, "private", "привіт"),
+        message(12, -100123, "supergroup", "привіт")));
+
+    // when
+    poller.start();
+
+    var first = nextRequest();
+    var second = nextRequest();
+
+    // then
+    assertAll("Requests", () -> assertEquals("/bot123:test/getUpdates", first.getString("path")),
+        () -> assertEquals(0, first.getLong("offset")), () -> assertEquals(100, first.getInt("limit")),
+        () -> assertEquals(1, first.getInt("timeout")), () -> assertEquals(13, second.getLong("offset")));
+    verify(chatKeeper).addUserToWatchList(argThat(notification -> -100123 == notification.chatId()));
+    assertThat(answers, hasSize(1));
+    assertAll("Answer", () -> assertEquals("sendMessage", answers.get(0).getString("method")),
+        () -> assertEquals(456, answers.get(0).getLong("chat_id")), () -> assertEquals(1, poller.getBatches()),
+        () -> assertEquals(3, poller.getProcessed()));
+  }
+
+  @DisplayName("A broken update does not stop the batch")
+  @Test
+  void brokenUpdate() throws Exception {
+    // given
+    poller = poller(10);
+    responses.add(batch(
+        "{\"update_id\":20,\"message\":{\"chat\":{\"id\":-100123,\"type\":\"group\"},\"text\":\"ё\\q\"}}",
+        message(21, -100123, "group", "ёжик")));
+
+    // when
+    poller.start();
+    nextRequest();
+
+    // then
+    assertEquals(22, nextRequest().getLong("offset"));
+    verify(chatKeeper).addUserToWatchList(argThat(notification -> -100123 == notification.chatId()));
+  }
+
+  @DisplayName("Repeat a failed request with the same offset")
+  @Test
+  void failedRequest() throws Exception {
+    // given
+    poller = poller(100);
+    responses.add(batch(message(30, -100123, "group", "привіт")));
+    responses.add("500 Internal Server Error");
+    responses.add("not a JSON");
+
+    // when
+    poller.start();
+    nextRequest();
+
+    var failed = nextRequest();
+    var repeated = nextRequest();
+
+    // then
+    assertAll("Offsets", () -> assertEquals(31, failed.getLong("offset")),
+        () -> assertEquals(31, repeated.getLong("offset")));
+  }
+
+  @DisplayName("Confirm processed updates on close")
+  @Test
+  void confirmOnClose() throws Exception {
+    // given
+    poller = poller(100);
+    responses.add(batch(message(40, -100123, "group", "привіт")));
+
+    // when
+    poller.poll();
+    poller.close();
+
+    // then
+    nextRequest();
+
+    var confirmation = nextRequest();
+
+    assertAll("Confirmation", () -> assertEquals(41, confirmation.getLong("offset")),
+        () -> assertEquals(1, confirmation.getInt("limit")), () -> assertEquals(0, confirmation.getInt("timeout")),
+        () -> assertEquals(41, poller.getOffset()));
+    poller = null;
+  }
+
+  @DisplayName("The poller is started once")
+  @Test
+  void startOnce() {
+    // given
+    poller = poller(100);
+
+    // when
+    poller.start();
+
+    // then
+    assertThrows(IllegalStateException.class, poller::start);
+  }
+
+  @DisplayName("Wrong limit")
+  @ParameterizedTest
+  @ValueSource(ints = {0, 101})
+  void wrongLimit(int limit) {
+    // when and then
+    assertThrows(IllegalArgumentException.class, () -> poller(limit));
+  }
+
+  @DisplayName("Wrong timeout")
+  @Test
+  void wrongTimeout() {
+    // when and then
+    var exception = assertThrows(IllegalArgumentException.class,
+        () -> new UpdatePoller(new LagidnyjBot(chatKeeper), answers::add, URI.create("http://127.0.0.1"), "123:test",
+            100, Duration.ofSeconds(-1)));
+
+    assertTrue(exception.getMessage().startsWith("Wrong timeout"));
+  }
+
+}
@@ -0,0 +1,130 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+@Tag("fast")
+class UpdatePreFilterTest {
+
+  private UpdatePreFilter preFilter;
+
+  @BeforeEach
+  void setUp() {
+    preFilter = new UpdatePreFilter();
+  }
+
+  private boolean test(String body) {
+    var bytes = body.getBytes(UTF_8);
+
+    return preFilter.test(bytes, bytes.length);
+  }
+
+  @DisplayName("Russian letters")
+  @ParameterizedTest
+  @ValueSource(strings = {"Ё", "ё", "Ъ", "ъ", "Ы", "ы", "Э", "э"})
+  void russianLetters(String letter) {
+    // when and then
+    assertTrue(test("{\"message\":{\"text\":\"qwerty" + letter + "йцукен\"}}"));
+  }
+
+  @DisplayName("Escaped Russian letters")
+  @ParameterizedTest
+  @ValueSource(strings = {"\\u0401", "\\u0451", "\\u042A", "\\u042a", "\\u044A", "\\u044a", "\\u042B", "\\u042b",
+      "\\u044B", "\\u044b", "\\u042D", "\\u042d", "\\u044D", "\\u044d"})
+  void escapedRussianLetters(String letter) {
+    // when and then
+    assertTrue(test("{\"message\":{\"text\":\"qwerty" + letter + "\"}}"));
+  }
+
+  @DisplayName("Folded Russian letters")
+  @ParameterizedTest
+  @ValueSource(strings = {"мbIло", "вьlход", "мb\u200BIло", "е\u0308жик", "мëд", "мｂＩло",
+      "\\u043cbI", "\\u0435\\u0308", "м\\u200bb\\u200bI", "ӹ", "\\u04f9", "м\\u00eb", "Мëд"})
+  void foldedLetters(String text) {
+    // when and then
+    assertTrue(test("{\"message\":{\"text\":\"" + text + "\"}}"));
+  }
+
+  @DisplayName("Private chat")
+  @Test
+  void privateChat() {
+    // when and then
+    assertTrue(test("{\"message\":{\"chat\":{\"id\":1,\"type\":\"private\"},\"text\":\"/start\"}}"));
+  }
+
+  @DisplayName("Change of a chat member")
+  @ParameterizedTest
+  @ValueSource(strings = {"chat_member", "my_chat_member"})
+  void chatMember(String key) {
+    // when and then
+    assertTrue(test("{\"update_id\":1,\"" + key + "\":{\"chat\":{\"id\":-100123,\"type\":\"group\"}}}"));
+  }
+
+  @DisplayName("Nothing interesting")
+  @ParameterizedTest
+  @ValueSource(strings = {"{\"message\":{\"text\":\"привіт, як справи? їжак ґанок\",\"chat\":{\"type\":\"group\"}}}",
+      "{\"message\":{\"text\":\"\\\\u0401 \\u0457\\u0404 \\u0400\\u04ab\"}}", "{\"message\":{\"text\":\"\\u04\"}}",
+      "{\"message\":{\"text\":\"private chat\"}}", "{\"a\":\"\\\"private", "\u0000\u0004\\",
+      "{\"message\":{\"new_chat_members\":[{\"id\":1}],\"chat\":{\"type\":\"group\"}}}",
+      "{\"message\":{\"text\":\"\\\"chat_member\\\"\"}}", "{\"message\":{\"text\":\"table bIg 1bl\"}}",
+      "{\"message\":{\"text\":\"мb Iло, е\u0301, \\\\u0435\\\\u0308\"}}", "\u00e0\u00e1\ud83d\ude00",
+      "{\"message\":{\"text\":\"Citro\u00ebn, No\u00ebl, Belgi\u00eb, Noe\u0308l, \\u00cbLA\"}}",
+      "{\"message\":{\"text\":\"\u0457\u0436\u0430\u043a No\u00ebl, Citroe\u0308n\"}}"})
+  void nothingInteresting(String body) {
+    // when and then
+    assertFalse(test(body));
+  }
+
+  @DisplayName("Any Cyrillic text passes in the scoring mode")
+  @ParameterizedTest
+  @ValueSource(strings = {"{\"message\":{\"text\":\"привіт\"}}", "{\"message\":{\"text\":\"Как дела\"}}",
+      "{\"message\":{\"text\":\"\\u0457\"}}"})
+  void passCyrillic(String body) {
+    // given
+    preFilter = new UpdatePreFilter(true);
+
+    // when and then
+    assertAll("Cyrillic", () -> assertTrue(test(body)),
+        () -> assertFalse(test("{\"message\":{\"text\":\"qwerty \\\\u0401 \\u04\"}}")));
+  }
+
+  @DisplayName("Truncated Cyrillic sequence")
+  @Test
+  void truncatedSequence() {
+    // given
+    var bytes = new byte[]{'"', (byte) 0xD0, (byte) 0x81};
+
+    // when and then
+    assertAll("Truncated", () -> assertFalse(preFilter.test(bytes, 2)),
+        () -> assertFalse(preFilter.test(new byte[]{(byte) 0xD1, (byte) 0x91}, 1)));
+  }
+
+  @DisplayName("Short-circuit rate")
+  @Test
+  void shortCircuitRate() {
+    // given
+    assertEquals(0, preFilter.getShortCircuitRate());
+
+    // when
+    test("{\"text\":\"ёж\"}");
+    test("{\"text\":\"qwerty\"}");
+    test("{\"text\":\"asdfgh\"}");
+    test("{\"text\":\"zxcvbn\"}");
+
+    // then
+    assertAll("Counters", () -> assertEquals(1, preFilter.getPassed()),
+        () -> assertEquals(3, preFilter.getShortCircuited()),
+        () -> assertEquals(0.75, preFilter.getShortCircuitRate()));
+  }
+
+}
@@ -0,0 +1,137 @@
+package io.github.vitalijr2.lagidnyj.telegram;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.functions.HttpRequest;
+import io.github.vitalijr2.lagidnyj.telegram.BotMetrics.Rejection;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+@Tag("fast")
+class WebhookAdmissionTest {
+
+  @Mock
+  private HttpRequest httpRequest;
+
+  @DisplayName("IPv4 address")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @CsvSource({"0.0.0.0, 0", "1.2.3.4, 16909060", "149.154.167.220, 2509940700", "255.255.255.255, 4294967295",
+      "1.2.3, -1", "1.2.3.4.5, -1", "1..3.4, -1", "256.1.1.1, -1", "1.2.3.4a, -1", "::1, -1", "1.2.3., -1"})
+  void ipv4(String text, long expectedAddress) {
+    // when and then
+    assertEquals(expectedAddress, WebhookAdmission.ipv4("x" + text + "y", 1, text.length() + 1));
+  }
+
+  @DisplayName("Address ranges")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @CsvSource(value = {"149.154.167.220 | ", "'1.1.1.1, 91.108.4.1' | ", "'91.108.4.1,  149.154.160.1 ' | ",
+      "149.154.176.1 | Address", "'91.108.4.1, 1.1.1.1' | Address", "unknown | Address", "'' | Address"},
+      delimiter = '|')
+  void address(String forwardedFor, Rejection expectedRejection) {
+    // given
+    var admission = new WebhookAdmission(null, 16, "149.154.160.0/20, 91.108.4.0/22,10.0.0.1");
+
+    when(httpRequest.getFirstHeader("X-Forwarded-For")).thenReturn(Optional.of(forwardedFor));
+    lenient().when(httpRequest.getContentLength()).thenReturn(-1L);
+
+    // when and then
+    assertEquals(expectedRejection, admission.admit(httpRequest));
+  }
+
+  @DisplayName("Address is not known")
+  @Test
+  void noAddress() {
+    // given
+    var admission = new WebhookAdmission(null, 16, "0.0.0.0/0");
+
+    when(httpRequest.getFirstHeader("X-Forwarded-For")).thenReturn(Optional.empty());
+
+    // when and then
+    assertEquals(Rejection.Address, admission.admit(httpRequest));
+  }
+
+  @DisplayName("Secret token")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @CsvSource(value = {"secret | ", "secre | SecretToken", "secret1 | SecretToken", "Secret | SecretToken",
+      "'' | SecretToken"}, delimiter = '|')
+  void secretToken(String header, Rejection expectedRejection) {
+    // given
+    var admission = new WebhookAdmission(" secret ", 16, null);
+
+    when(httpRequest.getFirstHeader(WebhookAdmission.SECRET_TOKEN_HEADER)).thenReturn(Optional.of(header));
+    lenient().when(httpRequest.getContentLength()).thenReturn(-1L);
+
+    // when and then
+    assertEquals(expectedRejection, admission.admit(httpRequest));
+  }
+
+  @DisplayName("Content length")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @CsvSource(value = {"-1 | ", "0 | ", "16 | ", "17 | ContentLength", "9223372036854775807 | ContentLength"},
+      delimiter = '|')
+  void contentLength(long contentLength, Rejection expectedRejection) {
+    // given
+    var admission = new WebhookAdmission("", 16, " ");
+
+    when(httpRequest.getContentLength()).thenReturn(contentLength);
+
+    // when and then
+    assertEquals(expectedRejection, admission.admit(httpRequest));
+  }
+
+  @DisplayName("Settings from the environment")
+  @Test
+  void fromEnvironment() {
+    // given
+    var environment = Map.of(WebhookAdmission.SECRET_TOKEN, "secret", WebhookAdmission.MAX_BODY_SIZE, " 1024 ");
+
+    when(httpRequest.getFirstHeader(WebhookAdmission.SECRET_TOKEN_HEADER)).thenReturn(Optional.of("secret"));
+    when(httpRequest.getContentLength()).thenReturn(1024L);
+
+    // when
+    var admission = WebhookAdmission.fromEnvironment(environment);
+
+    // then
+    assertAll("Admission", () -> assertEquals(1024, admission.maxBodyLength()),
+        () -> assertNull(admission.admit(httpRequest)),
+        () -> assertEquals(WebhookAdmission.DEFAULT_MAX_BODY_SIZE,
+            WebhookAdmission.fromEnvironment(Map.of()).maxBodyLength()),
+        () -> assertEquals(Integer.MAX_VALUE, RequestAdmission.ALL.maxBodyLength()));
+  }
+
+  @DisplayName("Wrong maximum body size")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @ValueSource(strings = {"0", "-1", "1MB", "4294967296"})
+  void wrongMaxBodySize(String maxBodySize) {
+    // given
+    var environment = Map.of(WebhookAdmission.MAX_BODY_SIZE, maxBodySize);
+
+    // when and then
+    assertThrows(IllegalArgumentException.class, () -> WebhookAdmission.fromEnvironment(environment));
+  }
+
+  @DisplayName("Wrong address range")
+  @ParameterizedTest(name = "[{index}] {0}")
+  @ValueSource(strings = {"1.2.3.4/33", "1.2.3.4/-1", "1.2.3.4/", "1.2.3/24", "1.2.3.4/a", "::1/128",
+      "1.2.3.4,,5.6.7.8"})
+  void wrongAddressRange(String addresses) {
+    // when and then
+    assertThrows(IllegalArgumentException.class, () -> new WebhookAdmission(null, 16, addresses));
+  }
+
+}